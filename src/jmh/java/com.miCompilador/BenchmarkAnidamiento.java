@@ -0,0 +1,79 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JMH de las fases del compilador sobre programas con un anidamiento creciente.
+ *
+ * <p>El programa es una sola sentencia anidada {@code anidamiento} niveles, entre paréntesis o en
+ * bloques {@code if}. Con la JVM en su pila predeterminada, los recorridos recursivos fallaban
+ * con {@code StackOverflowError} a partir de unos pocos cientos de niveles; el tiempo por nivel debe
+ * mantenerse aproximadamente constante de un extremo al otro de los parámetros.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class BenchmarkAnidamiento {
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int anidamiento;
+
+    @Param({"parentesis", "bloques"})
+    public String forma;
+
+    private String fuente;
+    private List<? extends Token> tokens;
+    private ParseTree arbol;
+    private TablaSimbolos tablaSimbolos;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        fuente = GeneradorProgramas.anidado(anidamiento, forma.equals("bloques"));
+        CommonTokenStream flujo = new CommonTokenStream(new miGramaticaLexer(CharStreams.fromString(fuente)));
+        flujo.fill();
+        tokens = flujo.getTokens();
+        arbol = parser();
+        tablaSimbolos = semantico().getTablaSimbolos();
+    }
+
+    @Benchmark
+    public ParseTree parser() {
+        return new AnalizadorSintactico(new CommonTokenStream(new ListTokenSource(tokens)), new Diagnosticos()).analizar();
+    }
+
+    @Benchmark
+    public AnalizadorSemantico semantico() {
+        AnalizadorSemantico analizador = new AnalizadorSemantico();
+        analizador.visit(arbol);
+        return analizador;
+    }
+
+    @Benchmark
+    public ProgramaIR generacionIR() {
+        GeneradorCodigo generador = new GeneradorCodigo(tablaSimbolos);
+        generador.visit(arbol);
+        return generador.getPrograma();
+    }
+}
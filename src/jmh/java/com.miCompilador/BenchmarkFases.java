@@ -0,0 +1,113 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks JMH de cada fase del compilador y de la compilación completa.
+ *
+ * <p>Cada fase se mide de forma aislada a partir del resultado de la fase anterior, calculado una
+ * sola vez al preparar la prueba. El programa de entrada lo produce {@link GeneradorProgramas} con
+ * una semilla fija, así que dos ejecuciones con los mismos parámetros miden el mismo programa.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class BenchmarkFases {
+
+    @Param({"1000"})
+    public int sentencias;
+
+    @Param({"3"})
+    public int profundidad;
+
+    @Param({"8"})
+    public int longitudExpresion;
+
+    @Param({"42"})
+    public long semilla;
+
+    private String fuente;
+    private List<? extends Token> tokens;
+    private ParseTree arbol;
+    private TablaSimbolos tablaSimbolos;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        fuente = new GeneradorProgramas(semilla, sentencias, profundidad, longitudExpresion).generar();
+        tokens = lexer();
+        arbol = new AnalizadorSintactico(new CommonTokenStream(new ListTokenSource(tokens)), new Diagnosticos()).analizar();
+        tablaSimbolos = semantico().getTablaSimbolos();
+    }
+
+    @Benchmark
+    public List<? extends Token> lexer() {
+        CommonTokenStream flujo = new CommonTokenStream(new miGramaticaLexer(CharStreams.fromString(fuente)));
+        flujo.fill();
+        return flujo.getTokens();
+    }
+
+    @Benchmark
+    public ParseTree parser() {
+        return new AnalizadorSintactico(new CommonTokenStream(new ListTokenSource(tokens)), new Diagnosticos()).analizar();
+    }
+
+    @Benchmark
+    public AnalizadorSemantico semantico() {
+        AnalizadorSemantico analizador = new AnalizadorSemantico();
+        analizador.visit(arbol);
+        return analizador;
+    }
+
+    @Benchmark
+    public ProgramaIR generacionIR() {
+        GeneradorCodigo generador = new GeneradorCodigo(tablaSimbolos);
+        generador.visit(arbol);
+        return generador.getPrograma();
+    }
+
+    @Benchmark
+    public ProgramaIR generacionIRParalela() {
+        return new GeneracionParalela(ForkJoinPool.commonPool()).generar(arbol, tablaSimbolos).getPrograma();
+    }
+
+    @Benchmark
+    public String generacionNASM() {
+        GeneradorCodigo generador = new GeneradorCodigo(tablaSimbolos);
+        generador.visit(arbol);
+        return generador.getCodigoCompleto();
+    }
+
+    @Benchmark
+    public String completo() {
+        CommonTokenStream flujo = new CommonTokenStream(new miGramaticaLexer(CharStreams.fromString(fuente)));
+        ParseTree programa = new AnalizadorSintactico(flujo, new Diagnosticos()).analizar();
+        AnalizadorSemantico analizador = new AnalizadorSemantico();
+        analizador.visit(programa);
+        GeneradorCodigo generador = new GeneradorCodigo(analizador.getTablaSimbolos());
+        generador.visit(programa);
+        return generador.getCodigoCompleto();
+    }
+}
@@ -0,0 +1,28 @@
+package com.miCompilador;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de {@code benchmarks.jar}. Acepta las mismas opciones que el ejecutor de JMH,
+ * pero si no se indican activa el perfilador {@code gc} (tasa de asignación y bytes por operación)
+ * y guarda los resultados en {@code jmh-result.json} para comparar entre versiones.
+ */
+public class EjecutorBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions opcionesLinea = new CommandLineOptions(args);
+        ChainedOptionsBuilder opciones = new OptionsBuilder().parent(opcionesLinea);
+        if (opcionesLinea.getProfilers().isEmpty()) {
+            opciones.addProfiler(GCProfiler.class);
+        }
+        if (!opcionesLinea.getResult().hasValue()) {
+            opciones.resultFormat(ResultFormatType.JSON).result("jmh-result.json");
+        }
+        new Runner(opciones.build()).run();
+    }
+}
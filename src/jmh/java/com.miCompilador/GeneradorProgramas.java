@@ -0,0 +1,203 @@
+package com.miCompilador;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Genera programas sintéticos válidos para medir el compilador.
+ *
+ * <p>El resultado depende solo de los parámetros: la misma semilla produce el mismo programa en
+ * cualquier JVM, de modo que las mediciones de distintas versiones del compilador son comparables.
+ * Los programas declaran primero sus variables, no dividen nunca por cero y todos sus ciclos
+ * terminan (cada nivel de anidamiento tiene su propio contador).</p>
+ */
+public class GeneradorProgramas {
+
+    private static final String[] VARIABLES = {"a", "b", "c", "d", "e", "f", "g", "h"};
+    private static final String[] RELACIONES = {"<", "<=", ">", ">=", "==", "<>"};
+
+    private final long semilla;
+    private final int sentencias;
+    private final int profundidad;
+    private final int longitudExpresion;
+
+    private SplittableRandom aleatorio;
+    private StringBuilder programa;
+
+    /**
+     * Crea un generador de programas.
+     *
+     * @param semilla           Semilla del generador pseudoaleatorio.
+     * @param sentencias        Cantidad de sentencias de nivel superior.
+     * @param profundidad       Profundidad máxima de anidamiento de if, while y for.
+     * @param longitudExpresion Cantidad de operandos de cada expresión.
+     */
+    public GeneradorProgramas(long semilla, int sentencias, int profundidad, int longitudExpresion) {
+        this.semilla = semilla;
+        this.sentencias = sentencias;
+        this.profundidad = profundidad;
+        this.longitudExpresion = Math.max(1, longitudExpresion);
+    }
+
+    /**
+     * Genera el texto del programa.
+     *
+     * @return El código fuente generado.
+     */
+    public String generar() {
+        aleatorio = new SplittableRandom(semilla);
+        programa = new StringBuilder();
+        for (String variable : VARIABLES) {
+            programa.append(variable).append(" = ").append(aleatorio.nextInt(1, 100)).append(";\n");
+        }
+        List<String> legibles = new ArrayList<>(List.of(VARIABLES));
+        for (int i = 0; i < sentencias; i++) {
+            sentencia(0, legibles);
+        }
+        return programa.toString();
+    }
+
+    /**
+     * Genera un programa de una sola sentencia muy anidada, para medir cómo escala el compilador con
+     * la profundidad en lugar de con el tamaño.
+     *
+     * @param niveles Niveles de anidamiento.
+     * @param bloques {@code true} para anidar bloques {@code if}; {@code false} para anidar
+     *                paréntesis en una expresión.
+     * @return El código fuente generado.
+     */
+    public static String anidado(int niveles, boolean bloques) {
+        StringBuilder programa = new StringBuilder("a = 1;\n");
+        if (bloques) {
+            programa.append("if (a > 0) { ".repeat(niveles)).append("a = a + 1;").append(" };".repeat(niveles));
+        } else {
+            programa.append("a = ").append("(".repeat(niveles)).append("a + 1").append(")".repeat(niveles)).append(';');
+        }
+        return programa.append("\nprint(a);\n").toString();
+    }
+
+    /**
+     * Genera una sentencia terminada en ';' en el nivel de anidamiento indicado.
+     */
+    private void sentencia(int nivel, List<String> legibles) {
+        String sangria = "    ".repeat(nivel);
+        int tipo = nivel < profundidad ? aleatorio.nextInt(10) : aleatorio.nextInt(7);
+        if (tipo < 6) {
+            programa.append(sangria).append(VARIABLES[aleatorio.nextInt(VARIABLES.length)])
+                    .append(" = ").append(expresion(longitudExpresion, legibles)).append(";\n");
+        } else if (tipo == 6) {
+            programa.append(sangria).append("print(")
+                    .append(VARIABLES[aleatorio.nextInt(VARIABLES.length)]).append(");\n");
+        } else if (tipo == 7) {
+            programa.append(sangria).append("if (").append(condicion(legibles)).append(") {\n");
+            bloque(nivel, legibles);
+            if (aleatorio.nextBoolean()) {
+                programa.append(sangria).append("} else {\n");
+                bloque(nivel, legibles);
+            }
+            programa.append(sangria).append("};\n");
+        } else {
+            // Cada nivel tiene su contador, así los ciclos anidados no se interfieren
+            String contador = "z" + (char) ('a' + nivel);
+            int vueltas = aleatorio.nextInt(1, 4);
+            List<String> interiores = new ArrayList<>(legibles);
+            interiores.add(contador);
+            if (tipo == 8) {
+                programa.append(sangria).append("for (").append(contador).append(" = ").append(vueltas)
+                        .append("; ").append(contador).append("; ").append(contador).append(" = ")
+                        .append(contador).append(" - 1) {\n");
+                bloque(nivel, interiores);
+            } else {
+                programa.append(sangria).append(contador).append(" = ").append(vueltas).append(";\n");
+                programa.append(sangria).append("while (").append(contador).append(") {\n");
+                bloque(nivel, interiores);
+                programa.append(sangria).append("    ").append(contador).append(" = ")
+                        .append(contador).append(" - 1;\n");
+            }
+            programa.append(sangria).append("};\n");
+        }
+    }
+
+    /**
+     * Genera entre una y tres sentencias dentro de un bloque.
+     */
+    private void bloque(int nivel, List<String> legibles) {
+        int cantidad = aleatorio.nextInt(1, 4);
+        for (int i = 0; i < cantidad; i++) {
+            sentencia(nivel + 1, legibles);
+        }
+    }
+
+    /**
+     * Genera la condición de un if: una expresión o una comparación entre dos expresiones.
+     */
+    private String condicion(List<String> legibles) {
+        int mitad = Math.max(1, longitudExpresion / 2);
+        if (aleatorio.nextBoolean()) {
+            return expresion(mitad, legibles);
+        }
+        return expresion(mitad, legibles) + " " + RELACIONES[aleatorio.nextInt(RELACIONES.length)]
+                + " " + expresion(mitad, legibles);
+    }
+
+    /**
+     * Genera una expresión aritmética con la cantidad de operandos indicada.
+     */
+    private String expresion(int operandos, List<String> legibles) {
+        if (operandos == 1) {
+            return operando(legibles);
+        }
+        int operador = aleatorio.nextInt(4);
+        if (operador == 3) {
+            // El divisor es siempre una constante distinta de cero
+            return envolver(expresion(operandos - 1, legibles), operandos - 1) + " / " + aleatorio.nextInt(1, 10);
+        }
+        int izquierda = aleatorio.nextInt(1, operandos);
+        String simbolo = operador == 0 ? " + " : operador == 1 ? " - " : " * ";
+        return envolver(expresion(izquierda, legibles), izquierda) + simbolo
+                + envolver(expresion(operandos - izquierda, legibles), operandos - izquierda);
+    }
+
+    /**
+     * Encierra entre paréntesis una expresión de más de un operando.
+     */
+    private static String envolver(String expresion, int operandos) {
+        return operandos > 1 ? "(" + expresion + ")" : expresion;
+    }
+
+    /**
+     * Genera una variable ya declarada o una constante, a veces negada.
+     */
+    private String operando(List<String> legibles) {
+        String operando = aleatorio.nextInt(3) == 0
+                ? Integer.toString(aleatorio.nextInt(100))
+                : legibles.get(aleatorio.nextInt(legibles.size()));
+        return aleatorio.nextInt(10) == 0 ? "-" + operando : operando;
+    }
+
+    /**
+     * Escribe un programa generado en un archivo, para compilarlo con la línea de comandos.
+     *
+     * <p>Uso: {@code GeneradorProgramas <archivo> [sentencias] [profundidad] [longitud] [semilla]}</p>
+     *
+     * @param args Los argumentos de línea de comandos.
+     * @throws IOException Si no se puede escribir el archivo.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: GeneradorProgramas <archivo> [sentencias] [profundidad] [longitud] [semilla]");
+            System.exit(1);
+        }
+        int sentencias = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int profundidad = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int longitud = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        long semilla = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        Path archivo = Paths.get(args[0]);
+        Files.writeString(archivo, new GeneradorProgramas(semilla, sentencias, profundidad, longitud).generar());
+    }
+}
@@ -2,13 +2,40 @@ grammar miGramatica;
 
 // Manejo de errores con el formato adecuado
 @lexer::members {
+    // Errores de la compilación, para dejar de leer al alcanzar el máximo y registrar los
+    // identificadores largos (null si no se indicaron)
+    private Diagnosticos diagnosticos;
+
+    public void setDiagnosticos(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+
+    @Override
+    public Token nextToken() {
+        if (diagnosticos != null && diagnosticos.alcanzoLimite()) {
+            // Saltar al final: el resto del archivo solo agregaría errores que no se registran
+            _input.seek(_input.size());
+        }
+        return super.nextToken();
+    }
+
+    // Reporta un identificador de más de 12 letras en los diagnósticos o, si no hay, a los listeners
+    // de errores como cualquier error léxico
+    private void identificadorLargo() {
+        if (diagnosticos != null) {
+            diagnosticos.reportar(Diagnosticos.Codigo.IDENTIFICADOR_LARGO,
+                    _tokenStartLine, _tokenStartCharPositionInLine, getText());
+        } else {
+            getErrorListenerDispatch().syntaxError(this, null, _tokenStartLine, _tokenStartCharPositionInLine,
+                    "identificador de más de 12 caracteres: " + getText(), null);
+        }
+        setType(ID);
+    }
+
     @Override
     public void notifyListeners(LexerNoViableAltException e) {
         String text = _input.getText(Interval.of(_tokenStartCharIndex, _input.index()));
-        int line = getLine();
-        String msg = "Error [Fase Léxica]: La línea " + line + " contiene un error, lexema no reconocido: " + text;
-        System.err.println(msg);
-        // No llamamos a getErrorListenerDispatch().syntaxError(...)
+        getErrorListenerDispatch().syntaxError(this, null, _tokenStartLine, _tokenStartCharPositionInLine, text, e);
     }
 }
 
@@ -35,15 +62,19 @@ while_stmt  : WHILE PARL exp PARR KEYL code KEYR ;
 
 for_stmt    : FOR PARL optionalExp END optionalExp END optionalExp PARR KEYL code KEYR ;
 
-print_stmt  : PRINT PARL ID PARR ;
+// El análisis semántico guarda en 'simbolo' el número del identificador en la TablaSimbolos
+print_stmt  locals [int simbolo = -1]
+            : PRINT PARL ID PARR ;
 
-optionalExp : exp
+// Sin pasar por exp: como exp también puede ser vacía, "exp | vacío" sería ambigua
+optionalExp : assignmentExp
             | /* vacío */ ;
 
 exp         : assignmentExp
             | /* vacío */ ;
 
 assignmentExp
+            locals [int simbolo = -1]
             : relationalExp (ASSIGN assignmentExp)?
             ;
 
@@ -61,7 +92,8 @@ multiplicativeExp
 unaryExp    : ORES unaryExp
             | primaryExp ;
 
-primaryExp  : ID
+primaryExp  locals [int simbolo = -1]
+            : ID
             | NUM
             | PARL exp PARR ;
 
@@ -92,8 +124,13 @@ ASSIGN      : '=' ;
 END         : ';' ;
 
 fragment LETTER        : [a-z];
-ID                     : LETTER (LETTER)* {getText().length() <= 12}?;
+
+// De 1 a 12 letras, sin predicado: el límite queda en el autómata, que ANTLR puede cachear
+ID                     : LETTER LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? LETTER? ;
 NUM                    : [0-9]+ ;
 
+// Más de 12 letras: con la misma longitud gana ID, que está antes. Se reporta y se entrega como ID
+ID_LARGO               : LETTER+ { identificadorLargo(); } ;
+
 // Ignorar espacios en blanco y saltos de línea
 WS          : [ \t\r\n]+ -> skip ;
@@ -1,9 +1,13 @@
 package com.miCompilador;
 
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * AnalizadorSemantico se encarga de la fase semántica de un compilador, utilizando ANTLR para manejar la gramática.
@@ -13,14 +17,40 @@ public class AnalizadorSemantico extends miGramaticaBaseVisitor<Void> {
 
     /**
      * Tabla de símbolos que almacena información sobre las variables declaradas en el código.
-     * La clave es el nombre de la variable y el valor es una instancia de la clase {@link Simbolo}.
+     * El número de símbolo de cada identificador queda guardado en el nodo del árbol que lo menciona.
      */
-    private Map<String, Simbolo> tablaSimbolos = new HashMap<>();
+    private final TablaSimbolos tablaSimbolos = new TablaSimbolos();
 
     /**
-     * Indicador de si se han encontrado errores semánticos durante el análisis.
+     * Identificadores usados antes de ser declarados, en orden de aparición.
      */
-    private boolean hayErrores = false;
+    private List<String> usosNoDeclarados = new ArrayList<>();
+
+    /**
+     * Líneas de las divisiones por un cero literal, en orden de aparición.
+     */
+    private final List<Integer> divisionesPorCero = new ArrayList<>();
+
+    /**
+     * Registro de los errores de la compilación, donde se agregan los semánticos.
+     */
+    private final Diagnosticos diagnosticos;
+
+    /**
+     * Crea un analizador con su propio registro de errores.
+     */
+    public AnalizadorSemantico() {
+        this(new Diagnosticos());
+    }
+
+    /**
+     * Crea un analizador que registra los errores en los diagnósticos indicados.
+     *
+     * @param diagnosticos registro de los errores de la compilación.
+     */
+    public AnalizadorSemantico(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
 
     /**
      * Verifica si se han encontrado errores semánticos.
@@ -28,82 +58,259 @@ public class AnalizadorSemantico extends miGramaticaBaseVisitor<Void> {
      * @return {@code true} si hay errores semánticos, {@code false} en caso contrario.
      */
     public boolean hayErroresSemanticos() {
-        return hayErrores;
+        return diagnosticos.hayErrores(Diagnosticos.Fase.SEMANTICA);
     }
 
     /**
-     * Clase interna que representa un símbolo en la tabla de símbolos.
+     * Obtiene el registro donde el analizador agrega los errores semánticos.
+     *
+     * @return los diagnósticos.
      */
-    public class Simbolo {
-        String nombre;
-        String tipo; // Tipo de dato de la variable
-        int lineaDeclaracion;
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
 
-        /**
-         * Constructor para crear un símbolo con el nombre, tipo y línea de declaración especificados.
-         *
-         * @param nombre el nombre del símbolo.
-         * @param tipo el tipo de dato del símbolo.
-         * @param lineaDeclaracion la línea donde se declaró el símbolo.
-         */
-        Simbolo(String nombre, String tipo, int lineaDeclaracion) {
-            this.nombre = nombre;
-            this.tipo = tipo;
-            this.lineaDeclaracion = lineaDeclaracion;
-        }
+    /**
+     * Obtiene las líneas de las divisiones por un cero literal, en orden de aparición.
+     *
+     * @return la lista de líneas, con repeticiones si una línea tiene varias.
+     */
+    public List<Integer> getDivisionesPorCero() {
+        return divisionesPorCero;
     }
 
     /**
      * Obtiene la tabla de símbolos que contiene información sobre todas las variables declaradas.
      *
-     * @return un mapa que asocia el nombre de cada variable con su respectivo símbolo.
+     * @return la tabla de símbolos, que comparte con el generador de código.
      */
-    public Map<String, Simbolo> getTablaSimbolos() {
+    public TablaSimbolos getTablaSimbolos() {
         return tablaSimbolos;
     }
 
+    /**
+     * Obtiene los identificadores que se usaron antes de ser declarados, en orden de aparición.
+     *
+     * @return la lista de nombres, con repeticiones si un identificador se usó varias veces.
+     */
+    public List<String> getUsosNoDeclarados() {
+        return usosNoDeclarados;
+    }
+
+    /**
+     * Indica si una variable ya fue declarada.
+     *
+     * @param nombre el nombre de la variable.
+     * @return {@code true} si la variable está en la tabla de símbolos.
+     */
+    public boolean estaDeclarada(String nombre) {
+        return tablaSimbolos.estaDeclarado(nombre);
+    }
+
+    /**
+     * Declara una variable si todavía no está en la tabla de símbolos.
+     *
+     * @param nombre el nombre de la variable.
+     * @param linea la línea donde se declara.
+     * @return el número de símbolo de la variable.
+     */
+    public int declarar(String nombre, int linea) {
+        return tablaSimbolos.declarar(nombre, linea);
+    }
+
+    /**
+     * Analiza un subárbol recorriéndolo en preorden, de izquierda a derecha, como la visita
+     * predeterminada de ANTLR, pero sin recursión: los hermanos pendientes se guardan en una pila
+     * explícita y la visita baja directamente al primer hijo. Así el anidamiento del programa
+     * (paréntesis, bloques) no está limitado por el tamaño de la pila del hilo. El recorrido termina
+     * antes si se alcanza el máximo de errores de los {@link Diagnosticos}.
+     *
+     * @param arbol el subárbol a analizar.
+     * @return {@code null}.
+     */
+    @Override
+    public Void visit(ParseTree arbol) {
+        ArrayDeque<ParserRuleContext> pendientes = new ArrayDeque<>();
+        ParseTree nodo = arbol;
+        while (true) {
+            while (nodo instanceof ParserRuleContext regla && entrar(regla)) {
+                // Solo las reglas tienen algo que analizar: los tokens no se apilan
+                ParseTree primero = null;
+                for (int i = regla.getChildCount() - 1; i >= 0; i--) {
+                    if (regla.getChild(i) instanceof ParserRuleContext hijo) {
+                        if (primero != null) {
+                            pendientes.push((ParserRuleContext) primero);
+                        }
+                        primero = hijo;
+                    }
+                }
+                nodo = primero;
+            }
+            if (pendientes.isEmpty() || diagnosticos.alcanzoLimite()) {
+                return null;
+            }
+            nodo = pendientes.pop();
+        }
+    }
+
+    /**
+     * Analiza un nodo antes que sus hijos.
+     *
+     * @param ctx el nodo.
+     * @return {@code true} si se deben analizar sus hijos.
+     */
+    private boolean entrar(ParserRuleContext ctx) {
+        switch (ctx) {
+            case miGramaticaParser.AssignmentExpContext asignacion -> entrarAsignacion(asignacion);
+            case miGramaticaParser.MultiplicativeExpContext multiplicacion -> entrarMultiplicacion(multiplicacion);
+            case miGramaticaParser.PrimaryExpContext primaria -> entrarPrimaria(primaria);
+            case miGramaticaParser.Print_stmtContext print -> {
+                entrarPrint(print);
+                return false;
+            }
+            default -> {
+                // Las demás reglas no tienen verificaciones propias
+            }
+        }
+        return true;
+    }
+
     /**
      * Maneja las expresiones de asignación en el código, verificando la declaración de variables.
      *
      * @param ctx el contexto de la expresión de asignación.
-     * @return {@code null} después de visitar los hijos del contexto.
      */
-    @Override
-    public Void visitAssignmentExp(miGramaticaParser.AssignmentExpContext ctx) {
+    private void entrarAsignacion(miGramaticaParser.AssignmentExpContext ctx) {
         if (ctx.relationalExp() != null && ctx.ASSIGN() != null && ctx.assignmentExp() != null) {
-            String nombreVariable = ctx.relationalExp().getText();
+            String nombreVariable = nombreDestino(ctx.relationalExp());
             Token tokenVariable = ctx.relationalExp().start;
             int linea = tokenVariable.getLine();
 
-            // Verificar si la variable ya fue declarada
-            if (!tablaSimbolos.containsKey(nombreVariable)) {
-                // Si no, agregarla a la tabla de símbolos
-                tablaSimbolos.put(nombreVariable, new Simbolo(nombreVariable, "variable", linea));
+            // Si la variable no fue declarada, agregarla a la tabla de símbolos
+            ctx.simbolo = declarar(nombreVariable, linea);
+        }
+    }
+
+    /**
+     * Maneja las expresiones multiplicativas, advirtiendo las divisiones por un cero literal.
+     *
+     * @param ctx el contexto de la expresión multiplicativa.
+     */
+    private void entrarMultiplicacion(miGramaticaParser.MultiplicativeExpContext ctx) {
+        for (int i = 1; 2 * i < ctx.getChildCount(); i++) {
+            if (ctx.getChild(2 * i - 1).getText().equals("/") && esCeroLiteral(ctx.getChild(2 * i))) {
+                divisionPorCero(((ParserRuleContext) ctx.getChild(2 * i)).start.getLine());
+            }
+        }
+    }
+
+    /**
+     * Indica si una expresión es un literal que vale cero, quizás entre paréntesis: el divisor que el
+     * generador de código recibe como constante.
+     */
+    private static boolean esCeroLiteral(ParseTree expresion) {
+        ParseTree nodo = expresion;
+        while (nodo instanceof ParserRuleContext regla) {
+            if (regla instanceof miGramaticaParser.PrimaryExpContext primaria && primaria.PARL() != null) {
+                nodo = primaria.exp();
+            } else if (regla.getChildCount() == 1) {
+                nodo = regla.getChild(0);
+            } else {
+                return false;
             }
         }
-        return visitChildren(ctx);
+        return nodo instanceof TerminalNode terminal && terminal.getSymbol().getType() == miGramaticaParser.NUM
+                && GeneradorCodigo.valorLiteral(terminal.getText()) == 0;
+    }
+
+    /**
+     * Registra una división por un cero literal como advertencia ({@link Diagnosticos.Codigo#DIVISION_POR_CERO}).
+     * No es un error, porque la división puede no ejecutarse nunca, pero el programa falla si llega a ella.
+     *
+     * @param linea la línea del divisor.
+     */
+    void divisionPorCero(int linea) {
+        divisionesPorCero.add(linea);
+        diagnosticos.reportar(Diagnosticos.Codigo.DIVISION_POR_CERO, linea, -1, null);
     }
 
     /**
      * Maneja las expresiones primarias en el código, verificando el uso correcto de identificadores.
      *
      * @param ctx el contexto de la expresión primaria.
-     * @return {@code null} después de visitar los hijos del contexto.
      */
-    @Override
-    public Void visitPrimaryExp(miGramaticaParser.PrimaryExpContext ctx) {
+    private void entrarPrimaria(miGramaticaParser.PrimaryExpContext ctx) {
         if (ctx.ID() != null) {
-            String nombreVariable = ctx.ID().getText();
             Token tokenVariable = ctx.ID().getSymbol();
-            int linea = tokenVariable.getLine();
+            ctx.simbolo = usar(tokenVariable.getText(), tokenVariable.getLine(), tokenVariable.getCharPositionInLine());
+        }
+    }
+
+    /**
+     * Verifica el uso de un identificador en una expresión, reportando un error si no fue declarado.
+     *
+     * @param nombre el nombre del identificador.
+     * @param linea la línea donde se usa.
+     * @param columna la columna donde se usa.
+     * @return el número de símbolo del identificador.
+     */
+    int usar(String nombre, int linea, int columna) {
+        int simbolo = tablaSimbolos.simbolo(nombre);
+
+        // Verificar si la variable ha sido declarada
+        if (!tablaSimbolos.estaDeclarado(simbolo)) {
+            usosNoDeclarados.add(nombre);
+            diagnosticos.reportar(Diagnosticos.Codigo.NO_DECLARADO, linea, columna, nombre);
+        }
+        return simbolo;
+    }
+
+    /**
+     * Reporta una asignación cuyo destino no es un identificador, que la compilación en una pasada no
+     * admite porque ya generó el código del lado izquierdo al encontrar el '='.
+     *
+     * @param linea la línea de la asignación.
+     * @param columna la columna del '='.
+     */
+    void destinoNoAsignable(int linea, int columna) {
+        diagnosticos.reportar(Diagnosticos.Codigo.DESTINO_NO_ASIGNABLE, linea, columna, null);
+    }
+
+    /**
+     * Resuelve el identificador de una instrucción print. Como antes, imprimir una variable que no
+     * fue asignada no es un error: se imprime su valor inicial, cero.
+     *
+     * @param ctx el contexto de la instrucción print.
+     */
+    private void entrarPrint(miGramaticaParser.Print_stmtContext ctx) {
+        ctx.simbolo = tablaSimbolos.simbolo(ctx.ID().getText());
+    }
 
-            // Verificar si la variable ha sido declarada
-            if (!tablaSimbolos.containsKey(nombreVariable)) {
-                hayErrores = true;
-                System.err.println("Error [Fase Semántica]: La línea " + linea + " contiene un error, no declarado identificador " + nombreVariable);
+    /**
+     * Devuelve el nombre de la variable destino de una asignación. El destino es casi siempre un solo
+     * identificador, que se toma de su token sin reconstruir el texto del subárbol.
+     *
+     * @param destino el lado izquierdo de la asignación.
+     * @return el nombre de la variable.
+     */
+    static String nombreDestino(miGramaticaParser.RelationalExpContext destino) {
+        if (destino.start == destino.stop && destino.start.getType() == miGramaticaParser.ID) {
+            return destino.start.getText();
+        }
+        // Como getText(), pero sin recursión: el destino puede estar muy anidado
+        StringBuilder texto = new StringBuilder();
+        ArrayDeque<ParseTree> pendientes = new ArrayDeque<>();
+        pendientes.push(destino);
+        while (!pendientes.isEmpty()) {
+            ParseTree nodo = pendientes.pop();
+            if (nodo instanceof TerminalNode terminal) {
+                texto.append(terminal.getText());
+            }
+            for (int i = nodo.getChildCount() - 1; i >= 0; i--) {
+                pendientes.push(nodo.getChild(i));
             }
         }
-        return visitChildren(ctx);
+        return texto.toString();
     }
 
     // Puedes agregar más métodos y validaciones según sea necesario
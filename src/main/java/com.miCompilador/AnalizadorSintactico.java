@@ -0,0 +1,256 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BufferedTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta la fase sintáctica en dos etapas para evitar el costo de la predicción LL completa.
+ *
+ * <p>Primero se analiza con {@link PredictionMode#SLL} y una estrategia que abandona ante el primer
+ * error, sin reportar nada. Si esa pasada termina, el árbol es el mismo que daría LL completo. Si
+ * falla (por un error real o porque SLL no alcanzó a decidir), se rebobina el flujo de tokens y se
+ * vuelve a analizar con {@link PredictionMode#LL} y la recuperación de errores habitual, de modo que
+ * los errores se registran con {@link CustomErrorListener} igual que antes. Si alcanzan el máximo de
+ * los {@link Diagnosticos}, el análisis termina ahí.</p>
+ *
+ * <p>Un flujo sin búfer, como el {@code UnbufferedTokenStream} del modo para archivos grandes, no se
+ * puede rebobinar: en ese caso se analiza una sola vez, directamente con LL completo.</p>
+ *
+ * <p>Con {@link #analizarEnUnaPasada(Function)} el parser no construye el árbol y entrega cada regla
+ * a un oyente a medida que la reconoce. Como el oyente ya actuó sobre lo que la primera etapa
+ * alcanzó a reconocer, la segunda etapa empieza con un oyente nuevo.</p>
+ *
+ * <p>El parser es recursivo y usa varios marcos de pila por cada nivel de paréntesis o llaves. Si
+ * el programa anida más de {@link #PROFUNDIDAD_EN_HILO_ACTUAL} niveles, el análisis se hace en un
+ * hilo propio cuya pila se dimensiona según la profundidad (ver {@link #ejecutarConPila}). En la
+ * segunda etapa la recuperación de errores puede anidar algo más que el programa, así que a la
+ * profundidad se le suma {@link #MARGEN_RECUPERACION}. Solo con un flujo sin búfer, cuya profundidad
+ * no se conoce de antemano, se usa la pila máxima. Solo se reserva memoria virtual, que se ocupa a
+ * medida que el parser la necesita.</p>
+ */
+public class AnalizadorSintactico {
+
+    /**
+     * Anidamiento máximo que se analiza en la pila del hilo que invoca, sea cual sea su tamaño.
+     */
+    static final int PROFUNDIDAD_EN_HILO_ACTUAL = 256;
+
+    // Pila que usa el parser por nivel de anidamiento (unos 1,3 KB medidos, con margen) y la base
+    private static final long BYTES_POR_NIVEL = 2048;
+    private static final long PILA_BASE = 1L << 20;
+
+    /**
+     * Niveles que se suman a la profundidad estimada en la segunda etapa, por los que la
+     * recuperación de errores puede abrir de más.
+     */
+    static final int MARGEN_RECUPERACION = 64;
+
+    // Pila del hilo de análisis cuando la profundidad no se conoce; alcanza para unos 500 000 niveles
+    private static final long PILA_MAXIMA = 1L << 30;
+
+    private final TokenStream tokens;
+    private final miGramaticaParser parser;
+    private final Diagnosticos diagnosticos;
+    private boolean reintentoLL = false;
+
+    // Crea el oyente de cada etapa en el análisis en una pasada, o null si se construye el árbol
+    private Function<? super miGramaticaParser, ? extends ParseTreeListener> crearOyente;
+    private ParseTreeListener oyente;
+
+    /**
+     * Crea el analizador sintáctico sobre un flujo de tokens.
+     *
+     * @param tokens       El flujo de tokens producido por el lexer.
+     * @param diagnosticos Donde se registran los errores sintácticos.
+     */
+    public AnalizadorSintactico(TokenStream tokens, Diagnosticos diagnosticos) {
+        this.tokens = tokens;
+        this.parser = new miGramaticaParser(tokens);
+        this.diagnosticos = diagnosticos;
+    }
+
+    /**
+     * Analiza el programa completo.
+     *
+     * @return El árbol de parseo de la regla {@code program}, o {@code null} si el análisis terminó
+     *         al alcanzar el máximo de errores.
+     */
+    public ParseTree analizar() {
+        if (!(tokens instanceof BufferedTokenStream buffer)) {
+            return ejecutarConPila(-1, this::analizarLL);
+        }
+        buffer.fill();
+
+        // Primera etapa: SLL sin reporte de errores, abandonando ante el primero
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        prepararOyente();
+        int profundidad = profundidadMaxima(buffer.getTokens());
+        try {
+            return ejecutarConPila(profundidad, parser::program);
+        } catch (ParseCancellationException e) {
+            // SLL no bastó: se repite el análisis desde el principio
+        }
+
+        // Segunda etapa: LL completo con el listener de errores personalizado. La recuperación de
+        // errores puede anidar las reglas algo más que el programa mismo, de ahí el margen
+        reintentoLL = true;
+        tokens.seek(0);
+        parser.reset();
+        return ejecutarConPila(profundidad + MARGEN_RECUPERACION, this::analizarLL);
+    }
+
+    /**
+     * Analiza el programa completo sin construir el árbol de parseo, entregando las reglas a un oyente
+     * a medida que se reconocen. La memoria del análisis queda acotada por el anidamiento del programa
+     * en lugar de por su tamaño.
+     *
+     * @param crearOyente Crea el oyente a partir del parser; se invoca de nuevo si hace falta la
+     *                    segunda etapa, descartando el oyente de la primera.
+     * @return El oyente de la etapa que terminó el análisis.
+     */
+    public <T extends ParseTreeListener> T analizarEnUnaPasada(Function<? super miGramaticaParser, T> crearOyente) {
+        this.crearOyente = crearOyente;
+        parser.setBuildParseTree(false);
+        analizar();
+        @SuppressWarnings("unchecked")
+        T resultado = (T) oyente;
+        return resultado;
+    }
+
+    /**
+     * Analiza con LL completo y la recuperación de errores habitual, reportando los errores.
+     *
+     * @return El árbol, o {@code null} si el análisis terminó al alcanzar el máximo de errores.
+     */
+    private ParseTree analizarLL() {
+        parser.removeErrorListeners();
+        parser.addErrorListener(new CustomErrorListener(diagnosticos));
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        prepararOyente();
+        try {
+            return parser.program();
+        } catch (ParseCancellationException e) {
+            // Se alcanzó el máximo de errores; getNumberOfSyntaxErrors() ya los cuenta
+            return null;
+        }
+    }
+
+    /**
+     * Reemplaza el oyente del análisis en una pasada por uno nuevo antes de cada etapa.
+     */
+    private void prepararOyente() {
+        if (crearOyente != null) {
+            parser.removeParseListeners();
+            oyente = crearOyente.apply(parser);
+            parser.addParseListener(oyente);
+        }
+    }
+
+    /**
+     * Estima el anidamiento máximo de las reglas del parser en una secuencia de tokens: los
+     * paréntesis y llaves abiertos más los '=' y '-' de la sentencia en curso, porque
+     * {@code assignmentExp} y {@code unaryExp} son recursivas por la derecha ({@code a = b = c},
+     * {@code - - x}). Contar también los '-' binarios sobrestima, lo que solo agranda la pila. Un
+     * cierre sin apertura no baja de cero, para no subestimar lo que se abra después en un programa
+     * con errores.
+     *
+     * @param tokens Los tokens, en orden.
+     * @return La profundidad máxima estimada.
+     */
+    static int profundidadMaxima(List<? extends Token> tokens) {
+        int profundidad = 0;
+        int cadena = 0;
+        int maxima = 0;
+        for (Token token : tokens) {
+            switch (token.getType()) {
+                case miGramaticaLexer.PARL, miGramaticaLexer.KEYL -> profundidad++;
+                case miGramaticaLexer.PARR, miGramaticaLexer.KEYR -> profundidad = Math.max(0, profundidad - 1);
+                case miGramaticaLexer.ASSIGN, miGramaticaLexer.ORES -> cadena++;
+                case miGramaticaLexer.END -> cadena = 0;
+                default -> {
+                    // Los demás tokens no abren reglas
+                }
+            }
+            maxima = Math.max(maxima, profundidad + cadena);
+        }
+        return maxima;
+    }
+
+    /**
+     * Ejecuta una tarea recursiva sobre un programa con la pila que su anidamiento necesita. Hasta
+     * {@link #PROFUNDIDAD_EN_HILO_ACTUAL} niveles se ejecuta en el hilo actual; si no, en un hilo
+     * de plataforma nuevo, esperando a que termine. Las excepciones de la tarea se propagan.
+     *
+     * @param profundidad El anidamiento máximo del programa, o -1 si no se conoce.
+     * @param tarea       La tarea a ejecutar.
+     * @return El resultado de la tarea.
+     */
+    static <T> T ejecutarConPila(int profundidad, Supplier<T> tarea) {
+        if (profundidad >= 0 && profundidad <= PROFUNDIDAD_EN_HILO_ACTUAL) {
+            return tarea.get();
+        }
+        long pila = profundidad < 0 ? PILA_MAXIMA : Math.min(PILA_MAXIMA, PILA_BASE + profundidad * BYTES_POR_NIVEL);
+
+        Object[] resultado = new Object[1];
+        Throwable[] fallo = new Throwable[1];
+        Thread hilo = Thread.ofPlatform().name("analisis-profundo").stackSize(pila).start(() -> {
+            try {
+                resultado[0] = tarea.get();
+            } catch (Throwable t) {
+                fallo[0] = t;
+            }
+        });
+        boolean interrumpido = false;
+        while (true) {
+            try {
+                hilo.join();
+                break;
+            } catch (InterruptedException e) {
+                // El análisis no se puede cancelar a medias: se espera y se conserva la interrupción
+                interrumpido = true;
+            }
+        }
+        if (interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (fallo[0] instanceof RuntimeException e) {
+            throw e;
+        } else if (fallo[0] instanceof Error e) {
+            throw e;
+        } else if (fallo[0] != null) {
+            throw new IllegalStateException(fallo[0]);
+        }
+        @SuppressWarnings("unchecked")
+        T valor = (T) resultado[0];
+        return valor;
+    }
+
+    /**
+     * Devuelve la cantidad de errores sintácticos reportados.
+     */
+    public int getNumberOfSyntaxErrors() {
+        return parser.getNumberOfSyntaxErrors();
+    }
+
+    /**
+     * Indica si este análisis necesitó la segunda etapa con LL completo.
+     */
+    public boolean usoReintentoLL() {
+        return reintentoLL;
+    }
+}
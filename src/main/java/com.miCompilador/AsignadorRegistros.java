@@ -0,0 +1,485 @@
+package com.miCompilador;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Asignador de registros por barrido lineal (linear scan) sobre la representación intermedia
+ * {@link ProgramaIR}.
+ *
+ * <p>Primero se calcula la vivacidad de cada registro virtual por bloques básicos, recorriendo el
+ * grafo de flujo de control hasta un punto fijo, y con ella un intervalo de vida [inicio, fin] sobre
+ * la numeración lineal de las instrucciones en el orden de emisión de los bloques (cada terminador
+ * ocupa también una posición). El análisis de vivacidad solo considera los registros virtuales que
+ * pueden estar vivos entre bloques; los temporales que nacen y mueren en un mismo bloque, que son la
+ * gran mayoría, toman su intervalo directamente de sus usos, así que los conjuntos por bloque no
+ * crecen con el tamaño del programa. Luego los intervalos se recorren en orden de inicio
+ * asignando uno de los registros físicos libres; si no queda ninguno, se desaloja a memoria el
+ * intervalo que termina más tarde. Las variables del programa desalojadas viven en su entrada de la
+ * sección {@code .bss}, y los temporales desalojados en ranuras de la pila.</p>
+ *
+ * <p>Si el programa tiene un perfil de ejecución ({@link ProgramaIR#tienePerfil()}), el intervalo
+ * que se desaloja es el de menor costo: la suma, sobre las instrucciones que leen o escriben el
+ * registro virtual, de la frecuencia de su bloque. Las variables de los bucles más ejecutados
+ * quedan así en registros aunque su intervalo sea largo, y las del código frío pasan a memoria.</p>
+ *
+ * <p>{@code eax} y {@code edx} no se asignan: se reservan como registros de trabajo para
+ * {@code idiv}, para las operaciones entre dos operandos en memoria y para pasar argumentos a
+ * {@code print_number}.</p>
+ */
+public class AsignadorRegistros {
+
+    /**
+     * Registros físicos disponibles para la asignación, en orden de preferencia.
+     */
+    static final String[] REGISTROS = {"ebx", "ecx", "esi", "edi", "ebp"};
+
+    private final ProgramaIR programa;
+    private final int numVirtuales;
+
+    // Intervalo de vida de cada registro virtual (inicio > fin si nunca se usa)
+    private final int[] inicio;
+    private final int[] fin;
+    private final boolean[] inicioEsDefinicion;
+
+    // Resultado: registro físico asignado (-1 si vive en memoria) y ranura de pila de los temporales
+    private final int[] registro;
+    private final int[] ranura;
+    private int numRanuras = 0;
+
+    // Mayor fin de intervalo de los temporales que ocuparon cada ranura de pila
+    private final int[] finRanura;
+
+    // Costo de desalojar cada registro virtual según el perfil de ejecución, o null si no hay perfil
+    private long[] costo;
+
+    // Registros virtuales vivos al inicio del programa (variables leídas antes de su primera asignación)
+    private BitSet vivosAlInicio = new BitSet();
+
+    /**
+     * Crea un asignador para un programa en representación intermedia.
+     *
+     * @param programa El programa cuyos registros virtuales se asignan.
+     */
+    public AsignadorRegistros(ProgramaIR programa) {
+        this.programa = programa;
+        this.numVirtuales = programa.getNumRegistros();
+        this.inicio = new int[numVirtuales];
+        this.fin = new int[numVirtuales];
+        this.inicioEsDefinicion = new boolean[numVirtuales];
+        this.registro = new int[numVirtuales];
+        this.ranura = new int[numVirtuales];
+        this.finRanura = new int[numVirtuales];
+    }
+
+    /**
+     * Calcula los intervalos de vida y asigna un registro físico o una ubicación en memoria a cada
+     * registro virtual.
+     */
+    public void asignar() {
+        calcularIntervalos();
+        if (programa.tienePerfil()) {
+            calcularCostos();
+        }
+        barridoLineal();
+    }
+
+    /**
+     * Devuelve el operando NASM donde vive un registro virtual.
+     *
+     * @param virtual El número del registro virtual.
+     * @return El nombre del registro físico o la referencia a memoria correspondiente.
+     */
+    public String ubicacion(int virtual) {
+        if (registro[virtual] >= 0) {
+            return REGISTROS[registro[virtual]];
+        } else if (programa.getNombre(virtual) != null) {
+            return "[" + programa.getNombre(virtual) + "]";
+        } else {
+            return "[esp + " + (4 * ranura[virtual]) + "]";
+        }
+    }
+
+    /**
+     * Indica si el registro virtual vive en un registro físico.
+     */
+    public boolean enRegistro(int virtual) {
+        return registro[virtual] >= 0;
+    }
+
+    /**
+     * Devuelve la cantidad de ranuras de pila que necesitan los temporales desalojados.
+     */
+    public int getNumRanuras() {
+        return numRanuras;
+    }
+
+    /**
+     * Devuelve los registros virtuales que están vivos al inicio del programa y deben inicializarse en cero.
+     */
+    public BitSet getVivosAlInicio() {
+        return vivosAlInicio;
+    }
+
+    /**
+     * Calcula la vivacidad por bloques básicos y, con ella, el intervalo de vida de cada registro virtual.
+     */
+    private void calcularIntervalos() {
+        List<BloqueBasico> bloques = programa.getBloques();
+        int numBloques = programa.getNumBloques();
+
+        // Los conjuntos se indexan con una numeración densa de los registros globales
+        int[] denso = numerarGlobales();
+        int[] globales = new int[numVirtuales];
+        int numGlobales = 0;
+        for (int v = 0; v < numVirtuales; v++) {
+            if (denso[v] >= 0) {
+                globales[numGlobales++] = v;
+            }
+        }
+
+        // Conjuntos de uso (antes de definir) y definición de cada bloque
+        BitSet[] usos = new BitSet[numBloques];
+        BitSet[] definiciones = new BitSet[numBloques];
+        BitSet[] vivosEntrada = new BitSet[numBloques];
+        BitSet[] vivosSalida = new BitSet[numBloques];
+        for (BloqueBasico bloque : bloques) {
+            BitSet uso = new BitSet(numGlobales);
+            BitSet definicion = new BitSet(numGlobales);
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i)) {
+                    usar(denso[bloque.a[i]], uso, definicion);
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    usar(denso[bloque.b[i]], uso, definicion);
+                }
+                if (bloque.destino[i] >= 0 && denso[bloque.destino[i]] >= 0) {
+                    definicion.set(denso[bloque.destino[i]]);
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    usar(denso[bloque.condA], uso, definicion);
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    usar(denso[bloque.condB], uso, definicion);
+                }
+            }
+            usos[bloque.id] = uso;
+            definiciones[bloque.id] = definicion;
+            vivosEntrada[bloque.id] = new BitSet(numGlobales);
+            vivosSalida[bloque.id] = new BitSet(numGlobales);
+        }
+
+        // Vivacidad hacia atrás hasta alcanzar un punto fijo
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int k = bloques.size() - 1; k >= 0; k--) {
+                BloqueBasico bloque = bloques.get(k);
+                BitSet salida = vivosSalida[bloque.id];
+                for (int s : bloque.sucesores()) {
+                    salida.or(vivosEntrada[s]);
+                }
+                BitSet entrada = (BitSet) salida.clone();
+                entrada.andNot(definiciones[bloque.id]);
+                entrada.or(usos[bloque.id]);
+                if (!entrada.equals(vivosEntrada[bloque.id])) {
+                    vivosEntrada[bloque.id] = entrada;
+                    cambio = true;
+                }
+            }
+        }
+        if (!bloques.isEmpty()) {
+            BitSet entrada = vivosEntrada[bloques.get(0).id];
+            for (int g = entrada.nextSetBit(0); g >= 0; g = entrada.nextSetBit(g + 1)) {
+                vivosAlInicio.set(globales[g]);
+            }
+        }
+
+        // Intervalos: envolvente de todas las posiciones donde el registro virtual está vivo
+        Arrays.fill(inicio, Integer.MAX_VALUE);
+        Arrays.fill(fin, Integer.MIN_VALUE);
+        int posicion = 0;
+        for (BloqueBasico bloque : bloques) {
+            int primera = posicion;
+            for (int i = 0; i < bloque.n; i++, posicion++) {
+                if (!bloque.aInmediato(i)) {
+                    extender(bloque.a[i], posicion, false);
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    extender(bloque.b[i], posicion, false);
+                }
+                if (bloque.destino[i] >= 0) {
+                    extender(bloque.destino[i], posicion, true);
+                }
+            }
+            // El terminador ocupa la última posición del bloque
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    extender(bloque.condA, posicion, false);
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    extender(bloque.condB, posicion, false);
+                }
+            }
+            BitSet entrada = vivosEntrada[bloque.id];
+            for (int g = entrada.nextSetBit(0); g >= 0; g = entrada.nextSetBit(g + 1)) {
+                extender(globales[g], primera, false);
+            }
+            BitSet salida = vivosSalida[bloque.id];
+            for (int g = salida.nextSetBit(0); g >= 0; g = salida.nextSetBit(g + 1)) {
+                extender(globales[g], posicion, false);
+            }
+            posicion++;
+        }
+    }
+
+    /**
+     * Calcula el costo de desalojar cada registro virtual: cada lectura o escritura suma la
+     * frecuencia de su bloque más uno, para que el código que nunca se ejecutó también cuente.
+     */
+    private void calcularCostos() {
+        costo = new long[numVirtuales];
+        for (BloqueBasico bloque : programa.getBloques()) {
+            long peso = Math.max(bloque.frecuencia, 0) + 1;
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i)) {
+                    costo[bloque.a[i]] += peso;
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    costo[bloque.b[i]] += peso;
+                }
+                if (bloque.destino[i] >= 0) {
+                    costo[bloque.destino[i]] += peso;
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    costo[bloque.condA] += peso;
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    costo[bloque.condB] += peso;
+                }
+            }
+        }
+    }
+
+    /**
+     * Numera en forma densa los registros virtuales que pueden estar vivos al entrar o salir de un
+     * bloque: las variables del programa y los temporales que aparecen en más de un bloque o que se
+     * usan antes de definirse en su bloque.
+     *
+     * @return El número denso de cada registro virtual, o -1 si es local a un bloque.
+     */
+    private int[] numerarGlobales() {
+        int[] bloqueDe = new int[numVirtuales];
+        int[] definidoEn = new int[numVirtuales];
+        boolean[] global = new boolean[numVirtuales];
+        Arrays.fill(bloqueDe, -1);
+        Arrays.fill(definidoEn, -1);
+        for (int variable : programa.getVariables()) {
+            global[variable] = true;
+        }
+        for (BloqueBasico bloque : programa.getBloques()) {
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i)) {
+                    anotar(bloque.a[i], bloque.id, false, bloqueDe, definidoEn, global);
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    anotar(bloque.b[i], bloque.id, false, bloqueDe, definidoEn, global);
+                }
+                if (bloque.destino[i] >= 0) {
+                    anotar(bloque.destino[i], bloque.id, true, bloqueDe, definidoEn, global);
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    anotar(bloque.condA, bloque.id, false, bloqueDe, definidoEn, global);
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    anotar(bloque.condB, bloque.id, false, bloqueDe, definidoEn, global);
+                }
+            }
+        }
+        int[] denso = new int[numVirtuales];
+        int numGlobales = 0;
+        for (int v = 0; v < numVirtuales; v++) {
+            denso[v] = global[v] ? numGlobales++ : -1;
+        }
+        return denso;
+    }
+
+    /**
+     * Registra una aparición de un registro virtual en un bloque y lo marca como global si ya había
+     * aparecido en otro o si se usa antes de definirse.
+     */
+    private static void anotar(int virtual, int bloque, boolean definicion,
+                               int[] bloqueDe, int[] definidoEn, boolean[] global) {
+        if (bloqueDe[virtual] >= 0 && bloqueDe[virtual] != bloque) {
+            global[virtual] = true;
+        }
+        bloqueDe[virtual] = bloque;
+        if (definicion) {
+            definidoEn[virtual] = bloque;
+        } else if (definidoEn[virtual] != bloque) {
+            global[virtual] = true;
+        }
+    }
+
+    /**
+     * Registra el uso de un operando global en un bloque si todavía no fue definido en él.
+     *
+     * @param global El número denso del operando, o -1 si es local a un bloque.
+     */
+    private static void usar(int global, BitSet usos, BitSet definiciones) {
+        if (global >= 0 && !definiciones.get(global)) {
+            usos.set(global);
+        }
+    }
+
+    /**
+     * Extiende el intervalo de un registro virtual para que incluya una posición.
+     */
+    private void extender(int virtual, int posicion, boolean definicion) {
+        if (posicion < inicio[virtual]) {
+            inicio[virtual] = posicion;
+            inicioEsDefinicion[virtual] = definicion;
+        } else if (posicion == inicio[virtual]) {
+            inicioEsDefinicion[virtual] &= definicion;
+        }
+        if (posicion > fin[virtual]) {
+            fin[virtual] = posicion;
+        }
+    }
+
+    /**
+     * Recorre los intervalos en orden de inicio y asigna registros físicos, desalojando a memoria el
+     * intervalo que termina más tarde cuando no hay registros libres.
+     */
+    private void barridoLineal() {
+        Arrays.fill(registro, -1);
+        Arrays.fill(ranura, -1);
+
+        Integer[] orden = new Integer[numVirtuales];
+        int cantidad = 0;
+        for (int v = 0; v < numVirtuales; v++) {
+            if (inicio[v] <= fin[v]) {
+                orden[cantidad++] = v;
+            }
+        }
+        Arrays.sort(orden, 0, cantidad, (x, y) -> inicio[x] != inicio[y]
+                ? Integer.compare(inicio[x], inicio[y]) : Integer.compare(x, y));
+
+        List<Integer> activos = new ArrayList<>();          // en registro, ordenados por fin
+        List<Integer> activosEnPila = new ArrayList<>();    // temporales en pila, para reutilizar ranuras
+        Deque<Integer> registrosLibres = new ArrayDeque<>();
+        for (int r = 0; r < REGISTROS.length; r++) {
+            registrosLibres.add(r);
+        }
+        Deque<Integer> ranurasLibres = new ArrayDeque<>();
+
+        for (int k = 0; k < cantidad; k++) {
+            int actual = orden[k];
+
+            // Liberar los intervalos que terminaron. Un intervalo que termina justo donde empieza
+            // el actual puede cederle su registro si el actual nace definido por esa instrucción.
+            for (int j = 0; j < activos.size(); ) {
+                int v = activos.get(j);
+                if (expirado(v, actual)) {
+                    activos.remove(j);
+                    registrosLibres.addFirst(registro[v]);
+                } else {
+                    j++;
+                }
+            }
+            for (int j = 0; j < activosEnPila.size(); ) {
+                int v = activosEnPila.get(j);
+                if (fin[v] < inicio[actual]) {
+                    activosEnPila.remove(j);
+                    ranurasLibres.addFirst(ranura[v]);
+                } else {
+                    j++;
+                }
+            }
+
+            if (!registrosLibres.isEmpty()) {
+                registro[actual] = registrosLibres.pollFirst();
+                insertarPorFin(activos, actual);
+                continue;
+            }
+
+            // Sin registros libres: desalojar el intervalo que termina más tarde o, con perfil, el
+            // de menor costo (a igual costo, el que termina más tarde)
+            int victima = activos.size() - 1;
+            if (costo != null) {
+                for (int j = activos.size() - 2; j >= 0; j--) {
+                    if (costo[activos.get(j)] < costo[activos.get(victima)]) {
+                        victima = j;
+                    }
+                }
+            }
+            int ultimo = activos.get(victima);
+            boolean desalojarActual = costo == null || costo[actual] == costo[ultimo]
+                    ? fin[ultimo] <= fin[actual] : costo[actual] < costo[ultimo];
+            if (!desalojarActual) {
+                registro[actual] = registro[ultimo];
+                registro[ultimo] = -1;
+                activos.remove(victima);
+                insertarPorFin(activos, actual);
+                desalojar(ultimo, activosEnPila, ranurasLibres);
+            } else {
+                desalojar(actual, activosEnPila, ranurasLibres);
+            }
+        }
+    }
+
+    /**
+     * Indica si el intervalo activo {@code v} ya no se solapa con el intervalo {@code actual}.
+     */
+    private boolean expirado(int v, int actual) {
+        return fin[v] < inicio[actual] || (fin[v] == inicio[actual] && inicioEsDefinicion[actual]);
+    }
+
+    /**
+     * Envía un registro virtual a memoria: su entrada en {@code .bss} si es una variable del programa,
+     * o una ranura de pila si es un temporal.
+     */
+    private void desalojar(int virtual, List<Integer> activosEnPila, Deque<Integer> ranurasLibres) {
+        if (programa.getNombre(virtual) != null) {
+            return;
+        }
+        // Un intervalo activo que se desaloja empezó antes que el actual: la ranura tiene que estar
+        // libre desde su inicio, no solo desde el del actual
+        int libre = -1;
+        for (int r : ranurasLibres) {
+            if (finRanura[r] < inicio[virtual]) {
+                libre = r;
+                break;
+            }
+        }
+        if (libre < 0) {
+            libre = numRanuras++;
+        } else {
+            ranurasLibres.remove(libre);
+        }
+        ranura[virtual] = libre;
+        finRanura[libre] = Math.max(finRanura[libre], fin[virtual]);
+        activosEnPila.add(virtual);
+    }
+
+    /**
+     * Inserta un registro virtual en la lista de activos manteniéndola ordenada por fin de intervalo.
+     */
+    private void insertarPorFin(List<Integer> activos, int virtual) {
+        int posicion = activos.size();
+        while (posicion > 0 && fin[activos.get(posicion - 1)] > fin[virtual]) {
+            posicion--;
+        }
+        activos.add(posicion, virtual);
+    }
+}
@@ -0,0 +1,181 @@
+package com.miCompilador;
+
+import java.util.Arrays;
+
+/**
+ * Bloque básico de la representación intermedia: una secuencia de instrucciones sin saltos internos
+ * seguida de un terminador que decide el bloque siguiente.
+ *
+ * <p>Las instrucciones se guardan en arreglos paralelos de enteros (código de operación, destino y
+ * dos operandos) y un arreglo de marcas que indica qué operandos son constantes inmediatas.</p>
+ */
+public class BloqueBasico {
+
+    // Terminadores
+    public static final int SALTO = 0;  // continúa en siVerdadero
+    public static final int RAMA = 1;   // si (condA <relacion> condB) continúa en siVerdadero, si no en siFalso
+    public static final int FIN = 2;    // termina el programa
+
+    // Marcas de operandos inmediatos
+    static final byte A_INMEDIATO = 1;
+    static final byte B_INMEDIATO = 2;
+
+    int id;
+
+    int n = 0;
+    int[] op = new int[4];
+    int[] destino = new int[4];
+    int[] a = new int[4];
+    int[] b = new int[4];
+    byte[] inmediatos = new byte[4];
+
+    int terminador = FIN;
+    int relacion;
+    int condA;
+    int condB;
+    byte condInmediatos;
+    int siVerdadero = -1;
+    int siFalso = -1;
+
+    // Veces que se ejecutó el bloque según el perfil de ejecución, o -1 si no se conoce
+    long frecuencia = -1;
+
+    BloqueBasico(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Devuelve el número del bloque, que también identifica su etiqueta.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Devuelve la cantidad de instrucciones del bloque (sin contar el terminador).
+     */
+    public int getNumInstrucciones() {
+        return n;
+    }
+
+    /**
+     * Agrega una instrucción al final del bloque.
+     *
+     * @param codigo    El código de operación.
+     * @param dest      El registro virtual de destino, o -1.
+     * @param opA       El primer operando.
+     * @param marcas    Las marcas de operandos inmediatos.
+     * @param opB       El segundo operando.
+     */
+    void agregar(int codigo, int dest, int opA, byte marcas, int opB) {
+        if (n == op.length) {
+            int capacidad = n * 2;
+            op = Arrays.copyOf(op, capacidad);
+            destino = Arrays.copyOf(destino, capacidad);
+            a = Arrays.copyOf(a, capacidad);
+            b = Arrays.copyOf(b, capacidad);
+            inmediatos = Arrays.copyOf(inmediatos, capacidad);
+        }
+        op[n] = codigo;
+        destino[n] = dest;
+        a[n] = opA;
+        b[n] = opB;
+        inmediatos[n] = marcas;
+        n++;
+    }
+
+    /**
+     * Inserta una instrucción en una posición del bloque, desplazando las siguientes.
+     *
+     * @param posicion  La posición que ocupará la instrucción, entre 0 y {@link #getNumInstrucciones()}.
+     * @param codigo    El código de operación.
+     * @param dest      El registro virtual de destino, o -1.
+     * @param opA       El primer operando.
+     * @param marcas    Las marcas de operandos inmediatos.
+     * @param opB       El segundo operando.
+     */
+    void insertar(int posicion, int codigo, int dest, int opA, byte marcas, int opB) {
+        agregar(codigo, dest, opA, marcas, opB);
+        int cantidad = n - 1 - posicion;
+        System.arraycopy(op, posicion, op, posicion + 1, cantidad);
+        System.arraycopy(destino, posicion, destino, posicion + 1, cantidad);
+        System.arraycopy(a, posicion, a, posicion + 1, cantidad);
+        System.arraycopy(b, posicion, b, posicion + 1, cantidad);
+        System.arraycopy(inmediatos, posicion, inmediatos, posicion + 1, cantidad);
+        op[posicion] = codigo;
+        destino[posicion] = dest;
+        a[posicion] = opA;
+        b[posicion] = opB;
+        inmediatos[posicion] = marcas;
+    }
+
+    /**
+     * Copia la instrucción de la posición {@code desde} a la posición {@code hacia}, usado para
+     * compactar el bloque al quitar instrucciones.
+     */
+    void mover(int desde, int hacia) {
+        op[hacia] = op[desde];
+        destino[hacia] = destino[desde];
+        a[hacia] = a[desde];
+        b[hacia] = b[desde];
+        inmediatos[hacia] = inmediatos[desde];
+    }
+
+    /**
+     * Termina el bloque con un salto incondicional.
+     *
+     * @param bloque El número del bloque destino.
+     */
+    void saltar(int bloque) {
+        terminador = SALTO;
+        siVerdadero = bloque;
+        siFalso = -1;
+    }
+
+    /**
+     * Termina el bloque con una rama condicional.
+     *
+     * @param rel       La relación que se evalúa entre los operandos.
+     * @param opA       El primer operando de la comparación.
+     * @param opB       El segundo operando de la comparación.
+     * @param marcas    Las marcas de operandos inmediatos de la comparación.
+     * @param verdadero El bloque destino si la relación se cumple.
+     * @param falso     El bloque destino si no se cumple.
+     */
+    void ramificar(int rel, int opA, int opB, byte marcas, int verdadero, int falso) {
+        terminador = RAMA;
+        relacion = rel;
+        condA = opA;
+        condB = opB;
+        condInmediatos = marcas;
+        siVerdadero = verdadero;
+        siFalso = falso;
+    }
+
+    /**
+     * Devuelve los bloques sucesores en el grafo de flujo de control.
+     */
+    public int[] sucesores() {
+        return switch (terminador) {
+            case SALTO -> new int[]{siVerdadero};
+            case RAMA -> siVerdadero == siFalso ? new int[]{siVerdadero} : new int[]{siVerdadero, siFalso};
+            default -> new int[0];
+        };
+    }
+
+    boolean aInmediato(int i) {
+        return (inmediatos[i] & A_INMEDIATO) != 0;
+    }
+
+    boolean bInmediato(int i) {
+        return (inmediatos[i] & B_INMEDIATO) != 0;
+    }
+
+    /**
+     * Indica si la instrucción lee su segundo operando.
+     */
+    static boolean usaB(int codigo) {
+        return codigo != ProgramaIR.MOV && codigo != ProgramaIR.NEG && codigo != ProgramaIR.IMPRIMIR
+                && codigo != ProgramaIR.CONTAR;
+    }
+}
@@ -0,0 +1,358 @@
+package com.miCompilador;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Caché en disco del resultado completo de compilar un archivo, direccionada por contenido.
+ *
+ * <p>La clave de una entrada es el hash SHA-256 de los bytes del archivo fuente, la versión del
+ * compilador, la gramática (las ATN serializadas del lexer y el parser) y las opciones que cambian el
+ * código generado. Si el archivo no cambió, la compilación toma de la entrada el código generado
+ * (NASM o clase de la JVM), las advertencias y el reporte de la tabla de símbolos sin pasar por el
+ * lexer, el parser ni los visitantes. A diferencia de {@link CacheIncremental}, la ruta del archivo
+ * no interviene: dos archivos iguales comparten la entrada.</p>
+ *
+ * <p>Cada entrada es un archivo {@code .res} del directorio, que se escribe en un temporal y se
+ * renombra de forma atómica, así que otro proceso nunca ve una entrada a medias. La fecha de
+ * modificación de la entrada se actualiza en cada acierto y, cuando las entradas pasan del tamaño
+ * máximo, se borran primero las usadas hace más tiempo. Una entrada que desaparece o está dañada
+ * cuenta como un fallo. Los contadores de aciertos y fallos se guardan en el archivo
+ * {@code estadisticas} del directorio, bajo un bloqueo de archivo que comparten todos los procesos.</p>
+ *
+ * <p>Una misma instancia se puede usar desde varios hilos, como hace {@link CompilacionLotes}.</p>
+ */
+public class CacheCompilaciones {
+
+    // Identifica el formato de las entradas; cambiarlo invalida las cachés existentes
+    private static final int FORMATO = 0x4d494353;
+
+    // Tamaño máximo predeterminado de las entradas, en bytes
+    public static final long TAMANO_PREDETERMINADO = 256L << 20;
+
+    private static final String EXTENSION = ".res";
+    private static final String ARCHIVO_ESTADISTICAS = "estadisticas";
+
+    // Huella de la versión del compilador y de la gramática, que forma parte de toda clave
+    private static final byte[] VERSION = (miCompilador.VERSION + "\n"
+            + miGramaticaLexer._serializedATN + "\n" + miGramaticaParser._serializedATN)
+            .getBytes(StandardCharsets.UTF_8);
+
+    // Un FileLock no excluye a otros hilos de la misma JVM: se toma este monitor antes
+    private static final Object BLOQUEO_ESTADISTICAS = new Object();
+
+    /**
+     * Resultado cacheado de una compilación exitosa.
+     *
+     * @param codigo        El código generado: texto NASM en UTF-8 o un archivo de clase.
+     * @param advertencias  Las advertencias de la compilación, que se vuelven a reportar.
+     * @param tablaSimbolos El reporte de la tabla de símbolos.
+     */
+    public record Resultado(byte[] codigo, List<Diagnosticos.Diagnostico> advertencias, String tablaSimbolos) {
+    }
+
+    /**
+     * Contadores y ocupación de la caché.
+     *
+     * @param aciertos Compilaciones resueltas con una entrada.
+     * @param fallos   Compilaciones que no encontraron su entrada.
+     * @param entradas Cantidad de entradas guardadas.
+     * @param bytes    Tamaño total de las entradas.
+     */
+    public record Estadisticas(long aciertos, long fallos, int entradas, long bytes) {
+    }
+
+    private final Path directorio;
+    private final long tamanoMaximo;
+
+    /**
+     * Crea una caché sobre un directorio, que se crea al guardar la primera entrada.
+     *
+     * @param directorio   Directorio de la caché.
+     * @param tamanoMaximo Tamaño máximo, en bytes, de las entradas.
+     */
+    public CacheCompilaciones(Path directorio, long tamanoMaximo) {
+        this.directorio = directorio;
+        this.tamanoMaximo = tamanoMaximo;
+    }
+
+    /**
+     * Calcula la clave de un archivo fuente leyéndolo por partes, sin cargarlo completo en memoria.
+     *
+     * @param fuente   El archivo fuente.
+     * @param opciones Las opciones que cambian el código generado, como texto.
+     * @return La clave en hexadecimal.
+     * @throws IOException Si no se puede leer el archivo.
+     */
+    public static String clave(Path fuente, String opciones) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(VERSION);
+        digest.update((byte) 0);
+        digest.update(opciones.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(fuente)) {
+            int leidos;
+            while ((leidos = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, leidos);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Busca el resultado de una compilación y cuenta el acierto o el fallo.
+     *
+     * @param clave La clave del archivo fuente.
+     * @return El resultado, o {@code null} si no está.
+     */
+    public Resultado buscar(String clave) {
+        Path archivo = directorio.resolve(clave + EXTENSION);
+        Resultado resultado = null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() == FORMATO && in.readUTF().equals(clave)) {
+                byte[] codigo = leerBytes(in);
+                List<Diagnosticos.Diagnostico> advertencias = new ArrayList<>();
+                for (int i = in.readInt(); i > 0; i--) {
+                    Diagnosticos.Codigo tipo = Diagnosticos.Codigo.valueOf(in.readUTF());
+                    int linea = in.readInt();
+                    int columna = in.readInt();
+                    String detalle = in.readBoolean() ? in.readUTF() : null;
+                    advertencias.add(new Diagnosticos.Diagnostico(tipo, linea, columna, detalle));
+                }
+                String tablaSimbolos = new String(leerBytes(in), StandardCharsets.UTF_8);
+                resultado = new Resultado(codigo, advertencias, tablaSimbolos);
+            }
+        } catch (NoSuchFileException e) {
+            // Nunca se compiló este contenido, o la entrada se desalojó
+        } catch (IOException | RuntimeException e) {
+            // Una entrada dañada se descarta
+            borrar(archivo);
+        }
+        if (resultado != null) {
+            try {
+                // La fecha de modificación ordena las entradas para el desalojo
+                Files.setLastModifiedTime(archivo, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // Otro proceso la desalojó después de leerla: el resultado sigue siendo válido
+            }
+        }
+        contar(resultado != null);
+        return resultado;
+    }
+
+    /**
+     * Guarda el resultado de una compilación y desaloja las entradas más antiguas si hace falta.
+     *
+     * @param clave     La clave del archivo fuente.
+     * @param resultado El resultado a guardar.
+     * @throws IOException Si no se puede escribir la entrada.
+     */
+    public void guardar(String clave, Resultado resultado) throws IOException {
+        Files.createDirectories(directorio);
+        Path archivo = directorio.resolve(clave + EXTENSION);
+        Path temporal = Files.createTempFile(directorio, clave, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                out.writeInt(FORMATO);
+                out.writeUTF(clave);
+                escribirBytes(out, resultado.codigo());
+                out.writeInt(resultado.advertencias().size());
+                for (Diagnosticos.Diagnostico advertencia : resultado.advertencias()) {
+                    out.writeUTF(advertencia.codigo().name());
+                    out.writeInt(advertencia.linea());
+                    out.writeInt(advertencia.columna());
+                    out.writeBoolean(advertencia.detalle() != null);
+                    if (advertencia.detalle() != null) {
+                        out.writeUTF(advertencia.detalle());
+                    }
+                }
+                escribirBytes(out, resultado.tablaSimbolos().getBytes(StandardCharsets.UTF_8));
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        desalojar();
+    }
+
+    /**
+     * Lee los contadores de la caché y mide sus entradas.
+     *
+     * @throws IOException Si no se puede recorrer el directorio.
+     */
+    public Estadisticas estadisticas() throws IOException {
+        long[] contadores = new long[2];
+        synchronized (BLOQUEO_ESTADISTICAS) {
+            Path archivo = directorio.resolve(ARCHIVO_ESTADISTICAS);
+            if (Files.exists(archivo)) {
+                try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                    FileLock bloqueo = canal.lock(0, Long.MAX_VALUE, true);
+                    try {
+                        leerContadores(canal, contadores);
+                    } finally {
+                        bloqueo.release();
+                    }
+                }
+            }
+        }
+        int entradas = 0;
+        long bytes = 0;
+        for (Entrada entrada : listarEntradas()) {
+            entradas++;
+            bytes += entrada.bytes();
+        }
+        return new Estadisticas(contadores[0], contadores[1], entradas, bytes);
+    }
+
+    /**
+     * Describe las estadísticas de la caché en una línea por dato.
+     */
+    public static String informe(Path directorio, Estadisticas estadisticas) {
+        long consultas = estadisticas.aciertos() + estadisticas.fallos();
+        String tasa = consultas == 0 ? "-"
+                : String.format("%.1f%%", 100.0 * estadisticas.aciertos() / consultas);
+        return "Caché de compilaciones en '" + directorio + "':\n"
+                + "  Aciertos: " + estadisticas.aciertos() + "\n"
+                + "  Fallos:   " + estadisticas.fallos() + "\n"
+                + "  Tasa de aciertos: " + tasa + "\n"
+                + "  Entradas: " + estadisticas.entradas() + " (" + estadisticas.bytes() + " bytes)";
+    }
+
+    // Entrada del directorio con los datos que usa el desalojo
+    private record Entrada(Path archivo, long bytes, long usada) {
+    }
+
+    /**
+     * Borra las entradas usadas hace más tiempo hasta que el total no pase del tamaño máximo.
+     */
+    private void desalojar() throws IOException {
+        List<Entrada> entradas = listarEntradas();
+        long total = 0;
+        for (Entrada entrada : entradas) {
+            total += entrada.bytes();
+        }
+        if (total <= tamanoMaximo) {
+            return;
+        }
+        entradas.sort(Comparator.comparingLong(Entrada::usada));
+        for (Entrada entrada : entradas) {
+            if (total <= tamanoMaximo) {
+                break;
+            }
+            // Si otro proceso ya la borró, igual deja de ocupar lugar
+            borrar(entrada.archivo());
+            total -= entrada.bytes();
+        }
+    }
+
+    private List<Entrada> listarEntradas() throws IOException {
+        List<Entrada> entradas = new ArrayList<>();
+        if (!Files.isDirectory(directorio)) {
+            return entradas;
+        }
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            for (Path archivo : (Iterable<Path>) archivos::iterator) {
+                if (!archivo.getFileName().toString().endsWith(EXTENSION)) {
+                    continue;
+                }
+                try {
+                    entradas.add(new Entrada(archivo, Files.size(archivo),
+                            Files.getLastModifiedTime(archivo).toMillis()));
+                } catch (NoSuchFileException e) {
+                    // Desalojada por otro proceso mientras se listaba
+                }
+            }
+        }
+        return entradas;
+    }
+
+    /**
+     * Suma un acierto o un fallo a los contadores compartidos. Un error al actualizarlos no afecta
+     * la compilación.
+     */
+    private void contar(boolean acierto) {
+        synchronized (BLOQUEO_ESTADISTICAS) {
+            try {
+                Files.createDirectories(directorio);
+                try (FileChannel canal = FileChannel.open(directorio.resolve(ARCHIVO_ESTADISTICAS),
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+                    FileLock bloqueo = canal.lock();
+                    try {
+                        long[] contadores = new long[2];
+                        leerContadores(canal, contadores);
+                        contadores[acierto ? 0 : 1]++;
+                        ByteBuffer buffer = ByteBuffer.allocate(16).putLong(contadores[0]).putLong(contadores[1]).flip();
+                        canal.position(0);
+                        while (buffer.hasRemaining()) {
+                            canal.write(buffer);
+                        }
+                    } finally {
+                        bloqueo.release();
+                    }
+                }
+            } catch (IOException e) {
+                // Las estadísticas son informativas
+            }
+        }
+    }
+
+    private static void leerContadores(FileChannel canal, long[] contadores) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        canal.position(0);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer) < 0) {
+                // Archivo recién creado: los contadores empiezan en cero
+                return;
+            }
+        }
+        buffer.flip();
+        contadores[0] = buffer.getLong();
+        contadores[1] = buffer.getLong();
+    }
+
+    private static void borrar(Path archivo) {
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            // Se intentará de nuevo en el próximo desalojo
+        }
+    }
+
+    private static byte[] leerBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void escribirBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
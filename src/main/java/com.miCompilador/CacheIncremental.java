@@ -0,0 +1,249 @@
+package com.miCompilador;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caché en disco de los resultados de cada sentencia de nivel superior de un archivo fuente.
+ *
+ * <p>Cada archivo fuente tiene su propio archivo de caché dentro del directorio indicado, con una
+ * entrada por sentencia de la última compilación. La clave de una entrada es el hash de los tokens
+ * de la sentencia, sin su posición en el archivo, y su valor no depende de las sentencias
+ * anteriores: los efectos sobre la tabla de símbolos se guardan como listas de nombres y el código
+ * como un {@link GeneradorCodigo.Fragmento} con numeración propia.</p>
+ */
+public class CacheIncremental {
+
+    // Identifica el formato del archivo; cambiarlo invalida las cachés existentes
+    private static final int FORMATO = 0x4d494333;
+
+    /**
+     * Resultado cacheado de una sentencia.
+     *
+     * @param declaraciones Variables que la sentencia declara, en orden de declaración.
+     * @param lineas        Línea de cada declaración, relativa a la primera línea de la sentencia.
+     * @param usosLibres    Variables que la sentencia usa antes de declararlas ella misma.
+     * @param divisionesPorCero Línea de cada división por un cero literal, relativa a la primera
+     *                          línea de la sentencia.
+     * @param fragmento     El código intermedio de la sentencia.
+     */
+    public record Sentencia(String[] declaraciones, int[] lineas, String[] usosLibres,
+                            int[] divisionesPorCero, GeneradorCodigo.Fragmento fragmento) {
+    }
+
+    private final Path archivo;
+    private final Map<String, Sentencia> anteriores;
+    private final Map<String, Sentencia> actuales = new LinkedHashMap<>();
+
+    private CacheIncremental(Path archivo, Map<String, Sentencia> anteriores) {
+        this.archivo = archivo;
+        this.anteriores = anteriores;
+    }
+
+    /**
+     * Abre la caché de un archivo fuente. Si no existe o no se puede leer, la caché empieza vacía.
+     *
+     * @param directorio Directorio de las cachés.
+     * @param fuente     Ruta del archivo fuente.
+     * @return La caché del archivo.
+     */
+    public static CacheIncremental abrir(Path directorio, Path fuente) {
+        String nombre = hash(fuente.toAbsolutePath().normalize().toString()
+                .getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        Path archivo = directorio.resolve(nombre + ".inc");
+        Map<String, Sentencia> anteriores = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (in.readInt() == FORMATO) {
+                int cantidad = in.readInt();
+                for (int i = 0; i < cantidad; i++) {
+                    String clave = in.readUTF();
+                    anteriores.put(clave, leerSentencia(in));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Primera compilación de este archivo
+        } catch (IOException | RuntimeException e) {
+            // Una caché dañada se descarta y se reconstruye
+            anteriores.clear();
+        }
+        return new CacheIncremental(archivo, anteriores);
+    }
+
+    /**
+     * Busca el resultado de una sentencia compilada antes y lo conserva para la próxima escritura.
+     *
+     * @param clave El hash de los tokens de la sentencia.
+     * @return El resultado cacheado, o {@code null} si no está.
+     */
+    public Sentencia buscar(String clave) {
+        Sentencia sentencia = actuales.get(clave);
+        if (sentencia == null) {
+            sentencia = anteriores.get(clave);
+            if (sentencia != null) {
+                actuales.put(clave, sentencia);
+            }
+        }
+        return sentencia;
+    }
+
+    /**
+     * Agrega el resultado de una sentencia recién compilada.
+     *
+     * @param clave     El hash de los tokens de la sentencia.
+     * @param sentencia El resultado a cachear.
+     */
+    public void guardar(String clave, Sentencia sentencia) {
+        actuales.put(clave, sentencia);
+    }
+
+    /**
+     * Escribe en disco las entradas usadas en esta compilación, reemplazando la caché anterior.
+     *
+     * @throws IOException Si no se puede escribir el archivo.
+     */
+    public void escribir() throws IOException {
+        Files.createDirectories(archivo.getParent());
+        Path temporal = Files.createTempFile(archivo.getParent(), archivo.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                out.writeInt(FORMATO);
+                out.writeInt(actuales.size());
+                for (Map.Entry<String, Sentencia> entrada : actuales.entrySet()) {
+                    out.writeUTF(entrada.getKey());
+                    escribirSentencia(out, entrada.getValue());
+                }
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Calcula el hash SHA-256 de un contenido, en hexadecimal.
+     */
+    static String hash(byte[] contenido) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(contenido));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void escribirSentencia(DataOutputStream out, Sentencia sentencia) throws IOException {
+        out.writeInt(sentencia.declaraciones().length);
+        for (int i = 0; i < sentencia.declaraciones().length; i++) {
+            out.writeUTF(sentencia.declaraciones()[i]);
+            out.writeInt(sentencia.lineas()[i]);
+        }
+        out.writeInt(sentencia.usosLibres().length);
+        for (String uso : sentencia.usosLibres()) {
+            out.writeUTF(uso);
+        }
+        out.writeInt(sentencia.divisionesPorCero().length);
+        for (int linea : sentencia.divisionesPorCero()) {
+            out.writeInt(linea);
+        }
+
+        ProgramaIR programa = sentencia.fragmento().programa();
+        out.writeInt(programa.getNumRegistros());
+        for (int r = 0; r < programa.getNumRegistros(); r++) {
+            String nombre = programa.getNombre(r);
+            out.writeBoolean(nombre != null);
+            if (nombre != null) {
+                out.writeUTF(nombre);
+            }
+        }
+        out.writeInt(programa.getNumBloques());
+        for (int k = 0; k < programa.getNumBloques(); k++) {
+            BloqueBasico bloque = programa.getBloque(k);
+            out.writeInt(bloque.n);
+            for (int i = 0; i < bloque.n; i++) {
+                out.writeInt(bloque.op[i]);
+                out.writeInt(bloque.destino[i]);
+                out.writeInt(bloque.a[i]);
+                out.writeInt(bloque.b[i]);
+                out.writeByte(bloque.inmediatos[i]);
+            }
+            out.writeInt(bloque.terminador);
+            out.writeInt(bloque.relacion);
+            out.writeInt(bloque.condA);
+            out.writeInt(bloque.condB);
+            out.writeByte(bloque.condInmediatos);
+            out.writeInt(bloque.siVerdadero);
+            out.writeInt(bloque.siFalso);
+        }
+        List<BloqueBasico> disposicion = programa.getBloques();
+        out.writeInt(disposicion.size());
+        for (BloqueBasico bloque : disposicion) {
+            out.writeInt(bloque.id);
+        }
+        out.writeInt(sentencia.fragmento().bloqueFinal());
+    }
+
+    private static Sentencia leerSentencia(DataInputStream in) throws IOException {
+        String[] declaraciones = new String[in.readInt()];
+        int[] lineas = new int[declaraciones.length];
+        for (int i = 0; i < declaraciones.length; i++) {
+            declaraciones[i] = in.readUTF();
+            lineas[i] = in.readInt();
+        }
+        String[] usosLibres = new String[in.readInt()];
+        for (int i = 0; i < usosLibres.length; i++) {
+            usosLibres[i] = in.readUTF();
+        }
+        int[] divisionesPorCero = new int[in.readInt()];
+        for (int i = 0; i < divisionesPorCero.length; i++) {
+            divisionesPorCero[i] = in.readInt();
+        }
+
+        ProgramaIR programa = new ProgramaIR();
+        int numRegistros = in.readInt();
+        for (int r = 0; r < numRegistros; r++) {
+            if (in.readBoolean()) {
+                programa.nuevaVariable(in.readUTF());
+            } else {
+                programa.nuevoRegistro();
+            }
+        }
+        int numBloques = in.readInt();
+        for (int k = 0; k < numBloques; k++) {
+            BloqueBasico bloque = programa.nuevoBloque();
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                int op = in.readInt();
+                int destino = in.readInt();
+                int a = in.readInt();
+                int b = in.readInt();
+                bloque.agregar(op, destino, a, in.readByte(), b);
+            }
+            bloque.terminador = in.readInt();
+            bloque.relacion = in.readInt();
+            bloque.condA = in.readInt();
+            bloque.condB = in.readInt();
+            bloque.condInmediatos = in.readByte();
+            bloque.siVerdadero = in.readInt();
+            bloque.siFalso = in.readInt();
+        }
+        int numUbicados = in.readInt();
+        for (int k = 0; k < numUbicados; k++) {
+            programa.ubicar(programa.getBloque(in.readInt()));
+        }
+        int bloqueFinal = in.readInt();
+        return new Sentencia(declaraciones, lineas, usosLibres, divisionesPorCero, new GeneradorCodigo.Fragmento(programa, bloqueFinal));
+    }
+}
@@ -0,0 +1,854 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.StringJoiner;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Representa la compilación de un único archivo fuente, desde el análisis léxico hasta la escritura
+ * del código ensamblador NASM.
+ *
+ * <p>Cada instancia tiene sus propias rutas de salida y sus propios flujos de mensajes, de modo que
+ * varias compilaciones pueden ejecutarse a la vez sin mezclar diagnósticos ni sobrescribir archivos.
+ * El lexer y el parser generados por ANTLR comparten entre instancias la caché de DFA (campos
+ * estáticos {@code _decisionToDFA}), por lo que el costo de calentamiento se paga una sola vez por JVM.</p>
+ */
+public class Compilacion {
+
+    /**
+     * Código que produce la compilación.
+     */
+    public enum Destino {
+        /** Código ensamblador NASM para x86 de 32 bits. */
+        NASM,
+        /** Archivo de clase de la JVM (ver {@link EmisorJVM}). */
+        JVM
+    }
+
+    private final Path archivoEntrada;
+    private final Path archivoSalida;
+    private final Path archivoAsm;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    // Flujo donde se escribe el código NASM cuando la ruta del archivo .asm es "-"
+    private PrintStream salidaAsm;
+
+    // Código que se genera
+    private Destino destino = Destino.NASM;
+
+    // Directorio de la caché incremental, o null para compilar siempre el programa completo
+    private Path directorioCache;
+
+    // Caché del resultado completo de la compilación, o null para no usarla
+    private CacheCompilaciones cacheResultados;
+
+    // Si la entrada se lee mapeada en memoria y los tokens se producen a demanda
+    private boolean entradaGrande = false;
+
+    // Si el análisis semántico y la generación se hacen durante el análisis sintáctico, sin árbol
+    private boolean unaPasada = false;
+
+    // Pool en el que se genera el código intermedio por tramos de sentencias, o null para generarlo en un hilo
+    private ForkJoinPool poolGeneracion;
+
+    // Flujo donde se escribe la salida del programa al ejecutarlo con el intérprete, o null para no ejecutarlo
+    private OutputStream salidaEjecucion;
+
+    // Si se evalúan en la compilación las operaciones y ramas con operandos constantes
+    private boolean plegarConstantes = true;
+
+    // Si se optimizan los bucles del código intermedio antes de emitirlo
+    private boolean optimizarBucles = true;
+
+    // Ventana de la optimización de mirilla del código NASM, o 0 para no optimizar
+    private int ventanaMirilla = OptimizadorMirilla.VENTANA_PREDETERMINADA;
+
+    // Archivo al que el programa generado agrega el conteo de sus bloques, o null para no instrumentarlo
+    private Path archivoInstrumentacion;
+
+    // Perfil de ejecución que guía la disposición de los bloques y la asignación de registros, o null
+    private PerfilEjecucion perfil;
+
+    // Si las métricas incluyen los datos con costo propio (memoria asignada y nodos del árbol)
+    private boolean metricasDetalladas = false;
+
+    // Cantidad máxima de errores que se registran antes de detener el análisis, o 0 para no limitar
+    private int maximoErrores = Diagnosticos.MAXIMO_PREDETERMINADO;
+
+    // Errores de la última ejecución
+    private Diagnosticos diagnosticos;
+
+    // Métricas de la última ejecución
+    private MetricasCompilacion metricas;
+
+    // Indica si el análisis sintáctico necesitó la segunda etapa con LL completo
+    private boolean reintentoLL = false;
+
+    /**
+     * Crea una compilación cuyos mensajes se escriben en la consola del proceso.
+     *
+     * @param archivoEntrada Ruta del archivo fuente.
+     * @param archivoSalida  Ruta del archivo de salida con el reporte de la compilación.
+     * @param archivoAsm     Ruta del archivo donde se guarda el código NASM generado.
+     */
+    public Compilacion(Path archivoEntrada, Path archivoSalida, Path archivoAsm) {
+        this(archivoEntrada, archivoSalida, archivoAsm, System.out, System.err);
+    }
+
+    /**
+     * Crea una compilación con flujos de mensajes propios.
+     *
+     * @param archivoEntrada Ruta del archivo fuente.
+     * @param archivoSalida  Ruta del archivo de salida con el reporte de la compilación.
+     * @param archivoAsm     Ruta del archivo donde se guarda el código NASM generado.
+     * @param out            Flujo para los mensajes de progreso.
+     * @param err            Flujo para los mensajes de error.
+     */
+    public Compilacion(Path archivoEntrada, Path archivoSalida, Path archivoAsm,
+                       PrintStream out, PrintStream err) {
+        this.archivoEntrada = archivoEntrada;
+        this.archivoSalida = archivoSalida;
+        this.archivoAsm = archivoAsm;
+        this.out = out;
+        this.err = err;
+        this.salidaAsm = out;
+    }
+
+    /**
+     * Define el flujo donde se escribe el código NASM cuando la ruta del archivo .asm es {@code -}.
+     * Por defecto es el mismo flujo de los mensajes de progreso.
+     *
+     * @param salidaAsm Flujo de destino del código NASM.
+     */
+    public void setSalidaAsm(PrintStream salidaAsm) {
+        this.salidaAsm = salidaAsm;
+    }
+
+    /**
+     * Define el código que se genera. Con {@link Destino#JVM} el archivo de salida (la ruta del
+     * archivo .asm) recibe un archivo de clase en lugar del código NASM.
+     *
+     * @param destino El código a generar.
+     */
+    public void setDestino(Destino destino) {
+        this.destino = destino;
+    }
+
+    /**
+     * Activa la compilación incremental: las sentencias de nivel superior que no cambiaron desde la
+     * compilación anterior se toman de la caché guardada en el directorio indicado.
+     *
+     * @param directorioCache Directorio de la caché, o {@code null} para desactivarla.
+     */
+    public void setDirectorioCache(Path directorioCache) {
+        this.directorioCache = directorioCache;
+    }
+
+    /**
+     * Activa el modo para archivos grandes: la entrada se mapea en memoria en lugar de decodificarse
+     * completa, y el parser consume los tokens a medida que el lexer los produce en lugar de
+     * tokenizar todo el archivo antes. No se combina con la compilación incremental, que necesita
+     * todos los tokens para dividir las sentencias; si ambos están activos, se compila completo.
+     *
+     * <p>Como el flujo de tokens no se puede rebobinar, el análisis sintáctico se hace en una sola
+     * etapa con LL completo, y los errores léxicos se reportan intercalados con los sintácticos.</p>
+     *
+     * @param entradaGrande Si se usa el modo para archivos grandes.
+     */
+    public void setEntradaGrande(boolean entradaGrande) {
+        this.entradaGrande = entradaGrande;
+    }
+
+    /**
+     * Activa la compilación en una pasada: el parser no construye el árbol de parseo y
+     * {@link CompiladorUnaPasada} hace el análisis semántico y la generación de código a medida que
+     * reconoce cada regla. El código generado es el mismo; junto con el modo para archivos grandes,
+     * la memoria queda acotada por el anidamiento del programa en lugar de por su tamaño. No se
+     * combina con la compilación incremental; si ambas están activas, se usa la incremental.
+     *
+     * <p>En este modo el destino de una asignación debe ser un identificador, y las métricas
+     * cuentan el análisis semántico y la generación dentro de la fase sintáctica.</p>
+     *
+     * @param unaPasada Si se compila en una pasada.
+     */
+    public void setUnaPasada(boolean unaPasada) {
+        this.unaPasada = unaPasada;
+    }
+
+    /**
+     * Hace que el código intermedio se genere en paralelo, por tramos de sentencias de nivel
+     * superior (ver {@link GeneracionParalela}). El código generado es el mismo. Solo se aplica
+     * cuando se construye el árbol de parseo: no en una pasada ni en la compilación incremental.
+     *
+     * @param poolGeneracion El pool en el que se generan los tramos, o {@code null} para generar
+     *                       el código en un solo hilo.
+     */
+    public void setPoolGeneracion(ForkJoinPool poolGeneracion) {
+        this.poolGeneracion = poolGeneracion;
+    }
+
+    /**
+     * Hace que, después de generar el código, se ejecute el programa: con {@link Destino#JVM} se
+     * carga la clase generada y, si no, se usa el {@link Interprete}. Un error de ejecución se
+     * reporta como error de la compilación. El intérprete requiere el árbol de parseo, así que con
+     * el destino NASM no se combina con la compilación incremental ni con la compilación en una
+     * pasada.
+     *
+     * @param salidaEjecucion Flujo donde se escribe lo que imprime el programa, o {@code null} para
+     *                        no ejecutarlo.
+     */
+    public void setSalidaEjecucion(OutputStream salidaEjecucion) {
+        this.salidaEjecucion = salidaEjecucion;
+    }
+
+    /**
+     * Busca el resultado de la compilación en una caché direccionada por contenido antes de ejecutar
+     * las fases, y lo guarda en ella al terminar (ver {@link CacheCompilaciones}). No se usa al
+     * ejecutar el programa con {@link #setSalidaEjecucion}, ni se guarda el código enviado a la
+     * salida estándar.
+     *
+     * @param cacheResultados La caché, o {@code null} para compilar siempre.
+     */
+    public void setCacheResultados(CacheCompilaciones cacheResultados) {
+        this.cacheResultados = cacheResultados;
+    }
+
+    /**
+     * Activa o desactiva el plegado y la propagación de constantes del código intermedio (ver
+     * {@link OptimizadorConstantes}), que se aplica por defecto con los dos destinos.
+     *
+     * @param plegarConstantes Si se evalúan las operaciones constantes durante la compilación.
+     */
+    public void setPlegarConstantes(boolean plegarConstantes) {
+        this.plegarConstantes = plegarConstantes;
+    }
+
+    /**
+     * Activa o desactiva la optimización de bucles del código intermedio (ver
+     * {@link OptimizadorBucles}), que se aplica por defecto con los dos destinos.
+     *
+     * @param optimizarBucles Si se optimizan los bucles.
+     */
+    public void setOptimizarBucles(boolean optimizarBucles) {
+        this.optimizarBucles = optimizarBucles;
+    }
+
+    /**
+     * Define la ventana de la optimización de mirilla que se aplica al código NASM (ver
+     * {@link OptimizadorMirilla}). Por defecto es {@link OptimizadorMirilla#VENTANA_PREDETERMINADA}.
+     *
+     * @param ventanaMirilla Cantidad máxima de líneas que examina una regla, o 0 para no optimizar.
+     */
+    public void setVentanaMirilla(int ventanaMirilla) {
+        if (ventanaMirilla < 0) {
+            throw new IllegalArgumentException("La ventana de la mirilla no puede ser negativa");
+        }
+        this.ventanaMirilla = ventanaMirilla;
+    }
+
+    /**
+     * Genera un programa instrumentado: cada bloque básico cuenta sus ejecuciones y, al terminar, el
+     * programa agrega los conteos al archivo indicado (ver {@link PerfilEjecucion}). Solo con el
+     * destino NASM.
+     *
+     * @param archivoInstrumentacion El archivo del perfil, o {@code null} para no instrumentar.
+     */
+    public void setInstrumentacion(Path archivoInstrumentacion) {
+        this.archivoInstrumentacion = archivoInstrumentacion;
+    }
+
+    /**
+     * Usa el perfil de ejecuciones anteriores del programa: los bloques más ejecutados se disponen
+     * sin saltos entre ellos (ver {@link OptimizadorDisposicion}) y sus variables tienen prioridad
+     * para los registros. Si el perfil es de otro programa, se advierte y se compila sin él.
+     *
+     * @param perfil El perfil, o {@code null} para compilar sin perfil.
+     */
+    public void setPerfil(PerfilEjecucion perfil) {
+        this.perfil = perfil;
+    }
+
+    /**
+     * Hace que las métricas midan también la memoria asignada por fase y cuenten los nodos del árbol,
+     * para el informe de {@code --metrics}. Con una grabación JFR activa
+     * estos datos se calculan siempre.
+     *
+     * @param metricasDetalladas Si se calculan los datos con costo propio.
+     */
+    public void setMetricasDetalladas(boolean metricasDetalladas) {
+        this.metricasDetalladas = metricasDetalladas;
+    }
+
+    /**
+     * Define la cantidad máxima de errores léxicos, sintácticos y semánticos que se registran. Al
+     * alcanzarla, la fase en curso deja de analizar el resto del archivo. Por defecto es
+     * {@link Diagnosticos#MAXIMO_PREDETERMINADO}.
+     *
+     * @param maximoErrores El máximo, o 0 para no limitar.
+     */
+    public void setMaximoErrores(int maximoErrores) {
+        if (maximoErrores < 0) {
+            throw new IllegalArgumentException("La cantidad máxima de errores no puede ser negativa");
+        }
+        this.maximoErrores = maximoErrores;
+    }
+
+    /**
+     * Devuelve los errores de la última ejecución, o {@code null} si todavía no se ejecutó.
+     */
+    public Diagnosticos getDiagnosticos() {
+        return diagnosticos;
+    }
+
+    /**
+     * Devuelve las métricas de la última ejecución, o {@code null} si todavía no se ejecutó.
+     */
+    public MetricasCompilacion getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Indica si el análisis sintáctico de la última ejecución necesitó reanalizar con LL completo.
+     */
+    public boolean usoReintentoLL() {
+        return reintentoLL;
+    }
+
+    /**
+     * Ejecuta todas las fases del compilador sobre el archivo de entrada.
+     *
+     * @return Un valor entero que indica el estado de la compilación (0 para éxito, 1 para error).
+     * @throws IOException Si no se puede leer el archivo de entrada o escribir el de salida.
+     */
+    public int ejecutar() throws IOException {
+        metricas = new MetricasCompilacion(archivoEntrada.toString(), metricasDetalladas);
+        diagnosticos = new Diagnosticos();
+        diagnosticos.setMaximo(maximoErrores);
+        int codigo = 1;
+        try {
+            codigo = ejecutarFases();
+            return codigo;
+        } finally {
+            diagnosticos.volcar(err);
+            metricas.finalizar(codigo);
+        }
+    }
+
+    /**
+     * Ejecuta las fases del compilador registrando sus métricas.
+     */
+    private int ejecutarFases() throws IOException {
+
+        // Crear archivo de salida
+        try (BufferedWriter writer = Files.newBufferedWriter(archivoSalida)) {
+
+            // Un archivo que ya se compiló con las mismas opciones no pasa por ninguna fase
+            String claveCache = null;
+            if (cacheResultados != null && salidaEjecucion == null) {
+                metricas.iniciar("consulta-cache");
+                metricas.setBytesFuente(Files.size(archivoEntrada));
+                claveCache = CacheCompilaciones.clave(archivoEntrada, opcionesCodigo());
+                CacheCompilaciones.Resultado resultado = cacheResultados.buscar(claveCache);
+                metricas.terminar();
+                if (resultado != null) {
+                    return usarResultadoCacheado(writer, resultado);
+                }
+            }
+
+            metricas.iniciar("lexico");
+            metricas.setBytesFuente(Files.size(archivoEntrada));
+
+            // Crear el lexer con el archivo de entrada (mapeado en memoria si es un archivo grande)
+            CharStream entrada = entradaGrande
+                    ? FlujoArchivoMapeado.abrir(archivoEntrada) : CharStreams.fromPath(archivoEntrada);
+            miGramaticaLexer lexer = new miGramaticaLexer(entrada);
+            lexer.setDiagnosticos(diagnosticos);
+
+            // Remover los errorlisteners por defecto y agregar el personalizado
+            lexer.removeErrorListeners();
+            LexerErrorListener lexerErrorListener = new LexerErrorListener(diagnosticos);
+            lexer.addErrorListener(lexerErrorListener);
+
+            TokenStream tokens;
+            if (entradaGrande) {
+                // El lexer produce los tokens a medida que el parser los pide, y solo se conservan
+                // los que el parser todavía puede necesitar
+                tokens = new UnbufferedTokenStream<>(lexer);
+                metricas.terminar();
+            } else {
+                // Crear el buffer de tokens a partir del lexer
+                CommonTokenStream todos = new CommonTokenStream(lexer);
+
+                // Forzar que se complete el tokenizado antes de pasar a la fase sintáctica
+                todos.fill();
+                metricas.terminar();
+                metricas.setTokens(todos.size() - 1); // Sin contar EOF
+
+                if (lexerErrorListener.hayErrores()) {
+                    reportarError(writer, "Se encontraron errores léxicos. Compilación detenida.");
+                    return 1; // Código de error
+                }
+                tokens = todos;
+            }
+
+            // En modo incremental, las sentencias que no cambiaron se toman de la caché
+            CompilacionIncremental incremental = null;
+            if (directorioCache != null && tokens instanceof CommonTokenStream todos) {
+                metricas.iniciar("incremental");
+                incremental = new CompilacionIncremental(directorioCache, archivoEntrada, diagnosticos);
+                if (!incremental.compilar(todos)) {
+                    // El programa tiene errores: la compilación completa se encarga de reportarlos
+                    incremental = null;
+                }
+                metricas.terminar();
+            }
+
+            ParseTree tree = null;
+            CompiladorUnaPasada pasada = null;
+            if (incremental == null) {
+                metricas.iniciar("sintactico");
+
+                // Crear el parser que consumirá los tokens (SLL primero, LL completo si hace falta)
+                AnalizadorSintactico parser = new AnalizadorSintactico(tokens, diagnosticos);
+
+                // Iniciar el análisis sintáctico
+                if (unaPasada) {
+                    pasada = parser.analizarEnUnaPasada(p -> new CompiladorUnaPasada(p, maximoErrores));
+                } else {
+                    tree = parser.analizar();
+                }
+                reintentoLL = parser.usoReintentoLL();
+
+                if (entradaGrande) {
+                    // El parser se detiene al terminar el programa: se recorre el resto para contar
+                    // los tokens y reportar los errores léxicos que haya después
+                    while (tokens.LA(1) != Token.EOF) {
+                        tokens.consume();
+                    }
+                    metricas.setTokens(tokens.index());
+                    if (lexerErrorListener.hayErrores()) {
+                        metricas.terminar();
+                        reportarError(writer, "Se encontraron errores léxicos. Compilación detenida.");
+                        return 1; // Código de error
+                    }
+                }
+                metricas.terminar();
+                if (metricas.isDetallada() && tree != null) {
+                    metricas.setNodos(MetricasCompilacion.contarNodos(tree));
+                }
+
+                // Verificar si hubo errores sintácticos
+                if (parser.getNumberOfSyntaxErrors() > 0) {
+                    reportarError(writer, "Se encontraron errores sintácticos. Compilación detenida.");
+                    return 1; // Código de error
+                }
+            }
+
+            // Mensaje de éxito en la fase sintáctica
+            reportar(writer, "Fase sintáctica completada con éxito...");
+            if (reintentoLL) {
+                reportar(writer, "La predicción SLL no bastó; el programa se reanalizó con LL completo.");
+            }
+            reportar(writer, "Iniciando análisis semántico...");
+
+            AnalizadorSemantico analizador;
+            if (incremental != null) {
+                analizador = incremental.getAnalizador();
+            } else if (pasada != null) {
+                // El análisis ya se hizo durante la fase sintáctica
+                analizador = pasada.getAnalizador();
+                pasada.reportarErroresSemanticos(diagnosticos);
+            } else {
+                metricas.iniciar("semantico");
+
+                // Crear una instancia del analizador semántico
+                analizador = new AnalizadorSemantico(diagnosticos);
+
+                // Realizar el análisis semántico visitando el árbol de parseo
+                analizador.visit(tree);
+                metricas.terminar();
+            }
+            metricas.setSimbolos(analizador.getTablaSimbolos().getNumDeclarados());
+
+            if (analizador.hayErroresSemanticos()) {
+                reportarError(writer, "Se encontraron errores semánticos. Compilación detenida.");
+                return 1;
+            }
+            reportarAdvertencias(writer);
+
+            // Mensaje de éxito en la fase semántica
+            reportar(writer, "Fase semántica completada con éxito...");
+            reportar(writer, "Iniciando generación de código...");
+
+            // Generar el código NASM
+            GeneradorCodigo generador = null;
+            GeneracionParalela paralela = null;
+            if (incremental != null) {
+                generador = incremental.getGenerador();
+                reportar(writer, "Compilación incremental: " + incremental.getNumReutilizadas() + " de "
+                        + incremental.getNumSentencias() + " sentencias tomadas de la caché.");
+            }
+            metricas.iniciar("generacion");
+            if (pasada != null) {
+                generador = pasada.getGenerador();
+            } else if (incremental == null && poolGeneracion != null) {
+                paralela = new GeneracionParalela(poolGeneracion);
+                generador = paralela.generar(tree, analizador.getTablaSimbolos());
+            } else if (incremental == null) {
+                generador = new GeneradorCodigo(analizador.getTablaSimbolos());
+                generador.visit(tree);
+            }
+
+            metricas.terminar();
+            if (paralela != null && paralela.getNumTramos() > 0) {
+                reportar(writer, "Generación en paralelo: " + paralela.getNumTramos() + " tramos de sentencias.");
+            }
+            metricas.setInstruccionesIR(MetricasCompilacion.contarInstruccionesIR(generador.getPrograma()));
+
+            // El perfil y los contadores se refieren a los bloques tal como se generaron
+            boolean conPerfil = false;
+            if (perfil != null) {
+                int ejecuciones = perfil.aplicar(generador.getPrograma());
+                conPerfil = ejecuciones > 0;
+                if (conPerfil) {
+                    reportar(writer, "Perfil de ejecución: " + ejecuciones + " ejecuciones del programa.");
+                } else {
+                    reportarError(writer, "Advertencia: el perfil no tiene ejecuciones de este programa; se compila sin él.");
+                }
+                if (perfil.getRegistrosIncompletos() > 0) {
+                    reportarError(writer, "Advertencia: se descartaron " + perfil.getRegistrosIncompletos()
+                            + " registros incompletos del perfil.");
+                }
+            }
+            if (archivoInstrumentacion != null) {
+                PerfilEjecucion.Instrumentacion instrumentacion =
+                        PerfilEjecucion.instrumentar(generador.getPrograma(), archivoInstrumentacion.toString());
+                reportar(writer, "Instrumentación: " + instrumentacion.numContadores()
+                        + " contadores de bloques; el programa agrega sus conteos a '" + archivoInstrumentacion + "'.");
+            }
+
+            if (plegarConstantes || optimizarBucles || conPerfil) {
+                metricas.iniciar("optimizacion");
+                OptimizadorConstantes constantes = null;
+                if (plegarConstantes) {
+                    constantes = new OptimizadorConstantes(generador.getPrograma());
+                    constantes.optimizar();
+                }
+                OptimizadorBucles bucles = null;
+                if (optimizarBucles) {
+                    bucles = new OptimizadorBucles(generador.getPrograma());
+                    bucles.optimizar();
+                }
+                OptimizadorDisposicion disposicion = null;
+                if (conPerfil) {
+                    disposicion = new OptimizadorDisposicion(generador.getPrograma());
+                    disposicion.optimizar();
+                }
+                metricas.terminar();
+                if (constantes != null) {
+                    reportar(writer, "Plegado de constantes: " + constantes.getOperacionesEvaluadas()
+                            + " operaciones evaluadas, " + constantes.getOperandosPropagados()
+                            + " operandos propagados, " + constantes.getRamasResueltas() + " ramas resueltas, "
+                            + constantes.getBloquesEliminados() + " bloques y "
+                            + constantes.getInstruccionesEliminadas() + " instrucciones eliminados.");
+                }
+                if (bucles != null && bucles.getNumBucles() > 0) {
+                    reportar(writer, "Optimización de bucles: " + bucles.getNumBucles() + " bucles, "
+                            + bucles.getInvariantesMovidas() + " instrucciones invariantes movidas, "
+                            + bucles.getMultiplicacionesReducidas() + " multiplicaciones reducidas.");
+                }
+                if (disposicion != null) {
+                    reportar(writer, "Disposición por perfil: " + disposicion.getBloquesMovidos()
+                            + " bloques reubicados, saltos tomados estimados de " + disposicion.getSaltosAntes()
+                            + " a " + disposicion.getSaltosDespues() + ".");
+                }
+            }
+
+            // La asignación de registros y la emisión escriben el código a medida que se genera
+            metricas.iniciar("emision");
+
+            OptimizadorMirilla mirilla = null;
+            if (destino == Destino.NASM && ventanaMirilla > 0) {
+                mirilla = new OptimizadorMirilla(ventanaMirilla);
+                generador.setOptimizadorMirilla(mirilla);
+            }
+
+            byte[] claseJVM = null;
+            if (destino == Destino.JVM) {
+                try {
+                    claseJVM = new EmisorJVM(generador.getPrograma()).emitir();
+                } catch (IllegalStateException e) {
+                    metricas.terminar();
+                    reportarError(writer, "Error al generar la clase JVM: " + e.getMessage());
+                    return 1;
+                }
+                if (archivoAsm.toString().equals("-")) {
+                    salidaAsm.write(claseJVM);
+                    salidaAsm.flush();
+                    metricas.terminar();
+                    reportar(writer, "Generación de código completada. Clase JVM enviada a la salida estándar.");
+                } else {
+                    try {
+                        Files.write(archivoAsm, claseJVM);
+                    } catch (IOException e) {
+                        reportarError(writer, "Error al escribir el archivo de salida: " + e.getMessage());
+                        return 1;
+                    }
+                    metricas.terminar();
+                    reportar(writer, "Generación de código completada. Clase JVM guardada en '" + archivoAsm + "'.");
+                }
+            } else if (archivoAsm.toString().equals("-")) {
+                // Enviar el código al flujo indicado en lugar de un archivo
+                Writer asm = new BufferedWriter(new OutputStreamWriter(salidaAsm, salidaAsm.charset()));
+                metricas.setInstruccionesNASM(generador.escribirCodigoCompleto(asm));
+                asm.write(System.lineSeparator());
+                asm.flush();
+                metricas.terminar();
+                reportar(writer, "Generación de código completada. Código enviado a la salida estándar.");
+            } else {
+                // Guardar el código en un archivo .asm
+                try (BufferedWriter asm = Files.newBufferedWriter(archivoAsm)) {
+                    metricas.setInstruccionesNASM(generador.escribirCodigoCompleto(asm));
+                    asm.newLine();
+                } catch (IOException e) {
+                    reportarError(writer, "Error al escribir el archivo de salida: " + e.getMessage());
+                    return 1;
+                }
+                metricas.terminar();
+                reportar(writer, "Generación de código completada. Código guardado en '" + archivoAsm + "'.");
+            }
+            if (mirilla != null) {
+                reportar(writer, informeMirilla(mirilla));
+            }
+
+            if (incremental != null) {
+                metricas.iniciar("cache");
+                try {
+                    incremental.guardarCache();
+                } catch (IOException e) {
+                    // Sin caché la próxima compilación será completa, pero esta es válida
+                    err.println("Advertencia: no se pudo guardar la caché incremental: " + e.getMessage());
+                }
+                metricas.terminar();
+            }
+
+            // Imprimir la tabla de símbolos
+            String tablaSimbolos = imprimirTablaDeSimbolos(analizador.getTablaSimbolos());
+            reportar(writer, tablaSimbolos);
+
+            if (claveCache != null && !archivoAsm.toString().equals("-")) {
+                metricas.iniciar("guardado-cache");
+                try {
+                    byte[] codigo = claseJVM != null ? claseJVM : Files.readAllBytes(archivoAsm);
+                    cacheResultados.guardar(claveCache,
+                            new CacheCompilaciones.Resultado(codigo, diagnosticos.getAdvertencias(), tablaSimbolos));
+                } catch (IOException e) {
+                    // La próxima compilación del archivo será completa, pero esta es válida
+                    err.println("Advertencia: no se pudo guardar la compilación en la caché: " + e.getMessage());
+                }
+                metricas.terminar();
+            }
+
+            if (salidaEjecucion != null) {
+                if (claseJVM == null && tree == null) {
+                    reportarError(writer, "No se puede ejecutar el programa: esta compilación no conserva el árbol de parseo.");
+                    return 1;
+                }
+                metricas.iniciar("ejecucion");
+                try {
+                    if (claseJVM != null) {
+                        SalidaNumeros salida = new SalidaNumeros(salidaEjecucion);
+                        try {
+                            EmisorJVM.cargar(claseJVM).ejecutar(salida);
+                        } finally {
+                            salida.vaciar();
+                        }
+                    } else {
+                        // La traducción del árbol es recursiva, como el parser: se le da la misma pila
+                        ParseTree arbol = tree;
+                        TablaSimbolos simbolos = analizador.getTablaSimbolos();
+                        int profundidad = tokens instanceof CommonTokenStream buffer
+                                ? AnalizadorSintactico.profundidadMaxima(buffer.getTokens()) : -1;
+                        AnalizadorSintactico.ejecutarConPila(profundidad, () -> Interprete.compilar(arbol, simbolos))
+                                .ejecutar(salidaEjecucion);
+                    }
+                } catch (ArithmeticException e) {
+                    reportarError(writer, "Error de ejecución: " + e.getMessage());
+                    return 1;
+                } finally {
+                    metricas.terminar();
+                }
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Describe las opciones que cambian el código generado, para la clave de la caché de compilaciones.
+     */
+    private String opcionesCodigo() {
+        String opciones = "destino=" + destino + ";constantes=" + plegarConstantes + ";bucles=" + optimizarBucles
+                + ";mirilla=" + (destino == Destino.NASM ? ventanaMirilla : 0);
+        if (archivoInstrumentacion != null) {
+            opciones += ";instrumentacion=" + archivoInstrumentacion;
+        }
+        if (perfil != null) {
+            opciones += ";perfil=" + perfil.getDigesto();
+        }
+        return opciones;
+    }
+
+    /**
+     * Entrega un resultado de la caché de compilaciones como si la compilación se hubiera hecho:
+     * escribe el código generado, las advertencias y la tabla de símbolos.
+     */
+    private int usarResultadoCacheado(BufferedWriter writer, CacheCompilaciones.Resultado resultado) throws IOException {
+        reportar(writer, "Archivo sin cambios: compilación tomada de la caché.");
+        for (Diagnosticos.Diagnostico advertencia : resultado.advertencias()) {
+            diagnosticos.reportar(advertencia.codigo(), advertencia.linea(), advertencia.columna(), advertencia.detalle());
+        }
+        reportarAdvertencias(writer);
+        if (archivoAsm.toString().equals("-")) {
+            String codigo = destino == Destino.JVM ? "Clase JVM enviada" : "Código enviado";
+            salidaAsm.write(resultado.codigo());
+            salidaAsm.flush();
+            reportar(writer, "Generación de código completada. " + codigo + " a la salida estándar.");
+        } else {
+            try {
+                Files.write(archivoAsm, resultado.codigo());
+            } catch (IOException e) {
+                reportarError(writer, "Error al escribir el archivo de salida: " + e.getMessage());
+                return 1;
+            }
+            String guardado = destino == Destino.JVM ? "Clase JVM guardada" : "Código guardado";
+            reportar(writer, "Generación de código completada. " + guardado + " en '" + archivoAsm + "'.");
+        }
+        reportar(writer, resultado.tablaSimbolos());
+        return 0;
+    }
+
+    /**
+     * Describe las instrucciones que eliminó la optimización de mirilla, por regla.
+     */
+    static String informeMirilla(OptimizadorMirilla mirilla) {
+        StringJoiner reglas = new StringJoiner(", ", " (", ")");
+        mirilla.getEliminadas().forEach((regla, cantidad) -> reglas.add(regla + ": " + cantidad));
+        return "Optimización de mirilla: " + mirilla.getTotalEliminadas() + " instrucciones eliminadas" + reglas;
+    }
+
+    /**
+     * Escribe un mensaje de progreso en el flujo de salida y en el archivo de salida.
+     */
+    private void reportar(BufferedWriter writer, String mensaje) throws IOException {
+        out.println(mensaje);
+        writer.write(mensaje);
+        writer.newLine();
+    }
+
+    /**
+     * Escribe un mensaje de error en el flujo de errores y en el archivo de salida, después de los
+     * errores de las fases que todavía no se escribieron.
+     */
+    private void reportarError(BufferedWriter writer, String mensaje) throws IOException {
+        diagnosticos.volcar(err);
+        err.println(mensaje);
+        writer.write(mensaje);
+        writer.newLine();
+    }
+
+    /**
+     * Escribe los diagnósticos pendientes en el flujo de errores y las advertencias también en el
+     * archivo de salida.
+     */
+    private void reportarAdvertencias(BufferedWriter writer) throws IOException {
+        diagnosticos.volcar(err);
+        for (Diagnosticos.Diagnostico advertencia : diagnosticos.getAdvertencias()) {
+            writer.write(advertencia.mensaje());
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Método para imprimir el árbol AST (Árbol de Sintaxis Abstracta) de forma visual.
+     *
+     * @param tree El árbol de sintaxis.
+     * @param parser El parser utilizado para generar el árbol.
+     */
+    private void imprimirArbolAST(ParseTree tree, miGramaticaParser parser) {
+        imprimirArbolAST(tree, parser, 0);
+    }
+
+    /**
+     * Sobrecarga del método `imprimirArbolAST` para manejar la indentación recursiva.
+     *
+     * @param tree El árbol de sintaxis.
+     * @param parser El parser utilizado para generar el árbol.
+     * @param nivel El nivel de indentación actual.
+     */
+    private void imprimirArbolAST(ParseTree tree, miGramaticaParser parser, int nivel) {
+        String indentacion = "  ".repeat(nivel);
+        String nombreNodo = obtenerNombreNodo(tree, parser);
+        out.println(indentacion + nombreNodo);
+
+        for (int i = 0; i < tree.getChildCount(); i++) {
+            imprimirArbolAST(tree.getChild(i), parser, nivel + 1);
+        }
+    }
+
+    /**
+     * Método para obtener el nombre del nodo actual en el árbol.
+     *
+     * @param tree El árbol de sintaxis.
+     * @param parser El parser utilizado para generar el árbol.
+     * @return El nombre del nodo.
+     */
+    private String obtenerNombreNodo(ParseTree tree, miGramaticaParser parser) {
+        if (tree instanceof TerminalNode) {
+            Token simbolo = ((TerminalNode) tree).getSymbol();
+            String nombreToken = parser.getVocabulary().getSymbolicName(simbolo.getType());
+            if (nombreToken == null) {
+                nombreToken = "'" + simbolo.getText() + "'";
+            }
+            return nombreToken + ": " + simbolo.getText();
+        } else {
+            String nombreRegla = tree.getClass().getSimpleName().replace("Context", "");
+            return nombreRegla;
+        }
+    }
+
+    /**
+     * Método para imprimir la tabla de símbolos de forma tabulada.
+     *
+     * @param tablaSimbolos La tabla de símbolos generada durante el análisis semántico.
+     */
+    private String imprimirTablaDeSimbolos(TablaSimbolos tablaSimbolos) {
+        String tabla = "";
+        tabla += "\nTabla de Símbolos:\n";
+        tabla += String.format("%-20s%-15s%-15s", "Nombre", "Tipo", "Línea") + "\n";
+        tabla += "-----------------------------------------------------------\n";
+        for (int i = 0; i < tablaSimbolos.getNumDeclarados(); i++) {
+            int simbolo = tablaSimbolos.getDeclarado(i);
+            tabla += String.format("%-20s%-15s%-15d", tablaSimbolos.getNombre(simbolo),
+                    tablaSimbolos.getTipo(simbolo), tablaSimbolos.getLinea(simbolo)) + "\n";
+        }
+        return tabla;
+    }
+}
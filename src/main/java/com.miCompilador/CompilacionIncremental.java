@@ -0,0 +1,253 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Compila un programa reutilizando los resultados de las sentencias de nivel superior que no
+ * cambiaron desde la compilación anterior.
+ *
+ * <p>Los tokens se dividen en sentencias ({@code declaration END} fuera de llaves y paréntesis) y
+ * cada una se identifica por el hash de sus tokens, sin su posición en el archivo. Solo las
+ * sentencias nuevas o modificadas se analizan sintáctica y semánticamente y se traducen a código
+ * intermedio; las demás se toman de la {@link CacheIncremental}. Luego los resultados de todas se
+ * encadenan en orden: los efectos sobre la tabla de símbolos se vuelven a aplicar (así una sentencia
+ * que depende de una declaración que cambió se valida de nuevo) y los fragmentos se incorporan al
+ * programa renumerando sus etiquetas y temporales. La asignación de registros y la emisión trabajan
+ * siempre sobre el programa completo.</p>
+ *
+ * <p>Si el programa tiene algún error, {@link #compilar(CommonTokenStream)} devuelve {@code false}
+ * sin reportarlo, y la compilación debe repetirse de la forma habitual para obtener los mensajes.</p>
+ */
+public class CompilacionIncremental {
+
+    private final CacheIncremental cache;
+    private final Diagnosticos diagnosticos;
+
+    private AnalizadorSemantico analizador;
+    private GeneradorCodigo generador;
+    private int numSentencias = 0;
+    private int numReutilizadas = 0;
+
+    /**
+     * Crea la compilación incremental de un archivo fuente.
+     *
+     * @param directorioCache Directorio donde se guardan las cachés.
+     * @param fuente          Ruta del archivo fuente.
+     * @param diagnosticos    Errores de la compilación, para el analizador semántico resultante.
+     */
+    public CompilacionIncremental(Path directorioCache, Path fuente, Diagnosticos diagnosticos) {
+        this.cache = CacheIncremental.abrir(directorioCache, fuente);
+        this.diagnosticos = diagnosticos;
+    }
+
+    /**
+     * Compila el programa a partir de sus tokens.
+     *
+     * @param tokens El flujo de tokens ya completo.
+     * @return {@code true} si el programa compiló sin errores, {@code false} si hay que repetir la
+     *         compilación completa para reportarlos.
+     */
+    public boolean compilar(CommonTokenStream tokens) {
+        List<Token> todos = tokens.getTokens();
+
+        // Dividir en sentencias de nivel superior
+        List<int[]> sentencias = new ArrayList<>();
+        int inicio = 0;
+        int profundidad = 0;
+        int fin = 0;
+        for (; fin < todos.size() && todos.get(fin).getType() != Token.EOF; fin++) {
+            int tipo = todos.get(fin).getType();
+            // Los ';' dentro de llaves o de los paréntesis de un for no terminan la sentencia
+            if (tipo == miGramaticaLexer.KEYL || tipo == miGramaticaLexer.PARL) {
+                profundidad++;
+            } else if ((tipo == miGramaticaLexer.KEYR || tipo == miGramaticaLexer.PARR) && --profundidad < 0) {
+                return false;
+            } else if (tipo == miGramaticaLexer.END && profundidad == 0) {
+                sentencias.add(new int[]{inicio, fin + 1});
+                inicio = fin + 1;
+            }
+        }
+        if (inicio != fin) {
+            // Tokens sobrantes tras la última sentencia
+            return false;
+        }
+
+        // Las advertencias de las sentencias se acumulan aparte y pasan a la compilación solo si
+        // termina: si no, la compilación completa las vuelve a reportar
+        Diagnosticos repeticion = new Diagnosticos();
+        repeticion.setMaximo(0);
+        analizador = new AnalizadorSemantico(repeticion);
+        generador = new GeneradorCodigo(analizador.getTablaSimbolos());
+        for (int[] rango : sentencias) {
+            List<Token> tokensSentencia = todos.subList(rango[0], rango[1]);
+            String clave = clave(tokensSentencia);
+            CacheIncremental.Sentencia sentencia = cache.buscar(clave);
+            if (sentencia == null) {
+                sentencia = compilarSentencia(tokensSentencia);
+                if (sentencia == null) {
+                    return false;
+                }
+                cache.guardar(clave, sentencia);
+            } else {
+                numReutilizadas++;
+            }
+            numSentencias++;
+
+            // Volver a aplicar los efectos sobre la tabla de símbolos
+            for (String uso : sentencia.usosLibres()) {
+                if (!analizador.estaDeclarada(uso)) {
+                    return false;
+                }
+            }
+            int linea = tokensSentencia.get(0).getLine();
+            for (int i = 0; i < sentencia.declaraciones().length; i++) {
+                analizador.declarar(sentencia.declaraciones()[i], linea + sentencia.lineas()[i]);
+            }
+            for (int division : sentencia.divisionesPorCero()) {
+                analizador.divisionPorCero(linea + division);
+            }
+
+            generador.incorporar(sentencia.fragmento());
+        }
+        diagnosticos.agregar(repeticion);
+        return true;
+    }
+
+    /**
+     * Guarda en disco la caché con las sentencias de esta compilación.
+     *
+     * @throws IOException Si no se puede escribir la caché.
+     */
+    public void guardarCache() throws IOException {
+        cache.escribir();
+    }
+
+    /**
+     * Devuelve el analizador semántico con la tabla de símbolos del programa completo.
+     */
+    public AnalizadorSemantico getAnalizador() {
+        return analizador;
+    }
+
+    /**
+     * Devuelve el generador con el código intermedio del programa completo.
+     */
+    public GeneradorCodigo getGenerador() {
+        return generador;
+    }
+
+    /**
+     * Devuelve la cantidad de sentencias de nivel superior del programa.
+     */
+    public int getNumSentencias() {
+        return numSentencias;
+    }
+
+    /**
+     * Devuelve la cantidad de sentencias tomadas de la caché.
+     */
+    public int getNumReutilizadas() {
+        return numReutilizadas;
+    }
+
+    /**
+     * Analiza una sola sentencia, con SLL y, si no basta, con LL completo.
+     *
+     * @return El árbol de la sentencia, o {@code null} si tiene errores sintácticos.
+     */
+    private static miGramaticaParser.DeclarationContext analizarSentencia(List<Token> copias) {
+        for (PredictionMode modo : new PredictionMode[]{PredictionMode.SLL, PredictionMode.LL}) {
+            miGramaticaParser parser = new miGramaticaParser(new CommonTokenStream(new ListTokenSource(copias)));
+            parser.removeErrorListeners();
+            parser.setErrorHandler(new BailErrorStrategy());
+            parser.getInterpreter().setPredictionMode(modo);
+            miGramaticaParser.CodeContext codigo;
+            try {
+                codigo = parser.code();
+            } catch (ParseCancellationException e) {
+                continue;
+            }
+            if (parser.getCurrentToken().getType() != Token.EOF || codigo.declaration().size() != 1) {
+                return null;
+            }
+            return codigo.declaration(0);
+        }
+        return null;
+    }
+
+    /**
+     * Analiza y traduce una sola sentencia, o devuelve {@code null} si tiene errores sintácticos.
+     */
+    private static CacheIncremental.Sentencia compilarSentencia(List<Token> tokensSentencia) {
+        // Copias, para no renumerar los tokens del flujo original
+        List<Token> copias = new ArrayList<>(tokensSentencia.size());
+        for (Token token : tokensSentencia) {
+            copias.add(new CommonToken(token));
+        }
+
+        // El parser es recursivo: una sentencia muy anidada se analiza en un hilo con más pila
+        miGramaticaParser.DeclarationContext declaracion = AnalizadorSintactico.ejecutarConPila(
+                AnalizadorSintactico.profundidadMaxima(copias), () -> analizarSentencia(copias));
+        if (declaracion == null) {
+            return null;
+        }
+
+        // Efectos sobre la tabla de símbolos, independientes de las sentencias anteriores
+        // Sin máximo de errores: los usos libres no son errores de la sentencia y hay que verlos todos
+        Diagnosticos usos = new Diagnosticos();
+        usos.setMaximo(0);
+        AnalizadorSemantico semantico = new AnalizadorSemantico(usos);
+        semantico.visit(declaracion);
+        int linea = tokensSentencia.get(0).getLine();
+        TablaSimbolos simbolos = semantico.getTablaSimbolos();
+        String[] declaraciones = new String[simbolos.getNumDeclarados()];
+        int[] lineas = new int[declaraciones.length];
+        for (int i = 0; i < declaraciones.length; i++) {
+            int simbolo = simbolos.getDeclarado(i);
+            declaraciones[i] = simbolos.getNombre(simbolo);
+            lineas[i] = simbolos.getLinea(simbolo) - linea;
+        }
+        String[] usosLibres = new LinkedHashSet<>(semantico.getUsosNoDeclarados()).toArray(new String[0]);
+        int[] divisionesPorCero = new int[semantico.getDivisionesPorCero().size()];
+        for (int i = 0; i < divisionesPorCero.length; i++) {
+            divisionesPorCero[i] = semantico.getDivisionesPorCero().get(i) - linea;
+        }
+
+        return new CacheIncremental.Sentencia(declaraciones, lineas, usosLibres, divisionesPorCero,
+                GeneradorCodigo.generarFragmento(declaracion, simbolos));
+    }
+
+    /**
+     * Calcula la clave de una sentencia a partir del tipo y el texto de sus tokens y de sus líneas
+     * relativas a la primera, de las que dependen las líneas de declaración guardadas.
+     */
+    private static String clave(List<Token> tokensSentencia) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int linea = tokensSentencia.get(0).getLine();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (Token token : tokensSentencia) {
+                out.writeInt(token.getType());
+                out.writeInt(token.getLine() - linea);
+                out.writeUTF(token.getText());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return CacheIncremental.hash(bytes.toByteArray());
+    }
+}
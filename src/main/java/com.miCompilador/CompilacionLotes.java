@@ -0,0 +1,460 @@
+package com.miCompilador;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Compila un lote de archivos fuente en paralelo, cada uno en su propio hilo virtual.
+ *
+ * <p>El lote se especifica como un directorio (se toman todos sus archivos {@code .txt}), un patrón
+ * glob (por ejemplo {@code fuentes/**.txt}) o un manifiesto precedido por {@code @} con una ruta por
+ * línea. Cada archivo produce su propio {@code .asm} y su propio reporte dentro del directorio de
+ * salida, conservando la estructura de carpetas relativa, y sus diagnósticos se acumulan por separado
+ * para imprimirse juntos al terminar, en el orden de entrada. Si dos archivos tendrían las mismas
+ * salidas, el lote no se compila; un error al leer un archivo solo hace fallar a ese archivo.</p>
+ */
+public class CompilacionLotes {
+
+    private final Path directorioBase;
+    private final Path directorioSalida;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    // Directorio a partir del cual se calculan las rutas relativas de salida
+    private Path raizComun = Paths.get("");
+
+    // Directorio de la caché incremental, o null si cada archivo se compila completo
+    private Path directorioCache;
+
+    // Caché de compilaciones que comparten todos los archivos, o null para no usarla
+    private CacheCompilaciones cacheResultados;
+
+    // Si los archivos se compilan en el modo para archivos grandes
+    private boolean entradaGrande = false;
+
+    // Si los archivos se compilan en una pasada, sin árbol de parseo
+    private boolean unaPasada = false;
+
+    // Código que se genera para cada archivo
+    private Compilacion.Destino destinoCodigo = Compilacion.Destino.NASM;
+
+    // Si se pliegan las constantes de cada archivo
+    private boolean plegarConstantes = true;
+
+    // Si se optimizan los bucles de cada archivo
+    private boolean optimizarBucles = true;
+
+    // Ventana de la optimización de mirilla de cada archivo, o 0 para no optimizar
+    private int ventanaMirilla = OptimizadorMirilla.VENTANA_PREDETERMINADA;
+
+    // Si se genera el informe de métricas del lote
+    private boolean metricas = false;
+
+    // Informe de métricas de la última ejecución: un arreglo JSON con el informe de cada archivo
+    private String informeMetricas;
+
+    // Cantidad máxima de errores de cada archivo, o 0 para no limitar
+    private int maximoErrores = Diagnosticos.MAXIMO_PREDETERMINADO;
+
+    // Si se genera el informe de errores del lote
+    private boolean diagnosticos = false;
+
+    // Informe de errores de la última ejecución: un arreglo JSON con los errores de cada archivo
+    private String informeDiagnosticos;
+
+    /**
+     * Resultado de compilar un archivo del lote.
+     *
+     * @param entrada  Ruta del archivo fuente.
+     * @param codigo   Código de salida de la compilación (0 para éxito).
+     * @param bytes    Tamaño del archivo fuente en bytes.
+     * @param reintentoLL Si el análisis sintáctico necesitó reanalizar con LL completo.
+     * @param mensajes Mensajes de progreso emitidos por la compilación.
+     * @param errores  Mensajes de error emitidos por la compilación.
+     * @param metricas Informe JSON de las métricas de la compilación.
+     * @param diagnosticos Informe JSON de los errores de la compilación.
+     */
+    record Resultado(Path entrada, int codigo, long bytes, boolean reintentoLL, String mensajes, String errores,
+                     String metricas, String diagnosticos) {
+    }
+
+    /**
+     * Crea un compilador de lotes.
+     *
+     * @param directorioBase   Directorio contra el que se resuelven el directorio, el patrón o el
+     *                         manifiesto del lote.
+     * @param directorioSalida Directorio donde se escriben los archivos generados.
+     * @param out              Flujo para los mensajes de progreso y el resumen.
+     * @param err              Flujo para los mensajes de error.
+     */
+    public CompilacionLotes(Path directorioBase, Path directorioSalida, PrintStream out, PrintStream err) {
+        this.directorioBase = directorioBase;
+        this.directorioSalida = directorioSalida;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Activa la compilación incremental de cada archivo del lote con la caché del directorio indicado.
+     *
+     * @param directorioCache Directorio de la caché, o {@code null} para desactivarla.
+     */
+    public void setDirectorioCache(Path directorioCache) {
+        this.directorioCache = directorioCache;
+    }
+
+    /**
+     * Busca cada archivo en una caché de compilaciones antes de compilarlo
+     * ({@link Compilacion#setCacheResultados}). Los archivos iguales del lote comparten la entrada.
+     *
+     * @param cacheResultados La caché, o {@code null} para compilar siempre.
+     */
+    public void setCacheResultados(CacheCompilaciones cacheResultados) {
+        this.cacheResultados = cacheResultados;
+    }
+
+    /**
+     * Compila cada archivo en el modo para archivos grandes ({@link Compilacion#setEntradaGrande}).
+     *
+     * @param entradaGrande Si se usa el modo para archivos grandes.
+     */
+    public void setEntradaGrande(boolean entradaGrande) {
+        this.entradaGrande = entradaGrande;
+    }
+
+    /**
+     * Compila cada archivo en una pasada ({@link Compilacion#setUnaPasada}).
+     *
+     * @param unaPasada Si se compila en una pasada.
+     */
+    public void setUnaPasada(boolean unaPasada) {
+        this.unaPasada = unaPasada;
+    }
+
+    /**
+     * Define el código que se genera para cada archivo ({@link Compilacion#setDestino}). Con el
+     * destino JVM cada archivo produce un {@code .class} en lugar de un {@code .asm}.
+     *
+     * @param destinoCodigo El código a generar.
+     */
+    public void setDestino(Compilacion.Destino destinoCodigo) {
+        this.destinoCodigo = destinoCodigo;
+    }
+
+    /**
+     * Activa o desactiva el plegado de constantes de cada archivo ({@link Compilacion#setPlegarConstantes}).
+     *
+     * @param plegarConstantes Si se evalúan las operaciones constantes durante la compilación.
+     */
+    public void setPlegarConstantes(boolean plegarConstantes) {
+        this.plegarConstantes = plegarConstantes;
+    }
+
+    /**
+     * Activa o desactiva la optimización de bucles de cada archivo ({@link Compilacion#setOptimizarBucles}).
+     *
+     * @param optimizarBucles Si se optimizan los bucles.
+     */
+    public void setOptimizarBucles(boolean optimizarBucles) {
+        this.optimizarBucles = optimizarBucles;
+    }
+
+    /**
+     * Define la ventana de la optimización de mirilla de cada archivo ({@link Compilacion#setVentanaMirilla}).
+     *
+     * @param ventanaMirilla Cantidad máxima de líneas que examina una regla, o 0 para no optimizar.
+     */
+    public void setVentanaMirilla(int ventanaMirilla) {
+        this.ventanaMirilla = ventanaMirilla;
+    }
+
+    /**
+     * Activa el informe de métricas del lote, con el detalle de cada archivo.
+     *
+     * <p>Los archivos se compilan en hilos virtuales, para los que la JVM no mide la memoria asignada
+     * por hilo: en este modo ese dato del informe es {@code null}.</p>
+     *
+     * @param metricas Si se genera el informe.
+     */
+    public void setMetricas(boolean metricas) {
+        this.metricas = metricas;
+    }
+
+    /**
+     * Devuelve el informe de métricas de la última ejecución, o {@code null} si no se pidió.
+     */
+    public String getInformeMetricas() {
+        return informeMetricas;
+    }
+
+    /**
+     * Define la cantidad máxima de errores de cada archivo ({@link Compilacion#setMaximoErrores}).
+     *
+     * @param maximoErrores El máximo, o 0 para no limitar.
+     */
+    public void setMaximoErrores(int maximoErrores) {
+        this.maximoErrores = maximoErrores;
+    }
+
+    /**
+     * Activa el informe JSON de errores del lote, con los errores de cada archivo.
+     *
+     * @param diagnosticos Si se genera el informe.
+     */
+    public void setDiagnosticos(boolean diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+
+    /**
+     * Devuelve el informe de errores de la última ejecución, o {@code null} si no se pidió.
+     */
+    public String getInformeDiagnosticos() {
+        return informeDiagnosticos;
+    }
+
+    /**
+     * Compila todos los archivos indicados por la especificación del lote.
+     *
+     * @param especificacion Directorio, patrón glob o manifiesto ({@code @archivo}), relativo al
+     *                       directorio base.
+     * @return 0 si todos los archivos compilaron con éxito, 1 en caso contrario.
+     * @throws Exception Si no se puede resolver el lote o alguna compilación falla inesperadamente.
+     */
+    public int ejecutar(String especificacion) throws Exception {
+        List<Path> entradas = resolverEntradas(especificacion);
+        if (entradas.isEmpty()) {
+            err.println("El lote '" + especificacion + "' no contiene archivos fuente.");
+            return 1;
+        }
+
+        // Dos archivos con el mismo nombre sin extensión en la misma carpeta escribirían las mismas
+        // salidas desde hilos distintos
+        Map<Path, Path> destinos = new HashMap<>();
+        for (Path entrada : entradas) {
+            Path anterior = destinos.putIfAbsent(destinoBase(entrada), entrada);
+            if (anterior != null) {
+                err.println("Los archivos '" + anterior + "' y '" + entrada + "' del lote generarían las mismas salidas ('"
+                        + destinoBase(entrada) + ".*'). Compilación del lote detenida.");
+                return 1;
+            }
+        }
+
+        Files.createDirectories(directorioSalida);
+        long inicio = System.nanoTime();
+
+        List<Future<Resultado>> pendientes = new ArrayList<>(entradas.size());
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Path entrada : entradas) {
+                pendientes.add(ejecutor.submit(() -> compilar(entrada)));
+            }
+
+            long bytes = 0;
+            int fallidos = 0;
+            StringBuilder informe = new StringBuilder("[");
+            StringBuilder errores = new StringBuilder("[");
+            int reintentosLL = 0;
+            for (Future<Resultado> pendiente : pendientes) {
+                Resultado resultado = pendiente.get();
+                bytes += resultado.bytes();
+                if (resultado.codigo() != 0) {
+                    fallidos++;
+                }
+                if (resultado.reintentoLL()) {
+                    reintentosLL++;
+                }
+                if (metricas) {
+                    informe.append(informe.length() > 1 ? ",\n " : "\n ").append(resultado.metricas());
+                }
+                if (diagnosticos) {
+                    errores.append(errores.length() > 1 ? ",\n " : "\n ").append(resultado.diagnosticos());
+                }
+                out.println("== " + resultado.entrada());
+                out.print(resultado.mensajes());
+                err.print(resultado.errores());
+            }
+
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            out.println();
+            out.println("Resumen del lote:");
+            out.printf("  Archivos compilados: %d (%d con éxito, %d con errores)%n",
+                    entradas.size(), entradas.size() - fallidos, fallidos);
+            out.printf("  Tiempo total: %.3f s%n", segundos);
+            out.printf("  Rendimiento: %.1f archivos/s, %.1f KB/s%n",
+                    entradas.size() / segundos, bytes / 1024.0 / segundos);
+            out.printf("  Reanálisis con LL completo: %d de %d%n", reintentosLL, entradas.size());
+            if (metricas) {
+                informeMetricas = informe.append("\n]").toString();
+            }
+            if (diagnosticos) {
+                informeDiagnosticos = errores.append("\n]").toString();
+            }
+
+            return fallidos == 0 ? 0 : 1;
+        }
+    }
+
+    /**
+     * Devuelve la ruta de las salidas de un archivo del lote, sin extensión: la de su carpeta
+     * relativa a la raíz del lote dentro del directorio de salida y su nombre sin extensión.
+     */
+    private Path destinoBase(Path entrada) {
+        String nombre = entrada.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        String base = punto > 0 ? nombre.substring(0, punto) : nombre;
+        Path relativa = raizComun.relativize(entrada.getParent());
+        if (relativa.startsWith("..")) {
+            // Archivos fuera de la raíz del lote se escriben directamente en el directorio de salida
+            relativa = Paths.get("");
+        }
+        return directorioSalida.resolve(relativa).resolve(base).normalize();
+    }
+
+    /**
+     * Compila un único archivo del lote con flujos de mensajes propios. Un error de entrada y salida
+     * (por ejemplo, un archivo del manifiesto que no existe) solo hace fallar a ese archivo.
+     */
+    private Resultado compilar(Path entrada) {
+        try {
+            return compilarArchivo(entrada);
+        } catch (IOException e) {
+            String causa = e instanceof NoSuchFileException ? "el archivo no existe" : e.getMessage();
+            return new Resultado(entrada, 1, 0, false, "",
+                    "Error: no se pudo compilar '" + entrada + "': " + causa + System.lineSeparator(),
+                    null, null);
+        }
+    }
+
+    /**
+     * Compila un archivo del lote, propagando los errores de entrada y salida.
+     */
+    private Resultado compilarArchivo(Path entrada) throws IOException {
+        ByteArrayOutputStream mensajes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errores = new ByteArrayOutputStream();
+
+        Path destinoBase = destinoBase(entrada);
+        Path destino = destinoBase.getParent();
+        String base = destinoBase.getFileName().toString();
+        Files.createDirectories(destino);
+
+        int codigo;
+        boolean reintentoLL;
+        String informe;
+        String informeErrores;
+        try (PrintStream outLocal = new PrintStream(mensajes, true, StandardCharsets.UTF_8);
+             PrintStream errLocal = new PrintStream(errores, true, StandardCharsets.UTF_8)) {
+            Compilacion compilacion = new Compilacion(entrada,
+                    destino.resolve(base + ".salida.txt"),
+                    destino.resolve(base + (destinoCodigo == Compilacion.Destino.JVM ? ".class" : ".asm")),
+                    outLocal, errLocal);
+            compilacion.setDirectorioCache(directorioCache);
+            compilacion.setCacheResultados(cacheResultados);
+            compilacion.setEntradaGrande(entradaGrande);
+            compilacion.setUnaPasada(unaPasada);
+            compilacion.setDestino(destinoCodigo);
+            compilacion.setPlegarConstantes(plegarConstantes);
+            compilacion.setOptimizarBucles(optimizarBucles);
+            compilacion.setVentanaMirilla(ventanaMirilla);
+            compilacion.setMetricasDetalladas(metricas);
+            compilacion.setMaximoErrores(maximoErrores);
+            codigo = compilacion.ejecutar();
+            reintentoLL = compilacion.usoReintentoLL();
+            informe = metricas ? compilacion.getMetricas().toJson() : null;
+            informeErrores = diagnosticos ? compilacion.getDiagnosticos().toJson(entrada.toString()) : null;
+        }
+
+        return new Resultado(entrada, codigo, Files.size(entrada), reintentoLL,
+                mensajes.toString(StandardCharsets.UTF_8), errores.toString(StandardCharsets.UTF_8), informe,
+                informeErrores);
+    }
+
+    /**
+     * Resuelve la lista de archivos fuente que componen el lote.
+     *
+     * @param especificacion Directorio, patrón glob o manifiesto ({@code @archivo}), relativo al
+     *                       directorio base.
+     * @return Las rutas de los archivos, en orden determinista.
+     * @throws IOException Si no se puede recorrer el directorio o leer el manifiesto.
+     */
+    List<Path> resolverEntradas(String especificacion) throws IOException {
+        List<Path> entradas = new ArrayList<>();
+        Path salida = directorioSalida.toAbsolutePath().normalize();
+
+        if (especificacion.startsWith("@")) {
+            // Manifiesto: una ruta por línea, relativas al directorio del manifiesto
+            Path manifiesto = directorioBase.resolve(especificacion.substring(1));
+            Path base = manifiesto.toAbsolutePath().getParent();
+            for (String linea : Files.readAllLines(manifiesto)) {
+                linea = linea.strip();
+                if (!linea.isEmpty() && !linea.startsWith("#")) {
+                    entradas.add(base.resolve(linea).normalize());
+                }
+            }
+            // Las entradas fuera del directorio del manifiesto conservan su estructura desde el
+            // ancestro común, en lugar de aplanarse en el directorio de salida
+            raizComun = base;
+            for (Path entrada : entradas) {
+                while (!entrada.startsWith(raizComun) && raizComun.getParent() != null) {
+                    raizComun = raizComun.getParent();
+                }
+            }
+            return entradas;
+        }
+
+        Path raiz;
+        PathMatcher filtro;
+        int comodin = indiceComodin(especificacion);
+        if (comodin < 0) {
+            // Directorio: todos los archivos .txt que contiene
+            raiz = directorioBase.resolve(especificacion);
+            filtro = ruta -> ruta.getFileName().toString().endsWith(".txt");
+        } else {
+            // Patrón glob: la parte fija antes del primer comodín es el directorio raíz
+            int separador = especificacion.lastIndexOf('/', comodin);
+            raiz = directorioBase.resolve(separador < 0 ? "." : especificacion.substring(0, separador + 1));
+            PathMatcher glob = FileSystems.getDefault()
+                    .getPathMatcher("glob:" + especificacion.substring(separador + 1));
+            Path raizFinal = raiz;
+            filtro = ruta -> glob.matches(raizFinal.relativize(ruta));
+        }
+
+        raizComun = raiz.toAbsolutePath().normalize();
+        try (Stream<Path> recorrido = Files.walk(raiz)) {
+            recorrido.filter(Files::isRegularFile)
+                    .filter(ruta -> !ruta.toAbsolutePath().normalize().startsWith(salida))
+                    .filter(filtro::matches)
+                    .map(ruta -> ruta.toAbsolutePath().normalize())
+                    .sorted()
+                    .forEach(entradas::add);
+        }
+        return entradas;
+    }
+
+    /**
+     * Devuelve la posición del primer carácter comodín de un patrón glob, o -1 si no tiene.
+     */
+    private static int indiceComodin(String patron) {
+        for (int i = 0; i < patron.length(); i++) {
+            char c = patron.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,617 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Compila el programa en una sola pasada, sin construir el árbol de parseo: el análisis semántico y
+ * la generación de la representación intermedia se hacen a medida que el parser reconoce cada regla.
+ *
+ * <p>Se registra como oyente del parser ({@link AnalizadorSintactico#analizarEnUnaPasada}). Lo
+ * único que conserva entre reglas son pilas cuyo tamaño depende del anidamiento del programa: los
+ * operandos y operadores de las expresiones abiertas, las asignaciones en curso y los bloques de las
+ * sentencias de control abiertas. El resultado, para un programa válido, es el mismo
+ * {@link GeneradorCodigo} que producirían {@link AnalizadorSemantico} y la visita del generador
+ * sobre el árbol, con los mismos registros virtuales y bloques; por eso el código NASM es idéntico.</p>
+ *
+ * <p>Para lograrlo hay tres puntos en los que la pasada imita el orden de la visita:</p>
+ * <ul>
+ *     <li>Un identificador no recibe su registro virtual hasta que se crea el siguiente registro, y
+ *     el del lado izquierdo de una asignación nunca lo recibe, porque la visita no lo evalúa.</li>
+ *     <li>El bloque del {@code else} se crea al encontrar la palabra {@code else}, pero se numera
+ *     como si se hubiera creado junto con los demás bloques del {@code if}.</li>
+ *     <li>La actualización de un {@code for} aparece antes que el cuerpo pero se ejecuta después:
+ *     se genera aparte como un {@link GeneradorCodigo.Fragmento} y se incorpora al cerrar el cuerpo.</li>
+ * </ul>
+ *
+ * <p>El destino de una asignación solo puede ser un identificador; cualquier otra expresión a la
+ * izquierda del '=' se reporta como error semántico, porque su código ya se generó al encontrar
+ * el '='. Los errores semánticos se guardan y solo se muestran si no hubo errores sintácticos, y
+ * ante el primer error sintáctico la pasada deja de procesar el programa.</p>
+ */
+public class CompiladorUnaPasada extends miGramaticaBaseListener {
+
+    /**
+     * Asignación abierta: lo necesario para saber, al llegar el '=', si el lado izquierdo es un
+     * identificador.
+     */
+    private static final class Asignacion {
+        // Tokens del lado izquierdo vistos hasta ahora
+        int tokens;
+        // Si ya apareció el '='
+        boolean asignacion;
+        // Símbolo del destino, o SIN_SIMBOLO si no es un identificador
+        int simbolo = TablaSimbolos.SIN_SIMBOLO;
+        // Identificador que abre el lado izquierdo: si resulta ser el destino se declara, si no se verifica
+        Token primero;
+    }
+
+    /**
+     * Bloques de un {@code if} abierto.
+     */
+    private static final class Si {
+        BloqueBasico entonces;
+        BloqueBasico fin;
+        // Bloque que termina con la rama de la condición, para redirigirla si aparece un else
+        BloqueBasico condicion;
+    }
+
+    /**
+     * Bloques de un {@code while} abierto.
+     */
+    private static final class Mientras {
+        BloqueBasico condicion;
+        BloqueBasico cuerpo;
+        BloqueBasico fin;
+    }
+
+    /**
+     * Bloques de un {@code for} abierto.
+     */
+    private static final class Para {
+        BloqueBasico condicion;
+        BloqueBasico cuerpo;
+        BloqueBasico fin;
+        // Expresiones opcionales ya terminadas
+        int expresiones;
+        // Código de la actualización, o null si es vacía
+        GeneradorCodigo.Fragmento actualizacion;
+    }
+
+    private final Parser parser;
+    private final AnalizadorSemantico analizador;
+    private final TablaSimbolos tablaSimbolos;
+    private final GeneradorCodigo principal;
+
+    // Generador donde se agregan las instrucciones (el de la actualización de un for mientras se analiza)
+    private GeneradorCodigo generador;
+
+    // Si la pasada se detuvo por un error sintáctico
+    private boolean detenida = false;
+
+    // Pila de operandos; un operando con símbolo pendiente todavía no tiene registro virtual
+    private Operando[] operandos = new Operando[16];
+    private int[] pendientes = new int[16];
+    private int numOperandos = 0;
+    // Por debajo de esta posición no hay operandos pendientes
+    private int primerPendiente = 0;
+
+    // Pila de operadores binarios, con la regla que los contiene
+    private ParserRuleContext[] reglasOperador = new ParserRuleContext[8];
+    private int[] operadores = new int[8];
+    private int numOperadores = 0;
+
+    private final ArrayDeque<Asignacion> asignaciones = new ArrayDeque<>();
+    private final ArrayDeque<Object> sentencias = new ArrayDeque<>();
+
+    // Orden de creación de los bloques (siguiente de cada uno), para numerarlos al terminar
+    private int[] siguienteCreado = new int[16];
+    private int ultimoCreado = 0;
+    private boolean reordenado = false;
+    private boolean numerado = false;
+
+    /**
+     * Crea la pasada para el parser que la notificará.
+     *
+     * @param parser       El parser, para saber si ya reportó errores sintácticos.
+     * @param maximoErrores Cantidad máxima de errores semánticos que se guardan, o 0 para no limitar.
+     */
+    public CompiladorUnaPasada(Parser parser, int maximoErrores) {
+        this.parser = parser;
+        Diagnosticos erroresSemanticos = new Diagnosticos();
+        erroresSemanticos.setMaximo(maximoErrores);
+        this.analizador = new AnalizadorSemantico(erroresSemanticos);
+        this.tablaSimbolos = analizador.getTablaSimbolos();
+        this.principal = new GeneradorCodigo(tablaSimbolos);
+        this.generador = principal;
+        siguienteCreado[0] = -1;
+    }
+
+    /**
+     * Devuelve el analizador semántico, con la tabla de símbolos y el registro de errores de la pasada.
+     */
+    public AnalizadorSemantico getAnalizador() {
+        return analizador;
+    }
+
+    /**
+     * Agrega los errores semánticos encontrados durante la pasada a los de la compilación.
+     *
+     * @param diagnosticos Errores de la compilación.
+     */
+    public void reportarErroresSemanticos(Diagnosticos diagnosticos) {
+        diagnosticos.agregar(analizador.getDiagnosticos());
+    }
+
+    /**
+     * Devuelve el generador con el programa completo, con los bloques ya numerados en el orden de la
+     * visita del árbol.
+     */
+    public GeneradorCodigo getGenerador() {
+        if (reordenado && !numerado) {
+            int[] nuevoId = new int[principal.getPrograma().getNumBloques()];
+            int numero = 0;
+            for (int k = 0; k >= 0; k = siguienteCreado[k]) {
+                nuevoId[k] = numero++;
+            }
+            principal.getPrograma().renumerarBloques(nuevoId);
+        }
+        numerado = true;
+        return principal;
+    }
+
+    /**
+     * Indica si la pasada sigue procesando el programa, es decir, si no hubo errores sintácticos.
+     */
+    private boolean activa() {
+        if (!detenida && parser.getNumberOfSyntaxErrors() > 0) {
+            detenida = true;
+        }
+        return !detenida;
+    }
+
+    // Tokens
+
+    @Override
+    public void visitTerminal(TerminalNode nodo) {
+        ParserRuleContext regla = (ParserRuleContext) nodo.getParent();
+        // Sin árbol, el parser igual agrega los tokens a la regla: se quitan para no retenerlos
+        regla.removeLastChild();
+        if (!activa()) {
+            return;
+        }
+
+        Token token = nodo.getSymbol();
+        Asignacion abierta = asignaciones.peek();
+        if (abierta != null && !abierta.asignacion && token.getType() != miGramaticaParser.ASSIGN) {
+            abierta.tokens++;
+            if (abierta.tokens == 2 && abierta.primero != null) {
+                // El lado izquierdo no es solo un identificador: es un uso
+                verificarPrimero(abierta);
+            }
+        }
+
+        switch (token.getType()) {
+            case miGramaticaParser.ASSIGN -> asignar(abierta, token);
+            case miGramaticaParser.OSUM, miGramaticaParser.ORES -> {
+                if (regla instanceof miGramaticaParser.AdditiveExpContext) {
+                    apilarOperador(regla, token.getType() == miGramaticaParser.OSUM ? ProgramaIR.ADD : ProgramaIR.SUB);
+                }
+            }
+            case miGramaticaParser.OMUL, miGramaticaParser.ODIV ->
+                    apilarOperador(regla, token.getType() == miGramaticaParser.OMUL ? ProgramaIR.MUL : ProgramaIR.DIV);
+            case miGramaticaParser.OREL ->
+                    apilarOperador(regla, ProgramaIR.CMP + ProgramaIR.relacion(token.getText()));
+            case miGramaticaParser.ID -> {
+                if (regla instanceof miGramaticaParser.Print_stmtContext imprimir) {
+                    imprimir.simbolo = tablaSimbolos.simbolo(token.getText());
+                }
+            }
+            case miGramaticaParser.ELSE -> iniciarElse();
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode nodo) {
+        ((ParserRuleContext) nodo.getParent()).removeLastChild();
+    }
+
+    // Expresiones
+
+    @Override
+    public void enterAssignmentExp(miGramaticaParser.AssignmentExpContext ctx) {
+        if (activa()) {
+            asignaciones.push(new Asignacion());
+        }
+    }
+
+    /**
+     * Procesa el '=' de una asignación: declara el destino y descarta su valor, que la visita del
+     * árbol tampoco evalúa.
+     */
+    private void asignar(Asignacion abierta, Token igual) {
+        abierta.asignacion = true;
+        if (abierta.tokens == 1 && abierta.primero != null) {
+            Token destino = abierta.primero;
+            abierta.primero = null;
+            abierta.simbolo = analizador.declarar(destino.getText(), destino.getLine());
+        } else {
+            analizador.destinoNoAsignable(igual.getLine(), igual.getCharPositionInLine());
+        }
+        descartarSinResolver();
+    }
+
+    @Override
+    public void exitAssignmentExp(miGramaticaParser.AssignmentExpContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Asignacion abierta = asignaciones.pop();
+        if (!abierta.asignacion) {
+            // No es una asignación: el valor de relationalExp queda en la pila
+            if (abierta.primero != null) {
+                verificarPrimero(abierta);
+            }
+            return;
+        }
+
+        Operando valor = desapilar();
+        if (abierta.simbolo == TablaSimbolos.SIN_SIMBOLO) {
+            // Destino inválido, ya reportado: se conserva el valor para que la pila siga cuadrando
+            apilar(valor);
+            return;
+        }
+        ctx.simbolo = abierta.simbolo;
+
+        // La variable recibe su registro virtual en su primera aparición
+        int variable = generador.registroDeVariable(abierta.simbolo);
+        generador.agregar(ProgramaIR.MOV, variable, valor, null);
+        apilar(Operando.registro(variable));
+    }
+
+    /**
+     * Verifica como uso el identificador que abría el lado izquierdo de una asignación.
+     */
+    private void verificarPrimero(Asignacion abierta) {
+        analizador.usar(abierta.primero.getText(), abierta.primero.getLine(),
+                abierta.primero.getCharPositionInLine());
+        abierta.primero = null;
+    }
+
+    @Override
+    public void exitUnaryExp(miGramaticaParser.UnaryExpContext ctx) {
+        if (!activa() || ctx.start.getType() != miGramaticaParser.ORES) {
+            return;
+        }
+        Operando operando = desapilar();
+        int tempVar = generador.nuevaVariable();
+        generador.agregar(ProgramaIR.NEG, tempVar, operando, null);
+        apilar(Operando.registro(tempVar));
+    }
+
+    @Override
+    public void exitPrimaryExp(miGramaticaParser.PrimaryExpContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Token token = ctx.start;
+        if (token.getType() == miGramaticaParser.NUM) {
+            apilar(Operando.constante(GeneradorCodigo.valorLiteral(token.getText())));
+        } else if (token.getType() == miGramaticaParser.ID) {
+            Asignacion abierta = asignaciones.peek();
+            if (!abierta.asignacion && abierta.tokens == 1) {
+                // Puede ser el destino de una asignación: se sabrá al ver el token siguiente
+                abierta.primero = token;
+                ctx.simbolo = tablaSimbolos.simbolo(token.getText());
+            } else {
+                ctx.simbolo = analizador.usar(token.getText(), token.getLine(), token.getCharPositionInLine());
+            }
+            apilarPendiente(ctx.simbolo);
+        }
+        // Entre paréntesis, el valor de la expresión ya está en la pila
+    }
+
+    @Override
+    public void exitExp(miGramaticaParser.ExpContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        boolean vacia = esVacia(ctx);
+        ParserRuleContext padre = ctx.getParent();
+        if (padre instanceof miGramaticaParser.DeclarationContext) {
+            if (!vacia) {
+                desapilar();
+            }
+        } else if (padre instanceof miGramaticaParser.If_stmtContext) {
+            Si si = (Si) sentencias.peek();
+            si.condicion = generador.getActual();
+            generador.ramificar(vacia ? null : desapilar(), si.entonces, si.fin);
+            generador.continuarEn(si.entonces);
+        } else if (padre instanceof miGramaticaParser.While_stmtContext) {
+            Mientras mientras = (Mientras) sentencias.peek();
+            generador.ramificar(vacia ? null : desapilar(), mientras.cuerpo, mientras.fin);
+            generador.continuarEn(mientras.cuerpo);
+        } else if (vacia) {
+            // Paréntesis vacíos: la visita también devuelve un operando nulo
+            apilar(null);
+        }
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+        // Al terminar el operando derecho se aplica el operador que lo precede
+        if (numOperadores > 0 && reglasOperador[numOperadores - 1] == ctx.getParent() && activa()) {
+            numOperadores--;
+            reglasOperador[numOperadores] = null;
+            Operando operando2 = desapilar();
+            Operando operando1 = desapilar();
+            if (operadores[numOperadores] == ProgramaIR.DIV && operando2 != null && operando2.inmediato()
+                    && operando2.valor() == 0) {
+                // Solo un literal llega como constante: es una división por cero literal
+                analizador.divisionPorCero(ctx.start.getLine());
+            }
+            int tempVar = generador.nuevaVariable();
+            generador.agregar(operadores[numOperadores], tempVar, operando1, operando2);
+            apilar(Operando.registro(tempVar));
+        }
+    }
+
+    // Sentencias
+
+    @Override
+    public void exitPrint_stmt(miGramaticaParser.Print_stmtContext ctx) {
+        if (activa()) {
+            generador.agregar(ProgramaIR.IMPRIMIR, -1, Operando.registro(generador.registroDeVariable(ctx.simbolo)), null);
+        }
+    }
+
+    @Override
+    public void enterIf_stmt(miGramaticaParser.If_stmtContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Si si = new Si();
+        si.entonces = nuevoBloque();
+        si.fin = nuevoBloque();
+        sentencias.push(si);
+    }
+
+    /**
+     * Abre el bloque del else, con el número que le habría tocado al crearse junto al del if.
+     */
+    private void iniciarElse() {
+        Si si = (Si) sentencias.peek();
+        BloqueBasico bloqueElse = principal.nuevaEtiqueta();
+        enlazarDespues(si.entonces, bloqueElse);
+        if (si.condicion.terminador == BloqueBasico.RAMA) {
+            si.condicion.siFalso = bloqueElse.id;
+        }
+        generador.continuarEn(bloqueElse);
+    }
+
+    @Override
+    public void exitIf_stmt(miGramaticaParser.If_stmtContext ctx) {
+        if (activa()) {
+            generador.continuarEn(((Si) sentencias.pop()).fin);
+        }
+    }
+
+    @Override
+    public void enterWhile_stmt(miGramaticaParser.While_stmtContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Mientras mientras = new Mientras();
+        mientras.condicion = nuevoBloque();
+        mientras.cuerpo = nuevoBloque();
+        mientras.fin = nuevoBloque();
+        sentencias.push(mientras);
+
+        // Evaluar la condición al inicio de cada vuelta
+        generador.getActual().saltar(mientras.condicion.id);
+        generador.continuarEn(mientras.condicion);
+    }
+
+    @Override
+    public void exitWhile_stmt(miGramaticaParser.While_stmtContext ctx) {
+        if (activa()) {
+            generador.continuarEn(((Mientras) sentencias.pop()).fin);
+        }
+    }
+
+    @Override
+    public void enterFor_stmt(miGramaticaParser.For_stmtContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Para para = new Para();
+        para.condicion = nuevoBloque();
+        para.cuerpo = nuevoBloque();
+        para.fin = nuevoBloque();
+        sentencias.push(para);
+    }
+
+    @Override
+    public void enterOptionalExp(miGramaticaParser.OptionalExpContext ctx) {
+        if (activa() && ((Para) sentencias.peek()).expresiones == 2) {
+            // La actualización se genera aparte y se incorpora después del cuerpo
+            generador = new GeneradorCodigo(tablaSimbolos);
+        }
+    }
+
+    @Override
+    public void exitOptionalExp(miGramaticaParser.OptionalExpContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        Para para = (Para) sentencias.peek();
+        boolean vacia = esVacia(ctx);
+        switch (para.expresiones++) {
+            case 0 -> {
+                // Inicialización
+                if (!vacia) {
+                    desapilar();
+                }
+                generador.getActual().saltar(para.condicion.id);
+                generador.continuarEn(para.condicion);
+            }
+            case 1 -> {
+                // Condición
+                generador.ramificar(vacia ? null : desapilar(), para.cuerpo, para.fin);
+                generador.continuarEn(para.cuerpo);
+            }
+            default -> {
+                // Actualización
+                if (!vacia) {
+                    desapilar();
+                    para.actualizacion = new GeneradorCodigo.Fragmento(generador.getPrograma(), generador.getActual().id);
+                }
+                generador = principal;
+            }
+        }
+    }
+
+    @Override
+    public void exitFor_stmt(miGramaticaParser.For_stmtContext ctx) {
+        if (activa()) {
+            generador.continuarEn(((Para) sentencias.pop()).fin);
+        }
+    }
+
+    @Override
+    public void exitCode(miGramaticaParser.CodeContext ctx) {
+        if (!activa()) {
+            return;
+        }
+        // Al cerrar el cuerpo de una sentencia de control se salta a donde sigue
+        ParserRuleContext padre = ctx.getParent();
+        if (padre instanceof miGramaticaParser.If_stmtContext) {
+            generador.getActual().saltar(((Si) sentencias.peek()).fin.id);
+        } else if (padre instanceof miGramaticaParser.If_primeContext) {
+            generador.getActual().saltar(((Si) sentencias.peek()).fin.id);
+        } else if (padre instanceof miGramaticaParser.While_stmtContext) {
+            generador.getActual().saltar(((Mientras) sentencias.peek()).condicion.id);
+        } else if (padre instanceof miGramaticaParser.For_stmtContext) {
+            Para para = (Para) sentencias.peek();
+            if (para.actualizacion != null) {
+                generador.incorporar(para.actualizacion);
+            }
+            generador.getActual().saltar(para.condicion.id);
+        }
+    }
+
+    // Auxiliares
+
+    /**
+     * Indica si una regla que admite la alternativa vacía no consumió ningún token.
+     */
+    private static boolean esVacia(ParserRuleContext ctx) {
+        return ctx.stop == null || ctx.stop.getTokenIndex() < ctx.start.getTokenIndex();
+    }
+
+    /**
+     * Crea un bloque al final del orden de creación.
+     */
+    private BloqueBasico nuevoBloque() {
+        BloqueBasico bloque = principal.nuevaEtiqueta();
+        enlazarDespues(ultimo(), bloque);
+        return bloque;
+    }
+
+    private BloqueBasico ultimo() {
+        return principal.getPrograma().getBloque(ultimoCreado);
+    }
+
+    /**
+     * Ubica un bloque recién creado a continuación de otro en el orden de creación.
+     */
+    private void enlazarDespues(BloqueBasico anterior, BloqueBasico bloque) {
+        if (bloque.id >= siguienteCreado.length) {
+            siguienteCreado = Arrays.copyOf(siguienteCreado, siguienteCreado.length * 2);
+        }
+        siguienteCreado[bloque.id] = siguienteCreado[anterior.id];
+        siguienteCreado[anterior.id] = bloque.id;
+        if (anterior.id == ultimoCreado) {
+            ultimoCreado = bloque.id;
+        } else {
+            reordenado = true;
+        }
+    }
+
+    private void apilar(Operando operando) {
+        asegurarOperandos();
+        operandos[numOperandos] = operando;
+        pendientes[numOperandos] = TablaSimbolos.SIN_SIMBOLO;
+        numOperandos++;
+    }
+
+    /**
+     * Apila una variable cuyo registro virtual se resolverá cuando haga falta.
+     */
+    private void apilarPendiente(int simbolo) {
+        asegurarOperandos();
+        operandos[numOperandos] = null;
+        pendientes[numOperandos] = simbolo;
+        numOperandos++;
+    }
+
+    private void asegurarOperandos() {
+        if (numOperandos == operandos.length) {
+            operandos = Arrays.copyOf(operandos, numOperandos * 2);
+            pendientes = Arrays.copyOf(pendientes, numOperandos * 2);
+        }
+    }
+
+    /**
+     * Desapila un operando, resolviendo antes los pendientes en el orden en que aparecieron.
+     */
+    private Operando desapilar() {
+        resolverPendientes();
+        Operando operando = operandos[--numOperandos];
+        operandos[numOperandos] = null;
+        primerPendiente = Math.min(primerPendiente, numOperandos);
+        return operando;
+    }
+
+    /**
+     * Desapila el destino de una asignación sin darle registro virtual.
+     */
+    private void descartarSinResolver() {
+        numOperandos--;
+        operandos[numOperandos] = null;
+        pendientes[numOperandos] = TablaSimbolos.SIN_SIMBOLO;
+        primerPendiente = Math.min(primerPendiente, numOperandos);
+    }
+
+    /**
+     * Da registro virtual a las variables pendientes de la pila, en el orden en que la visita del
+     * árbol se los habría dado.
+     */
+    private void resolverPendientes() {
+        for (int i = primerPendiente; i < numOperandos; i++) {
+            if (pendientes[i] != TablaSimbolos.SIN_SIMBOLO) {
+                operandos[i] = Operando.registro(generador.registroDeVariable(pendientes[i]));
+                pendientes[i] = TablaSimbolos.SIN_SIMBOLO;
+            }
+        }
+        primerPendiente = numOperandos;
+    }
+
+    private void apilarOperador(ParserRuleContext regla, int op) {
+        if (numOperadores == operadores.length) {
+            operadores = Arrays.copyOf(operadores, numOperadores * 2);
+            reglasOperador = Arrays.copyOf(reglasOperador, numOperadores * 2);
+        }
+        reglasOperador[numOperadores] = regla;
+        operadores[numOperadores] = op;
+        numOperadores++;
+    }
+}
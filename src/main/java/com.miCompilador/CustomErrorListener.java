@@ -1,16 +1,37 @@
 package com.miCompilador;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 public class CustomErrorListener extends BaseErrorListener {
+
+    // Errores de la compilación
+    private final Diagnosticos diagnosticos;
+
+    public CustomErrorListener() {
+        this(new Diagnosticos());
+    }
+
+    public CustomErrorListener(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
+
     @Override
     public void syntaxError(Recognizer<?, ?> recognizer,
                             Object offendingSymbol,
                             int line, int charPositionInLine,
                             String msg,
                             RecognitionException e) {
-        String[] error = msg.split(" ");
-        String message = "Error [Fase Sintáctica]: La línea " + line + " contiene un error en su gramática, falta token " + error[1];
-        System.err.println(message);
+        // La segunda palabra del mensaje de ANTLR ("missing ';' at ..." o "extraneous input ...")
+        int inicio = msg.indexOf(' ') + 1;
+        int fin = msg.indexOf(' ', inicio);
+        diagnosticos.reportar(Diagnosticos.Codigo.GRAMATICA, line, charPositionInLine,
+                inicio == 0 ? msg : msg.substring(inicio, fin < 0 ? msg.length() : fin));
+
+        if (diagnosticos.alcanzoLimite() && recognizer instanceof Parser parser) {
+            // Sin oyentes, para que no reciban las reglas que quedan sin terminar al salir
+            parser.removeParseListeners();
+            throw new ParseCancellationException("Se alcanzó el máximo de errores");
+        }
     }
 }
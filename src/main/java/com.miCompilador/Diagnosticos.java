@@ -0,0 +1,311 @@
+package com.miCompilador;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reúne los errores y las advertencias de las fases léxica, sintáctica y semántica de una compilación.
+ *
+ * <p>Los listeners de ANTLR y el analizador semántico no escriben nada: registran cada error como
+ * un {@link Diagnostico} compacto (fase, código, línea, columna y el lexema o nombre involucrado) y
+ * el texto del mensaje se arma recién al escribirlo. {@link #volcar(PrintStream)} escribe de una
+ * sola vez los errores pendientes, así que un archivo dañado con cientos de miles de errores no
+ * detiene la compilación en la escritura de la consola, línea por línea.</p>
+ *
+ * <p>La cantidad de errores está acotada (ver {@link #setMaximo(int)}): al alcanzar el máximo, los
+ * siguientes se descartan y cada fase consulta {@link #alcanzoLimite()} para terminar antes. Una
+ * instancia pertenece a una sola compilación y no se comparte entre hilos.</p>
+ */
+public class Diagnosticos {
+
+    /**
+     * Cantidad máxima de errores predeterminada, la misma de javac.
+     */
+    public static final int MAXIMO_PREDETERMINADO = 100;
+
+    /**
+     * Fase del compilador que detectó un error.
+     */
+    public enum Fase {
+        LEXICA("Léxica"),
+        SINTACTICA("Sintáctica"),
+        SEMANTICA("Semántica");
+
+        private final String nombre;
+
+        Fase(String nombre) {
+            this.nombre = nombre;
+        }
+
+        /**
+         * Devuelve el nombre de la fase, como aparece en los mensajes.
+         */
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    /**
+     * Gravedad de un diagnóstico: un error detiene la compilación al terminar su fase y una
+     * advertencia no.
+     */
+    public enum Severidad {
+        ERROR("Error"),
+        ADVERTENCIA("Advertencia");
+
+        private final String nombre;
+
+        Severidad(String nombre) {
+            this.nombre = nombre;
+        }
+
+        /**
+         * Devuelve el nombre de la gravedad, como aparece al comienzo de los mensajes.
+         */
+        public String getNombre() {
+            return nombre;
+        }
+    }
+
+    /**
+     * Tipo de diagnóstico, que determina su gravedad y el texto del mensaje.
+     */
+    public enum Codigo {
+        /** Un carácter que no inicia ningún token. El detalle es el texto no reconocido. */
+        LEXEMA_NO_RECONOCIDO(Fase.LEXICA, "lexema no reconocido: "),
+        /** Un identificador de más de 12 letras. El detalle es el identificador. */
+        IDENTIFICADOR_LARGO(Fase.LEXICA, "identificador de más de 12 caracteres: "),
+        /** Un token que no corresponde a la gramática. El detalle es el token esperado o encontrado. */
+        GRAMATICA(Fase.SINTACTICA, "en su gramática, falta token "),
+        /** Un identificador usado antes de ser asignado. El detalle es el identificador. */
+        NO_DECLARADO(Fase.SEMANTICA, "no declarado identificador "),
+        /** Una asignación a algo que no es un identificador, en la compilación en una pasada. */
+        DESTINO_NO_ASIGNABLE(Fase.SEMANTICA, "el destino de la asignación no es un identificador"),
+        /** Una división por un cero literal, que falla solo si se ejecuta. */
+        DIVISION_POR_CERO(Fase.SEMANTICA, Severidad.ADVERTENCIA, "una división por cero");
+
+        private final Fase fase;
+        private final Severidad severidad;
+        private final String texto;
+
+        Codigo(Fase fase, String texto) {
+            this(fase, Severidad.ERROR, texto);
+        }
+
+        Codigo(Fase fase, Severidad severidad, String texto) {
+            this.fase = fase;
+            this.severidad = severidad;
+            this.texto = texto;
+        }
+
+        /**
+         * Devuelve la fase que detecta este tipo de error.
+         */
+        public Fase getFase() {
+            return fase;
+        }
+
+        /**
+         * Devuelve la gravedad de este tipo de diagnóstico.
+         */
+        public Severidad getSeveridad() {
+            return severidad;
+        }
+    }
+
+    /**
+     * Un error o una advertencia registrados.
+     *
+     * @param codigo  El tipo de diagnóstico.
+     * @param linea   La línea, desde 1.
+     * @param columna La columna, desde 0, o -1 si no se conoce.
+     * @param detalle El lexema o el nombre que completa el mensaje, o {@code null}.
+     */
+    public record Diagnostico(Codigo codigo, int linea, int columna, String detalle) {
+
+        /**
+         * Devuelve la fase que detectó el error.
+         */
+        public Fase fase() {
+            return codigo.fase;
+        }
+
+        /**
+         * Indica si es una advertencia, que no detiene la compilación.
+         */
+        public boolean esAdvertencia() {
+            return codigo.severidad == Severidad.ADVERTENCIA;
+        }
+
+        /**
+         * Arma el mensaje del diagnóstico, en el formato de la consola.
+         */
+        public String mensaje() {
+            String mensaje = codigo.severidad.nombre + " [Fase " + codigo.fase.nombre + "]: La línea " + linea + " contiene ";
+            if (esAdvertencia()) {
+                return mensaje + codigo.texto + (detalle != null ? detalle : "");
+            }
+            mensaje += codigo == Codigo.GRAMATICA ? "un error " : "un error, ";
+            return mensaje + codigo.texto + (detalle != null ? detalle : "");
+        }
+    }
+
+    private final List<Diagnostico> diagnosticos = new ArrayList<>();
+    private final int[] porFase = new int[Fase.values().length];
+    private int numErrores = 0;
+    private int maximo = MAXIMO_PREDETERMINADO;
+    private int omitidos = 0;
+
+    // Cantidad de diagnósticos ya escritos por volcar, y si ya se avisó que se alcanzó el límite
+    private int escritos = 0;
+    private boolean limiteAvisado = false;
+
+    /**
+     * Define la cantidad máxima de errores que se registran.
+     *
+     * @param maximo El máximo, o 0 para no limitar.
+     */
+    public void setMaximo(int maximo) {
+        if (maximo < 0) {
+            throw new IllegalArgumentException("La cantidad máxima de errores no puede ser negativa");
+        }
+        this.maximo = maximo;
+    }
+
+    /**
+     * Registra un error o una advertencia. Las advertencias no cuentan para el máximo; un error que
+     * llega después de alcanzarlo solo se cuenta como omitido.
+     *
+     * @param codigo  El tipo de diagnóstico.
+     * @param linea   La línea del diagnóstico.
+     * @param columna La columna del diagnóstico, o -1 si no se conoce.
+     * @param detalle El lexema o nombre que completa el mensaje, o {@code null}.
+     */
+    public void reportar(Codigo codigo, int linea, int columna, String detalle) {
+        if (codigo.severidad == Severidad.ADVERTENCIA) {
+            diagnosticos.add(new Diagnostico(codigo, linea, columna, detalle));
+            return;
+        }
+        if (alcanzoLimite()) {
+            omitidos++;
+            return;
+        }
+        diagnosticos.add(new Diagnostico(codigo, linea, columna, detalle));
+        porFase[codigo.fase.ordinal()]++;
+        numErrores++;
+    }
+
+    /**
+     * Indica si ya se registró la cantidad máxima de errores. Las fases lo consultan para terminar
+     * antes de recorrer el resto de la entrada.
+     */
+    public boolean alcanzoLimite() {
+        return maximo > 0 && numErrores >= maximo;
+    }
+
+    /**
+     * Indica si hay errores de una fase.
+     *
+     * @param fase La fase.
+     * @return {@code true} si se registró al menos un error de la fase.
+     */
+    public boolean hayErrores(Fase fase) {
+        return porFase[fase.ordinal()] > 0;
+    }
+
+    /**
+     * Devuelve los errores y las advertencias registrados, en orden de aparición.
+     */
+    public List<Diagnostico> getDiagnosticos() {
+        return diagnosticos;
+    }
+
+    /**
+     * Devuelve las advertencias registradas, en orden de aparición.
+     */
+    public List<Diagnostico> getAdvertencias() {
+        List<Diagnostico> advertencias = new ArrayList<>();
+        for (Diagnostico diagnostico : diagnosticos) {
+            if (diagnostico.esAdvertencia()) {
+                advertencias.add(diagnostico);
+            }
+        }
+        return advertencias;
+    }
+
+    /**
+     * Devuelve la cantidad de errores descartados por haber alcanzado el máximo.
+     */
+    public int getOmitidos() {
+        return omitidos;
+    }
+
+    /**
+     * Agrega los errores y las advertencias de otra colección, respetando el máximo de esta.
+     *
+     * @param otros Los diagnósticos a agregar.
+     */
+    public void agregar(Diagnosticos otros) {
+        for (Diagnostico diagnostico : otros.diagnosticos) {
+            reportar(diagnostico.codigo(), diagnostico.linea(), diagnostico.columna(), diagnostico.detalle());
+        }
+        omitidos += otros.omitidos;
+    }
+
+    /**
+     * Escribe con una sola operación los diagnósticos registrados desde la escritura anterior y, la
+     * primera vez que se alcanzó el máximo, el aviso correspondiente.
+     *
+     * @param err Flujo de destino.
+     */
+    public void volcar(PrintStream err) {
+        StringBuilder texto = new StringBuilder();
+        for (; escritos < diagnosticos.size(); escritos++) {
+            texto.append(diagnosticos.get(escritos).mensaje()).append(System.lineSeparator());
+        }
+        if (alcanzoLimite() && !limiteAvisado) {
+            limiteAvisado = true;
+            texto.append("Se alcanzó el máximo de ").append(maximo)
+                    .append(" errores (--max-errors): el análisis se detuvo antes del final del archivo.")
+                    .append(System.lineSeparator());
+        }
+        if (!texto.isEmpty()) {
+            err.print(texto);
+            err.flush();
+        }
+    }
+
+    /**
+     * Devuelve los errores y las advertencias en formato JSON.
+     *
+     * @param archivo La ruta del archivo fuente.
+     * @return Un objeto JSON de una sola línea.
+     */
+    public String toJson(String archivo) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"archivo\":").append(MetricasCompilacion.cadenaJson(archivo));
+        json.append(",\"errores\":").append(numErrores);
+        json.append(",\"advertencias\":").append(diagnosticos.size() - numErrores);
+        json.append(",\"omitidos\":").append(omitidos);
+        json.append(",\"limiteAlcanzado\":").append(alcanzoLimite());
+        json.append(",\"diagnosticos\":[");
+        for (int i = 0; i < diagnosticos.size(); i++) {
+            Diagnostico diagnostico = diagnosticos.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"fase\":").append(MetricasCompilacion.cadenaJson(diagnostico.fase().name().toLowerCase()));
+            json.append(",\"severidad\":").append(MetricasCompilacion.cadenaJson(
+                    diagnostico.codigo().getSeveridad().name().toLowerCase()));
+            json.append(",\"codigo\":").append(MetricasCompilacion.cadenaJson(diagnostico.codigo().name()));
+            json.append(",\"linea\":").append(diagnostico.linea());
+            json.append(",\"columna\":").append(diagnostico.columna());
+            json.append(",\"detalle\":").append(diagnostico.detalle() != null
+                    ? MetricasCompilacion.cadenaJson(diagnostico.detalle()) : "null");
+            json.append(",\"mensaje\":").append(MetricasCompilacion.cadenaJson(diagnostico.mensaje())).append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,289 @@
+package com.miCompilador;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Traduce la representación intermedia a bytecode de la JVM, como alternativa a {@link EmisorNASM}.
+ *
+ * <p>El programa completo se vuelve el método {@code ejecutar} de una clase que implementa
+ * {@link ProgramaEjecutable}. Cada registro virtual es una variable local {@code int}, cada bloque
+ * básico una etiqueta y sus saltos y ramas, saltos de la JVM; {@code print} llama a
+ * {@link SalidaNumeros#imprimir(int)}. Con {@link #cargar(byte[])} la clase se define como clase
+ * oculta ({@link MethodHandles.Lookup#defineHiddenClass}) en el propio proceso, de modo que el JIT
+ * de HotSpot compila los ciclos del programa como cualquier otro código Java, y la clase se
+ * descarga cuando deja de usarse.</p>
+ *
+ * <p>La semántica es la del código NASM: enteros de 32 bits con desbordamiento, división truncada
+ * hacia cero y error de ejecución al dividir por cero o desbordar la división. Como la JVM limita
+ * un método a 64 KiB de bytecode, un programa muy grande no se puede traducir.</p>
+ */
+public class EmisorJVM {
+
+    /**
+     * Nombre interno de la clase generada. Debe estar en el paquete de este emisor para poder
+     * definirla como clase oculta desde aquí.
+     */
+    public static final String NOMBRE_CLASE = "com/miCompilador/ProgramaJVM";
+
+    private static final String SALIDA = Type.getInternalName(SalidaNumeros.class);
+    private static final String EMISOR = Type.getInternalName(EmisorJVM.class);
+
+    // Variables locales que no son registros: this y la salida
+    private static final int PRIMER_LOCAL = 2;
+
+    private final ProgramaIR programa;
+
+    /**
+     * Crea el emisor para un programa en representación intermedia.
+     *
+     * @param programa El programa a traducir.
+     */
+    public EmisorJVM(ProgramaIR programa) {
+        this.programa = programa;
+    }
+
+    /**
+     * Genera el archivo de clase del programa.
+     *
+     * @return Los bytes del archivo de clase.
+     * @throws IllegalStateException Si el programa supera los límites de un método de la JVM.
+     */
+    public byte[] emitir() {
+        if (PRIMER_LOCAL + programa.getNumRegistros() > 0xFFFF) {
+            throw new IllegalStateException("El programa tiene demasiadas variables para un método de la JVM");
+        }
+        ClassWriter clase = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        clase.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, NOMBRE_CLASE, null, "java/lang/Object",
+                new String[]{Type.getInternalName(ProgramaEjecutable.class)});
+
+        MethodVisitor constructor = clase.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        MethodVisitor metodo = clase.visitMethod(ACC_PUBLIC, "ejecutar", "(L" + SALIDA + ";)V", null, null);
+        metodo.visitCode();
+        emitirCuerpo(metodo);
+        metodo.visitMaxs(0, 0);
+        metodo.visitEnd();
+        clase.visitEnd();
+
+        try {
+            return clase.toByteArray();
+        } catch (MethodTooLargeException e) {
+            throw new IllegalStateException("El programa es demasiado grande para un método de la JVM ("
+                    + e.getCodeSize() + " bytes de bytecode)", e);
+        }
+    }
+
+    /**
+     * Define la clase generada como clase oculta y crea una instancia.
+     *
+     * @param archivoClase Los bytes producidos por {@link #emitir()}.
+     * @return El programa listo para ejecutar.
+     */
+    public static ProgramaEjecutable cargar(byte[] archivoClase) {
+        try {
+            Class<?> clase = MethodHandles.lookup().defineHiddenClass(archivoClase, true).lookupClass();
+            return (ProgramaEjecutable) clase.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No se pudo cargar la clase generada", e);
+        }
+    }
+
+    /**
+     * División con la semántica de {@code idiv}, que también falla al dividir el menor entero por -1.
+     * La usa el código generado.
+     */
+    static int dividir(int dividendo, int divisor) {
+        if (divisor == 0) {
+            throw new ArithmeticException("El programa produjo una división por cero");
+        }
+        if (divisor == -1 && dividendo == Integer.MIN_VALUE) {
+            throw new ArithmeticException("El programa produjo un desbordamiento en la división");
+        }
+        return dividendo / divisor;
+    }
+
+    private void emitirCuerpo(MethodVisitor m) {
+        List<BloqueBasico> bloques = programa.getBloques();
+        Label[] etiquetas = new Label[programa.getNumBloques()];
+        for (int k = 0; k < etiquetas.length; k++) {
+            etiquetas[k] = new Label();
+        }
+
+        // Las variables empiezan en 0; los demás registros solo si se leen antes de escribirse en su bloque
+        boolean[] inicializar = registrosLeidosSinEscribir(bloques);
+        for (int r = 0; r < inicializar.length; r++) {
+            if (inicializar[r] || programa.getNombre(r) != null) {
+                m.visitInsn(ICONST_0);
+                m.visitVarInsn(ISTORE, PRIMER_LOCAL + r);
+            }
+        }
+
+        for (int i = 0; i < bloques.size(); i++) {
+            BloqueBasico bloque = bloques.get(i);
+            int siguiente = i + 1 < bloques.size() ? bloques.get(i + 1).id : -1;
+            m.visitLabel(etiquetas[bloque.id]);
+
+            for (int j = 0; j < bloque.n; j++) {
+                emitirInstruccion(m, bloque, j);
+            }
+
+            switch (bloque.terminador) {
+                case BloqueBasico.SALTO -> {
+                    if (bloque.siVerdadero != siguiente) {
+                        m.visitJumpInsn(GOTO, etiquetas[bloque.siVerdadero]);
+                    }
+                }
+                case BloqueBasico.RAMA -> {
+                    boolean aInmediato = (bloque.condInmediatos & BloqueBasico.A_INMEDIATO) != 0;
+                    boolean bInmediato = (bloque.condInmediatos & BloqueBasico.B_INMEDIATO) != 0;
+                    if (bloque.siVerdadero == siguiente) {
+                        // Se salta solo cuando la condición no se cumple
+                        saltarSi(m, ProgramaIR.negar(bloque.relacion), bloque.condA, aInmediato,
+                                bloque.condB, bInmediato, etiquetas[bloque.siFalso]);
+                    } else {
+                        saltarSi(m, bloque.relacion, bloque.condA, aInmediato,
+                                bloque.condB, bInmediato, etiquetas[bloque.siVerdadero]);
+                        if (bloque.siFalso != siguiente) {
+                            m.visitJumpInsn(GOTO, etiquetas[bloque.siFalso]);
+                        }
+                    }
+                }
+                default -> m.visitInsn(RETURN);
+            }
+        }
+    }
+
+    private void emitirInstruccion(MethodVisitor m, BloqueBasico bloque, int i) {
+        int op = bloque.op[i];
+        if (op == ProgramaIR.CONTAR) {
+            throw new IllegalStateException("los contadores del perfil de ejecución solo se generan en NASM");
+        }
+        if (op == ProgramaIR.IMPRIMIR) {
+            m.visitVarInsn(ALOAD, 1);
+            cargar(m, bloque.a[i], bloque.aInmediato(i));
+            m.visitMethodInsn(INVOKEVIRTUAL, SALIDA, "imprimir", "(I)V", false);
+            return;
+        }
+
+        cargar(m, bloque.a[i], bloque.aInmediato(i));
+        if (BloqueBasico.usaB(op)) {
+            cargar(m, bloque.b[i], bloque.bInmediato(i));
+        }
+        switch (op) {
+            case ProgramaIR.MOV -> {
+            }
+            case ProgramaIR.ADD -> m.visitInsn(IADD);
+            case ProgramaIR.SUB -> m.visitInsn(ISUB);
+            case ProgramaIR.MUL -> m.visitInsn(IMUL);
+            case ProgramaIR.DIV -> m.visitMethodInsn(INVOKESTATIC, EMISOR, "dividir", "(II)I", false);
+            case ProgramaIR.NEG -> m.visitInsn(INEG);
+            default -> {
+                // Comparación: deja 1 si se cumple y 0 si no
+                Label falso = new Label();
+                Label fin = new Label();
+                m.visitJumpInsn(comparacion(ProgramaIR.negar(op - ProgramaIR.CMP)), falso);
+                m.visitInsn(ICONST_1);
+                m.visitJumpInsn(GOTO, fin);
+                m.visitLabel(falso);
+                m.visitInsn(ICONST_0);
+                m.visitLabel(fin);
+            }
+        }
+        m.visitVarInsn(ISTORE, PRIMER_LOCAL + bloque.destino[i]);
+    }
+
+    /**
+     * Salta a la etiqueta si {@code a <relación> b}. La comparación con un 0 inmediato usa la forma
+     * de un solo operando.
+     */
+    private static void saltarSi(MethodVisitor m, int relacion, int a, boolean aInmediato,
+                                 int b, boolean bInmediato, Label destino) {
+        cargar(m, a, aInmediato);
+        if (bInmediato && b == 0) {
+            m.visitJumpInsn(comparacion(relacion) - (IF_ICMPEQ - IFEQ), destino);
+        } else {
+            cargar(m, b, bInmediato);
+            m.visitJumpInsn(comparacion(relacion), destino);
+        }
+    }
+
+    /**
+     * Devuelve la instrucción {@code if_icmp} que salta cuando se cumple la relación.
+     */
+    private static int comparacion(int relacion) {
+        return switch (relacion) {
+            case ProgramaIR.MENOR -> IF_ICMPLT;
+            case ProgramaIR.MENOR_IGUAL -> IF_ICMPLE;
+            case ProgramaIR.MAYOR -> IF_ICMPGT;
+            case ProgramaIR.MAYOR_IGUAL -> IF_ICMPGE;
+            case ProgramaIR.IGUAL -> IF_ICMPEQ;
+            default -> IF_ICMPNE;
+        };
+    }
+
+    /**
+     * Apila un operando: el valor de una constante o el de la variable local de un registro.
+     */
+    private static void cargar(MethodVisitor m, int operando, boolean inmediato) {
+        if (!inmediato) {
+            m.visitVarInsn(ILOAD, PRIMER_LOCAL + operando);
+        } else if (operando >= -1 && operando <= 5) {
+            m.visitInsn(ICONST_0 + operando);
+        } else if (operando >= Byte.MIN_VALUE && operando <= Byte.MAX_VALUE) {
+            m.visitIntInsn(BIPUSH, operando);
+        } else if (operando >= Short.MIN_VALUE && operando <= Short.MAX_VALUE) {
+            m.visitIntInsn(SIPUSH, operando);
+        } else {
+            m.visitLdcInsn(operando);
+        }
+    }
+
+    /**
+     * Marca los registros que algún bloque lee antes de escribirlos. Son los únicos que el
+     * verificador de la JVM exige inicializar al comienzo del método.
+     */
+    private boolean[] registrosLeidosSinEscribir(List<BloqueBasico> bloques) {
+        boolean[] leidos = new boolean[programa.getNumRegistros()];
+        // Bloque (más uno) en el que se escribió cada registro por última vez
+        int[] escritoEn = new int[leidos.length];
+        for (int k = 0; k < bloques.size(); k++) {
+            BloqueBasico bloque = bloques.get(k);
+            int marca = k + 1;
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i) && escritoEn[bloque.a[i]] != marca) {
+                    leidos[bloque.a[i]] = true;
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i) && escritoEn[bloque.b[i]] != marca) {
+                    leidos[bloque.b[i]] = true;
+                }
+                if (bloque.destino[i] >= 0) {
+                    escritoEn[bloque.destino[i]] = marca;
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0 && escritoEn[bloque.condA] != marca) {
+                    leidos[bloque.condA] = true;
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0 && escritoEn[bloque.condB] != marca) {
+                    leidos[bloque.condB] = true;
+                }
+            }
+        }
+        return leidos;
+    }
+}
@@ -0,0 +1,698 @@
+package com.miCompilador;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Traduce un {@link ProgramaIR} con sus registros ya asignados a código ensamblador NASM de 32 bits.
+ *
+ * <p>Los bloques se emiten en el orden de su disposición. Un salto hacia el bloque que sigue en la
+ * disposición se omite, y solo reciben etiqueta los bloques que son destino de algún salto emitido.</p>
+ *
+ * <p>El código se escribe en un {@link Writer} a medida que se produce, en trozos de a lo sumo un
+ * bloque más {@link #TAMANO_TROZO} caracteres, así que la memoria que usa la emisión no crece con
+ * el tamaño del programa. La sección .bss puede ir primero sin demorar el texto porque la asignación
+ * de registros ya decidió qué variables quedan en memoria antes de emitir la primera instrucción.</p>
+ *
+ * <p>Las instrucciones de los bloques se seleccionan como {@link InstruccionNASM} y se pasan a texto
+ * al final, de modo que un {@link OptimizadorMirilla} puede reescribirlas entre medio. El prólogo y
+ * las funciones auxiliares se escriben directamente como texto.</p>
+ */
+public class EmisorNASM {
+
+    // Caracteres que se acumulan antes de pasarlos al Writer de destino
+    static final int TAMANO_TROZO = 8192;
+
+    // Líneas acumuladas antes de pasarlas por la mirilla
+    static final int LIMITE_MIRILLA = 512;
+
+    // Bytes del búfer de salida de print_number; se vacía con una sola llamada a write
+    static final int TAMANO_BUFFER_SALIDA = 4096;
+
+    /**
+     * Funciones de la biblioteca de ejecución.
+     *
+     * <p>{@code print_number} convierte el número de {@code eax} a decimal con signo, dos cifras por
+     * vuelta (el cociente entre 100 se obtiene multiplicando por su recíproco, sin {@code div}), y lo
+     * agrega con un salto de línea al búfer de salida. Solo llama a {@code write} cuando el búfer no
+     * tiene lugar para otro número, así que imprimir cuesta unas pocas instrucciones. Conserva todos
+     * los registros salvo {@code eax} y {@code edx}, los reservados por la asignación de registros.</p>
+     *
+     * <p>{@code flush_output} escribe lo acumulado en el búfer y lo vacía; la secuencia de salida del
+     * programa la llama antes de terminar. Conserva todos los registros.</p>
+     */
+    private static final String BIBLIOTECA_EJECUCION = """
+
+            ; Funciones auxiliares
+            print_number:
+                push ebx
+                push ecx
+                push esi
+                push edi
+                ; Vaciar el búfer si no entra el número más largo (11 caracteres y el salto de línea)
+                mov edi, [salida_usada]
+                cmp edi, %d
+                jbe print_convertir
+                call flush_output
+                xor edi, edi
+            print_convertir:
+                push eax
+                lea esi, [numero_texto + 11]
+                mov byte [esi], 10
+                ; El valor absoluto se convierte sin signo, lo que también vale para el mínimo entero
+                test eax, eax
+                jns print_pares
+                neg eax
+            print_pares:
+                cmp eax, 100
+                jb print_ultimas
+                ; edx = eax / 100 y ebx = eax %% 100
+                mov ebx, eax
+                mov edx, 0x51EB851F
+                mul edx
+                shr edx, 5
+                imul ecx, edx, 100
+                sub ebx, ecx
+                mov eax, edx
+                movzx ecx, word [digitos_pares + ebx*2]
+                sub esi, 2
+                mov [esi], cx
+                jmp print_pares
+            print_ultimas:
+                cmp eax, 10
+                jb print_una
+                movzx ecx, word [digitos_pares + eax*2]
+                sub esi, 2
+                mov [esi], cx
+                jmp print_signo
+            print_una:
+                add al, '0'
+                dec esi
+                mov [esi], al
+            print_signo:
+                pop eax
+                test eax, eax
+                jns print_copiar
+                dec esi
+                mov byte [esi], '-'
+            print_copiar:
+                ; Copiar el texto al búfer de salida
+                lea ecx, [numero_texto + 12]
+                sub ecx, esi
+                lea edx, [edi + ecx]
+                mov [salida_usada], edx
+                add edi, salida_buffer
+                rep movsb
+                pop edi
+                pop esi
+                pop ecx
+                pop ebx
+                ret
+
+            flush_output:
+                pushad
+                mov edx, [salida_usada]
+                mov ecx, salida_buffer
+            flush_escribir:
+                test edx, edx
+                jz flush_fin
+                mov eax, 4
+                mov ebx, 1
+                int 0x80
+                ; Un error de escritura descarta lo que queda; una escritura parcial se continúa
+                test eax, eax
+                jle flush_fin
+                add ecx, eax
+                sub edx, eax
+                jmp flush_escribir
+            flush_fin:
+                mov dword [salida_usada], 0
+                popad
+                ret
+            """.formatted(TAMANO_BUFFER_SALIDA - 12);
+
+    /**
+     * Función que agrega los contadores de un programa instrumentado al archivo del perfil (ver
+     * {@link PerfilEjecucion}), que la secuencia de salida llama antes de terminar.
+     *
+     * <p>{@code dump_profile} primero vacía la salida del programa y luego abre el archivo para
+     * agregar al final, así que cada ejecución escribe su registro sin pisar los anteriores. Los
+     * contadores se convierten con {@code print_number} en el mismo búfer de salida, que se escribe
+     * en el archivo antes de que {@code print_number} lo vacíe por su cuenta. Si el archivo no se
+     * puede abrir, el programa termina igual, sin perfil.</p>
+     */
+    private static final String BIBLIOTECA_PERFIL = """
+
+            dump_profile:
+                call flush_output
+                ; Abrir el perfil para agregar al final (O_WRONLY | O_CREAT | O_APPEND, permisos 0644)
+                mov eax, 5
+                mov ebx, perfil_ruta
+                mov ecx, 0x441
+                mov edx, 420
+                int 0x80
+                test eax, eax
+                js dump_fin
+                mov [perfil_fd], eax
+                ; Cabecera del registro de esta ejecución
+                mov ecx, perfil_cabecera
+                mov edx, perfil_cabecera_largo
+                call dump_escribir
+                ; Un contador por línea
+                xor esi, esi
+            dump_contador:
+                cmp esi, %d
+                jae dump_cerrar
+                cmp dword [salida_usada], %d
+                jbe dump_numero
+                call dump_vaciar
+            dump_numero:
+                mov eax, [perfil_contadores + esi*4]
+                call print_number
+                inc esi
+                jmp dump_contador
+            dump_cerrar:
+                call dump_vaciar
+                mov eax, 6
+                mov ebx, [perfil_fd]
+                int 0x80
+            dump_fin:
+                ret
+
+            ; Escribe en el perfil el búfer de salida y lo vacía
+            dump_vaciar:
+                mov ecx, salida_buffer
+                mov edx, [salida_usada]
+                mov dword [salida_usada], 0
+            ; Escribe en el perfil los edx bytes desde ecx
+            dump_escribir:
+                test edx, edx
+                jz dump_escrito
+                mov eax, 4
+                mov ebx, [perfil_fd]
+                int 0x80
+                test eax, eax
+                jle dump_escrito
+                add ecx, eax
+                sub edx, eax
+                jmp dump_escribir
+            dump_escrito:
+                ret
+            """;
+
+    // Las cifras de 00, 01, ..., 99 una tras otra: el par del número n empieza en el byte 2n
+    private static final String DIGITOS_PARES = "00010203040506070809101112131415161718192021222324252627282930313233343536373839404142434445464748495051525354555657585960616263646566676869707172737475767778798081828384858687888990919293949596979899";
+
+    private final ProgramaIR programa;
+    private final AsignadorRegistros asignador;
+    private final OptimizadorMirilla optimizador;
+
+    /**
+     * Crea un emisor para un programa.
+     *
+     * @param programa  El programa en representación intermedia.
+     * @param asignador La asignación de registros ya calculada para el programa.
+     */
+    public EmisorNASM(ProgramaIR programa, AsignadorRegistros asignador) {
+        this(programa, asignador, null);
+    }
+
+    /**
+     * Crea un emisor que pasa las instrucciones de los bloques por una optimización de mirilla.
+     *
+     * @param programa    El programa en representación intermedia.
+     * @param asignador   La asignación de registros ya calculada para el programa.
+     * @param optimizador El optimizador de mirilla, o {@code null} para emitir sin optimizar.
+     */
+    public EmisorNASM(ProgramaIR programa, AsignadorRegistros asignador, OptimizadorMirilla optimizador) {
+        this.programa = programa;
+        this.asignador = asignador;
+        this.optimizador = optimizador;
+    }
+
+    /**
+     * Emite la sección de texto del programa (sin el prólogo ni las funciones auxiliares).
+     *
+     * @return El código NASM de los bloques del programa.
+     */
+    public String emitirCodigo() {
+        StringWriter codigo = new StringWriter();
+        try {
+            emitirBloques(codigo, new StringBuilder(TAMANO_TROZO));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter no falla
+        }
+        return codigo.toString();
+    }
+
+    /**
+     * Emite el archivo NASM completo, incluyendo las secciones de datos, bss y texto.
+     *
+     * @return Una cadena que representa el código completo generado.
+     */
+    public String emitir() {
+        StringWriter codigo = new StringWriter();
+        try {
+            emitir(codigo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // StringWriter no falla
+        }
+        return codigo.toString();
+    }
+
+    /**
+     * Escribe el archivo NASM completo en un flujo, a medida que se genera.
+     *
+     * @param salida El flujo de destino. No se cierra ni se vacía.
+     * @return La cantidad de instrucciones escritas, sin contar etiquetas ni comentarios.
+     * @throws IOException Si falla la escritura.
+     */
+    public long emitir(Writer salida) throws IOException {
+        StringBuilder codigoCompleto = new StringBuilder(TAMANO_TROZO);
+
+        // Sección de datos
+        codigoCompleto.append("section .data\n");
+        // Las cifras de los números de 00 a 99, que print_number copia de a dos
+        codigoCompleto.append("digitos_pares db '").append(DIGITOS_PARES).append("'\n");
+        PerfilEjecucion.Instrumentacion instrumentacion = programa.getInstrumentacion();
+        if (instrumentacion != null) {
+            // La cabecera del registro del perfil y la ruta del archivo, terminada en cero
+            codigoCompleto.append("perfil_cabecera db '").append(PerfilEjecucion.CABECERA).append(' ')
+                    .append(PerfilEjecucion.VERSION).append(' ')
+                    .append(String.format("%08x", instrumentacion.huella())).append(' ')
+                    .append(instrumentacion.numContadores()).append("', 10\n");
+            codigoCompleto.append("perfil_cabecera_largo equ $ - perfil_cabecera\n");
+            codigoCompleto.append("perfil_ruta db ").append(cadena(instrumentacion.ruta())).append(", 0\n");
+        }
+
+        // Sección .bss con el búfer de salida y las variables que no quedaron en registros
+        codigoCompleto.append("section .bss\n");
+        codigoCompleto.append("salida_buffer resb ").append(TAMANO_BUFFER_SALIDA).append("\n");
+        codigoCompleto.append("salida_usada resd 1\n");
+        codigoCompleto.append("numero_texto resb 12\n");
+        if (instrumentacion != null) {
+            codigoCompleto.append("perfil_contadores resd ").append(instrumentacion.numContadores()).append("\n");
+            codigoCompleto.append("perfil_fd resd 1\n");
+        }
+        for (int variable : programa.getVariables()) {
+            if (!asignador.enRegistro(variable)) {
+                codigoCompleto.append(programa.getNombre(variable)).append(" resd 1\n");
+                volcarSiLleno(salida, codigoCompleto);
+            }
+        }
+
+        // Sección de código
+        codigoCompleto.append("section .text\n");
+        codigoCompleto.append("global _start\n");
+        codigoCompleto.append("_start:\n");
+
+        // Ubicación de cada variable tras la asignación de registros
+        for (int variable : programa.getVariables()) {
+            if (asignador.enRegistro(variable)) {
+                codigoCompleto.append("    ; ").append(programa.getNombre(variable))
+                        .append(" -> ").append(asignador.ubicacion(variable)).append("\n");
+            }
+        }
+
+        // Reservar las ranuras de pila de los temporales desalojados
+        if (asignador.getNumRanuras() > 0) {
+            codigoCompleto.append("    sub esp, ").append(4 * asignador.getNumRanuras()).append("\n");
+        }
+
+        // Las variables leídas antes de asignarse empiezan en cero, como en .bss
+        BitSet vivos = asignador.getVivosAlInicio();
+        for (int v = vivos.nextSetBit(0); v >= 0; v = vivos.nextSetBit(v + 1)) {
+            if (asignador.enRegistro(v)) {
+                String registro = asignador.ubicacion(v);
+                codigoCompleto.append("    xor ").append(registro).append(", ").append(registro).append("\n");
+            }
+        }
+
+        long instrucciones = emitirBloques(salida, codigoCompleto);
+
+        // Agregar funciones auxiliares
+        codigoCompleto.append(BIBLIOTECA_EJECUCION);
+        if (instrumentacion != null) {
+            codigoCompleto.append(BIBLIOTECA_PERFIL.formatted(instrumentacion.numContadores(), TAMANO_BUFFER_SALIDA - 12));
+        }
+
+        return instrucciones + volcar(salida, codigoCompleto);
+    }
+
+    /**
+     * Emite los bloques del programa en la disposición, pasando el código a la salida cada vez que el
+     * trozo acumulado se llena.
+     *
+     * <p>Con optimización de mirilla, las líneas de los bloques se acumulan en una lista y se optimizan
+     * cada vez que pasan de {@link #LIMITE_MIRILLA}; las últimas líneas quedan en la lista hasta la
+     * siguiente vez, para que las reglas vean las que cruzan el límite entre dos tandas.</p>
+     *
+     * @return La cantidad de instrucciones escritas en la salida, incluidas las que ya había en el trozo.
+     */
+    private long emitirBloques(Writer salida, StringBuilder codigo) throws IOException {
+        List<BloqueBasico> bloques = programa.getBloques();
+
+        // Marcar los bloques que necesitan etiqueta
+        BitSet conEtiqueta = new BitSet(programa.getNumBloques());
+        for (int k = 0; k < bloques.size(); k++) {
+            BloqueBasico bloque = bloques.get(k);
+            int siguiente = k + 1 < bloques.size() ? bloques.get(k + 1).id : -1;
+            if (bloque.terminador == BloqueBasico.SALTO && bloque.siVerdadero != siguiente) {
+                conEtiqueta.set(bloque.siVerdadero);
+            } else if (bloque.terminador == BloqueBasico.RAMA) {
+                if (bloque.siVerdadero != siguiente) {
+                    conEtiqueta.set(bloque.siVerdadero);
+                }
+                if (bloque.siFalso != siguiente) {
+                    conEtiqueta.set(bloque.siFalso);
+                }
+            }
+        }
+
+        long instrucciones = 0;
+        List<InstruccionNASM> pendientes = new ArrayList<>();
+        for (int k = 0; k < bloques.size(); k++) {
+            BloqueBasico bloque = bloques.get(k);
+            int siguiente = k + 1 < bloques.size() ? bloques.get(k + 1).id : -1;
+            if (conEtiqueta.get(bloque.id)) {
+                pendientes.add(InstruccionNASM.etiqueta(etiqueta(bloque.id)));
+            }
+            for (int i = 0; i < bloque.n; i++) {
+                emitirInstruccion(pendientes, bloque, i);
+            }
+            emitirTerminador(pendientes, bloque, siguiente);
+            if (optimizador == null) {
+                instrucciones += escribir(salida, codigo, pendientes, pendientes.size());
+            } else if (pendientes.size() >= LIMITE_MIRILLA) {
+                optimizador.optimizar(pendientes);
+                instrucciones += escribir(salida, codigo, pendientes, inicioDeLaCola(pendientes));
+            }
+        }
+        if (optimizador != null) {
+            optimizador.optimizar(pendientes);
+        }
+        instrucciones += escribir(salida, codigo, pendientes, pendientes.size());
+        return instrucciones + volcar(salida, codigo);
+    }
+
+    /**
+     * Devuelve la posición desde la que las líneas pendientes todavía pueden cambiar al agregar más:
+     * la ventana que empiece antes de ella ya vio todas sus líneas.
+     */
+    private int inicioDeLaCola(List<InstruccionNASM> pendientes) {
+        int restantes = optimizador.getVentana() - 1;
+        int inicio = pendientes.size();
+        while (inicio > 0 && restantes > 0) {
+            inicio--;
+            if (pendientes.get(inicio).tipo() != InstruccionNASM.COMENTARIO) {
+                restantes--;
+            }
+        }
+        return inicio;
+    }
+
+    /**
+     * Pasa a texto las primeras líneas pendientes y las quita de la lista.
+     *
+     * @return La cantidad de instrucciones escritas en la salida.
+     */
+    private static long escribir(Writer salida, StringBuilder codigo, List<InstruccionNASM> pendientes,
+                                 int cantidad) throws IOException {
+        long instrucciones = 0;
+        for (int i = 0; i < cantidad; i++) {
+            pendientes.get(i).escribir(codigo);
+            instrucciones += volcarSiLleno(salida, codigo);
+        }
+        pendientes.subList(0, cantidad).clear();
+        return instrucciones;
+    }
+
+    /**
+     * Pasa el trozo acumulado a la salida si alcanzó {@link #TAMANO_TROZO}.
+     *
+     * @return La cantidad de instrucciones escritas.
+     */
+    private static long volcarSiLleno(Writer salida, StringBuilder codigo) throws IOException {
+        return codigo.length() >= TAMANO_TROZO ? volcar(salida, codigo) : 0;
+    }
+
+    /**
+     * Pasa el trozo acumulado a la salida y lo vacía.
+     *
+     * @return La cantidad de instrucciones escritas.
+     */
+    private static long volcar(Writer salida, StringBuilder codigo) throws IOException {
+        long instrucciones = contarInstrucciones(codigo);
+        salida.append(codigo);
+        codigo.setLength(0);
+        return instrucciones;
+    }
+
+    /**
+     * Cuenta las instrucciones de un texto NASM: las líneas sangradas que no son comentarios.
+     */
+    static long contarInstrucciones(CharSequence codigo) {
+        long cantidad = 0;
+        int inicio = 0;
+        while (inicio < codigo.length()) {
+            int fin = inicio;
+            while (fin < codigo.length() && codigo.charAt(fin) != '\n') {
+                fin++;
+            }
+            // Las instrucciones y los comentarios van sangrados con cuatro espacios; las etiquetas no
+            if (fin - inicio > 4 && codigo.charAt(inicio) == ' ' && codigo.charAt(inicio + 4) != ';') {
+                cantidad++;
+            }
+            inicio = fin + 1;
+        }
+        return cantidad;
+    }
+
+    /**
+     * Devuelve el nombre de la etiqueta de un bloque.
+     */
+    static String etiqueta(int bloque) {
+        return "etiqueta_" + bloque;
+    }
+
+    /**
+     * Devuelve una cadena como operando de {@code db}: entre comillas si sus caracteres se pueden
+     * escribir así, y si no como la lista de sus bytes en UTF-8.
+     */
+    static String cadena(String texto) {
+        if (texto.chars().allMatch(c -> c >= ' ' && c <= '~' && c != '\'')) {
+            return "'" + texto + "'";
+        }
+        StringJoiner bytes = new StringJoiner(", ");
+        for (byte b : texto.getBytes(StandardCharsets.UTF_8)) {
+            bytes.add(Integer.toString(b & 0xFF));
+        }
+        return bytes.toString();
+    }
+
+    /**
+     * Devuelve el operando NASM de un registro virtual o de una constante.
+     */
+    private String texto(int operando, boolean inmediato) {
+        return inmediato ? Integer.toString(operando) : asignador.ubicacion(operando);
+    }
+
+    /**
+     * Indica si el operando es una referencia a memoria después de la asignación de registros.
+     */
+    private boolean enMemoria(int operando, boolean inmediato) {
+        return !inmediato && !asignador.enRegistro(operando);
+    }
+
+    /**
+     * Agrega una instrucción a la lista de líneas.
+     */
+    private static void agregar(List<InstruccionNASM> codigo, String mnemonico, String destino, String fuente) {
+        codigo.add(InstruccionNASM.instruccion(mnemonico, destino, fuente));
+    }
+
+    /**
+     * Agrega un comentario a la lista de líneas.
+     */
+    private static void comentar(List<InstruccionNASM> codigo, String texto) {
+        codigo.add(InstruccionNASM.comentario(texto));
+    }
+
+    /**
+     * Traduce una instrucción de la representación intermedia a NASM.
+     */
+    private void emitirInstruccion(List<InstruccionNASM> codigo, BloqueBasico bloque, int i) {
+        int op = bloque.op[i];
+        int destino = bloque.destino[i];
+        boolean aInm = bloque.aInmediato(i);
+        boolean bInm = bloque.bInmediato(i);
+        String a = texto(bloque.a[i], aInm);
+        String b = BloqueBasico.usaB(op) ? texto(bloque.b[i], bInm) : null;
+        if (ProgramaIR.esComparacion(op)) {
+            comentar(codigo, "Comparación");
+            comparar(codigo, bloque.a[i], aInm, bloque.b[i], bInm);
+            agregar(codigo, "set" + condicion(op - ProgramaIR.CMP), "al", null);
+            if (asignador.enRegistro(destino)) {
+                agregar(codigo, "movzx", asignador.ubicacion(destino), "al");
+            } else {
+                agregar(codigo, "movzx", "eax", "al");
+                agregar(codigo, "mov", asignador.ubicacion(destino), "eax");
+            }
+            return;
+        }
+        switch (op) {
+            case ProgramaIR.MOV -> {
+                comentar(codigo, "Asignación");
+                mover(codigo, destino, bloque.a[i], aInm);
+            }
+            case ProgramaIR.ADD, ProgramaIR.SUB, ProgramaIR.MUL -> {
+                comentar(codigo, op == ProgramaIR.MUL ? "Operación Multiplicativa" : "Operación Aditiva");
+                String mnemonico = op == ProgramaIR.ADD ? "add" : op == ProgramaIR.SUB ? "sub" : "imul";
+                String d = asignador.ubicacion(destino);
+                boolean destinoEnRegistro = asignador.enRegistro(destino);
+                if (destinoEnRegistro && d.equals(b) && op != ProgramaIR.SUB) {
+                    // El destino ya contiene el segundo operando y la operación es conmutativa
+                    agregar(codigo, mnemonico, d, a);
+                } else if (destinoEnRegistro && !d.equals(b)) {
+                    mover(codigo, destino, bloque.a[i], aInm);
+                    agregar(codigo, mnemonico, d, b);
+                } else {
+                    agregar(codigo, "mov", "eax", a);
+                    agregar(codigo, mnemonico, "eax", b);
+                    agregar(codigo, "mov", d, "eax");
+                }
+            }
+            case ProgramaIR.DIV -> {
+                comentar(codigo, "Operación Multiplicativa");
+                comentar(codigo, "División");
+                agregar(codigo, "mov", "eax", a);
+                agregar(codigo, "cdq", null, null); // Extiende eax a edx:eax
+                if (bInm) {
+                    // idiv no admite inmediatos: el divisor pasa por la pila
+                    agregar(codigo, "push", "dword " + b, null);
+                    agregar(codigo, "idiv", "dword [esp]", null);
+                    agregar(codigo, "add", "esp", "4");
+                } else {
+                    agregar(codigo, "idiv", (enMemoria(bloque.b[i], false) ? "dword " : "") + b, null);
+                }
+                agregar(codigo, "mov", asignador.ubicacion(destino), "eax");
+            }
+            case ProgramaIR.NEG -> {
+                comentar(codigo, "Negación");
+                if (asignador.enRegistro(destino)) {
+                    mover(codigo, destino, bloque.a[i], aInm);
+                    agregar(codigo, "neg", asignador.ubicacion(destino), null);
+                } else {
+                    agregar(codigo, "mov", "eax", a);
+                    agregar(codigo, "neg", "eax", null);
+                    agregar(codigo, "mov", asignador.ubicacion(destino), "eax");
+                }
+            }
+            case ProgramaIR.CONTAR -> {
+                comentar(codigo, "Contador del perfil");
+                agregar(codigo, "inc", "dword [perfil_contadores + " + 4 * bloque.a[i] + "]", null);
+            }
+            case ProgramaIR.IMPRIMIR -> {
+                comentar(codigo, "Imprimir variable");
+                agregar(codigo, "mov", "eax", a);
+                agregar(codigo, "call", "print_number", null);
+            }
+            default -> throw new IllegalStateException("Instrucción desconocida: " + op);
+        }
+    }
+
+    /**
+     * Traduce el terminador de un bloque, omitiendo el salto hacia el bloque siguiente en la disposición.
+     */
+    private void emitirTerminador(List<InstruccionNASM> codigo, BloqueBasico bloque, int siguiente) {
+        switch (bloque.terminador) {
+            case BloqueBasico.SALTO -> {
+                if (bloque.siVerdadero != siguiente) {
+                    agregar(codigo, "jmp", etiqueta(bloque.siVerdadero), null);
+                }
+            }
+            case BloqueBasico.RAMA -> {
+                comentar(codigo, "Condición");
+                boolean aInm = (bloque.condInmediatos & BloqueBasico.A_INMEDIATO) != 0;
+                boolean bInm = (bloque.condInmediatos & BloqueBasico.B_INMEDIATO) != 0;
+                comparar(codigo, bloque.condA, aInm, bloque.condB, bInm);
+                if (bloque.siVerdadero == siguiente) {
+                    agregar(codigo, "j" + condicion(ProgramaIR.negar(bloque.relacion)), etiqueta(bloque.siFalso), null);
+                } else {
+                    agregar(codigo, "j" + condicion(bloque.relacion), etiqueta(bloque.siVerdadero), null);
+                    if (bloque.siFalso != siguiente) {
+                        agregar(codigo, "jmp", etiqueta(bloque.siFalso), null);
+                    }
+                }
+            }
+            default -> {
+                // Salir del programa
+                comentar(codigo, "Salir del programa");
+                if (programa.getInstrumentacion() != null) {
+                    agregar(codigo, "call", "dump_profile", null);
+                }
+                agregar(codigo, "call", "flush_output", null);
+                agregar(codigo, "mov", "eax", "1");
+                agregar(codigo, "mov", "ebx", "0");
+                agregar(codigo, "int", "0x80", null);
+            }
+        }
+    }
+
+    /**
+     * Emite la comparación entre dos operandos, pasando por eax cuando cmp no admite la combinación.
+     */
+    private void comparar(List<InstruccionNASM> codigo, int a, boolean aInm, int b, boolean bInm) {
+        String textoA = texto(a, aInm);
+        String textoB = texto(b, bInm);
+        if (aInm || (enMemoria(a, aInm) && enMemoria(b, bInm))) {
+            agregar(codigo, "mov", "eax", textoA);
+            agregar(codigo, "cmp", "eax", textoB);
+        } else if (enMemoria(a, aInm) && bInm) {
+            agregar(codigo, "cmp", "dword " + textoA, textoB);
+        } else {
+            agregar(codigo, "cmp", textoA, textoB);
+        }
+    }
+
+    /**
+     * Devuelve el sufijo de condición de x86 (para jcc y setcc) de una relación con signo.
+     */
+    static String condicion(int relacion) {
+        return switch (relacion) {
+            case ProgramaIR.MENOR -> "l";
+            case ProgramaIR.MENOR_IGUAL -> "le";
+            case ProgramaIR.MAYOR -> "g";
+            case ProgramaIR.MAYOR_IGUAL -> "ge";
+            case ProgramaIR.IGUAL -> "e";
+            default -> "ne";
+        };
+    }
+
+    /**
+     * Copia un operando a la ubicación de un registro virtual, pasando por eax si ambos están en memoria.
+     */
+    private void mover(List<InstruccionNASM> codigo, int destino, int origen, boolean origenInmediato) {
+        String d = asignador.ubicacion(destino);
+        String o = texto(origen, origenInmediato);
+        if (d.equals(o)) {
+            return;
+        }
+        boolean destinoEnMemoria = !asignador.enRegistro(destino);
+        if (destinoEnMemoria && enMemoria(origen, origenInmediato)) {
+            agregar(codigo, "mov", "eax", o);
+            agregar(codigo, "mov", d, "eax");
+        } else if (destinoEnMemoria && origenInmediato) {
+            agregar(codigo, "mov", "dword " + d, o);
+        } else {
+            agregar(codigo, "mov", d, o);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Flujo de caracteres de ANTLR sobre un archivo mapeado en memoria, para compilar archivos grandes.
+ *
+ * <p>{@code CharStreams.fromPath} decodifica el archivo completo en un arreglo de puntos de código,
+ * cuatro bytes por carácter en el heap. Como el lenguaje solo usa caracteres ASCII, este flujo lee
+ * cada byte del archivo como un carácter directamente del mapeo, que queda fuera del heap y del que
+ * el sistema operativo carga solo las páginas que se recorren. Un byte que no es ASCII se entrega tal
+ * cual y el lexer lo reporta como un lexema no reconocido.</p>
+ *
+ * <p>El texto de los tokens se extrae del mapeo cuando se pide, así que el flujo debe seguir
+ * accesible mientras se usen los tokens.</p>
+ */
+public class FlujoArchivoMapeado implements CharStream {
+
+    private final ByteBuffer contenido;
+    private final int tamano;
+    private final String nombre;
+
+    // Posición del próximo carácter a consumir
+    private int posicion = 0;
+
+    private FlujoArchivoMapeado(ByteBuffer contenido, String nombre) {
+        this.contenido = contenido;
+        this.tamano = contenido.limit();
+        this.nombre = nombre;
+    }
+
+    /**
+     * Mapea un archivo en memoria para leerlo como flujo de caracteres.
+     *
+     * @param archivo Ruta del archivo fuente.
+     * @return El flujo sobre el archivo.
+     * @throws IOException Si no se puede abrir o mapear el archivo, o si supera los 2 GiB que admiten
+     *                     los índices de un {@link CharStream}.
+     */
+    public static FlujoArchivoMapeado abrir(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano > Integer.MAX_VALUE) {
+                throw new IOException("El archivo " + archivo + " es demasiado grande (" + tamano + " bytes)");
+            }
+            // El mapeo sigue siendo válido después de cerrar el canal
+            return new FlujoArchivoMapeado(canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano), archivo.toString());
+        }
+    }
+
+    @Override
+    public void consume() {
+        if (posicion >= tamano) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        posicion++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0; // Indefinido
+        }
+        int indice = i > 0 ? posicion + i - 1 : posicion + i;
+        if (indice < 0 || indice >= tamano) {
+            return IntStream.EOF;
+        }
+        return contenido.get(indice) & 0xFF;
+    }
+
+    @Override
+    public int mark() {
+        // Todo el archivo está disponible, no hace falta retener nada
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return posicion;
+    }
+
+    @Override
+    public void seek(int index) {
+        posicion = Math.min(index, tamano);
+    }
+
+    @Override
+    public int size() {
+        return tamano;
+    }
+
+    @Override
+    public String getSourceName() {
+        return nombre;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int inicio = interval.a;
+        int fin = Math.min(interval.b, tamano - 1);
+        if (inicio < 0 || inicio > fin) {
+            return "";
+        }
+        byte[] texto = new byte[fin - inicio + 1];
+        contenido.get(inicio, texto);
+        return new String(texto, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, tamano - 1));
+    }
+}
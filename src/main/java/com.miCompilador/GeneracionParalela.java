@@ -0,0 +1,128 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Genera el código intermedio de un árbol en paralelo, por tramos de sentencias de nivel superior.
+ *
+ * <p>Las sentencias de nivel superior se reparten en tramos consecutivos de un tamaño parecido,
+ * medido en tokens. Cada tramo se traduce en una tarea de un {@link ForkJoinPool} con su propio
+ * {@link GeneradorCodigo} (ver {@link GeneradorCodigo#generarFragmento(List, TablaSimbolos)}): sus
+ * bloques y registros virtuales se numeran desde cero, así que los tramos no comparten nada más que
+ * el árbol y la tabla de símbolos, que solo se leen. Luego los fragmentos se incorporan al programa
+ * en el orden de los tramos con {@link GeneradorCodigo#incorporar(GeneradorCodigo.Fragmento)}, que
+ * renumera las etiquetas y los temporales y une las variables por nombre, como en la compilación
+ * incremental. Cada tramo crea sus bloques y registros en el mismo orden que la visita secuencial,
+ * de modo que el programa, y con él el código NASM, es idéntico al de {@link GeneradorCodigo#visit}
+ * sin importar cuántos tramos haya.</p>
+ *
+ * <p>El hilo que llama incorpora cada tramo apenas termina, mientras los hilos del pool siguen con
+ * los siguientes. Un programa con menos de {@link #TOKENS_MINIMOS_POR_TRAMO} tokens por tramo
+ * posible se genera con la visita secuencial: las tareas no compensarían su costo.</p>
+ */
+public class GeneracionParalela {
+
+    /**
+     * Tamaño mínimo de un tramo, en tokens.
+     */
+    static final int TOKENS_MINIMOS_POR_TRAMO = 4096;
+
+    /**
+     * Tramos por hilo, para repartir la carga aunque las sentencias tengan tamaños muy distintos.
+     */
+    static final int TRAMOS_POR_HILO = 4;
+
+    private final ForkJoinPool pool;
+    private int numTramos = 0;
+
+    /**
+     * Crea una generación que reparte los tramos en un pool.
+     *
+     * @param pool El pool en el que se generan los tramos.
+     */
+    public GeneracionParalela(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Genera el código intermedio de un árbol ya analizado.
+     *
+     * @param arbol         El árbol de la regla {@code program}.
+     * @param tablaSimbolos La tabla de símbolos del análisis semántico del árbol.
+     * @return El generador con el programa completo.
+     */
+    public GeneradorCodigo generar(ParseTree arbol, TablaSimbolos tablaSimbolos) {
+        GeneradorCodigo generador = new GeneradorCodigo(tablaSimbolos);
+        List<List<miGramaticaParser.DeclarationContext>> tramos = arbol instanceof miGramaticaParser.ProgramContext programa
+                ? repartir(programa.code().declaration()) : List.of();
+        numTramos = tramos.size();
+        if (numTramos <= 1) {
+            generador.visit(arbol);
+            return generador;
+        }
+
+        List<ForkJoinTask<GeneradorCodigo.Fragmento>> tareas = new ArrayList<>(numTramos);
+        for (List<miGramaticaParser.DeclarationContext> tramo : tramos) {
+            tareas.add(pool.submit(() -> GeneradorCodigo.generarFragmento(tramo, tablaSimbolos)));
+        }
+        try {
+            for (ForkJoinTask<GeneradorCodigo.Fragmento> tarea : tareas) {
+                generador.incorporar(tarea.join());
+            }
+        } finally {
+            for (ForkJoinTask<GeneradorCodigo.Fragmento> tarea : tareas) {
+                tarea.cancel(false);
+            }
+        }
+        return generador;
+    }
+
+    /**
+     * Reparte las sentencias en tramos consecutivos de una cantidad parecida de tokens.
+     */
+    private List<List<miGramaticaParser.DeclarationContext>> repartir(
+            List<miGramaticaParser.DeclarationContext> sentencias) {
+        long totalTokens = 0;
+        for (miGramaticaParser.DeclarationContext sentencia : sentencias) {
+            totalTokens += tokens(sentencia);
+        }
+        long maximoTramos = (long) (pool.getParallelism() + 1) * TRAMOS_POR_HILO;
+        long cantidad = Math.min(totalTokens / TOKENS_MINIMOS_POR_TRAMO, maximoTramos);
+        if (cantidad <= 1) {
+            return List.of();
+        }
+
+        List<List<miGramaticaParser.DeclarationContext>> tramos = new ArrayList<>();
+        long porTramo = (totalTokens + cantidad - 1) / cantidad;
+        int desde = 0;
+        long acumulados = 0;
+        for (int k = 0; k < sentencias.size(); k++) {
+            acumulados += tokens(sentencias.get(k));
+            if (acumulados >= porTramo || k == sentencias.size() - 1) {
+                tramos.add(sentencias.subList(desde, k + 1));
+                desde = k + 1;
+                acumulados = 0;
+            }
+        }
+        return tramos;
+    }
+
+    /**
+     * Devuelve la cantidad de tokens de una sentencia.
+     */
+    private static long tokens(miGramaticaParser.DeclarationContext sentencia) {
+        return sentencia.getStop().getTokenIndex() - sentencia.getStart().getTokenIndex() + 1;
+    }
+
+    /**
+     * Devuelve la cantidad de tramos de la última generación, o 0 si se generó en forma secuencial.
+     */
+    public int getNumTramos() {
+        return numTramos > 1 ? numTramos : 0;
+    }
+}
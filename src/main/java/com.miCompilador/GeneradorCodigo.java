@@ -1,268 +1,604 @@
 package com.miCompilador;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * La clase GeneradorCodigo extiende miGramaticaBaseVisitor para generar código basado en el árbol
  * de sintaxis analizado por ANTLR.
+ *
+ * <p>La visita traduce el árbol a un {@link ProgramaIR}: código de tres direcciones sobre registros
+ * virtuales, agrupado en bloques básicos con su grafo de flujo de control. Al pedir el código,
+ * {@link AsignadorRegistros} reparte los registros virtuales entre los registros físicos y
+ * {@link EmisorNASM} escribe el texto NASM.</p>
+ *
+ * <p>Los identificadores se resuelven con el número de símbolo que el análisis semántico dejó en
+ * cada nodo, así que el árbol debe haber pasado antes por un {@link AnalizadorSemantico} cuya
+ * tabla de símbolos es la que recibe el generador.</p>
  */
-public class GeneradorCodigo extends miGramaticaBaseVisitor<String> {
+public class GeneradorCodigo extends miGramaticaBaseVisitor<Operando> {
+
+    private final ProgramaIR programa = new ProgramaIR();
+    private final TablaSimbolos tablaSimbolos;
+
+    // Registro virtual de cada símbolo, o -1 si la variable todavía no apareció en el código
+    private int[] registros;
+
+    // Bloque en el que se agregan las instrucciones
+    private BloqueBasico actual;
+
+    // Resultado de la asignación de registros, calculado al pedir el código
+    private AsignadorRegistros asignador;
+
+    // Optimización de mirilla del código NASM, o null para emitirlo sin optimizar
+    private OptimizadorMirilla optimizadorMirilla;
 
-    private StringBuilder codigo = new StringBuilder();
-    private Map<String, Integer> tablaVariables = new HashMap<>();
-    private int contadorEtiquetas = 0;
-    private int contadorVariables = 0;
+    // Valor del último nodo cuya visita terminó, que recibe la regla que lo esperaba
+    private Operando ultimo;
+
+    /**
+     * Crea un generador para un árbol ya analizado.
+     *
+     * @param tablaSimbolos La tabla de símbolos del análisis semántico del árbol.
+     */
+    public GeneradorCodigo(TablaSimbolos tablaSimbolos) {
+        this.tablaSimbolos = tablaSimbolos;
+        this.registros = new int[Math.max(16, tablaSimbolos.getNumSimbolos())];
+        Arrays.fill(registros, -1);
+        actual = programa.nuevoBloque();
+        programa.ubicar(actual);
+    }
 
-    // Lista de variables globales para la sección .bss
-    private List<String> variablesGlobales = new ArrayList<>();
+    /**
+     * Código intermedio de una sola sentencia de nivel superior, generado de forma aislada.
+     *
+     * <p>Los bloques y registros virtuales del fragmento están numerados desde cero: el bloque 0 es
+     * el bloque en el que la sentencia empieza y los registros con nombre son las variables que
+     * menciona. {@link #incorporar(Fragmento)} los renumera al agregarlo a un programa.</p>
+     *
+     * @param programa    El código intermedio de la sentencia.
+     * @param bloqueFinal El bloque en el que continúa la sentencia siguiente.
+     */
+    public record Fragmento(ProgramaIR programa, int bloqueFinal) {
+    }
+
+    /**
+     * Genera el fragmento de una sentencia de nivel superior sin depender de las anteriores.
+     *
+     * @param sentencia     El árbol de la sentencia.
+     * @param tablaSimbolos La tabla de símbolos del análisis semántico de la sentencia.
+     * @return El fragmento generado.
+     */
+    public static Fragmento generarFragmento(miGramaticaParser.DeclarationContext sentencia,
+                                             TablaSimbolos tablaSimbolos) {
+        return generarFragmento(List.of(sentencia), tablaSimbolos);
+    }
 
     /**
-     * Obtiene el código generado hasta el momento.
+     * Genera el fragmento de varias sentencias de nivel superior consecutivas, visitadas en orden
+     * como si empezaran el programa. La tabla de símbolos solo se lee, así que varios hilos pueden
+     * generar fragmentos con la misma tabla.
+     *
+     * @param sentencias    Los árboles de las sentencias, en orden.
+     * @param tablaSimbolos La tabla de símbolos del análisis semántico de las sentencias.
+     * @return El fragmento generado.
+     */
+    public static Fragmento generarFragmento(List<? extends ParseTree> sentencias, TablaSimbolos tablaSimbolos) {
+        GeneradorCodigo generador = new GeneradorCodigo(tablaSimbolos);
+        for (ParseTree sentencia : sentencias) {
+            generador.visit(sentencia);
+        }
+        return new Fragmento(generador.programa, generador.actual.id);
+    }
+
+    /**
+     * Agrega un fragmento al final del programa, como si se hubiera visitado aquí la sentencia de la
+     * que proviene. Los bloques y los registros virtuales se crean en el mismo orden que en la
+     * visita, de modo que el resultado es idéntico.
+     *
+     * @param fragmento El fragmento a incorporar.
+     */
+    public void incorporar(Fragmento fragmento) {
+        ProgramaIR origen = fragmento.programa();
+
+        // Renumerar registros: los temporales son nuevos y las variables se buscan por nombre
+        int[] registros = new int[origen.getNumRegistros()];
+        for (int r = 0; r < registros.length; r++) {
+            String nombre = origen.getNombre(r);
+            registros[r] = nombre == null ? nuevaVariable() : registroDeVariable(tablaSimbolos.simbolo(nombre));
+        }
+
+        // Renumerar bloques: el bloque 0 continúa el bloque actual
+        BloqueBasico[] bloques = new BloqueBasico[origen.getNumBloques()];
+        bloques[0] = actual;
+        for (int k = 1; k < bloques.length; k++) {
+            bloques[k] = nuevaEtiqueta();
+        }
+
+        for (int k = 0; k < bloques.length; k++) {
+            BloqueBasico desde = origen.getBloque(k);
+            BloqueBasico hacia = bloques[k];
+            for (int i = 0; i < desde.n; i++) {
+                int op = desde.op[i];
+                int dest = desde.destino[i] < 0 ? -1 : registros[desde.destino[i]];
+                int a = desde.aInmediato(i) ? desde.a[i] : registros[desde.a[i]];
+                int b = !BloqueBasico.usaB(op) || desde.bInmediato(i) ? desde.b[i] : registros[desde.b[i]];
+                hacia.agregar(op, dest, a, desde.inmediatos[i], b);
+            }
+            if (desde.terminador == BloqueBasico.SALTO) {
+                hacia.saltar(bloques[desde.siVerdadero].id);
+            } else if (desde.terminador == BloqueBasico.RAMA) {
+                int a = (desde.condInmediatos & BloqueBasico.A_INMEDIATO) != 0 ? desde.condA : registros[desde.condA];
+                int b = (desde.condInmediatos & BloqueBasico.B_INMEDIATO) != 0 ? desde.condB : registros[desde.condB];
+                hacia.ramificar(desde.relacion, a, b, desde.condInmediatos,
+                        bloques[desde.siVerdadero].id, bloques[desde.siFalso].id);
+            }
+        }
+
+        // La disposición del fragmento sigue a la del programa (su primer bloque ya está ubicado)
+        List<BloqueBasico> disposicion = origen.getBloques();
+        for (int k = 1; k < disposicion.size(); k++) {
+            programa.ubicar(bloques[disposicion.get(k).id]);
+        }
+        actual = bloques[fragmento.bloqueFinal()];
+    }
+
+    /**
+     * Devuelve el bloque en el que se están agregando las instrucciones.
+     */
+    BloqueBasico getActual() {
+        return actual;
+    }
+
+    /**
+     * Pasa el código NASM de los bloques por una optimización de mirilla antes de escribirlo.
+     *
+     * @param optimizador El optimizador, o {@code null} para emitir sin optimizar.
+     */
+    public void setOptimizadorMirilla(OptimizadorMirilla optimizador) {
+        this.optimizadorMirilla = optimizador;
+    }
+
+    /**
+     * Devuelve el programa en representación intermedia generado hasta el momento.
+     */
+    public ProgramaIR getPrograma() {
+        return programa;
+    }
+
+    /**
+     * Obtiene el código de la sección de texto generado hasta el momento.
      *
      * @return Una cadena que representa el código generado.
      */
     public String getCodigo() {
-        return codigo.toString();
+        asignarRegistros();
+        return new EmisorNASM(programa, asignador, optimizadorMirilla).emitirCodigo();
     }
 
     // Métodos auxiliares para generar etiquetas y manejar variables
     /**
-     * Genera una nueva etiqueta única.
+     * Genera un nuevo bloque básico, cuya etiqueta es única.
      *
-     * @return El nombre de la nueva etiqueta.
+     * @return El bloque creado, todavía fuera de la disposición.
      */
-    private String nuevaEtiqueta() {
-        return "etiqueta_" + (contadorEtiquetas++);
+    BloqueBasico nuevaEtiqueta() {
+        return programa.nuevoBloque();
     }
 
     /**
-     * Genera una nueva variable única.
+     * Genera un nuevo registro virtual para un resultado intermedio.
      *
-     * @return El nombre de la nueva variable.
+     * @return El número del nuevo registro virtual.
      */
-    private String nuevaVariable() {
-        return "var_" + (contadorVariables++);
+    int nuevaVariable() {
+        return programa.nuevoRegistro();
     }
 
-    @Override
-    public String visitAssignmentExp(miGramaticaParser.AssignmentExpContext ctx) {
-        if (ctx.ASSIGN() != null) {
-            // Es una asignación
-            String nombreVariable = ctx.relationalExp().getText();
-            String valor = visit(ctx.assignmentExp());
-
-            // Si la variable no ha sido declarada, agregarla a la tabla y a variablesGlobales
-            if (!tablaVariables.containsKey(nombreVariable)) {
-                tablaVariables.put(nombreVariable, contadorVariables++);
-                variablesGlobales.add(nombreVariable);
-            }
+    /**
+     * Ubica un bloque a continuación del actual y sigue agregando instrucciones en él.
+     */
+    void continuarEn(BloqueBasico bloque) {
+        programa.ubicar(bloque);
+        actual = bloque;
+    }
 
-            // Generar código para asignación
-            codigo.append("    ; Asignación\n");
-            codigo.append("    mov eax, ").append(valor).append("\n");
-            codigo.append("    mov [").append(nombreVariable).append("], eax\n");
+    /**
+     * Agrega una instrucción al bloque actual.
+     */
+    void agregar(int op, int destino, Operando a, Operando b) {
+        byte marcas = 0;
+        if (a.inmediato()) {
+            marcas |= BloqueBasico.A_INMEDIATO;
+        }
+        if (b != null && b.inmediato()) {
+            marcas |= BloqueBasico.B_INMEDIATO;
+        }
+        actual.agregar(op, destino, a.valor(), marcas, b == null ? 0 : b.valor());
+    }
 
-            return nombreVariable;
-        } else {
-            // Si no es una asignación, evaluar la expresión
-            return visitChildren(ctx);
+    /**
+     * Termina el bloque actual con una rama según la condición: si vale distinto de cero continúa en
+     * {@code verdadero}, si no en {@code falso}. Una condición vacía siempre se cumple.
+     *
+     * <p>Si la condición es el resultado de una comparación recién calculada (como {@code a < b}),
+     * la comparación pasa a ser la de la rama y su valor 0/1 no se calcula: el código final es una
+     * sola comparación seguida del salto condicional. El valor solo se calcula cuando se usa, por
+     * ejemplo al asignarlo.</p>
+     */
+    void ramificar(Operando condicion, BloqueBasico verdadero, BloqueBasico falso) {
+        if (condicion == null) {
+            actual.saltar(verdadero.id);
+            return;
+        }
+        int ultima = actual.n - 1;
+        if (!condicion.inmediato() && ultima >= 0 && actual.destino[ultima] == condicion.valor()
+                && ProgramaIR.esComparacion(actual.op[ultima]) && programa.getNombre(condicion.valor()) == null) {
+            // El temporal de la comparación solo lo lee la rama
+            actual.n = ultima;
+            actual.ramificar(actual.op[ultima] - ProgramaIR.CMP, actual.a[ultima], actual.b[ultima],
+                    actual.inmediatos[ultima], verdadero.id, falso.id);
+            return;
+        }
+        byte marcas = BloqueBasico.B_INMEDIATO;
+        if (condicion.inmediato()) {
+            marcas |= BloqueBasico.A_INMEDIATO;
         }
+        actual.ramificar(ProgramaIR.DISTINTO, condicion.valor(), 0, marcas, verdadero.id, falso.id);
     }
 
-    @Override
-    public String visitPrimaryExp(miGramaticaParser.PrimaryExpContext ctx) {
-        if (ctx.NUM() != null) {
-            // Retorna el valor numérico
-            return ctx.NUM().getText();
-        } else if (ctx.ID() != null) {
-            // Retorna el nombre de la variable
-            return ctx.ID().getText();
-        } else if (ctx.PARL() != null && ctx.PARR() != null) {
-            // Evaluar la expresión dentro de paréntesis
-            return visit(ctx.exp());
-        } else {
-            return super.visitPrimaryExp(ctx);
+    /**
+     * Convierte el texto de un literal numérico en su valor de 32 bits (con desbordamiento).
+     */
+    static int valorLiteral(String texto) {
+        int valor = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            valor = valor * 10 + (texto.charAt(i) - '0');
         }
+        return valor;
     }
 
+    /**
+     * Genera el código de un subárbol sin recursión: la visita de cada regla se parte en pasos
+     * separados por la visita de sus hijos, y los pasos pendientes se guardan en una pila explícita
+     * en lugar de la pila de llamadas. Así el anidamiento del programa (paréntesis, bloques) no está
+     * limitado por el tamaño de la pila del hilo. Las reglas con un solo hijo que no generan código
+     * (como {@code relationalExp} sin operador) se atraviesan sin apilar nada.
+     *
+     * <p>Los bloques, los registros virtuales y las instrucciones se crean en el mismo orden que en
+     * una visita recursiva, del que depende {@link CompiladorUnaPasada} para generar el mismo código.</p>
+     *
+     * @param arbol El subárbol a generar.
+     * @return El operando con el valor de la expresión, o {@code null} si el subárbol no tiene valor.
+     */
     @Override
-    public String visitAdditiveExp(miGramaticaParser.AdditiveExpContext ctx) {
-        if (ctx.multiplicativeExp().size() == 1) {
-            // Solo hay un hijo, retornar el resultado de multiplicativeExp
-            return visit(ctx.multiplicativeExp(0));
-        } else {
-            // Hay más de un multiplicativeExp, manejar las operaciones
-            String resultado = visit(ctx.multiplicativeExp(0));
-            for (int i = 1; i < ctx.multiplicativeExp().size(); i++) {
-                String operando1 = resultado;
-                String operando2 = visit(ctx.multiplicativeExp(i));
-                String operador = ctx.getChild(2 * i - 1).getText(); // El operador está entre los operandos
-
-                String tempVar = nuevaVariable();
-
-                // Generar código para la operación
-                codigo.append("    ; Operación Aditiva\n");
-                codigo.append("    mov eax, ").append(operando1).append("\n");
-                if (operador.equals("+")) {
-                    codigo.append("    add eax, ").append(operando2).append("\n");
-                } else {
-                    codigo.append("    sub eax, ").append(operando2).append("\n");
+    public Operando visit(ParseTree arbol) {
+        ArrayDeque<Paso> pendientes = new ArrayDeque<>();
+        ultimo = null;
+        ParseTree siguiente = arbol;
+        while (true) {
+            if (siguiente != null) {
+                Paso paso = entrar(siguiente);
+                if (paso != null) {
+                    pendientes.push(paso);
                 }
-                codigo.append("    mov [").append(tempVar).append("], eax\n");
-
-                resultado = tempVar;
             }
-            return resultado;
+            if (pendientes.isEmpty()) {
+                return ultimo;
+            }
+            Paso paso = pendientes.peek();
+            siguiente = continuar(paso);
+            if (siguiente == null) {
+                pendientes.pop();
+            }
         }
     }
 
-    @Override
-    public String visitMultiplicativeExp(miGramaticaParser.MultiplicativeExpContext ctx) {
-        if (ctx.unaryExp().size() == 1) {
-            return visit(ctx.unaryExp(0));
-        } else {
-            String resultado = visit(ctx.unaryExp(0));
-            for (int i = 1; i < ctx.unaryExp().size(); i++) {
-                String operando1 = resultado;
-                String operando2 = visit(ctx.unaryExp(i));
-                String operador = ctx.getChild(2 * i - 1).getText();
-
-                String tempVar = nuevaVariable();
-
-                // Generar código para la operación
-                codigo.append("    ; Operación Multiplicativa\n");
-                codigo.append("    mov eax, ").append(operando1).append("\n");
-                if (operador.equals("*")) {
-                    codigo.append("    imul eax, ").append(operando2).append("\n");
-                } else {
-                    codigo.append("    ; División\n");
-                    codigo.append("    mov ebx, ").append(operando2).append("\n");
-                    codigo.append("    cdq\n"); // Extiende eax a edx:eax
-                    codigo.append("    idiv ebx\n");
-                }
-                codigo.append("    mov [").append(tempVar).append("], eax\n");
+    /**
+     * Visita de una regla que quedó a la espera del resultado de uno de sus hijos.
+     */
+    private static final class Paso {
+        final ParserRuleContext ctx;
+        int etapa = 0;
+        Operando acumulado;
+        BloqueBasico primero;
+        BloqueBasico segundo;
+        BloqueBasico tercero;
+
+        Paso(ParserRuleContext ctx) {
+            this.ctx = ctx;
+        }
+    }
 
-                resultado = tempVar;
+    /**
+     * Empieza la visita de un nodo. Los nodos que no esperan a ningún hijo (literales, identificadores,
+     * print) se resuelven aquí y dejan su valor en {@link #ultimo}; los envoltorios de un solo hijo se
+     * reemplazan por ese hijo.
+     *
+     * @return La visita pendiente del nodo, o {@code null} si ya terminó.
+     */
+    private Paso entrar(ParseTree nodo) {
+        while (true) {
+            switch (nodo) {
+                case miGramaticaParser.ExpContext ctx when ctx.assignmentExp() == null -> {
+                    ultimo = null;
+                    return null;
+                }
+                case miGramaticaParser.OptionalExpContext ctx when ctx.assignmentExp() == null -> {
+                    ultimo = null;
+                    return null;
+                }
+                case miGramaticaParser.AssignmentExpContext ctx when ctx.ASSIGN() == null ->
+                        nodo = ctx.relationalExp();
+                case miGramaticaParser.RelationalExpContext ctx when ctx.getChildCount() == 1 ->
+                        nodo = ctx.getChild(0);
+                case miGramaticaParser.AdditiveExpContext ctx when ctx.getChildCount() == 1 ->
+                        nodo = ctx.getChild(0);
+                case miGramaticaParser.MultiplicativeExpContext ctx when ctx.getChildCount() == 1 ->
+                        nodo = ctx.getChild(0);
+                case miGramaticaParser.UnaryExpContext ctx when ctx.ORES() == null ->
+                        nodo = ctx.primaryExp();
+                case miGramaticaParser.PrimaryExpContext ctx -> {
+                    if (ctx.NUM() != null) {
+                        // Retorna el valor numérico
+                        ultimo = Operando.constante(valorLiteral(ctx.NUM().getText()));
+                        return null;
+                    } else if (ctx.ID() != null) {
+                        // Retorna el registro virtual de la variable
+                        ultimo = Operando.registro(registroDeVariable(ctx.simbolo));
+                        return null;
+                    }
+                    // Evaluar la expresión dentro de paréntesis
+                    nodo = ctx.exp();
+                }
+                case miGramaticaParser.Print_stmtContext ctx -> {
+                    // Generar código para imprimir la variable
+                    agregar(ProgramaIR.IMPRIMIR, -1, Operando.registro(registroDeVariable(ctx.simbolo)), null);
+                    ultimo = null;
+                    return null;
+                }
+                case ParserRuleContext ctx when ctx.getChildCount() == 1 -> nodo = ctx.getChild(0);
+                case ParserRuleContext ctx -> {
+                    return new Paso(ctx);
+                }
+                default -> {
+                    // Los tokens no generan código
+                    ultimo = null;
+                    return null;
+                }
             }
-            return resultado;
         }
     }
 
-    @Override
-    public String visitIf_stmt(miGramaticaParser.If_stmtContext ctx) {
-        String etiquetaElse = nuevaEtiqueta();
-        String etiquetaFin = nuevaEtiqueta();
-
-        // Evaluar la condición
-        String condicion = visit(ctx.exp());
-
-        // Generar código para la condición
-        codigo.append("    ; Condición IF\n");
-        codigo.append("    mov eax, ").append(condicion).append("\n");
-        codigo.append("    cmp eax, 0\n");
-        codigo.append("    je ").append(etiquetaElse).append("\n");
-
-        // Generar código para el bloque verdadero
-        visit(ctx.code());
-
-        // Salto al final del IF
-        codigo.append("    jmp ").append(etiquetaFin).append("\n");
+    /**
+     * Avanza la visita pendiente de una regla con el resultado de su último hijo en {@link #ultimo}.
+     *
+     * @return El próximo hijo a visitar, o {@code null} si la visita terminó y su valor quedó en
+     *         {@link #ultimo}.
+     */
+    private ParseTree continuar(Paso paso) {
+        return switch (paso.ctx) {
+            case miGramaticaParser.AssignmentExpContext ctx -> continuarAsignacion(paso, ctx);
+            case miGramaticaParser.RelationalExpContext ctx -> continuarOperacion(paso, ctx);
+            case miGramaticaParser.AdditiveExpContext ctx -> continuarOperacion(paso, ctx);
+            case miGramaticaParser.MultiplicativeExpContext ctx -> continuarOperacion(paso, ctx);
+            case miGramaticaParser.UnaryExpContext ctx -> continuarNegacion(paso, ctx);
+            case miGramaticaParser.If_stmtContext ctx -> continuarIf(paso, ctx);
+            case miGramaticaParser.While_stmtContext ctx -> continuarWhile(paso, ctx);
+            case miGramaticaParser.For_stmtContext ctx -> continuarFor(paso, ctx);
+            default -> continuarHijos(paso);
+        };
+    }
 
-        // Etiqueta else
-        codigo.append(etiquetaElse).append(":\n");
+    /**
+     * Visita en orden los hijos que son reglas, como la visita predeterminada de ANTLR.
+     */
+    private ParseTree continuarHijos(Paso paso) {
+        while (paso.etapa < paso.ctx.getChildCount()) {
+            ParseTree hijo = paso.ctx.getChild(paso.etapa++);
+            if (hijo instanceof ParserRuleContext) {
+                return hijo;
+            }
+        }
+        ultimo = null;
+        return null;
+    }
 
-        // Generar código para el bloque else si existe
-        if (ctx.if_prime().getChildCount() > 0) {
-            visit(ctx.if_prime());
+    private ParseTree continuarAsignacion(Paso paso, miGramaticaParser.AssignmentExpContext ctx) {
+        if (paso.etapa++ == 0) {
+            return ctx.assignmentExp();
         }
+        // Es una asignación: la variable recibe su registro virtual en su primera aparición
+        int variable = registroDeVariable(ctx.simbolo);
 
-        // Etiqueta fin
-        codigo.append(etiquetaFin).append(":\n");
+        // Generar código para asignación
+        agregar(ProgramaIR.MOV, variable, ultimo, null);
 
+        ultimo = Operando.registro(variable);
         return null;
     }
 
-    @Override
-    public String visitWhile_stmt(miGramaticaParser.While_stmtContext ctx) {
-        String etiquetaInicio = nuevaEtiqueta();
-        String etiquetaFin = nuevaEtiqueta();
-
-        // Etiqueta de inicio del bucle
-        codigo.append(etiquetaInicio).append(":\n");
-
-        // Evaluar la condición
-        String condicion = visit(ctx.exp());
+    /**
+     * Encadena los operandos de una expresión relacional, aditiva o multiplicativa de izquierda a
+     * derecha. Los operandos son los hijos de posición par y los operadores los de posición impar.
+     */
+    private ParseTree continuarOperacion(Paso paso, ParserRuleContext ctx) {
+        int visitados = paso.etapa++;
+        if (visitados == 1) {
+            paso.acumulado = ultimo;
+        } else if (visitados > 1) {
+            String operador = ctx.getChild(2 * visitados - 3).getText();
 
-        // Generar código para la condición
-        codigo.append("    ; Condición WHILE\n");
-        codigo.append("    mov eax, ").append(condicion).append("\n");
-        codigo.append("    cmp eax, 0\n");
-        codigo.append("    je ").append(etiquetaFin).append("\n");
+            int tempVar = nuevaVariable();
 
-        // Generar código para el bloque del while
-        visit(ctx.code());
+            // Generar código para la operación (una comparación deja 1 si se cumple y 0 si no)
+            agregar(codigoOperacion(operador), tempVar, paso.acumulado, ultimo);
 
-        // Saltar al inicio del bucle
-        codigo.append("    jmp ").append(etiquetaInicio).append("\n");
+            paso.acumulado = Operando.registro(tempVar);
+        }
+        if (2 * visitados < ctx.getChildCount()) {
+            return ctx.getChild(2 * visitados);
+        }
+        ultimo = paso.acumulado;
+        return null;
+    }
 
-        // Etiqueta fin del bucle
-        codigo.append(etiquetaFin).append(":\n");
+    /**
+     * Devuelve el código de operación de la representación intermedia de un operador binario.
+     */
+    private static int codigoOperacion(String operador) {
+        return switch (operador) {
+            case "+" -> ProgramaIR.ADD;
+            case "-" -> ProgramaIR.SUB;
+            case "*" -> ProgramaIR.MUL;
+            case "/" -> ProgramaIR.DIV;
+            default -> ProgramaIR.CMP + ProgramaIR.relacion(operador);
+        };
+    }
 
+    private ParseTree continuarNegacion(Paso paso, miGramaticaParser.UnaryExpContext ctx) {
+        if (paso.etapa++ == 0) {
+            return ctx.unaryExp();
+        }
+        int tempVar = nuevaVariable();
+        agregar(ProgramaIR.NEG, tempVar, ultimo, null);
+        ultimo = Operando.registro(tempVar);
         return null;
     }
 
-    @Override
-    public String visitFor_stmt(miGramaticaParser.For_stmtContext ctx) {
-        String etiquetaInicio = nuevaEtiqueta();
-        String etiquetaFin = nuevaEtiqueta();
+    private ParseTree continuarIf(Paso paso, miGramaticaParser.If_stmtContext ctx) {
+        boolean hayElse = ctx.if_prime().getChildCount() > 0;
+        switch (paso.etapa++) {
+            case 0 -> {
+                paso.primero = nuevaEtiqueta();                    // entonces
+                paso.segundo = hayElse ? nuevaEtiqueta() : null;   // else
+                paso.tercero = nuevaEtiqueta();                    // fin
 
-        // Inicialización
-        if (ctx.optionalExp(0).getChildCount() > 0) {
-            visit(ctx.optionalExp(0));
-        }
+                // Evaluar la condición
+                return ctx.exp();
+            }
+            case 1 -> {
+                ramificar(ultimo, paso.primero, hayElse ? paso.segundo : paso.tercero);
 
-        // Etiqueta de inicio del bucle
-        codigo.append(etiquetaInicio).append(":\n");
+                // Generar código para el bloque verdadero y saltar al final del IF
+                continuarEn(paso.primero);
+                return ctx.code();
+            }
+            case 2 -> {
+                actual.saltar(paso.tercero.id);
 
-        // Condición
-        if (ctx.optionalExp(1).getChildCount() > 0) {
-            String condicion = visit(ctx.optionalExp(1));
-            codigo.append("    ; Condición FOR\n");
-            codigo.append("    mov eax, ").append(condicion).append("\n");
-            codigo.append("    cmp eax, 0\n");
-            codigo.append("    je ").append(etiquetaFin).append("\n");
+                // Generar código para el bloque else si existe
+                if (hayElse) {
+                    continuarEn(paso.segundo);
+                    return ctx.if_prime();
+                }
+            }
+            default -> actual.saltar(paso.tercero.id);
         }
+        continuarEn(paso.tercero);
+        ultimo = null;
+        return null;
+    }
 
-        // Bloque del for
-        visit(ctx.code());
+    private ParseTree continuarWhile(Paso paso, miGramaticaParser.While_stmtContext ctx) {
+        switch (paso.etapa++) {
+            case 0 -> {
+                paso.primero = nuevaEtiqueta();  // condición
+                paso.segundo = nuevaEtiqueta();  // cuerpo
+                paso.tercero = nuevaEtiqueta();  // fin
+
+                // Evaluar la condición al inicio de cada vuelta
+                actual.saltar(paso.primero.id);
+                continuarEn(paso.primero);
+                return ctx.exp();
+            }
+            case 1 -> {
+                ramificar(ultimo, paso.segundo, paso.tercero);
 
-        // Actualización
-        if (ctx.optionalExp(2).getChildCount() > 0) {
-            visit(ctx.optionalExp(2));
+                // Generar código para el bloque del while y volver a la condición
+                continuarEn(paso.segundo);
+                return ctx.code();
+            }
+            default -> {
+                actual.saltar(paso.primero.id);
+                continuarEn(paso.tercero);
+                ultimo = null;
+                return null;
+            }
         }
+    }
 
-        // Saltar al inicio del bucle
-        codigo.append("    jmp ").append(etiquetaInicio).append("\n");
+    private ParseTree continuarFor(Paso paso, miGramaticaParser.For_stmtContext ctx) {
+        switch (paso.etapa++) {
+            case 0 -> {
+                paso.primero = nuevaEtiqueta();  // condición
+                paso.segundo = nuevaEtiqueta();  // cuerpo
+                paso.tercero = nuevaEtiqueta();  // fin
 
-        // Etiqueta fin del bucle
-        codigo.append(etiquetaFin).append(":\n");
+                // Inicialización
+                return ctx.optionalExp(0);
+            }
+            case 1 -> {
+                // Condición
+                actual.saltar(paso.primero.id);
+                continuarEn(paso.primero);
+                return ctx.optionalExp(1);
+            }
+            case 2 -> {
+                // Una condición vacía deja null en ultimo: el for no termina por la condición
+                ramificar(ultimo, paso.segundo, paso.tercero);
 
-        return null;
+                // Bloque del for, actualización y vuelta a la condición
+                continuarEn(paso.segundo);
+                return ctx.code();
+            }
+            case 3 -> {
+                return ctx.optionalExp(2);
+            }
+            default -> {
+                actual.saltar(paso.primero.id);
+                continuarEn(paso.tercero);
+                ultimo = null;
+                return null;
+            }
+        }
     }
 
-    @Override
-    public String visitPrint_stmt(miGramaticaParser.Print_stmtContext ctx) {
-        String id = ctx.ID().getText();
-
-        // Generar código para imprimir la variable
-        codigo.append("    ; Imprimir variable\n");
-        codigo.append("    mov eax, [").append(id).append("]\n");
-        codigo.append("    call print_number\n");
+    /**
+     * Devuelve el registro virtual de una variable del programa, creándolo en su primera aparición.
+     *
+     * @param simbolo El número de símbolo de la variable.
+     */
+    int registroDeVariable(int simbolo) {
+        if (simbolo == TablaSimbolos.SIN_SIMBOLO) {
+            throw new IllegalStateException("El identificador no pasó por el análisis semántico");
+        }
+        if (simbolo >= registros.length) {
+            int tamano = registros.length;
+            registros = Arrays.copyOf(registros, Math.max(simbolo + 1, tamano * 2));
+            Arrays.fill(registros, tamano, registros.length, -1);
+        }
+        if (registros[simbolo] < 0) {
+            registros[simbolo] = programa.nuevaVariable(tablaSimbolos.getNombre(simbolo));
+        }
+        return registros[simbolo];
+    }
 
-        return null;
+    /**
+     * Ejecuta la asignación de registros sobre el programa generado, si no se hizo antes.
+     */
+    private void asignarRegistros() {
+        if (asignador != null) {
+            return;
+        }
+        asignador = new AsignadorRegistros(programa);
+        asignador.asignar();
     }
 
     /**
@@ -271,38 +607,20 @@ public class GeneradorCodigo extends miGramaticaBaseVisitor<String> {
      * @return Una cadena que representa el código completo generado.
      */
     public String getCodigoCompleto() {
-        StringBuilder codigoCompleto = new StringBuilder();
-
-        // Sección de datos
-        codigoCompleto.append("section .data\n");
-        // Puedes agregar aquí cadenas u otros datos si es necesario
-
-        // Sección .bss para variables sin inicializar
-        codigoCompleto.append("section .bss\n");
-        for (String var : variablesGlobales) {
-            codigoCompleto.append(var).append(" resd 1\n");
-        }
+        asignarRegistros();
+        return new EmisorNASM(programa, asignador, optimizadorMirilla).emitir();
+    }
 
-        // Sección de código
-        codigoCompleto.append("section .text\n");
-        codigoCompleto.append("global _start\n");
-        codigoCompleto.append("_start:\n");
-        codigoCompleto.append(codigo.toString());
-
-        // Salir del programa
-        codigoCompleto.append("    ; Salir del programa\n");
-        codigoCompleto.append("    mov eax, 1\n");
-        codigoCompleto.append("    mov ebx, 0\n");
-        codigoCompleto.append("    int 0x80\n");
-
-        // Agregar funciones auxiliares
-        codigoCompleto.append("\n; Funciones auxiliares\n");
-        codigoCompleto.append("print_number:\n");
-        // Implementación de print_number
-        codigoCompleto.append("    ; Implementación de print_number\n");
-        codigoCompleto.append("    ret\n");
-
-        return codigoCompleto.toString();
+    /**
+     * Escribe el código completo en un flujo a medida que se genera, sin armarlo antes en memoria.
+     *
+     * @param salida El flujo de destino. No se cierra ni se vacía.
+     * @return La cantidad de instrucciones NASM escritas.
+     * @throws IOException Si falla la escritura.
+     */
+    public long escribirCodigoCompleto(Writer salida) throws IOException {
+        asignarRegistros();
+        return new EmisorNASM(programa, asignador, optimizadorMirilla).emitir(salida);
     }
 
-}
\ No newline at end of file
+}
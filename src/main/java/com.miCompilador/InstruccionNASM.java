@@ -0,0 +1,81 @@
+package com.miCompilador;
+
+/**
+ * Línea de la sección de texto del código NASM: una instrucción, una etiqueta o un comentario.
+ *
+ * <p>{@link EmisorNASM} produce los bloques del programa como una lista de estas líneas, para que
+ * {@link OptimizadorMirilla} pueda examinarlas y reescribirlas antes de pasarlas a texto.</p>
+ *
+ * @param tipo      {@link #INSTRUCCION}, {@link #ETIQUETA} o {@link #COMENTARIO}.
+ * @param mnemonico El mnemónico de la instrucción, el nombre de la etiqueta o el texto del comentario.
+ * @param destino   El primer operando, o {@code null} si la instrucción no tiene operandos. Incluye el
+ *                  tamaño si lo lleva (por ejemplo {@code dword [x]}).
+ * @param fuente    El segundo operando, o {@code null} si la instrucción tiene a lo sumo uno.
+ */
+public record InstruccionNASM(int tipo, String mnemonico, String destino, String fuente) {
+
+    public static final int INSTRUCCION = 0;
+    public static final int ETIQUETA = 1;
+    public static final int COMENTARIO = 2;
+
+    /**
+     * Crea una instrucción.
+     */
+    public static InstruccionNASM instruccion(String mnemonico, String destino, String fuente) {
+        return new InstruccionNASM(INSTRUCCION, mnemonico, destino, fuente);
+    }
+
+    /**
+     * Crea una etiqueta.
+     */
+    public static InstruccionNASM etiqueta(String nombre) {
+        return new InstruccionNASM(ETIQUETA, nombre, null, null);
+    }
+
+    /**
+     * Crea un comentario.
+     */
+    public static InstruccionNASM comentario(String texto) {
+        return new InstruccionNASM(COMENTARIO, texto, null, null);
+    }
+
+    /**
+     * Indica si es una instrucción con el mnemónico indicado.
+     */
+    public boolean es(String mnemonico) {
+        return tipo == INSTRUCCION && this.mnemonico.equals(mnemonico);
+    }
+
+    /**
+     * Indica si es una instrucción de salto o de {@code set} que solo lee la bandera de cero.
+     */
+    public boolean leeSoloCero() {
+        if (tipo != INSTRUCCION) {
+            return false;
+        }
+        return switch (mnemonico) {
+            case "je", "jne", "jz", "jnz", "sete", "setne", "setz", "setnz" -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Agrega la línea en formato NASM, terminada en salto de línea.
+     */
+    public void escribir(StringBuilder codigo) {
+        switch (tipo) {
+            case ETIQUETA -> codigo.append(mnemonico).append(":\n");
+            case COMENTARIO -> codigo.append("    ; ").append(mnemonico).append("\n");
+            default -> {
+                codigo.append("    ").append(mnemonico);
+                if (destino != null) {
+                    codigo.append(" ").append(destino);
+                    if (fuente != null) {
+                        codigo.append(", ").append(fuente);
+                    }
+                }
+                codigo.append("\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.miCompilador;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ejecuta un programa analizado sin pasar por NASM, para probarlo rápido y para contrastar el
+ * comportamiento del código ensamblador generado.
+ *
+ * <p>El árbol se compila a un bytecode compacto en un arreglo de enteros: cada instrucción ocupa
+ * {@link #ANCHO} posiciones, el código de operación y tres operandos. Los operandos son ranuras de
+ * un arreglo de valores: primero las variables, con el número de símbolo de la
+ * {@link TablaSimbolos}; después los resultados intermedios, que se reutilizan de una expresión a
+ * otra; y al final las constantes, que se cargan una vez antes de empezar. Las operaciones usan los
+ * mismos códigos que {@link ProgramaIR}; se agregan los saltos y el fin.</p>
+ *
+ * <p>La ejecución es un ciclo de despacho que no crea objetos por instrucción. La aritmética es la
+ * del código NASM: enteros de 32 bits con desbordamiento, la división trunca hacia cero y dividir
+ * por cero (o el menor entero por -1) es un error de ejecución. {@code print} escribe el valor en
+ * decimal seguido de un salto de línea, y las variables empiezan en 0.</p>
+ */
+public class Interprete {
+
+    /**
+     * Posiciones que ocupa cada instrucción en el arreglo de código.
+     */
+    public static final int ANCHO = 4;
+
+    // Códigos de operación propios del bytecode, a continuación de los de ProgramaIR
+    static final int SALTO = 13;          // continúa en la instrucción x
+    static final int SALTO_SI_CERO = 14;  // si y vale 0, continúa en la instrucción x
+    static final int FIN = 15;            // termina el programa
+
+    private final int[] codigo;
+    private final int[] lineas;
+    private final int numRanuras;
+    private final int baseConstantes;
+    private final int[] constantes;
+
+    private Interprete(int[] codigo, int[] lineas, int numRanuras, int baseConstantes, int[] constantes) {
+        this.codigo = codigo;
+        this.lineas = lineas;
+        this.numRanuras = numRanuras;
+        this.baseConstantes = baseConstantes;
+        this.constantes = constantes;
+    }
+
+    /**
+     * Compila el árbol de un programa al bytecode del intérprete.
+     *
+     * @param arbol         El árbol de parseo, ya analizado semánticamente y sin errores.
+     * @param tablaSimbolos La tabla de símbolos del análisis semántico del árbol.
+     * @return El programa listo para ejecutar.
+     */
+    public static Interprete compilar(ParseTree arbol, TablaSimbolos tablaSimbolos) {
+        Compilador compilador = new Compilador(tablaSimbolos.getNumSimbolos());
+        compilador.visit(arbol);
+        return compilador.terminar();
+    }
+
+    /**
+     * Devuelve la cantidad de instrucciones del bytecode, incluida la de fin.
+     */
+    public int getNumInstrucciones() {
+        return codigo.length / ANCHO;
+    }
+
+    /**
+     * Ejecuta el programa.
+     *
+     * @param salida Flujo donde se escribe lo que imprime el programa. Se vacía al terminar, pero no
+     *               se cierra.
+     * @throws ArithmeticException Si el programa divide por cero o desborda una división.
+     * @throws IOException         Si falla la escritura de la salida.
+     */
+    public void ejecutar(OutputStream salida) throws IOException {
+        int[] c = codigo;
+        int[] r = new int[numRanuras];
+        System.arraycopy(constantes, 0, r, baseConstantes, constantes.length);
+        SalidaNumeros impresion = new SalidaNumeros(salida);
+
+        try {
+            int pc = 0;
+            while (true) {
+                switch (c[pc]) {
+                    case ProgramaIR.MOV -> r[c[pc + 1]] = r[c[pc + 2]];
+                    case ProgramaIR.ADD -> r[c[pc + 1]] = r[c[pc + 2]] + r[c[pc + 3]];
+                    case ProgramaIR.SUB -> r[c[pc + 1]] = r[c[pc + 2]] - r[c[pc + 3]];
+                    case ProgramaIR.MUL -> r[c[pc + 1]] = r[c[pc + 2]] * r[c[pc + 3]];
+                    case ProgramaIR.DIV -> {
+                        int divisor = r[c[pc + 3]];
+                        int dividendo = r[c[pc + 2]];
+                        if (divisor == 0 || (divisor == -1 && dividendo == Integer.MIN_VALUE)) {
+                            throw errorDivision(pc, divisor);
+                        }
+                        r[c[pc + 1]] = dividendo / divisor;
+                    }
+                    case ProgramaIR.NEG -> r[c[pc + 1]] = -r[c[pc + 2]];
+                    case ProgramaIR.CMP + ProgramaIR.MENOR -> r[c[pc + 1]] = r[c[pc + 2]] < r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.CMP + ProgramaIR.MENOR_IGUAL -> r[c[pc + 1]] = r[c[pc + 2]] <= r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.CMP + ProgramaIR.MAYOR -> r[c[pc + 1]] = r[c[pc + 2]] > r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.CMP + ProgramaIR.MAYOR_IGUAL -> r[c[pc + 1]] = r[c[pc + 2]] >= r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.CMP + ProgramaIR.IGUAL -> r[c[pc + 1]] = r[c[pc + 2]] == r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.CMP + ProgramaIR.DISTINTO -> r[c[pc + 1]] = r[c[pc + 2]] != r[c[pc + 3]] ? 1 : 0;
+                    case ProgramaIR.IMPRIMIR -> impresion.imprimir(r[c[pc + 2]]);
+                    case SALTO -> {
+                        pc = c[pc + 1];
+                        continue;
+                    }
+                    case SALTO_SI_CERO -> {
+                        if (r[c[pc + 2]] == 0) {
+                            pc = c[pc + 1];
+                            continue;
+                        }
+                    }
+                    case FIN -> {
+                        return;
+                    }
+                    default -> throw new IllegalStateException("Código de operación desconocido: " + c[pc]);
+                }
+                pc += ANCHO;
+            }
+        } finally {
+            impresion.vaciar();
+        }
+    }
+
+    private ArithmeticException errorDivision(int pc, int divisor) {
+        String causa = divisor == 0 ? "división por cero" : "desbordamiento en la división";
+        return new ArithmeticException("La línea " + lineas[pc / ANCHO] + " produjo una " + causa);
+    }
+
+    /**
+     * Traduce el árbol al bytecode. Cada expresión devuelve la ranura que contiene su valor; las
+     * constantes reciben una ranura provisional negativa que se corrige al terminar, cuando ya se
+     * sabe cuántas ranuras de resultados intermedios hacen falta.
+     */
+    private static final class Compilador extends miGramaticaBaseVisitor<Integer> {
+
+        private final int numVariables;
+        private int[] codigo = new int[64 * ANCHO];
+        private int[] lineas = new int[64];
+        private int numInstrucciones = 0;
+
+        // Ranuras de resultados intermedios en uso y el máximo alcanzado
+        private int temporales = 0;
+        private int maxTemporales = 0;
+
+        private final Map<Integer, Integer> indiceConstantes = new HashMap<>();
+        private int[] constantes = new int[16];
+        private int numConstantes = 0;
+
+        Compilador(int numVariables) {
+            this.numVariables = numVariables;
+        }
+
+        Interprete terminar() {
+            agregar(FIN, 0, 0, 0, 0);
+
+            // Las constantes van después de los resultados intermedios
+            int baseConstantes = numVariables + maxTemporales;
+            // (el primer operando es siempre un destino o un salto, nunca una constante)
+            for (int i = 0; i < numInstrucciones; i++) {
+                int pc = i * ANCHO;
+                for (int k = 2; k < ANCHO; k++) {
+                    if (codigo[pc + k] < 0) {
+                        codigo[pc + k] = baseConstantes - codigo[pc + k] - 1;
+                    }
+                }
+            }
+            return new Interprete(Arrays.copyOf(codigo, numInstrucciones * ANCHO),
+                    Arrays.copyOf(lineas, numInstrucciones), baseConstantes + numConstantes,
+                    baseConstantes, Arrays.copyOf(constantes, numConstantes));
+        }
+
+        /**
+         * Agrega una instrucción y devuelve su número.
+         */
+        private int agregar(int op, int x, int y, int z, int linea) {
+            if ((numInstrucciones + 1) * ANCHO > codigo.length) {
+                codigo = Arrays.copyOf(codigo, codigo.length * 2);
+                lineas = Arrays.copyOf(lineas, lineas.length * 2);
+            }
+            int pc = numInstrucciones * ANCHO;
+            codigo[pc] = op;
+            codigo[pc + 1] = x;
+            codigo[pc + 2] = y;
+            codigo[pc + 3] = z;
+            lineas[numInstrucciones] = linea;
+            return numInstrucciones++;
+        }
+
+        /**
+         * Hace que el salto de la instrucción indicada lleve a la próxima que se agregue.
+         */
+        private void saltarAqui(int instruccion) {
+            codigo[instruccion * ANCHO + 1] = numInstrucciones * ANCHO;
+        }
+
+        private int temporal() {
+            int ranura = numVariables + temporales++;
+            maxTemporales = Math.max(maxTemporales, temporales);
+            return ranura;
+        }
+
+        /**
+         * Libera la ranura de un resultado intermedio ya usado. Se liberan en orden inverso al que
+         * se ocuparon, así que basta con un contador.
+         */
+        private void liberar(int ranura) {
+            if (ranura >= numVariables) {
+                temporales--;
+            }
+        }
+
+        private int constante(int valor) {
+            Integer indice = indiceConstantes.get(valor);
+            if (indice == null) {
+                if (numConstantes == constantes.length) {
+                    constantes = Arrays.copyOf(constantes, numConstantes * 2);
+                }
+                constantes[numConstantes] = valor;
+                indice = numConstantes++;
+                indiceConstantes.put(valor, indice);
+            }
+            return -indice - 1;
+        }
+
+        private static int linea(ParserRuleContext ctx) {
+            return ctx.start.getLine();
+        }
+
+        /**
+         * Evalúa una expresión cuyo valor se descarta.
+         */
+        private void descartar(ParseTree expresion) {
+            Integer ranura = visit(expresion);
+            if (ranura != null) {
+                liberar(ranura);
+            }
+        }
+
+        /**
+         * Evalúa una condición y agrega el salto que la abandona si vale cero, o devuelve -1 si la
+         * condición es vacía y siempre se cumple.
+         */
+        private int condicion(ParseTree expresion) {
+            Integer ranura = visit(expresion);
+            if (ranura == null) {
+                return -1;
+            }
+            liberar(ranura);
+            return agregar(SALTO_SI_CERO, 0, ranura, 0, 0);
+        }
+
+        @Override
+        public Integer visitDeclaration(miGramaticaParser.DeclarationContext ctx) {
+            if (ctx.exp() != null) {
+                descartar(ctx.exp());
+            } else {
+                visitChildren(ctx);
+            }
+            return null;
+        }
+
+        @Override
+        public Integer visitIf_stmt(miGramaticaParser.If_stmtContext ctx) {
+            int saltoCondicion = condicion(ctx.exp());
+            visit(ctx.code());
+            if (ctx.if_prime().getChildCount() > 0) {
+                int saltoFin = agregar(SALTO, 0, 0, 0, 0);
+                if (saltoCondicion >= 0) {
+                    saltarAqui(saltoCondicion);
+                }
+                visit(ctx.if_prime());
+                saltarAqui(saltoFin);
+            } else if (saltoCondicion >= 0) {
+                saltarAqui(saltoCondicion);
+            }
+            return null;
+        }
+
+        @Override
+        public Integer visitWhile_stmt(miGramaticaParser.While_stmtContext ctx) {
+            int inicio = numInstrucciones * ANCHO;
+            int saltoCondicion = condicion(ctx.exp());
+            visit(ctx.code());
+            agregar(SALTO, inicio, 0, 0, 0);
+            if (saltoCondicion >= 0) {
+                saltarAqui(saltoCondicion);
+            }
+            return null;
+        }
+
+        @Override
+        public Integer visitFor_stmt(miGramaticaParser.For_stmtContext ctx) {
+            descartar(ctx.optionalExp(0));
+            int inicio = numInstrucciones * ANCHO;
+            int saltoCondicion = condicion(ctx.optionalExp(1));
+            visit(ctx.code());
+            descartar(ctx.optionalExp(2));
+            agregar(SALTO, inicio, 0, 0, 0);
+            if (saltoCondicion >= 0) {
+                saltarAqui(saltoCondicion);
+            }
+            return null;
+        }
+
+        @Override
+        public Integer visitPrint_stmt(miGramaticaParser.Print_stmtContext ctx) {
+            agregar(ProgramaIR.IMPRIMIR, 0, ctx.simbolo, 0, linea(ctx));
+            return null;
+        }
+
+        @Override
+        public Integer visitOptionalExp(miGramaticaParser.OptionalExpContext ctx) {
+            return ctx.assignmentExp() == null ? null : visit(ctx.assignmentExp());
+        }
+
+        @Override
+        public Integer visitExp(miGramaticaParser.ExpContext ctx) {
+            return ctx.assignmentExp() == null ? null : visit(ctx.assignmentExp());
+        }
+
+        @Override
+        public Integer visitAssignmentExp(miGramaticaParser.AssignmentExpContext ctx) {
+            if (ctx.ASSIGN() == null) {
+                return visit(ctx.relationalExp());
+            }
+            // Como en el código NASM, el valor de la asignación es la variable misma
+            int valor = visit(ctx.assignmentExp());
+            liberar(valor);
+            agregar(ProgramaIR.MOV, ctx.simbolo, valor, 0, linea(ctx));
+            return ctx.simbolo;
+        }
+
+        @Override
+        public Integer visitRelationalExp(miGramaticaParser.RelationalExpContext ctx) {
+            int resultado = visit(ctx.additiveExp(0));
+            for (int i = 1; i < ctx.additiveExp().size(); i++) {
+                int operando2 = visit(ctx.additiveExp(i));
+                String operador = ctx.getChild(2 * i - 1).getText();
+                resultado = binaria(ProgramaIR.CMP + ProgramaIR.relacion(operador), resultado, operando2, ctx);
+            }
+            return resultado;
+        }
+
+        @Override
+        public Integer visitAdditiveExp(miGramaticaParser.AdditiveExpContext ctx) {
+            int resultado = visit(ctx.multiplicativeExp(0));
+            for (int i = 1; i < ctx.multiplicativeExp().size(); i++) {
+                int operando2 = visit(ctx.multiplicativeExp(i));
+                String operador = ctx.getChild(2 * i - 1).getText();
+                resultado = binaria(operador.equals("+") ? ProgramaIR.ADD : ProgramaIR.SUB, resultado, operando2, ctx);
+            }
+            return resultado;
+        }
+
+        @Override
+        public Integer visitMultiplicativeExp(miGramaticaParser.MultiplicativeExpContext ctx) {
+            int resultado = visit(ctx.unaryExp(0));
+            for (int i = 1; i < ctx.unaryExp().size(); i++) {
+                int operando2 = visit(ctx.unaryExp(i));
+                String operador = ctx.getChild(2 * i - 1).getText();
+                resultado = binaria(operador.equals("*") ? ProgramaIR.MUL : ProgramaIR.DIV, resultado, operando2, ctx);
+            }
+            return resultado;
+        }
+
+        private int binaria(int op, int operando1, int operando2, ParserRuleContext ctx) {
+            liberar(operando2);
+            liberar(operando1);
+            int destino = temporal();
+            agregar(op, destino, operando1, operando2, linea(ctx));
+            return destino;
+        }
+
+        @Override
+        public Integer visitUnaryExp(miGramaticaParser.UnaryExpContext ctx) {
+            if (ctx.ORES() == null) {
+                return visit(ctx.primaryExp());
+            }
+            int operando = visit(ctx.unaryExp());
+            liberar(operando);
+            int destino = temporal();
+            agregar(ProgramaIR.NEG, destino, operando, 0, linea(ctx));
+            return destino;
+        }
+
+        @Override
+        public Integer visitPrimaryExp(miGramaticaParser.PrimaryExpContext ctx) {
+            if (ctx.NUM() != null) {
+                return constante(GeneradorCodigo.valorLiteral(ctx.NUM().getText()));
+            } else if (ctx.ID() != null) {
+                return ctx.simbolo;
+            }
+            Integer valor = visit(ctx.exp());
+            if (valor == null) {
+                throw new IllegalStateException("La línea " + linea(ctx) + " contiene una expresión vacía entre paréntesis");
+            }
+            return valor;
+        }
+    }
+}
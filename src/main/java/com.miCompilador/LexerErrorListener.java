@@ -6,11 +6,32 @@ import org.antlr.v4.runtime.Recognizer;
 
 /**
  * Listener personalizado para capturar errores léxicos durante el análisis con ANTLR.
+ *
+ * <p>Los errores se registran en los {@link Diagnosticos} de la compilación en lugar de escribirse.
+ * El lexer entrega aquí los lexemas no reconocidos, con el lexema como mensaje; los identificadores
+ * demasiado largos los registra él mismo en los diagnósticos que recibe con
+ * {@code setDiagnosticos}.</p>
  */
 public class LexerErrorListener extends BaseErrorListener {
 
-    // Indicador de si se han encontrado errores léxicos
-    private boolean hayErrores = false;
+    // Errores de la compilación
+    private final Diagnosticos diagnosticos;
+
+    /**
+     * Crea un listener con su propio registro de errores.
+     */
+    public LexerErrorListener() {
+        this(new Diagnosticos());
+    }
+
+    /**
+     * Crea un listener que registra los errores en los diagnósticos indicados.
+     *
+     * @param diagnosticos Errores de la compilación.
+     */
+    public LexerErrorListener(Diagnosticos diagnosticos) {
+        this.diagnosticos = diagnosticos;
+    }
 
     /**
      * Verifica si se han detectado errores léxicos.
@@ -18,17 +39,17 @@ public class LexerErrorListener extends BaseErrorListener {
      * @return true si hay errores, false en caso contrario.
      */
     public boolean hayErrores() {
-        return hayErrores;
+        return diagnosticos.hayErrores(Diagnosticos.Fase.LEXICA);
     }
 
     /**
-     * Método invocado por ANTLR cuando se detecta un error sintáctico.
+     * Método invocado por ANTLR cuando se detecta un error léxico.
      *
      * @param recognizer          El reconocedor que detectó el error.
-     * @param offendingSymbol     El símbolo que causó el error.
+     * @param offendingSymbol     El token causante; el lexer siempre indica {@code null}.
      * @param line                La línea donde ocurrió el error.
      * @param charPositionInLine  La posición de carácter en la línea donde ocurrió el error.
-     * @param msg                 El mensaje de error generado.
+     * @param msg                 El lexema que causó el error.
      * @param e                   La excepción que causó el error, si existe.
      */
     @Override
@@ -37,11 +58,6 @@ public class LexerErrorListener extends BaseErrorListener {
                             int line, int charPositionInLine,
                             String msg,
                             RecognitionException e) {
-        hayErrores = true;
-        String message = String.format(
-                "Error [Fase Léxica]: Línea %d, posición %d: %s",
-                line, charPositionInLine, msg
-        );
-        System.err.println(message);
+        diagnosticos.reportar(Diagnosticos.Codigo.LEXEMA_NO_RECONOCIDO, line, charPositionInLine, msg);
     }
 }
@@ -0,0 +1,367 @@
+package com.miCompilador;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide el tiempo y la memoria asignada en cada fase de una compilación, junto con el tamaño de sus
+ * resultados (tokens, nodos del árbol, símbolos e instrucciones).
+ *
+ * <p>Cada fase se publica además como un evento JFR {@code miCompilador.Fase}, y al terminar se
+ * publica un evento {@code miCompilador.Compilacion} con los totales, de modo que una grabación de
+ * Flight Recorder muestra las fases junto al resto de la actividad de la JVM. Con
+ * {@link #toJson()} se obtiene el mismo informe en JSON.</p>
+ */
+public class MetricasCompilacion {
+
+    /**
+     * Evento JFR de una fase de la compilación.
+     */
+    @Name("miCompilador.Fase")
+    @Label("Fase de compilación")
+    @Category("miCompilador")
+    @StackTrace(false)
+    static class EventoFase extends Event {
+        @Label("Archivo")
+        String archivo;
+
+        @Label("Fase")
+        String fase;
+
+        @Label("Memoria asignada")
+        @DataAmount
+        long bytesAsignados;
+    }
+
+    /**
+     * Evento JFR con el resumen de una compilación completa.
+     */
+    @Name("miCompilador.Compilacion")
+    @Label("Compilación")
+    @Category("miCompilador")
+    @Description("Totales de una compilación; -1 indica un dato no disponible")
+    @StackTrace(false)
+    static class EventoCompilacion extends Event {
+        @Label("Archivo")
+        String archivo;
+
+        @Label("Código de salida")
+        int codigo;
+
+        @Label("Tamaño del fuente")
+        @DataAmount
+        long bytesFuente;
+
+        @Label("Memoria asignada")
+        @DataAmount
+        long bytesAsignados;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Nodos del árbol")
+        long nodos;
+
+        @Label("Símbolos")
+        long simbolos;
+
+        @Label("Instrucciones IR")
+        long instruccionesIR;
+
+        @Label("Instrucciones NASM")
+        long instruccionesNASM;
+    }
+
+    /**
+     * Medición de una fase terminada.
+     *
+     * @param nombre         Nombre de la fase.
+     * @param nanos          Tiempo de reloj de la fase en nanosegundos.
+     * @param bytesAsignados Bytes asignados por el hilo durante la fase, o -1 si no se pudo medir.
+     */
+    public record Fase(String nombre, long nanos, long bytesAsignados) {
+    }
+
+    private final String archivo;
+    private final boolean detallada;
+    private final List<Fase> fases = new ArrayList<>();
+    private final EventoCompilacion resumen = new EventoCompilacion();
+
+    // Fase en curso
+    private String faseActual;
+    private long inicioActual;
+    private long asignadosAlInicio;
+    private EventoFase eventoActual;
+
+    private long bytesFuente = -1;
+    private long tokens = -1;
+    private long nodos = -1;
+    private long simbolos = -1;
+    private long instruccionesIR = -1;
+    private long instruccionesNASM = -1;
+    private int codigo = -1;
+
+    /**
+     * Crea las métricas de la compilación de un archivo y empieza a medir el total.
+     *
+     * @param archivo   Ruta del archivo fuente, tal como se muestra en el informe.
+     * @param detallada Si se calculan los datos que tienen un costo propio (la memoria asignada y el
+     *                  conteo de nodos) aunque no haya una grabación JFR activa.
+     */
+    public MetricasCompilacion(String archivo, boolean detallada) {
+        this.archivo = archivo;
+        this.detallada = detallada || resumen.isEnabled();
+        resumen.begin();
+    }
+
+    /**
+     * Empieza a medir una fase, terminando antes la que estuviera en curso.
+     *
+     * @param fase Nombre de la fase.
+     */
+    public void iniciar(String fase) {
+        terminar();
+        faseActual = fase;
+        eventoActual = new EventoFase();
+        eventoActual.begin();
+        asignadosAlInicio = asignados();
+        inicioActual = System.nanoTime();
+    }
+
+    /**
+     * Termina la fase en curso, si la hay.
+     */
+    public void terminar() {
+        if (faseActual == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - inicioActual;
+        long bytes = asignadosAlInicio < 0 ? -1 : asignados() - asignadosAlInicio;
+        fases.add(new Fase(faseActual, nanos, bytes));
+        eventoActual.end();
+        if (eventoActual.shouldCommit()) {
+            eventoActual.archivo = archivo;
+            eventoActual.fase = faseActual;
+            eventoActual.bytesAsignados = bytes;
+            eventoActual.commit();
+        }
+        faseActual = null;
+        eventoActual = null;
+    }
+
+    /**
+     * Termina la medición de la compilación y publica el evento de resumen.
+     *
+     * @param codigo El código de salida de la compilación.
+     */
+    public void finalizar(int codigo) {
+        terminar();
+        this.codigo = codigo;
+        resumen.end();
+        if (resumen.shouldCommit()) {
+            resumen.archivo = archivo;
+            resumen.codigo = codigo;
+            resumen.bytesFuente = bytesFuente;
+            resumen.bytesAsignados = getBytesAsignados();
+            resumen.tokens = tokens;
+            resumen.nodos = nodos;
+            resumen.simbolos = simbolos;
+            resumen.instruccionesIR = instruccionesIR;
+            resumen.instruccionesNASM = instruccionesNASM;
+            resumen.commit();
+        }
+    }
+
+    /**
+     * Indica si se calculan los datos que tienen un costo propio, porque se pidió el informe o hay
+     * una grabación JFR activa. Si no, las fases solo miden su tiempo.
+     */
+    public boolean isDetallada() {
+        return detallada;
+    }
+
+    public void setBytesFuente(long bytesFuente) {
+        this.bytesFuente = bytesFuente;
+    }
+
+    public void setTokens(long tokens) {
+        this.tokens = tokens;
+    }
+
+    public void setNodos(long nodos) {
+        this.nodos = nodos;
+    }
+
+    public void setSimbolos(long simbolos) {
+        this.simbolos = simbolos;
+    }
+
+    public void setInstruccionesIR(long instruccionesIR) {
+        this.instruccionesIR = instruccionesIR;
+    }
+
+    public void setInstruccionesNASM(long instruccionesNASM) {
+        this.instruccionesNASM = instruccionesNASM;
+    }
+
+    /**
+     * Devuelve las fases medidas, en orden.
+     */
+    public List<Fase> getFases() {
+        return fases;
+    }
+
+    /**
+     * Devuelve el tiempo total de las fases medidas, en nanosegundos.
+     */
+    public long getNanos() {
+        long total = 0;
+        for (Fase fase : fases) {
+            total += fase.nanos();
+        }
+        return total;
+    }
+
+    /**
+     * Devuelve los bytes asignados en todas las fases, o -1 si no se pudieron medir.
+     */
+    public long getBytesAsignados() {
+        long total = 0;
+        for (Fase fase : fases) {
+            if (fase.bytesAsignados() < 0) {
+                return -1;
+            }
+            total += fase.bytesAsignados();
+        }
+        return total;
+    }
+
+    /**
+     * Devuelve el informe en formato JSON. Los datos no disponibles (por ejemplo, los nodos del árbol
+     * cuando la compilación se detuvo antes o fue incremental) se escriben como {@code null}.
+     *
+     * @return Un objeto JSON de una sola línea.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"archivo\":").append(cadenaJson(archivo));
+        json.append(",\"codigo\":").append(codigo);
+        json.append(",\"nanos\":").append(getNanos());
+        json.append(",\"bytesAsignados\":").append(numeroJson(getBytesAsignados()));
+        json.append(",\"bytesFuente\":").append(numeroJson(bytesFuente));
+        json.append(",\"tokens\":").append(numeroJson(tokens));
+        json.append(",\"nodos\":").append(numeroJson(nodos));
+        json.append(",\"simbolos\":").append(numeroJson(simbolos));
+        json.append(",\"instruccionesIR\":").append(numeroJson(instruccionesIR));
+        json.append(",\"instruccionesNASM\":").append(numeroJson(instruccionesNASM));
+        json.append(",\"fases\":[");
+        for (int i = 0; i < fases.size(); i++) {
+            Fase fase = fases.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"fase\":").append(cadenaJson(fase.nombre()));
+            json.append(",\"nanos\":").append(fase.nanos());
+            json.append(",\"bytesAsignados\":").append(numeroJson(fase.bytesAsignados())).append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Cuenta los nodos de un árbol de parseo, incluidos los terminales.
+     */
+    static long contarNodos(ParseTree arbol) {
+        long cantidad = 0;
+        ArrayDeque<ParseTree> pendientes = new ArrayDeque<>();
+        pendientes.push(arbol);
+        while (!pendientes.isEmpty()) {
+            ParseTree nodo = pendientes.pop();
+            cantidad++;
+            for (int i = 0; i < nodo.getChildCount(); i++) {
+                pendientes.push(nodo.getChild(i));
+            }
+        }
+        return cantidad;
+    }
+
+    /**
+     * Cuenta las instrucciones de la representación intermedia, incluidos los saltos y las ramas que
+     * terminan los bloques.
+     */
+    static long contarInstruccionesIR(ProgramaIR programa) {
+        long cantidad = 0;
+        for (BloqueBasico bloque : programa.getBloques()) {
+            cantidad += bloque.getNumInstrucciones();
+            if (bloque.terminador != BloqueBasico.FIN) {
+                cantidad++;
+            }
+        }
+        return cantidad;
+    }
+
+    private static String numeroJson(long valor) {
+        return valor < 0 ? "null" : Long.toString(valor);
+    }
+
+    static String cadenaJson(String texto) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Devuelve los bytes asignados hasta ahora por el hilo actual, o -1 si no se miden o no se pueden
+     * medir (por ejemplo, en un hilo virtual).
+     */
+    private long asignados() {
+        if (!detallada || MedidorMemoria.HILOS == null) {
+            return -1;
+        }
+        return MedidorMemoria.HILOS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Acceso diferido a la medición de memoria por hilo: cargar la API de gestión de la JVM tiene un
+     * costo en el arranque, así que solo se hace la primera vez que se usa.
+     */
+    private static class MedidorMemoria {
+        static final com.sun.management.ThreadMXBean HILOS = hilos();
+
+        private static com.sun.management.ThreadMXBean hilos() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean hilos
+                    && hilos.isThreadAllocatedMemorySupported()) {
+                hilos.setThreadAllocatedMemoryEnabled(true);
+                return hilos;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.miCompilador;
+
+/**
+ * Operando de una instrucción del código intermedio: un registro virtual o una constante inmediata.
+ *
+ * @param inmediato {@code true} si el operando es una constante.
+ * @param valor     El valor de la constante, o el número del registro virtual.
+ */
+public record Operando(boolean inmediato, int valor) {
+
+    /**
+     * Crea un operando que hace referencia a un registro virtual.
+     *
+     * @param registro El número del registro virtual.
+     * @return El operando.
+     */
+    public static Operando registro(int registro) {
+        return new Operando(false, registro);
+    }
+
+    /**
+     * Crea un operando constante.
+     *
+     * @param valor El valor de la constante.
+     * @return El operando.
+     */
+    public static Operando constante(int valor) {
+        return new Operando(true, valor);
+    }
+}
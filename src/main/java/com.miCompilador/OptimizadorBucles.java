@@ -0,0 +1,713 @@
+package com.miCompilador;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimización de los bucles de un {@link ProgramaIR}: movimiento de código invariante a un
+ * preencabezado y reducción de fuerza de las variables de inducción.
+ *
+ * <p>Los bucles se detectan en el grafo de flujo de control como bucles naturales: una arista de
+ * un bloque hacia otro que lo domina es una arista de retorno, y el bucle es el encabezado más los
+ * bloques que llegan a la arista sin pasar por él. Así se reconocen igual los {@code while}, los
+ * {@code for} y los bucles que arme cualquier otra fase, sin depender de cómo los generó
+ * {@link GeneradorCodigo}. Los bucles se procesan de adentro hacia afuera, de modo que lo que sale de
+ * un bucle interno puede seguir saliendo del externo.</p>
+ *
+ * <p>Los bucles forman un bosque de anidamiento en el que cada bloque pertenece solo al bucle más
+ * interno que lo contiene, y cada bucle recorre solo sus bloques propios: los que no están en un bucle
+ * interno, más los preencabezados de sus hijos. Lo que quedó dentro de un bucle interno tampoco puede
+ * salir del externo, porque depende de algo que se modifica en el interno; de los bucles internos
+ * solo hace falta saber qué registros definen, y eso se registra al terminar cada uno. Así el costo
+ * crece con el tamaño del programa y no con el producto del tamaño por el anidamiento.</p>
+ *
+ * <p>El preencabezado es un bloque nuevo que recibe las aristas que entran al encabezado desde
+ * fuera del bucle, y se ubica justo antes del encabezado en la disposición, así que no agrega saltos.
+ * Solo se crea si hay algo que poner en él.</p>
+ *
+ * <p>Se mueven los temporales cuyos operandos son constantes, variables que el bucle no modifica u
+ * otros temporales ya movidos. Como cada temporal se define una sola vez y se usa después de su
+ * definición, moverlo no cambia el valor que ve ningún uso; las variables del programa se quedan en
+ * el bucle, porque su valor se ve fuera de él. La división solo se mueve si el divisor es una
+ * constante distinta de 0 y de -1: ejecutarla antes de tiempo no puede hacer fallar un {@code idiv}
+ * que el bucle nunca habría ejecutado.</p>
+ *
+ * <p>Una variable de inducción es una variable que el bucle modifica una sola vez, con
+ * {@code i = i + c} o {@code i = i - c} y {@code c} invariante. Cada multiplicación {@code i * k} con
+ * {@code k} invariante pasa a leer un registro nuevo que vale {@code i * k} en todo el bucle: se
+ * inicializa en el preencabezado y se le suma {@code c * k} justo después de cada modificación de
+ * {@code i}. La aritmética es módulo 2<sup>32</sup> igual que {@code imul}, así que el resultado es
+ * el mismo aunque la multiplicación desborde.</p>
+ */
+public class OptimizadorBucles {
+
+    /**
+     * Bucle natural del bosque de anidamiento: su encabezado, sus bloques propios y su lugar en el bosque.
+     */
+    private static final class Bucle {
+        final BloqueBasico encabezado;
+        int[] bloques = new int[4];
+        int numBloques;
+        Bucle padre;
+        Bucle primerHijo;
+        Bucle hermano;
+
+        // Atajo hacia el bucle más externo ya armado que lo contiene, mientras se arma el bosque
+        Bucle ancestro;
+
+        // Posición en orden posterior del bosque, y la primera de sus descendientes
+        int posterior;
+        int primero;
+
+        Bucle(BloqueBasico encabezado) {
+            this.encabezado = encabezado;
+        }
+
+        void agregar(int bloque) {
+            if (numBloques == bloques.length) {
+                bloques = Arrays.copyOf(bloques, numBloques * 2);
+            }
+            bloques[numBloques++] = bloque;
+        }
+
+        /**
+         * Número del bucle, distinto para cada uno, con el que se marcan sus registros.
+         */
+        int sello() {
+            return posterior + 1;
+        }
+
+        /**
+         * Indica si otro bucle es este o uno de sus descendientes.
+         */
+        boolean contiene(Bucle otro) {
+            return otro != null && otro.posterior >= primero && otro.posterior <= posterior;
+        }
+    }
+
+    /**
+     * Variable de inducción: la instrucción que la modifica y el paso.
+     */
+    private record Induccion(BloqueBasico bloque, int posicion, int paso, boolean pasoInmediato, boolean resta) {
+    }
+
+    /**
+     * Multiplicación de una variable de inducción por un factor invariante.
+     */
+    private record Producto(int variable, int factor, boolean factorInmediato) {
+    }
+
+    /**
+     * Actualización pendiente de un registro reducido, que va después de modificar su variable.
+     */
+    private record Actualizacion(BloqueBasico bloque, int posicion, int codigo, int registro, int paso,
+                                 boolean pasoInmediato) {
+    }
+
+    private final ProgramaIR programa;
+
+    // Por registro virtual: el bucle que lo definió por última vez, cuántas veces, si salió de él y dónde
+    private int[] definidoEn = new int[0];
+    private int[] definiciones = new int[0];
+    private int[] movidoEn = new int[0];
+    private BloqueBasico[] bloqueDefinicion = new BloqueBasico[0];
+    private int[] posicionDefinicion = new int[0];
+
+    // Por registro virtual: la posición en orden posterior (más uno) de los bucles ya procesados con
+    // sus dos últimas definiciones, que bastan para saber si un bucle tiene ninguna, una o más
+    private int[] ultimaDefinicion = new int[0];
+    private int[] penultimaDefinicion = new int[0];
+
+    // Bucle más interno al que pertenece cada bloque, o null si no está en ninguno
+    private Bucle[] bucleDe;
+
+    // Predecesores de cada bloque alcanzable
+    private int[][] predecesores;
+
+    // Preencabezado de cada encabezado, para ubicarlo en la disposición al final
+    private final Map<Integer, BloqueBasico> preencabezados = new HashMap<>();
+
+    private int numBucles = 0;
+    private int invariantesMovidas = 0;
+    private int multiplicacionesReducidas = 0;
+
+    /**
+     * Crea un optimizador para un programa en representación intermedia.
+     *
+     * @param programa El programa, que se modifica en su lugar.
+     */
+    public OptimizadorBucles(ProgramaIR programa) {
+        this.programa = programa;
+    }
+
+    /**
+     * Optimiza los bucles del programa.
+     */
+    public void optimizar() {
+        List<BloqueBasico> disposicion = programa.getBloques();
+        if (disposicion.isEmpty()) {
+            return;
+        }
+        List<Bucle> bucles = buscarBucles(disposicion.get(0));
+        numBucles = bucles.size();
+        if (bucles.isEmpty()) {
+            return;
+        }
+
+        // De adentro hacia afuera: en orden posterior del bosque
+        bucleDe = Arrays.copyOf(bucleDe, programa.getNumBloques() + bucles.size());
+        for (Bucle bucle : bucles) {
+            optimizarBucle(bucle);
+            registrarDefiniciones(bucle);
+        }
+
+        // Ubicar los preencabezados justo antes de sus encabezados
+        if (!preencabezados.isEmpty()) {
+            List<BloqueBasico> anterior = new ArrayList<>(disposicion);
+            disposicion.clear();
+            for (BloqueBasico bloque : anterior) {
+                BloqueBasico preencabezado = preencabezados.get(bloque.id);
+                if (preencabezado != null) {
+                    disposicion.add(preencabezado);
+                }
+                disposicion.add(bloque);
+            }
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de bucles encontrados.
+     */
+    public int getNumBucles() {
+        return numBucles;
+    }
+
+    /**
+     * Devuelve la cantidad de instrucciones invariantes que salieron de algún bucle.
+     */
+    public int getInvariantesMovidas() {
+        return invariantesMovidas;
+    }
+
+    /**
+     * Devuelve la cantidad de multiplicaciones reemplazadas por sumas.
+     */
+    public int getMultiplicacionesReducidas() {
+        return multiplicacionesReducidas;
+    }
+
+    // Detección de bucles
+
+    /**
+     * Calcula los dominadores de los bloques alcanzables y arma el bosque de anidamiento de los bucles
+     * naturales.
+     *
+     * @return Los bucles, en orden posterior del bosque.
+     */
+    private List<Bucle> buscarBucles(BloqueBasico entrada) {
+        int numBloques = programa.getNumBloques();
+
+        // Orden posterior de un recorrido en profundidad desde la entrada
+        int[] orden = new int[numBloques];
+        int numAlcanzables = 0;
+        int[] numeroInverso = new int[numBloques];
+        Arrays.fill(numeroInverso, -1);
+        boolean[] visitado = new boolean[numBloques];
+        int[] pila = new int[numBloques];
+        int[] siguienteSucesor = new int[numBloques];
+        int tope = 0;
+        pila[tope++] = entrada.id;
+        visitado[entrada.id] = true;
+        while (tope > 0) {
+            int actual = pila[tope - 1];
+            int[] sucesores = programa.getBloque(actual).sucesores();
+            if (siguienteSucesor[actual] < sucesores.length) {
+                int sucesor = sucesores[siguienteSucesor[actual]++];
+                if (!visitado[sucesor]) {
+                    visitado[sucesor] = true;
+                    pila[tope++] = sucesor;
+                }
+            } else {
+                tope--;
+                orden[numAlcanzables++] = actual;
+            }
+        }
+        // orden[] en orden posterior inverso, y el número de cada bloque en ese orden
+        for (int i = 0, j = numAlcanzables - 1; i < j; i++, j--) {
+            int temporal = orden[i];
+            orden[i] = orden[j];
+            orden[j] = temporal;
+        }
+        for (int i = 0; i < numAlcanzables; i++) {
+            numeroInverso[orden[i]] = i;
+        }
+
+        // Predecesores alcanzables
+        int[] cantidad = new int[numBloques];
+        for (int i = 0; i < numAlcanzables; i++) {
+            for (int sucesor : programa.getBloque(orden[i]).sucesores()) {
+                cantidad[sucesor]++;
+            }
+        }
+        predecesores = new int[numBloques][];
+        for (int bloque = 0; bloque < numBloques; bloque++) {
+            predecesores[bloque] = new int[cantidad[bloque]];
+            cantidad[bloque] = 0;
+        }
+        for (int i = 0; i < numAlcanzables; i++) {
+            for (int sucesor : programa.getBloque(orden[i]).sucesores()) {
+                predecesores[sucesor][cantidad[sucesor]++] = orden[i];
+            }
+        }
+
+        // Dominador inmediato (Cooper, Harvey y Kennedy)
+        int[] dominador = new int[numBloques];
+        Arrays.fill(dominador, -1);
+        dominador[entrada.id] = entrada.id;
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int i = 1; i < numAlcanzables; i++) {
+                int bloque = orden[i];
+                int nuevo = -1;
+                for (int predecesor : predecesores[bloque]) {
+                    if (dominador[predecesor] < 0) {
+                        continue;
+                    }
+                    nuevo = nuevo < 0 ? predecesor : interseccion(predecesor, nuevo, dominador, numeroInverso);
+                }
+                if (dominador[bloque] != nuevo) {
+                    dominador[bloque] = nuevo;
+                    cambio = true;
+                }
+            }
+        }
+
+        // Numeración del árbol de dominadores para consultar la dominancia en tiempo constante
+        int[] primerHijo = new int[numBloques];
+        int[] hermano = new int[numBloques];
+        Arrays.fill(primerHijo, -1);
+        for (int i = numAlcanzables - 1; i >= 1; i--) {
+            int bloque = orden[i];
+            hermano[bloque] = primerHijo[dominador[bloque]];
+            primerHijo[dominador[bloque]] = bloque;
+        }
+        int[] entra = new int[numBloques];
+        int[] sale = new int[numBloques];
+        int[] proximoHijo = primerHijo.clone();
+        int reloj = 0;
+        tope = 0;
+        pila[tope++] = entrada.id;
+        entra[entrada.id] = reloj++;
+        while (tope > 0) {
+            int actual = pila[tope - 1];
+            int hijo = proximoHijo[actual];
+            if (hijo >= 0) {
+                proximoHijo[actual] = hermano[hijo];
+                entra[hijo] = reloj++;
+                pila[tope++] = hijo;
+            } else {
+                sale[actual] = reloj++;
+                tope--;
+            }
+        }
+
+        // Aristas de retorno, agrupadas por encabezado
+        Map<Integer, List<Integer>> retornos = new HashMap<>();
+        List<Integer> encabezados = new ArrayList<>();
+        for (int i = 0; i < numAlcanzables; i++) {
+            int bloque = orden[i];
+            for (int sucesor : programa.getBloque(bloque).sucesores()) {
+                if (entra[sucesor] <= entra[bloque] && sale[bloque] <= sale[sucesor]) {
+                    retornos.computeIfAbsent(sucesor, clave -> {
+                        encabezados.add(clave);
+                        return new ArrayList<>();
+                    }).add(bloque);
+                }
+            }
+        }
+
+        // Bucle natural de cada encabezado (salvo la entrada, que no admite preencabezado), de adentro
+        // hacia afuera: un encabezado interno está dominado por el externo, así que va después en el
+        // orden posterior inverso. Un bloque queda en el primer bucle que lo alcanza, el más interno, y
+        // un bucle interno ya armado se incorpora entero siguiendo solo los predecesores de su encabezado
+        encabezados.sort(Comparator.comparingInt((Integer encabezado) -> numeroInverso[encabezado]).reversed());
+        bucleDe = new Bucle[numBloques];
+        List<Bucle> bucles = new ArrayList<>();
+        int[] pendientes = new int[2 * numBloques];
+        for (int encabezado : encabezados) {
+            if (encabezado == entrada.id) {
+                continue;
+            }
+            Bucle bucle = new Bucle(programa.getBloque(encabezado));
+            bucle.agregar(encabezado);
+            bucleDe[encabezado] = bucle;
+            int numPendientes = 0;
+            for (int retorno : retornos.get(encabezado)) {
+                numPendientes = incorporar(retorno, bucle, pendientes, numPendientes);
+            }
+            while (numPendientes > 0) {
+                int bloque = pendientes[--numPendientes];
+                for (int predecesor : predecesores[bloque]) {
+                    numPendientes = incorporar(predecesor, bucle, pendientes, numPendientes);
+                }
+            }
+            bucles.add(bucle);
+        }
+
+        // Orden posterior del bosque: los descendientes de un bucle ocupan las posiciones
+        // [primero, posterior) y se procesan antes que él
+        List<Bucle> ordenBosque = new ArrayList<>(bucles.size());
+        for (Bucle raiz : bucles) {
+            if (raiz.padre != null) {
+                continue;
+            }
+            Bucle actual = raiz;
+            while (actual != null) {
+                actual.primero = ordenBosque.size();
+                while (actual.primerHijo != null) {
+                    actual = actual.primerHijo;
+                    actual.primero = ordenBosque.size();
+                }
+                while (true) {
+                    actual.posterior = ordenBosque.size();
+                    ordenBosque.add(actual);
+                    if (actual == raiz) {
+                        actual = null;
+                        break;
+                    } else if (actual.hermano != null) {
+                        actual = actual.hermano;
+                        break;
+                    }
+                    actual = actual.padre;
+                }
+            }
+        }
+        return ordenBosque;
+    }
+
+    /**
+     * Agrega al bucle en construcción un bloque que llega a una de sus aristas de retorno. Si el
+     * bloque ya está en un bucle interno, agrega como hijo al más externo de los ya armados que lo
+     * contienen y sigue por el encabezado de ese hijo.
+     *
+     * @return La nueva cantidad de bloques pendientes.
+     */
+    private int incorporar(int bloque, Bucle bucle, int[] pendientes, int numPendientes) {
+        Bucle duenio = bucleDe[bloque];
+        if (duenio == null) {
+            bucleDe[bloque] = bucle;
+            bucle.agregar(bloque);
+            pendientes[numPendientes++] = bloque;
+            return numPendientes;
+        }
+        Bucle externo = externo(duenio);
+        if (externo != bucle) {
+            externo.padre = bucle;
+            externo.ancestro = bucle;
+            externo.hermano = bucle.primerHijo;
+            bucle.primerHijo = externo;
+            pendientes[numPendientes++] = externo.encabezado.id;
+        }
+        return numPendientes;
+    }
+
+    /**
+     * Devuelve el bucle más externo ya armado que contiene a otro, acortando el camino hacia él.
+     */
+    private static Bucle externo(Bucle bucle) {
+        Bucle raiz = bucle;
+        while (raiz.ancestro != null) {
+            raiz = raiz.ancestro;
+        }
+        while (bucle != raiz) {
+            Bucle siguiente = bucle.ancestro;
+            bucle.ancestro = raiz;
+            bucle = siguiente;
+        }
+        return raiz;
+    }
+
+    /**
+     * Devuelve el ancestro común más cercano de dos bloques en el árbol de dominadores parcial.
+     */
+    private static int interseccion(int b1, int b2, int[] dominador, int[] numeroInverso) {
+        while (b1 != b2) {
+            while (numeroInverso[b1] > numeroInverso[b2]) {
+                b1 = dominador[b1];
+            }
+            while (numeroInverso[b2] > numeroInverso[b1]) {
+                b2 = dominador[b2];
+            }
+        }
+        return b1;
+    }
+
+    // Optimización de un bucle
+
+    /**
+     * Mueve las instrucciones invariantes del bucle y reduce sus multiplicaciones por variables de
+     * inducción. Solo se recorren los bloques propios del bucle; las definiciones de sus bucles
+     * internos ya están registradas.
+     */
+    private void optimizarBucle(Bucle bucle) {
+        int sello = bucle.sello();
+        asegurarRegistros(programa.getNumRegistros());
+        for (int k = 0; k < bucle.numBloques; k++) {
+            BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                int destino = bloque.destino[i];
+                if (destino >= 0) {
+                    if (definidoEn[destino] != sello) {
+                        definidoEn[destino] = sello;
+                        definiciones[destino] = 0;
+                    }
+                    definiciones[destino]++;
+                }
+            }
+        }
+
+        // Movimiento de código invariante, hasta que no salga nada más
+        BloqueBasico preencabezado = null;
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int k = 0; k < bucle.numBloques; k++) {
+                BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+                int quedan = 0;
+                for (int i = 0; i < bloque.n; i++) {
+                    if (esInvariante(bloque, i, bucle)) {
+                        if (preencabezado == null) {
+                            preencabezado = crearPreencabezado(bucle);
+                        }
+                        preencabezado.agregar(bloque.op[i], bloque.destino[i], bloque.a[i],
+                                bloque.inmediatos[i], bloque.b[i]);
+                        movidoEn[bloque.destino[i]] = sello;
+                        invariantesMovidas++;
+                        cambio = true;
+                    } else {
+                        bloque.mover(i, quedan++);
+                    }
+                }
+                bloque.n = quedan;
+            }
+        }
+
+        // Ubicación de las definiciones que quedaron en el bucle
+        for (int k = 0; k < bucle.numBloques; k++) {
+            BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                if (bloque.destino[i] >= 0) {
+                    bloqueDefinicion[bloque.destino[i]] = bloque;
+                    posicionDefinicion[bloque.destino[i]] = i;
+                }
+            }
+        }
+
+        // Variables de inducción: i = t, con t = i + c, t = c + i o t = i - c en el mismo bloque
+        Map<Integer, Induccion> inducciones = new HashMap<>();
+        for (int k = 0; k < bucle.numBloques; k++) {
+            BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                int variable = bloque.destino[i];
+                if (bloque.op[i] != ProgramaIR.MOV || variable < 0 || programa.getNombre(variable) == null
+                        || definicionesEnBucle(variable, bucle) != 1 || bloque.aInmediato(i)) {
+                    continue;
+                }
+                int t = bloque.a[i];
+                if (definidoEn[t] != sello || definicionesEnBucle(t, bucle) != 1 || movidoEn[t] == sello
+                        || bloqueDefinicion[t] != bloque
+                        || posicionDefinicion[t] >= i) {
+                    continue;
+                }
+                int j = posicionDefinicion[t];
+                int op = bloque.op[j];
+                boolean aEsVariable = !bloque.aInmediato(j) && bloque.a[j] == variable;
+                boolean bEsVariable = !bloque.bInmediato(j) && bloque.b[j] == variable;
+                if ((op == ProgramaIR.ADD || op == ProgramaIR.SUB) && aEsVariable
+                        && esOperandoInvariante(bloque.b[j], bloque.bInmediato(j), bucle)) {
+                    inducciones.put(variable, new Induccion(bloque, i, bloque.b[j], bloque.bInmediato(j),
+                            op == ProgramaIR.SUB));
+                } else if (op == ProgramaIR.ADD && bEsVariable
+                        && esOperandoInvariante(bloque.a[j], bloque.aInmediato(j), bucle)) {
+                    inducciones.put(variable, new Induccion(bloque, i, bloque.a[j], bloque.aInmediato(j), false));
+                }
+            }
+        }
+        if (inducciones.isEmpty()) {
+            return;
+        }
+
+        // Reducción de fuerza: d = i * k pasa a d = s, con s = i * k mantenido por sumas
+        Map<Producto, Integer> reducidos = new HashMap<>();
+        List<Actualizacion> actualizaciones = new ArrayList<>();
+        for (int k = 0; k < bucle.numBloques; k++) {
+            BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                if (bloque.op[i] != ProgramaIR.MUL) {
+                    continue;
+                }
+                int variable;
+                int factor;
+                boolean factorInmediato;
+                if (!bloque.aInmediato(i) && inducciones.containsKey(bloque.a[i])
+                        && esOperandoInvariante(bloque.b[i], bloque.bInmediato(i), bucle)) {
+                    variable = bloque.a[i];
+                    factor = bloque.b[i];
+                    factorInmediato = bloque.bInmediato(i);
+                } else if (!bloque.bInmediato(i) && inducciones.containsKey(bloque.b[i])
+                        && esOperandoInvariante(bloque.a[i], bloque.aInmediato(i), bucle)) {
+                    variable = bloque.b[i];
+                    factor = bloque.a[i];
+                    factorInmediato = bloque.aInmediato(i);
+                } else {
+                    continue;
+                }
+                Producto clave = new Producto(variable, factor, factorInmediato);
+                Integer reducido = reducidos.get(clave);
+                if (reducido == null) {
+                    if (preencabezado == null) {
+                        preencabezado = crearPreencabezado(bucle);
+                    }
+                    reducido = programa.nuevoRegistro();
+                    preencabezado.agregar(ProgramaIR.MUL, reducido, variable,
+                            factorInmediato ? BloqueBasico.B_INMEDIATO : 0, factor);
+                    Induccion induccion = inducciones.get(variable);
+                    int paso;
+                    boolean pasoInmediato = induccion.pasoInmediato() && factorInmediato;
+                    if (pasoInmediato) {
+                        paso = induccion.paso() * factor;
+                    } else {
+                        // El paso del registro reducido se calcula una vez, fuera del bucle
+                        paso = programa.nuevoRegistro();
+                        byte marcas = (byte) ((induccion.pasoInmediato() ? BloqueBasico.A_INMEDIATO : 0)
+                                | (factorInmediato ? BloqueBasico.B_INMEDIATO : 0));
+                        preencabezado.agregar(ProgramaIR.MUL, paso, induccion.paso(), marcas, factor);
+                    }
+                    actualizaciones.add(new Actualizacion(induccion.bloque(), induccion.posicion(),
+                            induccion.resta() ? ProgramaIR.SUB : ProgramaIR.ADD, reducido, paso, pasoInmediato));
+                    reducidos.put(clave, reducido);
+                }
+                bloque.op[i] = ProgramaIR.MOV;
+                bloque.a[i] = reducido;
+                bloque.inmediatos[i] = 0;
+                multiplicacionesReducidas++;
+            }
+        }
+
+        // Insertar las actualizaciones de atrás hacia adelante para no desplazar las pendientes
+        actualizaciones.sort(Comparator.comparingInt(Actualizacion::posicion).reversed());
+        for (Actualizacion actualizacion : actualizaciones) {
+            actualizacion.bloque().insertar(actualizacion.posicion() + 1, actualizacion.codigo(),
+                    actualizacion.registro(), actualizacion.registro(),
+                    actualizacion.pasoInmediato() ? BloqueBasico.B_INMEDIATO : 0, actualizacion.paso());
+        }
+    }
+
+    /**
+     * Indica si una instrucción del bucle se puede calcular una sola vez en el preencabezado.
+     */
+    private boolean esInvariante(BloqueBasico bloque, int i, Bucle bucle) {
+        int op = bloque.op[i];
+        int destino = bloque.destino[i];
+        if (destino < 0 || programa.getNombre(destino) != null || definicionesEnBucle(destino, bucle) != 1
+                || op == ProgramaIR.IMPRIMIR) {
+            return false;
+        }
+        if (op == ProgramaIR.DIV && (!bloque.bInmediato(i) || bloque.b[i] == 0 || bloque.b[i] == -1)) {
+            // idiv falla con divisor 0 y con INT_MIN / -1
+            return false;
+        }
+        return esOperandoInvariante(bloque.a[i], bloque.aInmediato(i), bucle)
+                && (!BloqueBasico.usaB(op) || esOperandoInvariante(bloque.b[i], bloque.bInmediato(i), bucle));
+    }
+
+    /**
+     * Indica si un operando tiene el mismo valor en todo el bucle.
+     */
+    private boolean esOperandoInvariante(int operando, boolean inmediato, Bucle bucle) {
+        return inmediato || movidoEn[operando] == bucle.sello() || definicionesEnBucle(operando, bucle) == 0;
+    }
+
+    /**
+     * Cuenta las definiciones de un registro en un bucle y sus bucles internos, hasta dos.
+     */
+    private int definicionesEnBucle(int registro, Bucle bucle) {
+        int cantidad = definidoEn[registro] == bucle.sello() ? definiciones[registro] : 0;
+        if (ultimaDefinicion[registro] > bucle.primero) {
+            cantidad++;
+        }
+        if (penultimaDefinicion[registro] > bucle.primero) {
+            cantidad++;
+        }
+        return cantidad;
+    }
+
+    /**
+     * Registra las definiciones que quedaron en los bloques propios de un bucle ya optimizado, para
+     * que los bucles que lo contienen las cuenten sin recorrer sus bloques.
+     */
+    private void registrarDefiniciones(Bucle bucle) {
+        asegurarRegistros(programa.getNumRegistros());
+        for (int k = 0; k < bucle.numBloques; k++) {
+            BloqueBasico bloque = programa.getBloque(bucle.bloques[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                int destino = bloque.destino[i];
+                if (destino >= 0) {
+                    penultimaDefinicion[destino] = ultimaDefinicion[destino];
+                    ultimaDefinicion[destino] = bucle.sello();
+                }
+            }
+        }
+    }
+
+    /**
+     * Crea el preencabezado de un bucle y le redirige las aristas que entran al encabezado desde fuera.
+     */
+    private BloqueBasico crearPreencabezado(Bucle bucle) {
+        BloqueBasico encabezado = bucle.encabezado;
+        BloqueBasico preencabezado = programa.nuevoBloque();
+        preencabezado.saltar(encabezado.id);
+        for (int predecesor : predecesores[encabezado.id]) {
+            if (bucle.contiene(bucleDe[predecesor])) {
+                continue;
+            }
+            BloqueBasico bloque = programa.getBloque(predecesor);
+            if (bloque.siVerdadero == encabezado.id) {
+                bloque.siVerdadero = preencabezado.id;
+            }
+            if (bloque.siFalso == encabezado.id) {
+                bloque.siFalso = preencabezado.id;
+            }
+        }
+        preencabezados.put(encabezado.id, preencabezado);
+
+        // El preencabezado es un bloque propio del bucle que contiene al encabezado
+        bucleDe[preencabezado.id] = bucle.padre;
+        if (bucle.padre != null) {
+            bucle.padre.agregar(preencabezado.id);
+        }
+        return preencabezado;
+    }
+
+    /**
+     * Agranda los arreglos indexados por registro virtual para cubrir los registros creados.
+     */
+    private void asegurarRegistros(int numRegistros) {
+        if (numRegistros <= definidoEn.length) {
+            return;
+        }
+        int capacidad = Math.max(numRegistros, definidoEn.length * 2);
+        definidoEn = Arrays.copyOf(definidoEn, capacidad);
+        definiciones = Arrays.copyOf(definiciones, capacidad);
+        movidoEn = Arrays.copyOf(movidoEn, capacidad);
+        bloqueDefinicion = Arrays.copyOf(bloqueDefinicion, capacidad);
+        posicionDefinicion = Arrays.copyOf(posicionDefinicion, capacidad);
+        ultimaDefinicion = Arrays.copyOf(ultimaDefinicion, capacidad);
+        penultimaDefinicion = Arrays.copyOf(penultimaDefinicion, capacidad);
+    }
+}
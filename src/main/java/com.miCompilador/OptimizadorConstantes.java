@@ -0,0 +1,571 @@
+package com.miCompilador;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Evaluación en tiempo de compilación sobre un {@link ProgramaIR}: plegado de constantes,
+ * propagación de constantes, eliminación de ramas con condición constante y de código muerto.
+ *
+ * <p>La propagación trabaja en dos niveles. Dentro de cada bloque, y de un bloque a los que solo
+ * se llega desde él, se sigue el valor conocido de cada registro virtual: un operando cuyo valor se
+ * conoce pasa a ser inmediato, y una operación con todos sus operandos inmediatos se reemplaza por
+ * su resultado. En todo el programa, una variable cuyas asignaciones le dan siempre la misma
+ * constante vale esa constante en cada lectura, siempre que toda lectura esté precedida por alguna
+ * asignación en todos los caminos (o que la constante sea cero, su valor inicial).</p>
+ *
+ * <p>Una rama cuyos operandos quedan inmediatos se convierte en un salto, y los bloques a los que ya
+ * no se llega salen de la disposición. Como eso puede dejar constantes más variables, los pasos se
+ * repiten mientras se resuelva alguna rama. Al final se quitan las instrucciones cuyo resultado no se
+ * lee nunca.</p>
+ *
+ * <p>La aritmética es la de 32 bits de {@code imul} e {@code idiv}. Una división que fallaría al
+ * ejecutarse (divisor cero, o el mínimo entero entre -1) no se evalúa ni se quita: el programa
+ * falla en el mismo punto que sin optimizar. El análisis semántico advierte las divisiones por un
+ * cero literal.</p>
+ */
+public class OptimizadorConstantes {
+
+    // Repeticiones como máximo de la propagación tras resolver ramas
+    private static final int MAX_PASADAS = 4;
+
+    // Tamaño máximo, en bits, de los conjuntos del análisis de asignación segura (bloques × variables)
+    private static final long LIMITE_ANALISIS = 1L << 27;
+
+    private final ProgramaIR programa;
+
+    // Bloques alcanzables en orden posterior inverso, y cantidad de predecesores alcanzables
+    private int[] orden;
+    private int numAlcanzables;
+    private boolean[] alcanzable;
+    private int[] numPredecesores;
+    private int[][] predecesores;
+
+    // Valor conocido de cada registro virtual durante la propagación local, con su registro de deshacer
+    private boolean[] conocido;
+    private int[] valor;
+    private int[] deshacer = new int[64];
+    private int numDeshacer = 0;
+
+    private int operacionesEvaluadas = 0;
+    private int operandosPropagados = 0;
+    private int ramasResueltas = 0;
+    private int bloquesEliminados = 0;
+    private int instruccionesEliminadas = 0;
+
+    /**
+     * Crea un optimizador para un programa en representación intermedia.
+     *
+     * @param programa El programa, que se modifica en su lugar.
+     */
+    public OptimizadorConstantes(ProgramaIR programa) {
+        this.programa = programa;
+    }
+
+    /**
+     * Optimiza el programa.
+     */
+    public void optimizar() {
+        if (programa.getBloques().isEmpty()) {
+            return;
+        }
+        boolean cambio = true;
+        for (int pasada = 0; cambio && pasada < MAX_PASADAS; pasada++) {
+            calcularAlcanzables();
+            propagarVariablesConstantes();
+            cambio = propagarEnBloques();
+            if (cambio) {
+                calcularAlcanzables();
+                quitarInalcanzables();
+            }
+        }
+        eliminarCodigoMuerto();
+    }
+
+    /**
+     * Devuelve la cantidad de operaciones reemplazadas por su resultado.
+     */
+    public int getOperacionesEvaluadas() {
+        return operacionesEvaluadas;
+    }
+
+    /**
+     * Devuelve la cantidad de operandos reemplazados por su valor constante.
+     */
+    public int getOperandosPropagados() {
+        return operandosPropagados;
+    }
+
+    /**
+     * Devuelve la cantidad de ramas condicionales convertidas en saltos.
+     */
+    public int getRamasResueltas() {
+        return ramasResueltas;
+    }
+
+    /**
+     * Devuelve la cantidad de bloques que dejaron de ser alcanzables.
+     */
+    public int getBloquesEliminados() {
+        return bloquesEliminados;
+    }
+
+    /**
+     * Devuelve la cantidad de instrucciones cuyo resultado no se leía.
+     */
+    public int getInstruccionesEliminadas() {
+        return instruccionesEliminadas;
+    }
+
+    // Grafo de flujo de control
+
+    /**
+     * Recorre el grafo desde la entrada y calcula el orden posterior inverso y los predecesores.
+     */
+    private void calcularAlcanzables() {
+        int numBloques = programa.getNumBloques();
+        orden = new int[numBloques];
+        numAlcanzables = 0;
+        alcanzable = new boolean[numBloques];
+        int[] pila = new int[numBloques];
+        int[] siguiente = new int[numBloques];
+        int tope = 0;
+        int entrada = programa.getBloques().get(0).id;
+        pila[tope++] = entrada;
+        alcanzable[entrada] = true;
+        while (tope > 0) {
+            int actual = pila[tope - 1];
+            int[] sucesores = programa.getBloque(actual).sucesores();
+            if (siguiente[actual] < sucesores.length) {
+                int sucesor = sucesores[siguiente[actual]++];
+                if (!alcanzable[sucesor]) {
+                    alcanzable[sucesor] = true;
+                    pila[tope++] = sucesor;
+                }
+            } else {
+                tope--;
+                orden[numAlcanzables++] = actual;
+            }
+        }
+        for (int i = 0, j = numAlcanzables - 1; i < j; i++, j--) {
+            int temporal = orden[i];
+            orden[i] = orden[j];
+            orden[j] = temporal;
+        }
+
+        numPredecesores = new int[numBloques];
+        for (int i = 0; i < numAlcanzables; i++) {
+            for (int sucesor : programa.getBloque(orden[i]).sucesores()) {
+                numPredecesores[sucesor]++;
+            }
+        }
+        predecesores = new int[numBloques][];
+        int[] llenos = new int[numBloques];
+        for (int i = 0; i < numAlcanzables; i++) {
+            predecesores[orden[i]] = new int[numPredecesores[orden[i]]];
+        }
+        for (int i = 0; i < numAlcanzables; i++) {
+            for (int sucesor : programa.getBloque(orden[i]).sucesores()) {
+                predecesores[sucesor][llenos[sucesor]++] = orden[i];
+            }
+        }
+    }
+
+    /**
+     * Quita de la disposición los bloques a los que ya no se llega.
+     */
+    private void quitarInalcanzables() {
+        List<BloqueBasico> disposicion = programa.getBloques();
+        int antes = disposicion.size();
+        disposicion.removeIf(bloque -> !alcanzable[bloque.id]);
+        bloquesEliminados += antes - disposicion.size();
+    }
+
+    // Variables constantes en todo el programa
+
+    /**
+     * Reemplaza las lecturas de las variables que valen siempre la misma constante.
+     */
+    private void propagarVariablesConstantes() {
+        int numRegistros = programa.getNumRegistros();
+
+        // Estado de cada variable: 0 sin asignaciones, 1 siempre la misma constante, 2 otra cosa
+        byte[] estado = new byte[numRegistros];
+        int[] constante = new int[numRegistros];
+        for (int k = 0; k < numAlcanzables; k++) {
+            BloqueBasico bloque = programa.getBloque(orden[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                int destino = bloque.destino[i];
+                if (destino < 0 || programa.getNombre(destino) == null || estado[destino] == 2) {
+                    continue;
+                }
+                if (bloque.op[i] != ProgramaIR.MOV || !bloque.aInmediato(i)
+                        || (estado[destino] == 1 && constante[destino] != bloque.a[i])) {
+                    estado[destino] = 2;
+                } else {
+                    estado[destino] = 1;
+                    constante[destino] = bloque.a[i];
+                }
+            }
+        }
+
+        // Las que valen cero son constantes aunque se lean antes de asignarse; las demás necesitan
+        // una asignación en todo camino hasta cada lectura
+        int[] denso = new int[numRegistros];
+        Arrays.fill(denso, -1);
+        int numCandidatas = 0;
+        for (int variable : programa.getVariables()) {
+            if (estado[variable] == 1 && constante[variable] != 0) {
+                denso[variable] = numCandidatas++;
+            }
+        }
+        if (numCandidatas > 0 && (long) numCandidatas * numAlcanzables > LIMITE_ANALISIS) {
+            // Programa demasiado grande para el análisis: solo se propagan las que valen cero
+            for (int variable : programa.getVariables()) {
+                if (denso[variable] >= 0) {
+                    estado[variable] = 2;
+                    denso[variable] = -1;
+                }
+            }
+            numCandidatas = 0;
+        }
+        if (numCandidatas > 0) {
+            descartarLeidasSinAsignar(denso, numCandidatas, estado);
+        }
+
+        for (int k = 0; k < numAlcanzables; k++) {
+            BloqueBasico bloque = programa.getBloque(orden[k]);
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i) && estado[bloque.a[i]] == 1) {
+                    bloque.a[i] = constante[bloque.a[i]];
+                    bloque.inmediatos[i] |= BloqueBasico.A_INMEDIATO;
+                    operandosPropagados++;
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i) && estado[bloque.b[i]] == 1) {
+                    bloque.b[i] = constante[bloque.b[i]];
+                    bloque.inmediatos[i] |= BloqueBasico.B_INMEDIATO;
+                    operandosPropagados++;
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0 && estado[bloque.condA] == 1) {
+                    bloque.condA = constante[bloque.condA];
+                    bloque.condInmediatos |= BloqueBasico.A_INMEDIATO;
+                    operandosPropagados++;
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0 && estado[bloque.condB] == 1) {
+                    bloque.condB = constante[bloque.condB];
+                    bloque.condInmediatos |= BloqueBasico.B_INMEDIATO;
+                    operandosPropagados++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marca como no constantes las candidatas que alguna lectura puede ver sin asignar, con un
+     * análisis hacia adelante de las variables asignadas en todo camino desde la entrada.
+     */
+    private void descartarLeidasSinAsignar(int[] denso, int numCandidatas, byte[] estado) {
+        int numBloques = programa.getNumBloques();
+        BitSet[] asignadas = new BitSet[numBloques];
+        BitSet[] salida = new BitSet[numBloques];
+        for (int k = 0; k < numAlcanzables; k++) {
+            BloqueBasico bloque = programa.getBloque(orden[k]);
+            BitSet propias = new BitSet(numCandidatas);
+            for (int i = 0; i < bloque.n; i++) {
+                if (bloque.destino[i] >= 0 && denso[bloque.destino[i]] >= 0) {
+                    propias.set(denso[bloque.destino[i]]);
+                }
+            }
+            asignadas[bloque.id] = propias;
+            salida[bloque.id] = new BitSet(numCandidatas);
+            if (k > 0) {
+                // Punto de partida del análisis de intersección: todo asignado
+                salida[bloque.id].set(0, numCandidatas);
+            } else {
+                salida[bloque.id].or(propias);
+            }
+        }
+
+        BitSet[] entrada = new BitSet[numBloques];
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int k = 0; k < numAlcanzables; k++) {
+                int id = orden[k];
+                BitSet nueva = new BitSet(numCandidatas);
+                if (k > 0) {
+                    nueva.set(0, numCandidatas);
+                    for (int predecesor : predecesores[id]) {
+                        nueva.and(salida[predecesor]);
+                    }
+                }
+                entrada[id] = (BitSet) nueva.clone();
+                nueva.or(asignadas[id]);
+                if (!nueva.equals(salida[id])) {
+                    salida[id] = nueva;
+                    cambio = true;
+                }
+            }
+        }
+
+        for (int k = 0; k < numAlcanzables; k++) {
+            BloqueBasico bloque = programa.getBloque(orden[k]);
+            BitSet actuales = entrada[bloque.id];
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i)) {
+                    descartarSiNoAsignada(bloque.a[i], denso, actuales, estado);
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    descartarSiNoAsignada(bloque.b[i], denso, actuales, estado);
+                }
+                if (bloque.destino[i] >= 0 && denso[bloque.destino[i]] >= 0) {
+                    actuales.set(denso[bloque.destino[i]]);
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    descartarSiNoAsignada(bloque.condA, denso, actuales, estado);
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    descartarSiNoAsignada(bloque.condB, denso, actuales, estado);
+                }
+            }
+        }
+    }
+
+    private static void descartarSiNoAsignada(int registro, int[] denso, BitSet asignadas, byte[] estado) {
+        if (denso[registro] >= 0 && !asignadas.get(denso[registro])) {
+            estado[registro] = 2;
+        }
+    }
+
+    // Propagación local
+
+    /**
+     * Propaga los valores conocidos dentro de cada bloque y hacia los bloques que tienen a ese bloque
+     * como único predecesor, recorriendo cada árbol de bloques desde su raíz.
+     *
+     * @return {@code true} si se resolvió alguna rama.
+     */
+    private boolean propagarEnBloques() {
+        int numRegistros = programa.getNumRegistros();
+        conocido = new boolean[numRegistros];
+        valor = new int[numRegistros];
+        int resueltasAntes = ramasResueltas;
+        int entrada = programa.getBloques().get(0).id;
+
+        int[] pilaBloques = new int[numAlcanzables];
+        int[] pilaMarcas = new int[numAlcanzables];
+        int[] pilaHijos = new int[numAlcanzables];
+        for (int k = 0; k < numAlcanzables; k++) {
+            int raiz = orden[k];
+            if (raiz != entrada && numPredecesores[raiz] == 1) {
+                // Se procesa junto con su único predecesor
+                continue;
+            }
+            int tope = 0;
+            pilaBloques[tope] = raiz;
+            pilaMarcas[tope] = numDeshacer;
+            pilaHijos[tope++] = 0;
+            procesar(programa.getBloque(raiz));
+            while (tope > 0) {
+                BloqueBasico bloque = programa.getBloque(pilaBloques[tope - 1]);
+                int[] sucesores = bloque.sucesores();
+                if (pilaHijos[tope - 1] < sucesores.length) {
+                    int sucesor = sucesores[pilaHijos[tope - 1]++];
+                    if (sucesor != entrada && numPredecesores[sucesor] == 1) {
+                        pilaBloques[tope] = sucesor;
+                        pilaMarcas[tope] = numDeshacer;
+                        pilaHijos[tope++] = 0;
+                        procesar(programa.getBloque(sucesor));
+                    }
+                } else {
+                    tope--;
+                    volverA(pilaMarcas[tope]);
+                }
+            }
+        }
+        return ramasResueltas > resueltasAntes;
+    }
+
+    /**
+     * Reemplaza los operandos conocidos del bloque, evalúa las operaciones con operandos constantes
+     * y resuelve la rama si su condición queda constante.
+     */
+    private void procesar(BloqueBasico bloque) {
+        for (int i = 0; i < bloque.n; i++) {
+            int op = bloque.op[i];
+            if (!bloque.aInmediato(i) && conocido[bloque.a[i]]) {
+                bloque.a[i] = valor[bloque.a[i]];
+                bloque.inmediatos[i] |= BloqueBasico.A_INMEDIATO;
+                operandosPropagados++;
+            }
+            boolean usaB = BloqueBasico.usaB(op);
+            if (usaB && !bloque.bInmediato(i) && conocido[bloque.b[i]]) {
+                bloque.b[i] = valor[bloque.b[i]];
+                bloque.inmediatos[i] |= BloqueBasico.B_INMEDIATO;
+                operandosPropagados++;
+            }
+            if (op != ProgramaIR.MOV && op != ProgramaIR.IMPRIMIR && op != ProgramaIR.CONTAR && bloque.aInmediato(i)
+                    && (!usaB || bloque.bInmediato(i)) && evaluable(op, bloque.a[i], bloque.b[i])) {
+                bloque.op[i] = ProgramaIR.MOV;
+                bloque.a[i] = evaluar(op, bloque.a[i], bloque.b[i]);
+                bloque.b[i] = 0;
+                bloque.inmediatos[i] = BloqueBasico.A_INMEDIATO;
+                operacionesEvaluadas++;
+            }
+            int destino = bloque.destino[i];
+            if (destino >= 0) {
+                recordar(destino, bloque.op[i] == ProgramaIR.MOV && bloque.aInmediato(i), bloque.a[i]);
+            }
+        }
+
+        if (bloque.terminador == BloqueBasico.RAMA) {
+            if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0 && conocido[bloque.condA]) {
+                bloque.condA = valor[bloque.condA];
+                bloque.condInmediatos |= BloqueBasico.A_INMEDIATO;
+                operandosPropagados++;
+            }
+            if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0 && conocido[bloque.condB]) {
+                bloque.condB = valor[bloque.condB];
+                bloque.condInmediatos |= BloqueBasico.B_INMEDIATO;
+                operandosPropagados++;
+            }
+            if (bloque.condInmediatos == (BloqueBasico.A_INMEDIATO | BloqueBasico.B_INMEDIATO)) {
+                bloque.saltar(ProgramaIR.cumple(bloque.relacion, bloque.condA, bloque.condB)
+                        ? bloque.siVerdadero : bloque.siFalso);
+                ramasResueltas++;
+            }
+        }
+    }
+
+    /**
+     * Indica si una operación con operandos constantes se puede evaluar sin cambiar el comportamiento
+     * del programa: las divisiones que fallarían se dejan para la ejecución.
+     */
+    private static boolean evaluable(int op, int a, int b) {
+        return op != ProgramaIR.DIV || (b != 0 && !(a == Integer.MIN_VALUE && b == -1));
+    }
+
+    /**
+     * Evalúa una operación con la aritmética de 32 bits del código generado.
+     */
+    private static int evaluar(int op, int a, int b) {
+        if (ProgramaIR.esComparacion(op)) {
+            return ProgramaIR.cumple(op - ProgramaIR.CMP, a, b) ? 1 : 0;
+        }
+        return switch (op) {
+            case ProgramaIR.ADD -> a + b;
+            case ProgramaIR.SUB -> a - b;
+            case ProgramaIR.MUL -> a * b;
+            case ProgramaIR.DIV -> a / b;
+            case ProgramaIR.NEG -> -a;
+            default -> throw new IllegalStateException("Instrucción desconocida: " + op);
+        };
+    }
+
+    /**
+     * Registra el valor de un registro virtual tras una definición, guardando el anterior para deshacerlo.
+     */
+    private void recordar(int registro, boolean esConstante, int nuevoValor) {
+        if (numDeshacer + 3 > deshacer.length) {
+            deshacer = Arrays.copyOf(deshacer, deshacer.length * 2);
+        }
+        deshacer[numDeshacer++] = registro;
+        deshacer[numDeshacer++] = conocido[registro] ? 1 : 0;
+        deshacer[numDeshacer++] = valor[registro];
+        conocido[registro] = esConstante;
+        valor[registro] = nuevoValor;
+    }
+
+    /**
+     * Deshace los valores registrados después de la marca indicada.
+     */
+    private void volverA(int marca) {
+        while (numDeshacer > marca) {
+            valor[deshacer[numDeshacer - 3]] = deshacer[numDeshacer - 1];
+            conocido[deshacer[numDeshacer - 3]] = deshacer[numDeshacer - 2] != 0;
+            numDeshacer -= 3;
+        }
+    }
+
+    // Código muerto
+
+    /**
+     * Quita las instrucciones sin efectos cuyo resultado no se lee, hasta que no quede ninguna.
+     */
+    private void eliminarCodigoMuerto() {
+        List<BloqueBasico> disposicion = programa.getBloques();
+        int[] lecturas = new int[programa.getNumRegistros()];
+        for (BloqueBasico bloque : disposicion) {
+            for (int i = 0; i < bloque.n; i++) {
+                if (!bloque.aInmediato(i)) {
+                    lecturas[bloque.a[i]]++;
+                }
+                if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                    lecturas[bloque.b[i]]++;
+                }
+            }
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                if ((bloque.condInmediatos & BloqueBasico.A_INMEDIATO) == 0) {
+                    lecturas[bloque.condA]++;
+                }
+                if ((bloque.condInmediatos & BloqueBasico.B_INMEDIATO) == 0) {
+                    lecturas[bloque.condB]++;
+                }
+            }
+        }
+
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (BloqueBasico bloque : new ArrayList<>(disposicion)) {
+                // De atrás hacia adelante, para que una instrucción quitada libere a las anteriores
+                boolean[] quitar = null;
+                for (int i = bloque.n - 1; i >= 0; i--) {
+                    int destino = bloque.destino[i];
+                    if (destino < 0 || lecturas[destino] > 0 || !sinEfectos(bloque, i)) {
+                        continue;
+                    }
+                    if (!bloque.aInmediato(i)) {
+                        lecturas[bloque.a[i]]--;
+                    }
+                    if (BloqueBasico.usaB(bloque.op[i]) && !bloque.bInmediato(i)) {
+                        lecturas[bloque.b[i]]--;
+                    }
+                    if (quitar == null) {
+                        quitar = new boolean[bloque.n];
+                    }
+                    quitar[i] = true;
+                    instruccionesEliminadas++;
+                    cambio = true;
+                }
+                if (quitar != null) {
+                    int quedan = 0;
+                    for (int i = 0; i < bloque.n; i++) {
+                        if (!quitar[i]) {
+                            bloque.mover(i, quedan++);
+                        }
+                    }
+                    bloque.n = quedan;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica si quitar la instrucción no cambia lo que hace el programa más allá de su resultado.
+     */
+    private static boolean sinEfectos(BloqueBasico bloque, int i) {
+        int op = bloque.op[i];
+        if (op == ProgramaIR.IMPRIMIR) {
+            return false;
+        }
+        // Una división puede fallar; solo es segura con un divisor constante que no la hace fallar
+        return op != ProgramaIR.DIV || (bloque.bInmediato(i) && bloque.b[i] != 0 && bloque.b[i] != -1);
+    }
+}
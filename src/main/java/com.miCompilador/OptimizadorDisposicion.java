@@ -0,0 +1,236 @@
+package com.miCompilador;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Disposición de los bloques de un {@link ProgramaIR} guiada por un perfil de ejecución: los
+ * caminos más ejecutados quedan seguidos, sin saltos, y los bloques fríos se apartan de ellos.
+ *
+ * <p>Con la frecuencia de cada bloque (ver {@link PerfilEjecucion}) se estima cuántas veces se
+ * recorrió cada arista del grafo: un salto, tantas como su bloque; en una rama, la arista hacia un
+ * sucesor que no tiene otros predecesores, tantas como ese sucesor, y la otra el resto. Luego se
+ * arman cadenas de bloques uniendo, de la arista más recorrida a la menos, el último bloque de una
+ * cadena con el primero de otra (el algoritmo de Pettis y Hansen). Los bloques de una cadena quedan
+ * seguidos en la disposición, así que {@link EmisorNASM} no emite salto para sus aristas internas.
+ * La cadena del bloque de entrada va primero y las demás en el orden original de su primer bloque.</p>
+ *
+ * <p>Así las ramas de un {@code if} quedan ordenadas según cuántas veces se tomó cada una: la más
+ * ejecutada sigue a la condición y llega sin saltar al final del {@code if}, y la otra pasa a otra
+ * cadena, más adelante en el código. A igual frecuencia gana la arista que ya era una caída, de
+ * modo que el código que el perfil no distingue (o que nunca se ejecutó) conserva su disposición.</p>
+ *
+ * <p>Los bloques creados después de aplicar el perfil, como los preencabezados de
+ * {@link OptimizadorBucles}, no tienen frecuencia: se estima como la suma de las aristas que llegan a
+ * ellos desde bloques anteriores en la disposición.</p>
+ */
+public class OptimizadorDisposicion {
+
+    private final ProgramaIR programa;
+
+    // Veces que se recorre la arista hacia siVerdadero (o la del salto) y hacia siFalso de cada bloque
+    private long[] pesoVerdadero;
+    private long[] pesoFalso;
+
+    private long saltosAntes = 0;
+    private long saltosDespues = 0;
+    private int bloquesMovidos = 0;
+
+    /**
+     * Crea un optimizador para un programa con perfil (ver {@link PerfilEjecucion#aplicar(ProgramaIR)}).
+     *
+     * @param programa El programa, cuya disposición se modifica en su lugar.
+     */
+    public OptimizadorDisposicion(ProgramaIR programa) {
+        this.programa = programa;
+    }
+
+    /**
+     * Reordena la disposición de los bloques.
+     */
+    public void optimizar() {
+        List<BloqueBasico> disposicion = programa.getBloques();
+        int numBloques = programa.getNumBloques();
+        if (disposicion.isEmpty()) {
+            return;
+        }
+        estimarAristas(disposicion, numBloques);
+        saltosAntes = contarSaltos(disposicion);
+
+        // Las aristas, de la más recorrida a la menos; a igual peso, primero las que ya eran caídas
+        int[] posicion = new int[numBloques];
+        for (int k = 0; k < disposicion.size(); k++) {
+            posicion[disposicion.get(k).id] = k;
+        }
+        List<long[]> aristas = new ArrayList<>();
+        for (BloqueBasico bloque : disposicion) {
+            if (bloque.terminador != BloqueBasico.FIN) {
+                aristas.add(new long[]{pesoVerdadero[bloque.id], bloque.id, bloque.siVerdadero});
+            }
+            if (bloque.terminador == BloqueBasico.RAMA && bloque.siFalso != bloque.siVerdadero) {
+                aristas.add(new long[]{pesoFalso[bloque.id], bloque.id, bloque.siFalso});
+            }
+        }
+        aristas.sort((x, y) -> {
+            if (x[0] != y[0]) {
+                return Long.compare(y[0], x[0]);
+            }
+            boolean caidaX = posicion[(int) x[2]] == posicion[(int) x[1]] + 1;
+            boolean caidaY = posicion[(int) y[2]] == posicion[(int) y[1]] + 1;
+            if (caidaX != caidaY) {
+                return caidaX ? -1 : 1;
+            }
+            return Integer.compare(posicion[(int) x[1]], posicion[(int) y[1]]);
+        });
+
+        // Unir cadenas: el origen debe ser el último bloque de la suya y el destino el primero de otra
+        int entrada = disposicion.get(0).id;
+        int[] siguiente = new int[numBloques];
+        int[] anterior = new int[numBloques];
+        int[] cadena = new int[numBloques];
+        Arrays.fill(siguiente, -1);
+        Arrays.fill(anterior, -1);
+        for (int k = 0; k < numBloques; k++) {
+            cadena[k] = k;
+        }
+        for (long[] arista : aristas) {
+            int origen = (int) arista[1];
+            int destino = (int) arista[2];
+            if (destino == entrada || siguiente[origen] >= 0 || anterior[destino] >= 0) {
+                continue;
+            }
+            int cadenaOrigen = raiz(cadena, origen);
+            int cadenaDestino = raiz(cadena, destino);
+            if (cadenaOrigen == cadenaDestino) {
+                continue;
+            }
+            siguiente[origen] = destino;
+            anterior[destino] = origen;
+            cadena[cadenaDestino] = cadenaOrigen;
+        }
+
+        // La cadena de la entrada primero y las demás según su primer bloque en la disposición original
+        List<BloqueBasico> nueva = new ArrayList<>(disposicion.size());
+        for (BloqueBasico bloque : disposicion) {
+            if (anterior[bloque.id] < 0) {
+                for (int id = bloque.id; id >= 0; id = siguiente[id]) {
+                    nueva.add(programa.getBloque(id));
+                }
+            }
+        }
+        for (int k = 0; k < nueva.size(); k++) {
+            int antes = k > 0 ? nueva.get(k - 1).id : -1;
+            int original = posicion[nueva.get(k).id];
+            if (original == 0 ? antes >= 0 : disposicion.get(original - 1).id != antes) {
+                bloquesMovidos++;
+            }
+        }
+        disposicion.clear();
+        disposicion.addAll(nueva);
+        saltosDespues = contarSaltos(disposicion);
+    }
+
+    /**
+     * Estima las veces que se recorre cada arista a partir de la frecuencia de los bloques.
+     */
+    private void estimarAristas(List<BloqueBasico> disposicion, int numBloques) {
+        pesoVerdadero = new long[numBloques];
+        pesoFalso = new long[numBloques];
+        int[] predecesores = new int[numBloques];
+        for (BloqueBasico bloque : disposicion) {
+            for (int sucesor : bloque.sucesores()) {
+                predecesores[sucesor]++;
+            }
+        }
+        long[] entrante = new long[numBloques];
+        for (BloqueBasico bloque : disposicion) {
+            long frecuencia = bloque.frecuencia >= 0 ? bloque.frecuencia : entrante[bloque.id];
+            if (bloque.terminador == BloqueBasico.SALTO
+                    || (bloque.terminador == BloqueBasico.RAMA && bloque.siVerdadero == bloque.siFalso)) {
+                pesoVerdadero[bloque.id] = frecuencia;
+                entrante[bloque.siVerdadero] += frecuencia;
+            } else if (bloque.terminador == BloqueBasico.RAMA) {
+                BloqueBasico verdadero = programa.getBloque(bloque.siVerdadero);
+                BloqueBasico falso = programa.getBloque(bloque.siFalso);
+                long haciaVerdadero;
+                if (verdadero.frecuencia >= 0 && predecesores[verdadero.id] == 1) {
+                    haciaVerdadero = Math.min(verdadero.frecuencia, frecuencia);
+                } else if (falso.frecuencia >= 0 && predecesores[falso.id] == 1) {
+                    haciaVerdadero = frecuencia - Math.min(falso.frecuencia, frecuencia);
+                } else if (verdadero.frecuencia > 0 && falso.frecuencia >= 0) {
+                    // Ambos tienen otros predecesores: se reparte en proporción a sus frecuencias
+                    haciaVerdadero = Math.round((double) frecuencia * verdadero.frecuencia
+                            / (verdadero.frecuencia + falso.frecuencia));
+                } else {
+                    haciaVerdadero = frecuencia / 2;
+                }
+                pesoVerdadero[bloque.id] = haciaVerdadero;
+                pesoFalso[bloque.id] = frecuencia - haciaVerdadero;
+                entrante[bloque.siVerdadero] += haciaVerdadero;
+                entrante[bloque.siFalso] += frecuencia - haciaVerdadero;
+            }
+        }
+    }
+
+    /**
+     * Estima los saltos tomados en una disposición: las veces que se recorre una arista cuyo destino
+     * no es el bloque siguiente.
+     */
+    private long contarSaltos(List<BloqueBasico> disposicion) {
+        long saltos = 0;
+        for (int k = 0; k < disposicion.size(); k++) {
+            BloqueBasico bloque = disposicion.get(k);
+            int siguiente = k + 1 < disposicion.size() ? disposicion.get(k + 1).id : -1;
+            if (bloque.terminador == BloqueBasico.FIN) {
+                continue;
+            }
+            if (bloque.siVerdadero != siguiente) {
+                saltos += pesoVerdadero[bloque.id];
+            }
+            if (bloque.terminador == BloqueBasico.RAMA && bloque.siFalso != bloque.siVerdadero
+                    && bloque.siFalso != siguiente) {
+                saltos += pesoFalso[bloque.id];
+            }
+        }
+        return saltos;
+    }
+
+    /**
+     * Devuelve la cadena a la que pertenece un bloque, comprimiendo el camino.
+     */
+    private static int raiz(int[] cadena, int bloque) {
+        int raiz = bloque;
+        while (cadena[raiz] != raiz) {
+            raiz = cadena[raiz];
+        }
+        while (cadena[bloque] != raiz) {
+            int padre = cadena[bloque];
+            cadena[bloque] = raiz;
+            bloque = padre;
+        }
+        return raiz;
+    }
+
+    /**
+     * Devuelve la cantidad estimada de saltos tomados con la disposición original, sumada en todas
+     * las ejecuciones del perfil.
+     */
+    public long getSaltosAntes() {
+        return saltosAntes;
+    }
+
+    /**
+     * Devuelve la cantidad estimada de saltos tomados con la disposición nueva.
+     */
+    public long getSaltosDespues() {
+        return saltosDespues;
+    }
+
+    /**
+     * Devuelve la cantidad de bloques que ya no siguen al mismo bloque que antes.
+     */
+    public int getBloquesMovidos() {
+        return bloquesMovidos;
+    }
+}
@@ -0,0 +1,298 @@
+package com.miCompilador;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Optimización de mirilla sobre las instrucciones NASM de los bloques del programa, entre la
+ * selección de instrucciones de {@link EmisorNASM} y su escritura como texto.
+ *
+ * <p>El optimizador recorre la lista con una ventana de a lo sumo {@link #getVentana()} líneas
+ * consecutivas, sin contar los comentarios, y en cada posición prueba las reglas en orden; una regla
+ * más larga que la ventana no se aplica. Se repiten las pasadas hasta que ninguna regla cambia nada,
+ * porque eliminar una instrucción puede dejar a la vista otro patrón. Las etiquetas ocupan lugar en
+ * la ventana, así que las reglas no juntan instrucciones de uno y otro lado de un destino de salto
+ * salvo que lo pidan explícitamente.</p>
+ *
+ * <p>Las reglas predeterminadas son:</p>
+ * <ul>
+ *     <li>{@code carga-tras-guardado}: {@code mov A, B} seguido de {@code mov B, A}; la segunda no
+ *     cambia nada. Cubre releer una variable o un temporal de la pila justo después de guardarlo.</li>
+ *     <li>{@code comparacion-con-cero}: {@code cmp R, 0} justo después de una operación aritmética
+ *     o lógica sobre {@code R}, que ya dejó la bandera de cero según el resultado, cuando la
+ *     instrucción siguiente solo lee esa bandera ({@code je}, {@code jne}, {@code sete},
+ *     {@code setne}). Las demás banderas no coinciden (la resta puede desbordar), así que las
+ *     comparaciones de orden se conservan. El emisor nunca lee dos veces las banderas de una
+ *     comparación.</li>
+ *     <li>{@code salto-al-siguiente}: un {@code jmp} a la etiqueta que lo sigue.</li>
+ * </ul>
+ */
+public class OptimizadorMirilla {
+
+    /**
+     * Tamaño de la ventana por defecto, suficiente para todas las reglas predeterminadas.
+     */
+    public static final int VENTANA_PREDETERMINADA = 3;
+
+    /**
+     * Regla de reescritura de la mirilla.
+     */
+    public interface Regla {
+
+        /**
+         * Nombre de la regla en el informe de instrucciones eliminadas.
+         */
+        String nombre();
+
+        /**
+         * Cantidad de líneas que examina la regla desde el comienzo de la ventana.
+         */
+        int longitud();
+
+        /**
+         * Intenta aplicar la regla al comienzo de la ventana.
+         *
+         * @param ventana Las líneas examinadas, con al menos {@link #longitud()} elementos.
+         * @return {@code true} si la regla cambió algo.
+         */
+        boolean aplicar(Ventana ventana);
+    }
+
+    /**
+     * Líneas consecutivas de la lista que examina una regla, sin los comentarios.
+     */
+    public static final class Ventana {
+        private final List<InstruccionNASM> codigo;
+        private final int[] posiciones;
+        private int tamano;
+        private int eliminadas;
+
+        private Ventana(List<InstruccionNASM> codigo, int maximo) {
+            this.codigo = codigo;
+            this.posiciones = new int[maximo];
+        }
+
+        /**
+         * Devuelve la cantidad de líneas de la ventana.
+         */
+        public int tamano() {
+            return tamano;
+        }
+
+        /**
+         * Devuelve la línea {@code k} de la ventana.
+         */
+        public InstruccionNASM get(int k) {
+            return codigo.get(posiciones[k]);
+        }
+
+        /**
+         * Indica si las primeras {@code n} líneas son instrucciones (no etiquetas).
+         */
+        public boolean sonInstrucciones(int n) {
+            for (int k = 0; k < n; k++) {
+                if (get(k).tipo() != InstruccionNASM.INSTRUCCION) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Elimina la línea {@code k} de la ventana.
+         */
+        public void eliminar(int k) {
+            codigo.set(posiciones[k], null);
+            eliminadas++;
+        }
+
+        /**
+         * Reemplaza la línea {@code k} de la ventana.
+         */
+        public void reemplazar(int k, InstruccionNASM instruccion) {
+            codigo.set(posiciones[k], instruccion);
+        }
+    }
+
+    private final int ventana;
+    private final List<Regla> reglas;
+    private final long[] eliminadas;
+
+    /**
+     * Crea un optimizador con las reglas predeterminadas.
+     *
+     * @param ventana Cantidad máxima de líneas que examina una regla.
+     */
+    public OptimizadorMirilla(int ventana) {
+        this(ventana, reglasPredeterminadas());
+    }
+
+    /**
+     * Crea un optimizador con un conjunto de reglas propio.
+     *
+     * @param ventana Cantidad máxima de líneas que examina una regla.
+     * @param reglas  Las reglas, en el orden en que se prueban.
+     */
+    public OptimizadorMirilla(int ventana, List<Regla> reglas) {
+        if (ventana < 1) {
+            throw new IllegalArgumentException("La ventana debe tener al menos una línea");
+        }
+        this.ventana = ventana;
+        this.reglas = List.copyOf(reglas);
+        this.eliminadas = new long[reglas.size()];
+    }
+
+    /**
+     * Devuelve las reglas predeterminadas, en el orden en que se prueban.
+     */
+    public static List<Regla> reglasPredeterminadas() {
+        return List.of(
+                new ReglaSimple("carga-tras-guardado", 2, OptimizadorMirilla::cargaTrasGuardado),
+                new ReglaSimple("comparacion-con-cero", 3, OptimizadorMirilla::comparacionConCero),
+                new ReglaSimple("salto-al-siguiente", 2, OptimizadorMirilla::saltoAlSiguiente));
+    }
+
+    /**
+     * Devuelve el tamaño de la ventana.
+     */
+    public int getVentana() {
+        return ventana;
+    }
+
+    /**
+     * Optimiza una lista de líneas en su lugar.
+     *
+     * @param codigo Las líneas a optimizar. Al terminar no contiene las eliminadas.
+     */
+    public void optimizar(List<InstruccionNASM> codigo) {
+        Ventana vista = new Ventana(codigo, ventana);
+        boolean cambio = true;
+        while (cambio) {
+            cambio = false;
+            for (int i = 0; i < codigo.size(); i++) {
+                if (!armar(vista, i)) {
+                    continue;
+                }
+                for (int r = 0; r < reglas.size(); r++) {
+                    Regla regla = reglas.get(r);
+                    if (regla.longitud() > vista.tamano) {
+                        continue;
+                    }
+                    vista.eliminadas = 0;
+                    if (regla.aplicar(vista)) {
+                        eliminadas[r] += vista.eliminadas;
+                        cambio = true;
+                        if (!armar(vista, i)) {
+                            break;
+                        }
+                    }
+                }
+            }
+            codigo.removeIf(Objects::isNull);
+        }
+    }
+
+    /**
+     * Arma la ventana que empieza en la posición indicada.
+     *
+     * @return {@code false} si en esa posición no empieza ninguna ventana (es un comentario o una
+     * línea eliminada).
+     */
+    private boolean armar(Ventana vista, int inicio) {
+        InstruccionNASM primera = vista.codigo.get(inicio);
+        if (primera == null || primera.tipo() == InstruccionNASM.COMENTARIO) {
+            return false;
+        }
+        vista.tamano = 0;
+        for (int j = inicio; j < vista.codigo.size() && vista.tamano < ventana; j++) {
+            InstruccionNASM linea = vista.codigo.get(j);
+            if (linea != null && linea.tipo() != InstruccionNASM.COMENTARIO) {
+                vista.posiciones[vista.tamano++] = j;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve la cantidad de instrucciones eliminadas por cada regla, en el orden de las reglas.
+     */
+    public Map<String, Long> getEliminadas() {
+        Map<String, Long> informe = new LinkedHashMap<>();
+        for (int r = 0; r < reglas.size(); r++) {
+            informe.put(reglas.get(r).nombre(), eliminadas[r]);
+        }
+        return informe;
+    }
+
+    /**
+     * Devuelve la cantidad total de instrucciones eliminadas.
+     */
+    public long getTotalEliminadas() {
+        long total = 0;
+        for (long cantidad : eliminadas) {
+            total += cantidad;
+        }
+        return total;
+    }
+
+    /**
+     * Regla definida por una función.
+     */
+    private record ReglaSimple(String nombre, int longitud, Predicate<Ventana> accion)
+            implements Regla {
+        @Override
+        public boolean aplicar(Ventana ventana) {
+            return accion.test(ventana);
+        }
+    }
+
+    // Reglas predeterminadas
+
+    private static boolean cargaTrasGuardado(Ventana v) {
+        if (!v.sonInstrucciones(2)) {
+            return false;
+        }
+        InstruccionNASM guardado = v.get(0);
+        InstruccionNASM carga = v.get(1);
+        if (guardado.es("mov") && carga.es("mov")
+                && guardado.destino().equals(carga.fuente()) && guardado.fuente().equals(carga.destino())) {
+            v.eliminar(1);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean comparacionConCero(Ventana v) {
+        if (!v.sonInstrucciones(3)) {
+            return false;
+        }
+        InstruccionNASM operacion = v.get(0);
+        InstruccionNASM comparacion = v.get(1);
+        if (!comparacion.es("cmp") || !"0".equals(comparacion.fuente()) || !v.get(2).leeSoloCero()) {
+            return false;
+        }
+        boolean dejaCero = switch (operacion.mnemonico()) {
+            case "add", "sub", "and", "or", "xor", "neg", "inc", "dec" -> true;
+            default -> false;
+        };
+        if (dejaCero && comparacion.destino().equals(operacion.destino())) {
+            v.eliminar(1);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean saltoAlSiguiente(Ventana v) {
+        InstruccionNASM salto = v.get(0);
+        InstruccionNASM siguiente = v.get(1);
+        if (salto.es("jmp") && siguiente.tipo() == InstruccionNASM.ETIQUETA
+                && salto.destino().equals(siguiente.mnemonico())) {
+            v.eliminar(0);
+            return true;
+        }
+        return false;
+    }
+}
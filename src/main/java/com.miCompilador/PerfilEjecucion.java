@@ -0,0 +1,261 @@
+package com.miCompilador;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Perfil de ejecución de un programa: cuántas veces se ejecutó cada uno de sus bloques básicos,
+ * según los contadores de una versión instrumentada del programa.
+ *
+ * <p>{@link #instrumentar(ProgramaIR, String)} agrega al comienzo de cada bloque del programa recién
+ * generado, antes de cualquier optimización, una instrucción {@link ProgramaIR#CONTAR} que
+ * incrementa el contador del bloque. Al terminar, el programa agrega al archivo del perfil un
+ * registro de texto: la cabecera {@code miCompilador-perfil 1 <huella> <bloques>} y el contador de
+ * cada bloque, uno por línea, en el orden de los números de bloque. Cada ejecución agrega su propio
+ * registro, así que los perfiles de muchas ejecuciones (o de varias máquinas) se acumulan en un
+ * archivo o se concatenan; {@link #leer(Path)} suma los registros de un mismo programa.</p>
+ *
+ * <p>Los bloques se identifican por su número antes de optimizar, que solo depende del programa
+ * fuente: el recorrido del árbol, la compilación en una pasada y la incremental generan los mismos
+ * bloques. La huella resume ese código intermedio, de modo que un registro de otro programa, o de
+ * otra versión del mismo, no se aplica. Los contadores son de 32 bits sin signo; el programa los
+ * escribe con signo y al leerlos se recupera el valor sin signo.</p>
+ */
+public class PerfilEjecucion {
+
+    /**
+     * Primera palabra de la cabecera de cada registro del perfil.
+     */
+    static final String CABECERA = "miCompilador-perfil";
+
+    /**
+     * Versión del formato del perfil, que va en la cabecera.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Extensión del archivo del perfil, que se ubica junto al archivo NASM.
+     */
+    static final String EXTENSION = ".perfil";
+
+    /**
+     * Contadores de un programa instrumentado.
+     *
+     * @param ruta          El archivo al que el programa agrega sus contadores.
+     * @param huella        La huella del programa antes de instrumentarlo.
+     * @param numContadores La cantidad de contadores: uno por bloque.
+     */
+    public record Instrumentacion(String ruta, int huella, int numContadores) {
+    }
+
+    // Conteos sumados y cantidad de registros de cada programa del archivo, por huella
+    private final Map<Integer, long[]> conteos = new TreeMap<>();
+    private final Map<Integer, Integer> ejecuciones = new TreeMap<>();
+    private int registrosIncompletos = 0;
+
+    /**
+     * Devuelve el archivo del perfil de un programa instrumentado: el del código NASM con la
+     * extensión {@link #EXTENSION}, como ruta absoluta para que no dependa del directorio en el que
+     * se ejecuta el programa.
+     *
+     * @param asm El archivo NASM generado.
+     * @return La ruta del perfil.
+     */
+    public static Path rutaPara(Path asm) {
+        Path absoluta = asm.toAbsolutePath().normalize();
+        String nombre = absoluta.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        return absoluta.resolveSibling((punto > 0 ? nombre.substring(0, punto) : nombre) + EXTENSION);
+    }
+
+    /**
+     * Calcula la huella del código intermedio de un programa: un CRC32 de sus bloques, en el orden
+     * de sus números, con sus instrucciones y terminadores.
+     *
+     * @param programa El programa, tal como lo generó {@link GeneradorCodigo}.
+     * @return La huella.
+     */
+    public static int huella(ProgramaIR programa) {
+        CRC32 crc = new CRC32();
+        ByteBuffer datos = ByteBuffer.allocate(4096);
+        datos.putInt(programa.getNumBloques()).putInt(programa.getNumRegistros());
+        for (int k = 0; k < programa.getNumBloques(); k++) {
+            BloqueBasico bloque = programa.getBloque(k);
+            for (int i = 0; i < bloque.n; i++) {
+                datos = vaciarSiLleno(crc, datos, 5);
+                datos.putInt(bloque.op[i]).putInt(bloque.destino[i]).putInt(bloque.a[i])
+                        .putInt(BloqueBasico.usaB(bloque.op[i]) ? bloque.b[i] : 0).putInt(bloque.inmediatos[i]);
+            }
+            // Los campos de la rama solo cuentan si el bloque termina en una
+            datos = vaciarSiLleno(crc, datos, 8);
+            datos.putInt(bloque.n).putInt(bloque.terminador).putInt(bloque.siVerdadero);
+            if (bloque.terminador == BloqueBasico.RAMA) {
+                datos.putInt(bloque.siFalso).putInt(bloque.relacion).putInt(bloque.condA)
+                        .putInt(bloque.condB).putInt(bloque.condInmediatos);
+            }
+        }
+        crc.update(datos.flip());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Pasa los datos acumulados al CRC si no entran {@code enteros} enteros más.
+     */
+    private static ByteBuffer vaciarSiLleno(CRC32 crc, ByteBuffer datos, int enteros) {
+        if (datos.remaining() < 4 * enteros) {
+            crc.update(datos.flip());
+            datos.clear();
+        }
+        return datos;
+    }
+
+    /**
+     * Instrumenta un programa: cada bloque empieza incrementando su contador, y el programa agrega
+     * los contadores al archivo del perfil al terminar. Se debe llamar antes de optimizar el
+     * programa, para que los números de bloque sean los que luego usa {@link #aplicar(ProgramaIR)}.
+     *
+     * @param programa El programa, que se modifica en su lugar.
+     * @param ruta     El archivo al que el programa agrega sus contadores.
+     * @return Los contadores del programa.
+     */
+    public static Instrumentacion instrumentar(ProgramaIR programa, String ruta) {
+        Instrumentacion instrumentacion = new Instrumentacion(ruta, huella(programa), programa.getNumBloques());
+        for (int k = 0; k < programa.getNumBloques(); k++) {
+            programa.getBloque(k).insertar(0, ProgramaIR.CONTAR, -1, k, BloqueBasico.A_INMEDIATO, 0);
+        }
+        programa.setInstrumentacion(instrumentacion);
+        return instrumentacion;
+    }
+
+    /**
+     * Lee un archivo de perfil y suma los registros de cada programa. Un registro que termina antes
+     * de tener todos sus contadores (el programa se interrumpió mientras los escribía) se descarta.
+     *
+     * @param archivo El archivo del perfil.
+     * @return El perfil leído.
+     * @throws IOException Si no se puede leer el archivo o no tiene el formato de un perfil.
+     */
+    public static PerfilEjecucion leer(Path archivo) throws IOException {
+        PerfilEjecucion perfil = new PerfilEjecucion();
+        try (BufferedReader lector = Files.newBufferedReader(archivo)) {
+            long[] registro = null;
+            int huella = 0;
+            int llenos = 0;
+            int numLinea = 0;
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                numLinea++;
+                linea = linea.strip();
+                if (linea.isEmpty()) {
+                    continue;
+                }
+                if (linea.startsWith(CABECERA)) {
+                    if (registro != null) {
+                        perfil.registrosIncompletos++;
+                    }
+                    String[] partes = linea.split("\\s+");
+                    if (partes.length != 4 || !partes[0].equals(CABECERA)) {
+                        throw new IOException("línea " + numLinea + ": cabecera inválida");
+                    }
+                    if (!partes[1].equals(Integer.toString(VERSION))) {
+                        throw new IOException("línea " + numLinea + ": versión de perfil no admitida: " + partes[1]);
+                    }
+                    try {
+                        huella = Integer.parseUnsignedInt(partes[2], 16);
+                        registro = new long[Integer.parseInt(partes[3])];
+                    } catch (NumberFormatException | NegativeArraySizeException e) {
+                        throw new IOException("línea " + numLinea + ": cabecera inválida");
+                    }
+                    llenos = 0;
+                } else if (registro == null) {
+                    throw new IOException("línea " + numLinea + ": se esperaba la cabecera '" + CABECERA + "'");
+                } else {
+                    try {
+                        // El contador se escribió con signo: los 32 bits bajos son su valor sin signo
+                        registro[llenos++] = Integer.toUnsignedLong((int) Long.parseLong(linea));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("línea " + numLinea + ": se esperaba un contador");
+                    }
+                }
+                if (registro != null && llenos == registro.length) {
+                    perfil.sumar(huella, registro);
+                    registro = null;
+                }
+            }
+            if (registro != null) {
+                perfil.registrosIncompletos++;
+            }
+        }
+        return perfil;
+    }
+
+    /**
+     * Suma un registro completo a los conteos de su programa.
+     */
+    private void sumar(int huella, long[] registro) throws IOException {
+        long[] total = conteos.computeIfAbsent(huella, h -> new long[registro.length]);
+        if (total.length != registro.length) {
+            throw new IOException("dos registros con la huella " + Integer.toHexString(huella)
+                    + " tienen distinta cantidad de bloques");
+        }
+        for (int k = 0; k < total.length; k++) {
+            total[k] += registro[k];
+        }
+        ejecuciones.merge(huella, 1, Integer::sum);
+    }
+
+    /**
+     * Asigna a cada bloque de un programa la frecuencia que registró el perfil. Se debe llamar antes
+     * de optimizar el programa, con los mismos números de bloque que al instrumentarlo.
+     *
+     * @param programa El programa, tal como lo generó {@link GeneradorCodigo}.
+     * @return La cantidad de ejecuciones del perfil que corresponden al programa, o 0 si el perfil
+     *         no tiene registros del programa y no se aplicó.
+     */
+    public int aplicar(ProgramaIR programa) {
+        int huella = huella(programa);
+        long[] total = conteos.get(huella);
+        if (total == null || total.length != programa.getNumBloques()) {
+            return 0;
+        }
+        for (int k = 0; k < total.length; k++) {
+            programa.getBloque(k).frecuencia = total[k];
+        }
+        programa.marcarPerfil();
+        return ejecuciones.get(huella);
+    }
+
+    /**
+     * Devuelve la cantidad de registros descartados por estar incompletos.
+     */
+    public int getRegistrosIncompletos() {
+        return registrosIncompletos;
+    }
+
+    /**
+     * Resume el contenido del perfil, para la clave de la caché de compilaciones: dos perfiles con
+     * los mismos conteos tienen el mismo resumen.
+     *
+     * @return Un CRC32 de las huellas y los conteos, en hexadecimal.
+     */
+    public String getDigesto() {
+        CRC32 crc = new CRC32();
+        ByteBuffer datos = ByteBuffer.allocate(4096);
+        for (Map.Entry<Integer, long[]> programa : conteos.entrySet()) {
+            datos = vaciarSiLleno(crc, datos, 2);
+            datos.putInt(programa.getKey()).putInt(programa.getValue().length);
+            for (long conteo : programa.getValue()) {
+                datos = vaciarSiLleno(crc, datos, 2);
+                datos.putLong(conteo);
+            }
+        }
+        crc.update(datos.flip());
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,19 @@
+package com.miCompilador;
+
+import java.io.IOException;
+
+/**
+ * Programa compilado que se ejecuta dentro de la JVM. Lo implementan las clases que genera
+ * {@link EmisorJVM}.
+ */
+public interface ProgramaEjecutable {
+
+    /**
+     * Ejecuta el programa desde el principio, con todas las variables en 0.
+     *
+     * @param salida Destino de los {@code print}. No se vacía al terminar.
+     * @throws IOException         Si falla la escritura de la salida.
+     * @throws ArithmeticException Si el programa divide por cero o desborda una división.
+     */
+    void ejecutar(SalidaNumeros salida) throws IOException;
+}
@@ -0,0 +1,237 @@
+package com.miCompilador;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representación intermedia del programa: código de tres direcciones agrupado en bloques básicos
+ * unidos por un grafo de flujo de control explícito.
+ *
+ * <p>Los operandos son enteros: un número de registro virtual o, si la instrucción lo marca como
+ * inmediato, el valor de una constante. Cada variable del programa tiene un registro virtual propio
+ * y cada resultado intermedio recibe uno nuevo. Los bloques se guardan en el orden en que se emiten
+ * (su disposición); el número de cada bloque es además el de su etiqueta en el código NASM.</p>
+ */
+public class ProgramaIR {
+
+    // Códigos de operación de las instrucciones
+    public static final int MOV = 0;        // destino = a
+    public static final int ADD = 1;        // destino = a + b
+    public static final int SUB = 2;        // destino = a - b
+    public static final int MUL = 3;        // destino = a * b
+    public static final int DIV = 4;        // destino = a / b
+    public static final int NEG = 5;        // destino = -a
+    public static final int CMP = 6;        // destino = (a <relación> b) ? 1 : 0, con op = CMP + relación
+    public static final int IMPRIMIR = 12;  // print a
+    public static final int CONTAR = 13;    // contador de perfil número a += 1 (a siempre inmediato)
+
+    // Relaciones de comparación (operando de CMP y de las ramas condicionales)
+    public static final int MENOR = 0;
+    public static final int MENOR_IGUAL = 1;
+    public static final int MAYOR = 2;
+    public static final int MAYOR_IGUAL = 3;
+    public static final int IGUAL = 4;
+    public static final int DISTINTO = 5;
+
+    private final List<BloqueBasico> bloques = new ArrayList<>();
+    private BloqueBasico[] bloquesPorId = new BloqueBasico[16];
+    private int numBloques = 0;
+
+    private int numRegistros = 0;
+    private String[] nombres = new String[16];
+
+    // Registros virtuales de las variables del programa, en orden de aparición
+    private final List<Integer> variables = new ArrayList<>();
+
+    // Contadores de bloques del programa instrumentado, o null si no lo está
+    private PerfilEjecucion.Instrumentacion instrumentacion;
+
+    // Si los bloques tienen la frecuencia de un perfil de ejecución
+    private boolean conPerfil = false;
+
+    /**
+     * Crea un bloque básico nuevo, todavía fuera de la disposición.
+     *
+     * @return El bloque creado.
+     */
+    public BloqueBasico nuevoBloque() {
+        BloqueBasico bloque = new BloqueBasico(numBloques);
+        if (numBloques == bloquesPorId.length) {
+            bloquesPorId = Arrays.copyOf(bloquesPorId, numBloques * 2);
+        }
+        bloquesPorId[numBloques++] = bloque;
+        return bloque;
+    }
+
+    /**
+     * Cambia el número de todos los bloques, junto con los destinos de sus saltos y ramas.
+     *
+     * @param nuevoId El número nuevo de cada bloque, indexado por su número actual. Debe ser una
+     *                permutación de los números actuales.
+     */
+    void renumerarBloques(int[] nuevoId) {
+        BloqueBasico[] renumerados = new BloqueBasico[bloquesPorId.length];
+        for (int k = 0; k < numBloques; k++) {
+            BloqueBasico bloque = bloquesPorId[k];
+            bloque.id = nuevoId[k];
+            if (bloque.siVerdadero >= 0) {
+                bloque.siVerdadero = nuevoId[bloque.siVerdadero];
+            }
+            if (bloque.siFalso >= 0) {
+                bloque.siFalso = nuevoId[bloque.siFalso];
+            }
+            renumerados[bloque.id] = bloque;
+        }
+        bloquesPorId = renumerados;
+    }
+
+    /**
+     * Agrega un bloque al final de la disposición.
+     *
+     * @param bloque El bloque a ubicar.
+     */
+    public void ubicar(BloqueBasico bloque) {
+        bloques.add(bloque);
+    }
+
+    /**
+     * Devuelve los bloques en el orden en que se emiten. El primero es el punto de entrada.
+     */
+    public List<BloqueBasico> getBloques() {
+        return bloques;
+    }
+
+    /**
+     * Devuelve el bloque con el número indicado.
+     */
+    public BloqueBasico getBloque(int id) {
+        return bloquesPorId[id];
+    }
+
+    /**
+     * Devuelve la cantidad de bloques creados (el número más alto más uno).
+     */
+    public int getNumBloques() {
+        return numBloques;
+    }
+
+    /**
+     * Crea un registro virtual para un resultado intermedio.
+     *
+     * @return El número del registro virtual.
+     */
+    public int nuevoRegistro() {
+        if (numRegistros == nombres.length) {
+            nombres = Arrays.copyOf(nombres, numRegistros * 2);
+        }
+        return numRegistros++;
+    }
+
+    /**
+     * Crea el registro virtual de una variable del programa.
+     *
+     * @param nombre El nombre de la variable.
+     * @return El número del registro virtual.
+     */
+    public int nuevaVariable(String nombre) {
+        int registro = nuevoRegistro();
+        nombres[registro] = nombre;
+        variables.add(registro);
+        return registro;
+    }
+
+    /**
+     * Devuelve la cantidad de registros virtuales.
+     */
+    public int getNumRegistros() {
+        return numRegistros;
+    }
+
+    /**
+     * Devuelve el nombre de la variable asociada a un registro virtual, o {@code null} si es un temporal.
+     */
+    public String getNombre(int registro) {
+        return nombres[registro];
+    }
+
+    /**
+     * Devuelve los registros virtuales de las variables del programa, en orden de aparición.
+     */
+    public List<Integer> getVariables() {
+        return variables;
+    }
+
+    /**
+     * Devuelve los contadores de bloques que incrementan las instrucciones {@link #CONTAR}, o
+     * {@code null} si el programa no está instrumentado.
+     */
+    public PerfilEjecucion.Instrumentacion getInstrumentacion() {
+        return instrumentacion;
+    }
+
+    void setInstrumentacion(PerfilEjecucion.Instrumentacion instrumentacion) {
+        this.instrumentacion = instrumentacion;
+    }
+
+    /**
+     * Indica si los bloques tienen la frecuencia de un perfil de ejecución (ver
+     * {@link PerfilEjecucion#aplicar(ProgramaIR)}).
+     */
+    public boolean tienePerfil() {
+        return conPerfil;
+    }
+
+    void marcarPerfil() {
+        conPerfil = true;
+    }
+
+    /**
+     * Indica si el código de operación es una comparación ({@code CMP + relación}).
+     */
+    public static boolean esComparacion(int op) {
+        return op >= CMP && op <= CMP + DISTINTO;
+    }
+
+    /**
+     * Devuelve la relación que se cumple exactamente cuando no se cumple la indicada.
+     */
+    public static int negar(int relacion) {
+        return switch (relacion) {
+            case MENOR -> MAYOR_IGUAL;
+            case MENOR_IGUAL -> MAYOR;
+            case MAYOR -> MENOR_IGUAL;
+            case MAYOR_IGUAL -> MENOR;
+            case IGUAL -> DISTINTO;
+            default -> IGUAL;
+        };
+    }
+
+    /**
+     * Indica si dos valores cumplen una relación.
+     */
+    public static boolean cumple(int relacion, int a, int b) {
+        return switch (relacion) {
+            case MENOR -> a < b;
+            case MENOR_IGUAL -> a <= b;
+            case MAYOR -> a > b;
+            case MAYOR_IGUAL -> a >= b;
+            case IGUAL -> a == b;
+            default -> a != b;
+        };
+    }
+
+    /**
+     * Convierte el texto de un operador relacional en su relación.
+     */
+    public static int relacion(String operador) {
+        return switch (operador) {
+            case "<" -> MENOR;
+            case "<=" -> MENOR_IGUAL;
+            case ">" -> MAYOR;
+            case ">=" -> MAYOR_IGUAL;
+            case "==" -> IGUAL;
+            default -> DISTINTO;
+        };
+    }
+}
@@ -0,0 +1,68 @@
+package com.miCompilador;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destino de la instrucción {@code print} de los programas que se ejecutan dentro de la JVM, con el
+ * {@link Interprete} o como clase generada por {@link EmisorJVM}.
+ *
+ * <p>Escribe cada número en decimal seguido de un salto de línea sobre un búfer propio, sin crear
+ * cadenas, y lo envía al flujo de destino cuando se llena o al vaciarlo.</p>
+ */
+public final class SalidaNumeros {
+
+    private final OutputStream salida;
+    private final byte[] bufer = new byte[8192];
+    private int usado = 0;
+
+    /**
+     * Crea la salida sobre un flujo.
+     *
+     * @param salida Flujo de destino. No se cierra.
+     */
+    public SalidaNumeros(OutputStream salida) {
+        this.salida = salida;
+    }
+
+    /**
+     * Escribe un número y un salto de línea.
+     *
+     * @param valor El número a escribir.
+     * @throws IOException Si falla la escritura al vaciar el búfer.
+     */
+    public void imprimir(int valor) throws IOException {
+        // Signo, diez dígitos y el salto de línea
+        if (usado + 12 > bufer.length) {
+            vaciar();
+        }
+        long resto = valor;
+        if (resto < 0) {
+            bufer[usado++] = '-';
+            resto = -resto;
+        }
+        int inicio = usado;
+        do {
+            bufer[usado++] = (byte) ('0' + resto % 10);
+            resto /= 10;
+        } while (resto != 0);
+        // Los dígitos quedaron al revés
+        for (int i = inicio, j = usado - 1; i < j; i++, j--) {
+            byte digito = bufer[i];
+            bufer[i] = bufer[j];
+            bufer[j] = digito;
+        }
+        bufer[usado++] = '\n';
+    }
+
+    /**
+     * Envía al flujo de destino lo escrito hasta ahora y lo vacía.
+     *
+     * @throws IOException Si falla la escritura.
+     */
+    public void vaciar() throws IOException {
+        salida.write(bufer, 0, usado);
+        usado = 0;
+        salida.flush();
+    }
+}
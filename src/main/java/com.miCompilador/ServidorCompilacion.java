@@ -0,0 +1,351 @@
+package com.miCompilador;
+
+import picocli.CommandLine;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Servidor de compilación residente que mantiene calientes la JVM, las clases cargadas y la caché de
+ * DFA de ANTLR entre solicitudes.
+ *
+ * <p>El servidor escucha en la entrada estándar ({@code stdin}) o en un socket de dominio Unix (cualquier
+ * otra ruta). El protocolo es de texto, una solicitud por línea:</p>
+ * <ul>
+ *     <li>Solicitud: el directorio de trabajo del cliente seguido de los argumentos de línea de
+ *     comandos, separados por tabuladores. Una línea vacía cierra la conexión.</li>
+ *     <li>Respuesta: cada línea de progreso precedida por {@code "O "}, cada línea de error por
+ *     {@code "E "}, cada línea de código NASM (con {@code --asm -}) por {@code "A "} y, al final,
+ *     {@code "FIN <codigo>"} con el código de salida de la compilación. La clase de la JVM de
+ *     {@code --target jvm --asm -} es binaria: se envía en Base64, en líneas de 76 caracteres
+ *     precedidas por {@code "B "}, que el cliente decodifica y escribe tal cual.</li>
+ * </ul>
+ *
+ * <p>Cada conexión se atiende en su propio hilo virtual, y cada solicitud se ejecuta con sus propios
+ * flujos de mensajes, exactamente como lo haría una invocación independiente del compilador.</p>
+ *
+ * <p>El protocolo no tiene autenticación y una solicitud escribe archivos y ejecuta programas con los
+ * permisos del servidor, así que solo el usuario que lo inició debe poder conectarse: el socket se
+ * crea en un directorio al que solo él tiene acceso (ver {@link #asegurarDirectorioPrivado}). Por eso
+ * no se escucha en puertos TCP, a los que cualquier usuario local puede conectarse.</p>
+ */
+public class ServidorCompilacion {
+
+    // Programa que se compila al iniciar para calentar el lexer, el parser y los visitantes
+    private static final String PROGRAMA_CALENTAMIENTO = """
+            a = 0;
+            b = 10;
+            for (a = 0; a < b; a = a + 1) {
+                if ((a / 2) * 2 == a) {
+                    print(a);
+                } else {
+                    while (b > 0) {
+                        b = b - 1;
+                    };
+                };
+            };
+            print(a);
+            """;
+
+    private static final int ITERACIONES_CALENTAMIENTO = 300;
+
+    private final String direccion;
+    private final PrintStream out;
+    private final PrintStream err;
+
+    /**
+     * Crea un servidor de compilación.
+     *
+     * @param direccion {@code stdin} o la ruta de un socket Unix.
+     * @param out       Flujo de la consola del proceso (usado como canal de respuesta en modo {@code stdin}).
+     * @param err       Flujo para los mensajes del propio servidor.
+     */
+    public ServidorCompilacion(String direccion, PrintStream out, PrintStream err) {
+        this.direccion = direccion;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Inicia el servidor y atiende solicitudes hasta que se cierre la entrada o se detenga el proceso.
+     *
+     * @return El código de salida del servidor.
+     * @throws Exception Si no se puede abrir la dirección de escucha.
+     */
+    public int ejecutar() throws Exception {
+        calentar();
+
+        if (direccion.equals("stdin")) {
+            err.println("Servidor de compilación atendiendo la entrada estándar.");
+            atender(System.in, out);
+            return 0;
+        }
+
+        UnixDomainSocketAddress direccionEscucha = UnixDomainSocketAddress.of(direccion);
+        try {
+            asegurarDirectorioPrivado(direccionEscucha.getPath());
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        }
+        eliminarSocketObsoleto(direccionEscucha.getPath());
+        ServerSocketChannel servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(direccionEscucha.getPath());
+            } catch (IOException e) {
+                // El socket se eliminará en el próximo inicio
+            }
+        }));
+
+        try (servidor; ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            servidor.bind(direccionEscucha);
+            err.println("Servidor de compilación escuchando en " + direccion + ".");
+            while (true) {
+                SocketChannel cliente = servidor.accept();
+                ejecutor.submit(() -> {
+                    try (cliente) {
+                        atender(Channels.newInputStream(cliente), Channels.newOutputStream(cliente));
+                    } catch (IOException e) {
+                        err.println("Error en la conexión con el cliente: " + e.getMessage());
+                    }
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Atiende las solicitudes de una conexión hasta que el cliente la cierre.
+     */
+    private void atender(InputStream entrada, OutputStream salida) throws IOException {
+        BufferedReader lector = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        Writer escritor = new OutputStreamWriter(salida, StandardCharsets.UTF_8);
+        String linea;
+        while ((linea = lector.readLine()) != null && !linea.isEmpty()) {
+            String[] campos = linea.split("\t", -1);
+            String[] argumentos = Arrays.copyOfRange(campos, 1, campos.length);
+            responder(Paths.get(campos[0]), argumentos, escritor);
+            escritor.flush();
+        }
+    }
+
+    /**
+     * Ejecuta una solicitud con flujos propios y escribe la respuesta con el formato del protocolo.
+     */
+    private void responder(Path directorioBase, String[] argumentos, Writer escritor) throws IOException {
+        ByteArrayOutputStream mensajes = new ByteArrayOutputStream();
+        ByteArrayOutputStream errores = new ByteArrayOutputStream();
+        ByteArrayOutputStream codigoAsm = new ByteArrayOutputStream();
+        int codigo;
+        boolean binario = false;
+
+        try (PrintStream outLocal = new PrintStream(mensajes, true, StandardCharsets.UTF_8);
+             PrintStream errLocal = new PrintStream(errores, true, StandardCharsets.UTF_8);
+             PrintStream asmLocal = new PrintStream(codigoAsm, true, StandardCharsets.UTF_8)) {
+            if (Arrays.stream(argumentos).anyMatch(a -> a.startsWith("--server") || a.startsWith("--connect"))) {
+                errLocal.println("Las opciones --server y --connect no se permiten dentro de una solicitud.");
+                codigo = 2;
+            } else {
+                miCompilador invocacion = new miCompilador(directorioBase, outLocal, errLocal, asmLocal);
+                CommandLine comando = new CommandLine(invocacion)
+                        .setCaseInsensitiveEnumValuesAllowed(true)
+                        .setExpandAtFiles(false);
+                comando.setOut(new PrintWriter(outLocal, true));
+                comando.setErr(new PrintWriter(errLocal, true));
+                codigo = comando.execute(argumentos);
+                binario = invocacion.salidaAsmBinaria();
+            }
+        }
+
+        escribirCanal(escritor, "O ", mensajes);
+        escribirCanal(escritor, "E ", errores);
+        if (binario) {
+            escribirBase64(escritor, codigoAsm);
+        } else {
+            escribirCanal(escritor, "A ", codigoAsm);
+        }
+        escritor.write("FIN " + codigo + "\n");
+    }
+
+    /**
+     * Escribe cada línea del contenido capturado precedida por el prefijo del canal.
+     */
+    private static void escribirCanal(Writer escritor, String prefijo, ByteArrayOutputStream contenido)
+            throws IOException {
+        if (contenido.size() == 0) {
+            return;
+        }
+        String texto = contenido.toString(StandardCharsets.UTF_8);
+        if (texto.endsWith("\n")) {
+            texto = texto.substring(0, texto.length() - 1);
+        }
+        for (String linea : texto.split("\n", -1)) {
+            escritor.write(prefijo);
+            escritor.write(linea);
+            escritor.write('\n');
+        }
+    }
+
+    /**
+     * Escribe el contenido binario capturado en Base64, en líneas precedidas por {@code "B "}. Cada
+     * línea tiene una cantidad de caracteres múltiplo de 4, así que se decodifica por separado.
+     */
+    private static void escribirBase64(Writer escritor, ByteArrayOutputStream contenido) throws IOException {
+        if (contenido.size() == 0) {
+            return;
+        }
+        String texto = Base64.getMimeEncoder(76, new byte[]{'\n'}).encodeToString(contenido.toByteArray());
+        for (String linea : texto.split("\n")) {
+            escritor.write("B ");
+            escritor.write(linea);
+            escritor.write('\n');
+        }
+    }
+
+    /**
+     * Atiende varias solicitudes sobre un programa de ejemplo para que la primera solicitud real no
+     * pague la construcción de la DFA de ANTLR, la inicialización de picocli ni la compilación JIT.
+     */
+    private void calentar() throws IOException {
+        long inicio = System.nanoTime();
+        Path directorio = Files.createTempDirectory("miCompilador");
+        Files.writeString(directorio.resolve("calentamiento.txt"), PROGRAMA_CALENTAMIENTO);
+        String[] argumentos = {"calentamiento.txt", "salida.txt", "--asm", "salida.asm"};
+        Writer descarte = Writer.nullWriter();
+        try {
+            for (int i = 0; i < ITERACIONES_CALENTAMIENTO; i++) {
+                responder(directorio, argumentos, descarte);
+            }
+        } finally {
+            try (var archivos = Files.list(directorio)) {
+                for (Path archivo : archivos.toList()) {
+                    Files.delete(archivo);
+                }
+            }
+            Files.delete(directorio);
+        }
+        err.printf("Compilador precalentado en %.0f ms.%n", (System.nanoTime() - inicio) / 1e6);
+    }
+
+    /**
+     * Asegura que solo el usuario del servidor pueda llegar al socket: crea su directorio con permisos
+     * 700 si no existe y, si existe, exige que sea del usuario y que no dé permisos al grupo ni a otros.
+     * En un sistema de archivos sin permisos POSIX el directorio se acepta como está.
+     *
+     * @throws IOException Si el directorio no se puede crear o otros usuarios tienen acceso a él.
+     */
+    private static void asegurarDirectorioPrivado(Path socket) throws IOException {
+        Path directorio = socket.toAbsolutePath().getParent();
+        boolean posix = directorio.getFileSystem().supportedFileAttributeViews().contains("posix");
+        if (Files.notExists(directorio)) {
+            if (posix) {
+                Files.createDirectories(directorio,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directorio);
+            }
+            return;
+        }
+        if (!posix) {
+            return;
+        }
+
+        PosixFileAttributes atributos = Files.readAttributes(directorio, PosixFileAttributes.class);
+        UserPrincipal usuario = directorio.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        boolean compartido = false;
+        for (PosixFilePermission permiso : atributos.permissions()) {
+            if (!permiso.name().startsWith("OWNER_")) {
+                compartido = true;
+            }
+        }
+        if (!atributos.owner().equals(usuario) || compartido) {
+            throw new IOException("el directorio '" + directorio + "' del socket debe ser del usuario '"
+                    + usuario.getName() + "' y no dar permisos al grupo ni a otros (chmod 700): cualquiera"
+                    + " que llegue al socket compila, escribe archivos y ejecuta programas como este usuario."
+                    + " Use un directorio nuevo, que el servidor crea con esos permisos.");
+        }
+    }
+
+    /**
+     * Elimina un socket Unix que haya quedado de una ejecución anterior, sin tocar archivos regulares.
+     */
+    private static void eliminarSocketObsoleto(Path ruta) throws IOException {
+        if (Files.exists(ruta) && Files.readAttributes(ruta, BasicFileAttributes.class).isOther()) {
+            Files.delete(ruta);
+        }
+    }
+
+    /**
+     * Cliente ligero: envía los argumentos a un servidor en ejecución y reproduce su respuesta.
+     *
+     * @param direccion  Ruta del socket Unix del servidor.
+     * @param argumentos Argumentos de línea de comandos a reenviar.
+     * @param out        Flujo donde se escriben los mensajes de progreso y el código NASM o la clase.
+     * @param err        Flujo donde se escriben los mensajes de error.
+     * @return El código de salida informado por el servidor.
+     * @throws IOException Si no se puede establecer la conexión.
+     */
+    public static int enviar(String direccion, List<String> argumentos, PrintStream out, PrintStream err)
+            throws IOException {
+        try (SocketChannel canal = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            canal.connect(UnixDomainSocketAddress.of(direccion));
+
+            Writer escritor = new OutputStreamWriter(Channels.newOutputStream(canal), StandardCharsets.UTF_8);
+            escritor.write(Paths.get("").toAbsolutePath().toString());
+            for (String argumento : argumentos) {
+                escritor.write('\t');
+                escritor.write(argumento);
+            }
+            escritor.write("\n\n");
+            escritor.flush();
+
+            BufferedReader lector = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(canal), StandardCharsets.UTF_8));
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.startsWith("FIN ")) {
+                    out.flush();
+                    return Integer.parseInt(linea.substring(4).strip());
+                } else if (linea.startsWith("B ")) {
+                    byte[] bytes = Base64.getDecoder().decode(linea.substring(2));
+                    out.write(bytes, 0, bytes.length);
+                } else if (linea.startsWith("E ")) {
+                    err.println(linea.substring(2));
+                } else if (linea.length() >= 2) {
+                    out.println(linea.substring(2));
+                }
+            }
+            err.println("El servidor cerró la conexión sin completar la respuesta.");
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.miCompilador;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tabla de símbolos compartida por el análisis semántico y la generación de código.
+ *
+ * <p>Cada identificador distinto recibe un número denso, su símbolo, la primera vez que aparece. El
+ * análisis semántico guarda ese número en el nodo del árbol que lo menciona (el campo
+ * {@code simbolo} de {@code assignmentExp}, {@code primaryExp} y {@code print_stmt}), así que las
+ * fases siguientes consultan los atributos por índice sin volver a buscar el nombre. Los atributos
+ * se guardan en arreglos paralelos indexados por símbolo.</p>
+ *
+ * <p>Un identificador usado sin declarar también recibe símbolo, para que el nodo quede resuelto,
+ * pero no cuenta como declarado ni aparece en {@link #getNumDeclarados()}.</p>
+ */
+public class TablaSimbolos {
+
+    /**
+     * Valor del campo {@code simbolo} de un nodo que todavía no pasó por el análisis semántico.
+     */
+    public static final int SIN_SIMBOLO = -1;
+
+    // Línea de declaración de un símbolo que todavía no fue declarado
+    private static final int NO_DECLARADO = -1;
+
+    private final Map<String, Integer> porNombre = new HashMap<>();
+    private String[] nombres = new String[16];
+    private int[] lineas = new int[16];
+    private int numSimbolos = 0;
+
+    // Símbolos declarados, en orden de declaración
+    private int[] declarados = new int[16];
+    private int numDeclarados = 0;
+
+    /**
+     * Devuelve el símbolo de un identificador, asignándole uno nuevo si es la primera vez que aparece.
+     *
+     * @param nombre El nombre del identificador.
+     * @return El número de símbolo.
+     */
+    public int simbolo(String nombre) {
+        Integer simbolo = porNombre.get(nombre);
+        if (simbolo != null) {
+            return simbolo;
+        }
+        if (numSimbolos == nombres.length) {
+            nombres = Arrays.copyOf(nombres, numSimbolos * 2);
+            lineas = Arrays.copyOf(lineas, numSimbolos * 2);
+        }
+        nombres[numSimbolos] = nombre;
+        lineas[numSimbolos] = NO_DECLARADO;
+        porNombre.put(nombre, numSimbolos);
+        return numSimbolos++;
+    }
+
+    /**
+     * Declara un identificador si todavía no lo estaba.
+     *
+     * @param nombre El nombre del identificador.
+     * @param linea  La línea donde se declara.
+     * @return El número de símbolo.
+     */
+    public int declarar(String nombre, int linea) {
+        int simbolo = simbolo(nombre);
+        if (lineas[simbolo] == NO_DECLARADO) {
+            lineas[simbolo] = linea;
+            if (numDeclarados == declarados.length) {
+                declarados = Arrays.copyOf(declarados, numDeclarados * 2);
+            }
+            declarados[numDeclarados++] = simbolo;
+        }
+        return simbolo;
+    }
+
+    /**
+     * Indica si un identificador ya fue declarado.
+     *
+     * @param nombre El nombre del identificador.
+     * @return {@code true} si está declarado.
+     */
+    public boolean estaDeclarado(String nombre) {
+        Integer simbolo = porNombre.get(nombre);
+        return simbolo != null && estaDeclarado(simbolo);
+    }
+
+    /**
+     * Indica si un símbolo ya fue declarado.
+     */
+    public boolean estaDeclarado(int simbolo) {
+        return lineas[simbolo] != NO_DECLARADO;
+    }
+
+    /**
+     * Devuelve la cantidad de símbolos, declarados o no. Los números de símbolo van de 0 a este valor.
+     */
+    public int getNumSimbolos() {
+        return numSimbolos;
+    }
+
+    /**
+     * Devuelve la cantidad de símbolos declarados.
+     */
+    public int getNumDeclarados() {
+        return numDeclarados;
+    }
+
+    /**
+     * Devuelve el símbolo declarado en la posición indicada, en orden de declaración.
+     *
+     * @param i La posición, entre 0 y {@link #getNumDeclarados()}.
+     * @return El número de símbolo.
+     */
+    public int getDeclarado(int i) {
+        return declarados[i];
+    }
+
+    /**
+     * Devuelve el nombre de un símbolo.
+     */
+    public String getNombre(int simbolo) {
+        return nombres[simbolo];
+    }
+
+    /**
+     * Devuelve el tipo de un símbolo. Por ahora el lenguaje solo tiene variables enteras.
+     */
+    public String getTipo(int simbolo) {
+        return "variable";
+    }
+
+    /**
+     * Devuelve la línea donde se declaró un símbolo, o -1 si no fue declarado.
+     */
+    public int getLinea(int simbolo) {
+        return lineas[simbolo];
+    }
+}
@@ -1,18 +1,17 @@
 package com.miCompilador;
 
-import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.TerminalNode;
 import picocli.CommandLine;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Map;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Clase principal del compilador `miCompilador` que se encarga de convertir código fuente a código ensamblador NASM.
@@ -22,7 +21,9 @@ import java.util.concurrent.Callable;
  * se emplea la biblioteca `picocli`.</p>
  *
  * <p>El archivo de entrada se especifica como un parámetro, y el archivo de salida generado contiene
- * el código ensamblador NASM.</p>
+ * el reporte de la compilación; el código ensamblador NASM se guarda en la ruta indicada por
+ * {@code --asm}. Con {@code --batch} se compila un lote completo de archivos en paralelo, y con
+ * {@code --server} el compilador queda residente atendiendo solicitudes de clientes {@code --connect}.</p>
  *
  * <p>Esta implementación incluye las siguientes fases del compilador:
  * <ul>
@@ -33,198 +34,332 @@ import java.util.concurrent.Callable;
  * </ul>
  * </p>
  */
-@CommandLine.Command(name="miCompilador", mixinStandardHelpOptions = true, version = "0.0.1")
+@CommandLine.Command(name="miCompilador", mixinStandardHelpOptions = true, version = miCompilador.VERSION)
 public class miCompilador implements Callable<Integer> {
 
-    @CommandLine.Parameters(index = "0", description = "Ruta del archivo de entrada")
+    /**
+     * Versión del compilador. Forma parte de la clave de {@link CacheCompilaciones}: se debe cambiar
+     * cuando cambia el código que genera.
+     */
+    static final String VERSION = "0.0.1";
+
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
+    @CommandLine.Parameters(index = "0", arity = "0..1", description = "Ruta del archivo de entrada")
     private String archivoEntrada;
 
-    @CommandLine.Parameters(index = "1", description = "Ruta del archivo de salida")
+    @CommandLine.Parameters(index = "1", arity = "0..1", description = "Ruta del archivo de salida")
     private String archivoSalida;
 
-    /**
-     * Método principal que se ejecuta al invocar el compilador desde la línea de comandos.
-     *
-     * @return Un valor entero que indica el estado de la compilación (0 para éxito, 1 para error).
-     * @throws Exception Si ocurre algún error durante la ejecución.
-     */
-    @Override
-    public Integer call() throws Exception {
+    @CommandLine.Option(names = "--asm", defaultValue = "output.asm",
+            description = "Ruta del archivo NASM generado, o '-' para la salida estándar (por defecto: ${DEFAULT-VALUE})")
+    private String archivoAsm;
 
-        // Ruta al archivo de entrada
-        String filePath = "/home/ajrf/Workspace/miCompilador2/src/main/resources/prueba.txt";
+    @CommandLine.Option(names = "--batch", paramLabel = "<lote>",
+            description = "Compila en paralelo un lote: un directorio, un patrón glob o un manifiesto (@archivo)")
+    private String lote;
 
-        // Crear archivo de salida
-        BufferedWriter writer = new BufferedWriter(new FileWriter(archivoSalida));
+    @CommandLine.Option(names = "--out-dir", defaultValue = "salida",
+            description = "Directorio de salida del modo por lotes (por defecto: ${DEFAULT-VALUE})")
+    private String directorioSalida;
 
-        // Crear el lexer con el archivo de entrada
-        miGramaticaLexer lexer = new miGramaticaLexer(CharStreams.fromFileName(archivoEntrada));
+    @CommandLine.Option(names = "--server", paramLabel = "<direccion>",
+            description = "Inicia el servidor de compilación en 'stdin' o en la ruta de un socket Unix")
+    private String direccionServidor;
 
-        // Remover los errorlisteners por defecto y agregar el personalizado
-        lexer.removeErrorListeners();
-        LexerErrorListener lexerErrorListener = new LexerErrorListener();
-        lexer.addErrorListener(lexerErrorListener);
+    @CommandLine.Option(names = "--connect", paramLabel = "<direccion>",
+            description = "Reenvía el resto de los argumentos a un servidor de compilación ya iniciado")
+    private String direccionConexion;
 
-        // Crear el buffer de tokens a partir del lexer
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
+    @CommandLine.Option(names = "--incremental",
+            description = "Reutiliza el resultado de las sentencias que no cambiaron desde la compilación anterior")
+    private boolean incremental;
 
-        // Forzar que se complete el tokenizado antes de pasar a la fase sintáctica
-        tokens.fill();
+    @CommandLine.Option(names = "--cache-dir", defaultValue = ".micompilador-cache",
+            description = "Directorio de la caché del modo incremental y de --cache (por defecto: ${DEFAULT-VALUE})")
+    private String directorioCache;
 
-        if (lexerErrorListener.hayErrores()) {
-            System.err.println("Se encontraron errores léxicos. Compilación detenida.");
-            writer.write("Se encontraron errores léxicos. Compilación detenida.");
-            writer.newLine();
-            return 1; // Código de error
-        } else{
+    @CommandLine.Option(names = "--cache",
+            description = "Toma de la caché el resultado de un archivo ya compilado con el mismo contenido y las mismas opciones")
+    private boolean cacheResultados;
 
-            // Crear el parser que consumirá los tokens
-            miGramaticaParser parser = new miGramaticaParser(tokens);
+    @CommandLine.Option(names = "--cache-size", paramLabel = "<MB>", defaultValue = "256",
+            description = "Tamaño máximo de las entradas de --cache; se desalojan las usadas hace más tiempo (por defecto: ${DEFAULT-VALUE})")
+    private long tamanoCacheMB;
 
-            // Eliminar los listeners de errores por defecto y añadir el nuestro
-            parser.removeErrorListeners();
-            parser.addErrorListener(new CustomErrorListener());
+    @CommandLine.Option(names = "--cache-stats",
+            description = "Muestra los aciertos, los fallos y la ocupación de la caché de --cache y termina")
+    private boolean estadisticasCache;
 
-            // Iniciar el análisis sintáctico
-            ParseTree tree = parser.program();
+    @CommandLine.Option(names = "--large-input",
+            description = "Modo para archivos grandes: mapea la entrada en memoria y analiza los tokens a medida que se leen")
+    private boolean entradaGrande;
 
-            // Verificar si hubo errores sintácticos
-            if (parser.getNumberOfSyntaxErrors() > 0) {
-                System.err.println("Se encontraron errores sintácticos. Compilación detenida.");
-                writer.write("Se encontraron errores sintácticos. Compilación detenida.");
-                writer.newLine();
-                return 1; // Código de error
-            } else {
-                // Mensaje de éxito en la fase sintáctica
-                System.out.println("Fase sintáctica completada con éxito...");
-                writer.write("Fase sintáctica completada con éxito...");
-                writer.newLine();
-                System.out.println("Iniciando análisis semántico...");
-                writer.write("Iniciando análisis semántico...");
-                writer.newLine();
-
-                // Crear una instancia del analizador semántico
-                AnalizadorSemantico analizador = new AnalizadorSemantico();
-
-                // Realizar el análisis semántico visitando el árbol de parseo
-                analizador.visit(tree);
-
-                if (analizador.hayErroresSemanticos()) {
-                    System.err.println("Se encontraron errores semánticos. Compilación detenida.");
-                    writer.write("Se encontraron errores semánticos. Compilación detenida.");
-                    writer.newLine();
-                    return 1;
-                } else {
-                    // Mensaje de éxito en la fase semántica
-                    System.out.println("Fase semántica completada con éxito...");
-                    writer.write("Fase semántica completada con éxito...");
-                    writer.newLine();
-                    System.out.println("Iniciando generación de código...");
-                    writer.write("Iniciando generación de código...");
-                    writer.newLine();
-
-                    // Generar el código NASM
-                    GeneradorCodigo generador = new GeneradorCodigo();
-                    generador.visit(tree);
-
-                    // Obtener el código completo
-                    String codigoNASM = generador.getCodigoCompleto();
-
-                    // Guardar el código en un archivo .asm
-                    try (PrintWriter out = new PrintWriter("output.asm")) {
-                        out.println(codigoNASM);
-                        System.out.println("Generación de código completada. Código guardado en 'output.asm'.");
-                        writer.write("Generación de código completada. Código guardado en 'output.asm'.");
-                        writer.newLine();
-                    } catch (IOException e) {
-                        System.err.println("Error al escribir el archivo de salida: " + e.getMessage());
-                        writer.write("Error al escribir el archivo de salida: " + e.getMessage());
-                        writer.newLine();
-                        return 1;
-                    }
-
-                    // Imprimir la tabla de símbolos
-                    System.out.println(imprimirTablaDeSimbolos(analizador.getTablaSimbolos()));
-                    writer.write(imprimirTablaDeSimbolos(analizador.getTablaSimbolos()));
-                    writer.newLine();
-
-                    writer.close();
-
-                }
+    @CommandLine.Option(names = "--target", defaultValue = "nasm",
+            description = "Código a generar: ${COMPLETION-CANDIDATES} (por defecto: nasm). Con jvm, la ruta de --asm recibe un archivo de clase (por defecto: output.class)")
+    private Compilacion.Destino destino;
 
-            }
+    @CommandLine.Option(names = "--run",
+            description = "Ejecuta el programa después de compilarlo: con --target jvm carga la clase generada, si no usa el intérprete integrado")
+    private boolean ejecutarPrograma;
 
-            return 0;
+    @CommandLine.Option(names = "--single-pass",
+            description = "Hace el análisis semántico y la generación de código durante el análisis sintáctico, sin construir el árbol de parseo")
+    private boolean unaPasada;
 
-        }
+    @CommandLine.Option(names = "--parallel-codegen",
+            description = "Genera el código intermedio en paralelo, por tramos de sentencias de nivel superior; el código generado es el mismo")
+    private boolean generacionParalela;
+
+    @CommandLine.Option(names = "--no-constant-fold",
+            description = "No evalúa durante la compilación las operaciones ni las condiciones con operandos constantes")
+    private boolean sinPlegarConstantes;
+
+    @CommandLine.Option(names = "--no-loop-opt",
+            description = "No optimiza los bucles (movimiento de código invariante y reducción de fuerza)")
+    private boolean sinOptimizarBucles;
+
+    @CommandLine.Option(names = "--peephole-window", paramLabel = "<n>", defaultValue = "3",
+            description = "Líneas que examina la optimización de mirilla del código NASM; 0 la desactiva (por defecto: ${DEFAULT-VALUE})")
+    private int ventanaMirilla;
+
+    @CommandLine.Option(names = "--instrument",
+            description = "Genera un programa que cuenta las ejecuciones de cada bloque y las agrega al terminar a un perfil junto al archivo de --asm (extensión .perfil)")
+    private boolean instrumentar;
+
+    @CommandLine.Option(names = "--profile", paramLabel = "<ruta>",
+            description = "Usa el perfil de un programa instrumentado para disponer los bloques y asignar los registros según lo que más se ejecutó")
+    private String archivoPerfil;
 
+    @CommandLine.Option(names = "--metrics", paramLabel = "<ruta>",
+            description = "Escribe un informe JSON con el tiempo, la memoria asignada y los tamaños de cada fase ('-' para la salida estándar)")
+    private String archivoMetricas;
+
+    @CommandLine.Option(names = "--max-errors", paramLabel = "<n>", defaultValue = "100",
+            description = "Errores léxicos, sintácticos y semánticos que se reportan antes de detener el análisis; 0 no limita (por defecto: ${DEFAULT-VALUE})")
+    private int maximoErrores;
+
+    @CommandLine.Option(names = "--diagnostics", paramLabel = "<ruta>",
+            description = "Escribe los errores de la compilación en formato JSON ('-' para la salida estándar)")
+    private String archivoDiagnosticos;
+
+    // Directorio contra el que se resuelven las rutas relativas y flujos de mensajes de esta invocación
+    private final Path directorioBase;
+    private final PrintStream out;
+    private final PrintStream err;
+    private final PrintStream salidaAsm;
+
+    /**
+     * Crea una invocación que usa el directorio de trabajo y la consola del proceso.
+     */
+    public miCompilador() {
+        this(Paths.get(""), System.out, System.err, System.out);
+    }
+
+    /**
+     * Crea una invocación con su propio directorio de trabajo y flujos de mensajes, usada por el
+     * servidor de compilación para atender solicitudes de distintos clientes.
+     *
+     * @param directorioBase Directorio contra el que se resuelven las rutas relativas.
+     * @param out            Flujo para los mensajes de progreso.
+     * @param err            Flujo para los mensajes de error.
+     * @param salidaAsm      Flujo para el código NASM cuando se usa {@code --asm -}.
+     */
+    miCompilador(Path directorioBase, PrintStream out, PrintStream err, PrintStream salidaAsm) {
+        this.directorioBase = directorioBase;
+        this.out = out;
+        this.err = err;
+        this.salidaAsm = salidaAsm;
     }
 
-        /**
-         * Método para imprimir el árbol AST (Árbol de Sintaxis Abstracta) de forma visual.
-         *
-         * @param tree El árbol de sintaxis.
-         * @param parser El parser utilizado para generar el árbol.
-         */
-        private void imprimirArbolAST (ParseTree tree, miGramaticaParser parser){
-            imprimirArbolAST(tree, parser, 0);
-        }
-
-        /**
-         * Sobrecarga del método `imprimirArbolAST` para manejar la indentación recursiva.
-         *
-         * @param tree El árbol de sintaxis.
-         * @param parser El parser utilizado para generar el árbol.
-         * @param nivel El nivel de indentación actual.
-         */
-        private void imprimirArbolAST (ParseTree tree, miGramaticaParser parser,int nivel){
-            String indentacion = "  ".repeat(nivel);
-            String nombreNodo = obtenerNombreNodo(tree, parser);
-            System.out.println(indentacion + nombreNodo);
-
-            for (int i = 0; i < tree.getChildCount(); i++) {
-                imprimirArbolAST(tree.getChild(i), parser, nivel + 1);
+    /**
+     * Método principal que se ejecuta al invocar el compilador desde la línea de comandos.
+     *
+     * @return Un valor entero que indica el estado de la compilación (0 para éxito, 1 para error).
+     * @throws Exception Si ocurre algún error durante la ejecución.
+     */
+    @Override
+    public Integer call() throws Exception {
+
+        for (String direccion : new String[]{direccionConexion, direccionServidor}) {
+            if (direccion != null && !direccion.isEmpty() && direccion.chars().allMatch(Character::isDigit)) {
+                throw new CommandLine.ParameterException(spec.commandLine(),
+                        "--server y --connect no usan puertos TCP, a los que cualquier usuario local puede "
+                                + "conectarse: indique la ruta de un socket Unix");
             }
         }
 
-        /**
-         * Método para obtener el nombre del nodo actual en el árbol.
-         *
-         * @param tree El árbol de sintaxis.
-         * @param parser El parser utilizado para generar el árbol.
-         * @return El nombre del nodo.
-         */
-        private String obtenerNombreNodo (ParseTree tree, miGramaticaParser parser){
-            if (tree instanceof TerminalNode) {
-                Token simbolo = ((TerminalNode) tree).getSymbol();
-                String nombreToken = parser.getVocabulary().getSymbolicName(simbolo.getType());
-                if (nombreToken == null) {
-                    nombreToken = "'" + simbolo.getText() + "'";
-                }
-                return nombreToken + ": " + simbolo.getText();
+        if (direccionConexion != null) {
+            // Reenviar los argumentos originales, sin la opción --connect, al servidor
+            List<String> argumentos = new ArrayList<>(spec.commandLine().getParseResult().originalArgs());
+            int indice = argumentos.indexOf("--connect");
+            if (indice >= 0) {
+                argumentos.subList(indice, indice + 2).clear();
             } else {
-                String nombreRegla = tree.getClass().getSimpleName().replace("Context", "");
-                return nombreRegla;
+                argumentos.removeIf(argumento -> argumento.startsWith("--connect="));
             }
+            return ServidorCompilacion.enviar(direccionConexion, argumentos, out, err);
         }
 
-        /**
-         * Método para imprimir la tabla de símbolos de forma tabulada.
-         *
-         * @param tablaSimbolos La tabla de símbolos generada durante el análisis semántico.
-         */
-        private String imprimirTablaDeSimbolos (Map < String, AnalizadorSemantico.Simbolo > tablaSimbolos){
-            String tabla = "";
-            tabla += "\nTabla de Símbolos:\n";
-            tabla += String.format("%-20s%-15s%-15s", "Nombre", "Tipo", "Línea") + "\n";
-            tabla +="-----------------------------------------------------------\n";
-            for (AnalizadorSemantico.Simbolo simbolo : tablaSimbolos.values()) {
-                tabla += String.format("%-20s%-15s%-15d",
-                        simbolo.nombre, simbolo.tipo, simbolo.lineaDeclaracion) + "\n";
+        if (direccionServidor != null) {
+            return new ServidorCompilacion(direccionServidor, out, err).ejecutar();
+        }
+
+        if (entradaGrande && incremental) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--large-input no se puede combinar con --incremental");
+        }
+        if (unaPasada && incremental) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--single-pass no se puede combinar con --incremental");
+        }
+        if (generacionParalela && (unaPasada || incremental)) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--parallel-codegen reparte el árbol de parseo: no se combina con --single-pass ni con --incremental");
+        }
+        if (generacionParalela && lote != null) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--parallel-codegen no se puede combinar con --batch: el lote ya compila sus archivos en paralelo");
+        }
+        if (ejecutarPrograma && lote != null) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--run no se puede combinar con --batch");
+        }
+        if (ejecutarPrograma && destino == Compilacion.Destino.NASM && (incremental || unaPasada)) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "El intérprete de --run necesita el árbol de parseo: no se combina con --incremental ni --single-pass (use --target jvm)");
+        }
+        if ((instrumentar || archivoPerfil != null) && lote != null) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--instrument y --profile no se pueden combinar con --batch: el perfil es de un solo programa");
+        }
+        if (instrumentar && (destino != Compilacion.Destino.NASM || ejecutarPrograma)) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--instrument solo genera código NASM: no se combina con --target jvm ni con --run");
+        }
+        if (instrumentar && archivoAsm.equals("-")) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--instrument necesita la ruta de --asm, junto a la cual se ubica el perfil");
+        }
+        if (tamanoCacheMB <= 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--cache-size debe ser positivo");
+        }
+        if (estadisticasCache) {
+            Path directorio = directorioBase.resolve(directorioCache);
+            CacheCompilaciones cache = new CacheCompilaciones(directorio, tamanoCacheMB << 20);
+            out.println(CacheCompilaciones.informe(directorio, cache.estadisticas()));
+            return 0;
+        }
+        CacheCompilaciones cache = cacheResultados
+                ? new CacheCompilaciones(directorioBase.resolve(directorioCache), tamanoCacheMB << 20) : null;
+        if (ventanaMirilla < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--peephole-window no puede ser negativo");
+        }
+        if (maximoErrores < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "--max-errors no puede ser negativo");
+        }
+        if (destino == Compilacion.Destino.JVM && !spec.commandLine().getParseResult().hasMatchedOption("--asm")) {
+            archivoAsm = "output.class";
+        }
+
+        if (lote != null) {
+            CompilacionLotes compilacionLotes = new CompilacionLotes(directorioBase,
+                    directorioBase.resolve(directorioSalida), out, err);
+            if (incremental) {
+                compilacionLotes.setDirectorioCache(directorioBase.resolve(directorioCache));
+            }
+            compilacionLotes.setCacheResultados(cache);
+            compilacionLotes.setEntradaGrande(entradaGrande);
+            compilacionLotes.setUnaPasada(unaPasada);
+            compilacionLotes.setDestino(destino);
+            compilacionLotes.setPlegarConstantes(!sinPlegarConstantes);
+            compilacionLotes.setOptimizarBucles(!sinOptimizarBucles);
+            compilacionLotes.setVentanaMirilla(ventanaMirilla);
+            compilacionLotes.setMetricas(archivoMetricas != null);
+            compilacionLotes.setMaximoErrores(maximoErrores);
+            compilacionLotes.setDiagnosticos(archivoDiagnosticos != null);
+            int codigo = compilacionLotes.ejecutar(lote);
+            if (archivoMetricas != null && compilacionLotes.getInformeMetricas() != null) {
+                escribirInforme(archivoMetricas, compilacionLotes.getInformeMetricas());
+            }
+            if (archivoDiagnosticos != null && compilacionLotes.getInformeDiagnosticos() != null) {
+                escribirInforme(archivoDiagnosticos, compilacionLotes.getInformeDiagnosticos());
             }
-            return tabla;
+            return codigo;
         }
 
+        if (archivoEntrada == null || archivoSalida == null) {
+            throw new CommandLine.ParameterException(spec.commandLine(),
+                    "Se requieren el archivo de entrada y el archivo de salida (o la opción --batch)");
+        }
+
+        Compilacion compilacion = new Compilacion(directorioBase.resolve(archivoEntrada),
+                directorioBase.resolve(archivoSalida),
+                archivoAsm.equals("-") ? Paths.get("-") : directorioBase.resolve(archivoAsm), out, err);
+        compilacion.setSalidaAsm(salidaAsm);
+        if (incremental) {
+            compilacion.setDirectorioCache(directorioBase.resolve(directorioCache));
+        }
+        compilacion.setCacheResultados(cache);
+        compilacion.setEntradaGrande(entradaGrande);
+        compilacion.setUnaPasada(unaPasada);
+        if (generacionParalela) {
+            compilacion.setPoolGeneracion(ForkJoinPool.commonPool());
+        }
+        compilacion.setDestino(destino);
+        compilacion.setPlegarConstantes(!sinPlegarConstantes);
+        compilacion.setOptimizarBucles(!sinOptimizarBucles);
+        compilacion.setVentanaMirilla(ventanaMirilla);
+        if (ejecutarPrograma) {
+            compilacion.setSalidaEjecucion(out);
+        }
+        if (instrumentar) {
+            compilacion.setInstrumentacion(PerfilEjecucion.rutaPara(directorioBase.resolve(archivoAsm)));
+        }
+        if (archivoPerfil != null) {
+            try {
+                compilacion.setPerfil(PerfilEjecucion.leer(directorioBase.resolve(archivoPerfil)));
+            } catch (IOException e) {
+                String causa = e instanceof NoSuchFileException ? "el archivo no existe" : e.getMessage();
+                err.println("Error: no se pudo leer el perfil '" + archivoPerfil + "': " + causa);
+                return 1;
+            }
+        }
+        compilacion.setMetricasDetalladas(archivoMetricas != null);
+        compilacion.setMaximoErrores(maximoErrores);
+        int codigo = compilacion.ejecutar();
+        if (archivoMetricas != null) {
+            escribirInforme(archivoMetricas, compilacion.getMetricas().toJson());
+        }
+        if (archivoDiagnosticos != null) {
+            escribirInforme(archivoDiagnosticos, compilacion.getDiagnosticos().toJson(archivoEntrada));
+        }
+        return codigo;
+    }
+
+    /**
+     * Escribe un informe JSON ({@code --metrics} o {@code --diagnostics}) en la ruta indicada o, si
+     * es {@code -}, en la salida estándar.
+     */
+    private void escribirInforme(String ruta, String informe) throws IOException {
+        if (ruta.equals("-")) {
+            out.println(informe);
+        } else {
+            Files.writeString(directorioBase.resolve(ruta), informe + System.lineSeparator());
+        }
+    }
+
+    /**
+     * Indica si lo que esta invocación escribe en el flujo de {@code --asm -} es binario (una clase de
+     * la JVM) en lugar de código NASM.
+     */
+    boolean salidaAsmBinaria() {
+        return destino == Compilacion.Destino.JVM;
+    }
 
     /**
      * Método principal para ejecutar la aplicación de línea de comandos.
@@ -233,7 +368,9 @@ public class miCompilador implements Callable<Integer> {
      */
     public static void main(String[] args) {
 
-        int exit = new CommandLine(new miCompilador()).execute(args);
+        // Sin expandir los argumentos @archivo: '--batch @manifiesto' lo lee CompilacionLotes
+        int exit = new CommandLine(new miCompilador()).setCaseInsensitiveEnumValuesAllowed(true)
+                .setExpandAtFiles(false).execute(args);
         System.exit(exit);
     }
 }
@@ -0,0 +1,117 @@
+package com.miCompilador;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prueba de escala del anidamiento, que el build ejecuta en la fase {@code test}.
+ *
+ * <p>Compila y ejecuta con {@code --run} tres programas anidados {@link #ANIDAMIENTO} niveles: entre
+ * paréntesis, en bloques {@code if} y en bloques {@code while}. Cada uno se compila en una JVM nueva
+ * con la pila y el heap predeterminados, sin {@code -Xss} ni {@code -Xmx}, y debe terminar con
+ * código 0 e imprimir el valor esperado. Si alguno falla, el proceso termina con código 1 y el build
+ * se detiene.</p>
+ *
+ * <pre>
+ * mvn test                      (la incluye)
+ * mvn test -DskipTests          (la omite)
+ * </pre>
+ */
+public class PruebaAnidamiento {
+
+    /**
+     * Niveles de anidamiento de cada programa, si no se indica otro como argumento.
+     */
+    static final int ANIDAMIENTO = 100_000;
+
+    /**
+     * Programa de la prueba y el último número que debe imprimir.
+     */
+    private record Caso(String nombre, String fuente, String esperado) {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int anidamiento = args.length > 0 ? Integer.parseInt(args[0]) : ANIDAMIENTO;
+        List<Caso> casos = List.of(
+                new Caso("parentesis", parentesis(anidamiento), "1"),
+                new Caso("if", bloques("if (a > 0) {\n", "print(a);\n", anidamiento), "1"),
+                new Caso("while", bloques("while (a > 0) {\n", "a = a - 1;\nprint(a);\n", anidamiento), "0"));
+
+        Path directorio = Files.createTempDirectory("anidamiento");
+        int fallos = 0;
+        for (Caso caso : casos) {
+            if (!probar(caso, anidamiento, directorio)) {
+                fallos++;
+            }
+        }
+        if (fallos > 0) {
+            System.out.println(fallos + " de " + casos.size() + " programas anidados fallaron.");
+            System.exit(1);
+        }
+        System.out.println("Los " + casos.size() + " programas anidados " + anidamiento + " niveles compilaron y se ejecutaron bien.");
+    }
+
+    /**
+     * Compila y ejecuta un caso en una JVM nueva y compara lo que imprime.
+     */
+    private static boolean probar(Caso caso, int anidamiento, Path directorio) throws IOException, InterruptedException {
+        Path fuente = directorio.resolve(caso.nombre() + ".txt");
+        Files.writeString(fuente, caso.fuente());
+        Path consola = directorio.resolve(caso.nombre() + ".consola.txt");
+
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add("com.miCompilador.miCompilador");
+        comando.add(fuente.toString());
+        comando.add(directorio.resolve(caso.nombre() + ".salida.txt").toString());
+        comando.add("--asm");
+        comando.add(directorio.resolve(caso.nombre() + ".asm").toString());
+        comando.add("--run");
+
+        long inicio = System.nanoTime();
+        Process proceso = new ProcessBuilder(comando)
+                .redirectErrorStream(true)
+                .redirectOutput(consola.toFile())
+                .start();
+        int codigo = proceso.waitFor();
+        long milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+
+        List<String> lineas = Files.readAllLines(consola, StandardCharsets.UTF_8);
+        String ultima = "";
+        for (int k = lineas.size() - 1; k >= 0; k--) {
+            if (!lineas.get(k).isBlank()) {
+                ultima = lineas.get(k).strip();
+                break;
+            }
+        }
+
+        String descripcion = caso.nombre() + " (" + anidamiento + " niveles, " + milisegundos + " ms)";
+        if (codigo != 0 || !ultima.equals(caso.esperado())) {
+            System.out.println("FALLÓ " + descripcion + ": código " + codigo + ", imprimió '" + ultima
+                    + "' en lugar de '" + caso.esperado() + "'. Salida en '" + consola + "'.");
+            return false;
+        }
+        System.out.println("ok " + descripcion);
+        return true;
+    }
+
+    /**
+     * Una asignación con la constante 1 entre paréntesis anidados, y su impresión.
+     */
+    private static String parentesis(int anidamiento) {
+        return "a = " + "(".repeat(anidamiento) + "1" + ")".repeat(anidamiento) + ";\nprint(a);\n";
+    }
+
+    /**
+     * Bloques anidados con la misma cabecera y el cuerpo en el más interno, con {@code a} en 1.
+     */
+    private static String bloques(String cabecera, String cuerpo, int anidamiento) {
+        return "a = 1;\n" + cabecera.repeat(anidamiento) + cuerpo + "};\n".repeat(anidamiento);
+    }
+}